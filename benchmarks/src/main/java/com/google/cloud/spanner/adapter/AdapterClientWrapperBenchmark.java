@@ -0,0 +1,98 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.protobuf.ByteString;
+import com.google.spanner.adapter.v1.AdaptMessageResponse;
+import com.google.spanner.adapter.v1.AdapterClient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AdapterClientWrapper#sendGrpcRequest} against an in-memory stub, isolating the
+ * cost of building the request and stitching a chunked response stream back into a single frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterClientWrapperBenchmark {
+
+  private static final String DATABASE_URI =
+      "projects/benchmark/instances/benchmark/databases/benchmark";
+
+  @Param({"1", "4", "32"})
+  private int numChunks;
+
+  @Param({"1024", "65536", "1048576"})
+  private int chunkSize;
+
+  private AdapterClient adapterClient;
+  private AdapterClientWrapper adapterClientWrapper;
+  private final ApiCallContext context = GrpcCallContext.createDefault();
+  private final Map<String, String> attachments = Collections.emptyMap();
+  private byte[] payload;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<AdaptMessageResponse> responses = new ArrayList<>(numChunks);
+    for (int i = 0; i < numChunks; i++) {
+      responses.add(
+          AdaptMessageResponse.newBuilder()
+              .setPayload(ByteString.copyFrom(BenchmarkFrames.randomBytes(chunkSize)))
+              .build());
+    }
+    adapterClient = AdapterClient.create(new CannedAdapterStub(responses));
+    adapterClientWrapper =
+        new AdapterClientWrapper(
+            adapterClient,
+            new AttachmentsCache(1000),
+            new SessionManager(adapterClient, DATABASE_URI));
+    payload = BenchmarkFrames.requestFrame(BenchmarkFrames.FrameType.EXECUTE, 256, 1);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    adapterClient.close();
+  }
+
+  @Benchmark
+  public byte[] sendGrpcRequest() {
+    return adapterClientWrapper.sendGrpcRequest(
+        payload, attachments, context, BenchmarkFrames.STREAM_ID);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AttachmentsCache} lookups and updates while several connection threads hit the
+ * shared cache concurrently, mimicking prepared-statement lookups racing with state updates.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttachmentsCacheBenchmark {
+
+  @Param({"1000", "100000"})
+  private int numKeys;
+
+  private AttachmentsCache cache;
+  private String[] keys;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    cache = new AttachmentsCache(numKeys);
+    keys = new String[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      keys[i] = "pqid/W" + i;
+      cache.put(keys[i], "prepared-query-" + i);
+    }
+  }
+
+  @Benchmark
+  @Group("readHeavy")
+  @GroupThreads(7)
+  public Optional<String> readHeavyGet() {
+    return cache.get(randomKey());
+  }
+
+  @Benchmark
+  @Group("readHeavy")
+  @GroupThreads(1)
+  public void readHeavyPut() {
+    String key = randomKey();
+    cache.put(key, key);
+  }
+
+  @Benchmark
+  @Group("balanced")
+  @GroupThreads(4)
+  public Optional<String> balancedGet() {
+    return cache.get(randomKey());
+  }
+
+  @Benchmark
+  @Group("balanced")
+  @GroupThreads(4)
+  public void balancedPut() {
+    String key = randomKey();
+    cache.put(key, key);
+  }
+
+  private String randomKey() {
+    return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+  }
+}
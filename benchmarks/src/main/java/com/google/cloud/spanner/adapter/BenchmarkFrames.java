@@ -0,0 +1,134 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Builds encoded native-protocol request frames of a configurable size for the benchmarks. */
+final class BenchmarkFrames {
+
+  static final int PROTOCOL_VERSION = 4;
+  static final int STREAM_ID = 7;
+  static final byte[] READ_QUERY_ID = "R-benchmark-query".getBytes(StandardCharsets.UTF_8);
+  static final byte[] WRITE_QUERY_ID = "W-benchmark-query".getBytes(StandardCharsets.UTF_8);
+
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+
+  /** The request message types exercised by the benchmarks. */
+  enum FrameType {
+    QUERY,
+    EXECUTE,
+    BATCH
+  }
+
+  private BenchmarkFrames() {
+    throw new IllegalStateException("Utility class cannot be instantiated");
+  }
+
+  /**
+   * Creates an encoded request frame.
+   *
+   * @param type The request message type.
+   * @param valueSize The number of bytes of bound values carried by the request.
+   * @param batchSize The number of child statements, only used for {@link FrameType#BATCH}.
+   * @return The encoded frame, header included.
+   */
+  static byte[] requestFrame(FrameType type, int valueSize, int batchSize) {
+    switch (type) {
+      case QUERY:
+        return encode(new Query("INSERT INTO ks.t (k, v) VALUES (?, ?)", options(valueSize)));
+      case EXECUTE:
+        return encode(new Execute(WRITE_QUERY_ID, options(valueSize)));
+      case BATCH:
+        List<Object> queriesOrIds = new ArrayList<>(batchSize);
+        List<List<ByteBuffer>> values = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+          queriesOrIds.add(WRITE_QUERY_ID);
+          values.add(randomValues(Math.max(1, valueSize / batchSize)));
+        }
+        return encode(
+            new Batch(
+                (byte) 1,
+                queriesOrIds,
+                values,
+                QueryOptions.DEFAULT.consistency,
+                QueryOptions.DEFAULT.serialConsistency,
+                QueryOptions.NO_DEFAULT_TIMESTAMP,
+                null,
+                QueryOptions.NO_NOW_IN_SECONDS));
+      default:
+        throw new IllegalArgumentException("Unknown frame type: " + type);
+    }
+  }
+
+  /** Encodes the message as a request frame with the benchmark stream id. */
+  static byte[] encode(Message message) {
+    Frame frame =
+        Frame.forRequest(PROTOCOL_VERSION, STREAM_ID, false, Collections.emptyMap(), message);
+    ByteBuf buf = clientFrameCodec.encode(frame);
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+
+  /** Returns {@code size} pseudo-random bytes with a fixed seed, so runs are reproducible. */
+  static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static QueryOptions options(int valueSize) {
+    return new QueryOptions(
+        QueryOptions.DEFAULT.consistency,
+        randomValues(valueSize),
+        Collections.emptyMap(),
+        false,
+        QueryOptions.DEFAULT.pageSize,
+        null,
+        QueryOptions.DEFAULT.serialConsistency,
+        QueryOptions.NO_DEFAULT_TIMESTAMP,
+        null,
+        QueryOptions.NO_NOW_IN_SECONDS);
+  }
+
+  private static List<ByteBuffer> randomValues(int valueSize) {
+    List<ByteBuffer> values = new ArrayList<>(2);
+    values.add(ByteBuffer.wrap("key".getBytes(StandardCharsets.UTF_8)));
+    values.add(ByteBuffer.wrap(randomBytes(valueSize)));
+    return values;
+  }
+}
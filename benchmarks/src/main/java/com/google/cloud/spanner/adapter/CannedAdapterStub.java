@@ -0,0 +1,142 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.StreamController;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.spanner.adapter.v1.AdaptMessageRequest;
+import com.google.spanner.adapter.v1.AdaptMessageResponse;
+import com.google.spanner.adapter.v1.CreateSessionRequest;
+import com.google.spanner.adapter.v1.Session;
+import com.google.spanner.adapter.v1.stub.AdapterStub;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AdapterStub} that answers every AdaptMessage call with the same list of responses,
+ * without any transport. It isolates the client-side cost of consuming a response stream.
+ */
+final class CannedAdapterStub extends AdapterStub {
+
+  private final List<AdaptMessageResponse> responses;
+
+  /**
+   * Constructs a stub streaming back {@code responses}, in order, for every request.
+   *
+   * @param responses The responses to stream back. The last one carries the frame header.
+   */
+  CannedAdapterStub(List<AdaptMessageResponse> responses) {
+    this.responses = responses;
+  }
+
+  @Override
+  public UnaryCallable<CreateSessionRequest, Session> createSessionCallable() {
+    return new UnaryCallable<CreateSessionRequest, Session>() {
+      @Override
+      public ApiFuture<Session> futureCall(CreateSessionRequest request, ApiCallContext context) {
+        return ApiFutures.immediateFuture(
+            Session.newBuilder().setName(request.getParent() + "/sessions/canned").build());
+      }
+    };
+  }
+
+  @Override
+  public ServerStreamingCallable<AdaptMessageRequest, AdaptMessageResponse>
+      adaptMessageCallable() {
+    return new ServerStreamingCallable<AdaptMessageRequest, AdaptMessageResponse>() {
+      @Override
+      public void call(
+          AdaptMessageRequest request,
+          ResponseObserver<AdaptMessageResponse> observer,
+          ApiCallContext context) {
+        observer.onStart(new CannedStreamController(observer));
+      }
+    };
+  }
+
+  @Override
+  public void close() {}
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public boolean isShutdown() {
+    return false;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return false;
+  }
+
+  @Override
+  public void shutdownNow() {}
+
+  @Override
+  public boolean awaitTermination(long duration, TimeUnit unit) {
+    return true;
+  }
+
+  /** Delivers the canned responses honouring the consumer's flow control requests. */
+  private final class CannedStreamController implements StreamController {
+    private final ResponseObserver<AdaptMessageResponse> observer;
+    private boolean autoFlowControl = true;
+    private boolean delivering = false;
+    private int requested = 0;
+    private int next = 0;
+
+    CannedStreamController(ResponseObserver<AdaptMessageResponse> observer) {
+      this.observer = observer;
+    }
+
+    @Override
+    public void cancel() {
+      next = responses.size() + 1;
+    }
+
+    @Override
+    public void disableAutoInboundFlowControl() {
+      autoFlowControl = false;
+    }
+
+    @Override
+    public void request(int count) {
+      requested += count;
+      // Responses are delivered synchronously, so guard against re-entrant requests issued from
+      // within onResponse.
+      if (delivering) {
+        return;
+      }
+      delivering = true;
+      while ((autoFlowControl || requested > 0) && next < responses.size()) {
+        requested--;
+        observer.onResponse(responses.get(next++));
+      }
+      if (next == responses.size()) {
+        next++;
+        observer.onComplete();
+      }
+      delivering = false;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.cloud.spanner.adapter.BenchmarkFrames.FrameType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-request work {@link DriverConnectionHandler} does before a request is handed to
+ * gRPC: reading a frame off the socket and preparing its attachments and call context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverConnectionHandlerBenchmark {
+
+  @Param({"QUERY", "EXECUTE", "BATCH"})
+  private FrameType frameType;
+
+  @Param({"16", "1024", "65536"})
+  private int valueSize;
+
+  @Param({"10"})
+  private int batchSize;
+
+  private DriverConnectionHandler handler;
+  private byte[] frame;
+  private ByteArrayInputStream input;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(1000);
+    attachmentsCache.put(
+        "pqid/" + new String(BenchmarkFrames.WRITE_QUERY_ID, StandardCharsets.UTF_8), "query");
+    AdapterClientWrapper adapterClientWrapper =
+        new AdapterClientWrapper(null, attachmentsCache, null);
+    handler =
+        new DriverConnectionHandler(
+            new Socket(), adapterClientWrapper, Optional.of(Duration.ofMillis(100)));
+    frame = BenchmarkFrames.requestFrame(frameType, valueSize, batchSize);
+    input = new ByteArrayInputStream(frame);
+  }
+
+  @Benchmark
+  public byte[] constructPayload() throws IOException {
+    input.reset();
+    return handler.constructPayload(input);
+  }
+
+  @Benchmark
+  public PreparePayloadResult preparePayload() {
+    return handler.preparePayload(frame);
+  }
+}
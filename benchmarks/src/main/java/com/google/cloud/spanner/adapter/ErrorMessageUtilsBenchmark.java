@@ -0,0 +1,76 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.cloud.spanner.adapter.util.ErrorFrameTemplate;
+import com.google.cloud.spanner.adapter.util.ErrorMessageUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of encoding the error frames the adapter sends back to drivers, and of copying
+ * the precomputed ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorMessageUtilsBenchmark {
+
+  private static final ErrorFrameTemplate OVERLOADED =
+      ErrorFrameTemplate.overloaded("The Spanner Cassandra adapter is overloaded.");
+  private static final ErrorFrameTemplate UNPREPARED =
+      ErrorFrameTemplate.unprepared(BenchmarkFrames.WRITE_QUERY_ID);
+
+  private int streamId = 0;
+
+  @Benchmark
+  public byte[] serverErrorResponse() {
+    return ErrorMessageUtils.serverErrorResponse(
+        nextStreamId(), "No response received from the server.");
+  }
+
+  @Benchmark
+  public byte[] unpreparedResponse() {
+    return ErrorMessageUtils.unpreparedResponse(nextStreamId(), BenchmarkFrames.WRITE_QUERY_ID);
+  }
+
+  @Benchmark
+  public byte[] overloadedTemplate() {
+    return OVERLOADED.forStream(nextStreamId());
+  }
+
+  @Benchmark
+  public byte[] unpreparedTemplate() {
+    return UNPREPARED.forStream(nextStreamId());
+  }
+
+  private int nextStreamId() {
+    streamId = (streamId + 1) & 0x7FFF;
+    return streamId;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.TransportChannelProvider;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts a {@link FakeAdapterService} on an in-process gRPC server and exposes a {@link
+ * TransportChannelProvider} that an {@link Adapter} can use in place of the Spanner endpoint.
+ *
+ * <p>The service can also be hosted on a plain text loopback port, for an adapter running in
+ * another process, such as the launcher.
+ */
+final class FakeAdapterServer implements AutoCloseable {
+
+  private final FakeAdapterService service;
+  private final Server server;
+  private final ManagedChannel channel;
+
+  private FakeAdapterServer(FakeAdapterService service, Server server, ManagedChannel channel) {
+    this.service = service;
+    this.server = server;
+    this.channel = channel;
+  }
+
+  /** Starts an in-process server for the given service under a unique name. */
+  static FakeAdapterServer start(FakeAdapterService service) throws IOException {
+    String name = InProcessServerBuilder.generateName();
+    Server server =
+        InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start();
+    ManagedChannel channel = InProcessChannelBuilder.forName(name).build();
+    return new FakeAdapterServer(service, server, channel);
+  }
+
+  /**
+   * Starts a plain text server for the given service on a loopback port, 0 for an ephemeral port.
+   */
+  static FakeAdapterServer startOnPort(FakeAdapterService service, int port) throws IOException {
+    InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    Server server = NettyServerBuilder.forAddress(address).addService(service).build().start();
+    ManagedChannel channel =
+        NettyChannelBuilder.forAddress(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))
+            .usePlaintext()
+            .build();
+    return new FakeAdapterServer(service, server, channel);
+  }
+
+  FakeAdapterService getService() {
+    return service;
+  }
+
+  /** Returns the port of a server started by {@link #startOnPort}, or -1 if it is in-process. */
+  int getPort() {
+    return server.getPort();
+  }
+
+  /** Returns a channel provider connected to the server. */
+  TransportChannelProvider channelProvider() {
+    return FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel));
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    channel.shutdownNow();
+    server.shutdownNow();
+    service.shutdown();
+    server.awaitTermination(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,300 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.datastax.oss.protocol.internal.response.Error;
+import com.google.cloud.spanner.adapter.util.ErrorMessageUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.google.spanner.adapter.v1.AdaptMessageRequest;
+import com.google.spanner.adapter.v1.AdaptMessageResponse;
+import com.google.spanner.adapter.v1.CreateSessionRequest;
+import com.google.spanner.adapter.v1.Session;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for the Spanner Adapter gRPC service, implementing {@code CreateSession}
+ * and {@code AdaptMessage}.
+ *
+ * <p>Responses are produced by a {@link Responder}, delayed according to a {@link LatencyModel},
+ * optionally split into several streamed chunks the way the real service does for large results,
+ * and randomly replaced by gRPC or native-protocol errors. All randomness comes from a single
+ * seeded {@link Random}, so a run can be reproduced exactly.
+ */
+final class FakeAdapterService implements BindableService {
+
+  private static final int HEADER_LENGTH = 9;
+
+  static final String SERVICE_NAME = "google.spanner.adapter.v1.Adapter";
+
+  static final MethodDescriptor<CreateSessionRequest, Session> CREATE_SESSION_METHOD =
+      MethodDescriptor.<CreateSessionRequest, Session>newBuilder()
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "CreateSession"))
+          .setRequestMarshaller(ProtoUtils.marshaller(CreateSessionRequest.getDefaultInstance()))
+          .setResponseMarshaller(ProtoUtils.marshaller(Session.getDefaultInstance()))
+          .build();
+
+  static final MethodDescriptor<AdaptMessageRequest, AdaptMessageResponse> ADAPT_MESSAGE_METHOD =
+      MethodDescriptor.<AdaptMessageRequest, AdaptMessageResponse>newBuilder()
+          .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+          .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "AdaptMessage"))
+          .setRequestMarshaller(ProtoUtils.marshaller(AdaptMessageRequest.getDefaultInstance()))
+          .setResponseMarshaller(ProtoUtils.marshaller(AdaptMessageResponse.getDefaultInstance()))
+          .build();
+
+  /** Produces the native-protocol response to an AdaptMessage request. */
+  @FunctionalInterface
+  interface Responder {
+    FakeResponse respond(AdaptMessageRequest request);
+  }
+
+  /** A complete native-protocol response frame, plus the state updates to send with it. */
+  static final class FakeResponse {
+    final byte[] frame;
+    final Map<String, String> stateUpdates;
+
+    FakeResponse(byte[] frame, Map<String, String> stateUpdates) {
+      this.frame = frame;
+      this.stateUpdates = stateUpdates;
+    }
+
+    FakeResponse(byte[] frame) {
+      this(frame, Collections.emptyMap());
+    }
+  }
+
+  private final Responder responder;
+  private final LatencyModel latencyModel;
+  private final int numChunks;
+  private final double grpcErrorRate;
+  private final double overloadedErrorRate;
+  private final Random random;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicLong sessionCounter = new AtomicLong();
+  private final AtomicLong adaptMessageCount = new AtomicLong();
+
+  private FakeAdapterService(Builder builder) {
+    this.responder = builder.responder;
+    this.latencyModel = builder.latencyModel;
+    this.numChunks = builder.numChunks;
+    this.grpcErrorRate = builder.grpcErrorRate;
+    this.overloadedErrorRate = builder.overloadedErrorRate;
+    this.random = new Random(builder.seed);
+    this.scheduler =
+        Executors.newScheduledThreadPool(
+            builder.numSchedulerThreads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("fake-adapter-service-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Returns the number of AdaptMessage calls served so far. */
+  long getAdaptMessageCount() {
+    return adaptMessageCount.get();
+  }
+
+  /** Stops the scheduler delivering delayed responses. */
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    return ServerServiceDefinition.builder(SERVICE_NAME)
+        .addMethod(CREATE_SESSION_METHOD, ServerCalls.asyncUnaryCall(this::createSession))
+        .addMethod(ADAPT_MESSAGE_METHOD, ServerCalls.asyncServerStreamingCall(this::adaptMessage))
+        .build();
+  }
+
+  private void createSession(CreateSessionRequest request, StreamObserver<Session> observer) {
+    observer.onNext(
+        Session.newBuilder()
+            .setName(request.getParent() + "/sessions/fake-" + sessionCounter.incrementAndGet())
+            .build());
+    observer.onCompleted();
+  }
+
+  private void adaptMessage(
+      AdaptMessageRequest request, StreamObserver<AdaptMessageResponse> observer) {
+    adaptMessageCount.incrementAndGet();
+    final long latencyNanos;
+    final double errorDraw;
+    synchronized (random) {
+      latencyNanos = latencyModel.nextLatencyNanos(random);
+      errorDraw = random.nextDouble();
+    }
+
+    Runnable respond;
+    if (errorDraw < grpcErrorRate) {
+      respond =
+          () ->
+              observer.onError(
+                  Status.UNAVAILABLE.withDescription("Injected error").asRuntimeException());
+    } else {
+      final boolean overloaded = errorDraw < grpcErrorRate + overloadedErrorRate;
+      respond =
+          () -> {
+            try {
+              FakeResponse response =
+                  overloaded ? overloadedResponse(request) : responder.respond(request);
+              for (AdaptMessageResponse chunk : chunk(response)) {
+                observer.onNext(chunk);
+              }
+              observer.onCompleted();
+            } catch (RuntimeException e) {
+              observer.onError(Status.INTERNAL.withCause(e).asRuntimeException());
+            }
+          };
+    }
+
+    if (latencyNanos <= 0) {
+      respond.run();
+    } else {
+      scheduler.schedule(respond, latencyNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Splits a response frame the way the Adapter service streams large results: body chunks first,
+   * and the frame header in the last message.
+   */
+  private List<AdaptMessageResponse> chunk(FakeResponse response) {
+    byte[] frame = response.frame;
+    int bodyLength = frame.length - HEADER_LENGTH;
+    int numBodyChunks = Math.min(numChunks - 1, bodyLength);
+    List<AdaptMessageResponse> chunks = new ArrayList<>(numBodyChunks + 1);
+    if (numBodyChunks <= 0) {
+      chunks.add(
+          AdaptMessageResponse.newBuilder()
+              .setPayload(ByteString.copyFrom(frame))
+              .putAllStateUpdates(response.stateUpdates)
+              .build());
+      return chunks;
+    }
+    int offset = HEADER_LENGTH;
+    int chunkSize = (bodyLength + numBodyChunks - 1) / numBodyChunks;
+    while (offset < frame.length) {
+      int length = Math.min(chunkSize, frame.length - offset);
+      chunks.add(
+          AdaptMessageResponse.newBuilder()
+              .setPayload(ByteString.copyFrom(frame, offset, length))
+              .build());
+      offset += length;
+    }
+    chunks.add(
+        AdaptMessageResponse.newBuilder()
+            .setPayload(ByteString.copyFrom(frame, 0, HEADER_LENGTH))
+            .putAllStateUpdates(response.stateUpdates)
+            .build());
+    return chunks;
+  }
+
+  private static FakeResponse overloadedResponse(AdaptMessageRequest request) {
+    ByteString payload = request.getPayload();
+    int streamId = (short) (((payload.byteAt(2) & 0xFF) << 8) | (payload.byteAt(3) & 0xFF));
+    return new FakeResponse(
+        ErrorMessageUtils.errorResponse(
+            streamId, new Error(ErrorCode.OVERLOADED, "Injected overload")));
+  }
+
+  /** Builder for {@link FakeAdapterService}. */
+  static final class Builder {
+    private Responder responder = new NativeProtocolResponder(1, 16, 0);
+    private LatencyModel latencyModel = LatencyModel.none();
+    private int numChunks = 1;
+    private double grpcErrorRate = 0;
+    private double overloadedErrorRate = 0;
+    private long seed = 0;
+    private int numSchedulerThreads = 4;
+
+    private Builder() {}
+
+    /** Sets how responses are produced. Defaults to a {@link NativeProtocolResponder}. */
+    Builder setResponder(Responder responder) {
+      this.responder = responder;
+      return this;
+    }
+
+    /** Sets the distribution of simulated latencies. Defaults to no latency. */
+    Builder setLatencyModel(LatencyModel latencyModel) {
+      this.latencyModel = latencyModel;
+      return this;
+    }
+
+    /** Sets the number of messages every response is streamed in. Defaults to 1. */
+    Builder setNumChunks(int numChunks) {
+      if (numChunks < 1) {
+        throw new IllegalArgumentException("The number of chunks must be at least 1.");
+      }
+      this.numChunks = numChunks;
+      return this;
+    }
+
+    /** Sets the fraction of calls failing with a gRPC {@code UNAVAILABLE} status. */
+    Builder setGrpcErrorRate(double grpcErrorRate) {
+      this.grpcErrorRate = grpcErrorRate;
+      return this;
+    }
+
+    /** Sets the fraction of calls answered with a native-protocol {@code OVERLOADED} error. */
+    Builder setOverloadedErrorRate(double overloadedErrorRate) {
+      this.overloadedErrorRate = overloadedErrorRate;
+      return this;
+    }
+
+    /** Sets the seed of the latency and error draws. Defaults to 0. */
+    Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /** Sets the number of threads delivering delayed responses. Defaults to 4. */
+    Builder setNumSchedulerThreads(int numSchedulerThreads) {
+      this.numSchedulerThreads = numSchedulerThreads;
+      return this;
+    }
+
+    FakeAdapterService build() {
+      if (grpcErrorRate + overloadedErrorRate > 1) {
+        throw new IllegalArgumentException("The error rates must not add up to more than 1.");
+      }
+      return new FakeAdapterService(this);
+    }
+  }
+}
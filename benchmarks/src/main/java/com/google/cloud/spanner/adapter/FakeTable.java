@@ -0,0 +1,129 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.DataType;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The schema of a table served by {@link NativeProtocolResponder}, used to type bind markers of
+ * prepared statements and to generate result rows.
+ */
+final class FakeTable {
+
+  private final String keyspace;
+  private final String name;
+  private final LinkedHashMap<String, RawType> columns;
+
+  /**
+   * Constructs a table definition.
+   *
+   * @param keyspace The keyspace of the table.
+   * @param name The name of the table.
+   * @param columns The columns of the table, in order, mapped to their CQL type names such as
+   *     {@code text}, {@code bigint} or {@code map<text, text>}.
+   */
+  FakeTable(String keyspace, String name, Map<String, String> columns) {
+    this.keyspace = keyspace;
+    this.name = name;
+    this.columns = new LinkedHashMap<>();
+    for (Map.Entry<String, String> column : columns.entrySet()) {
+      this.columns.put(column.getKey().toLowerCase(Locale.ROOT), parseType(column.getValue()));
+    }
+  }
+
+  String keyspace() {
+    return keyspace;
+  }
+
+  String name() {
+    return name;
+  }
+
+  /** Returns the type of {@code column}, or {@code null} if the table has no such column. */
+  RawType columnType(String column) {
+    return columns.get(column.toLowerCase(Locale.ROOT));
+  }
+
+  /** Returns the column specs of all the columns, as returned by {@code SELECT *}. */
+  List<ColumnSpec> columnSpecs() {
+    return columnSpecs(new ArrayList<>(columns.keySet()));
+  }
+
+  /** Returns the column specs of the given columns, in the given order. */
+  List<ColumnSpec> columnSpecs(List<String> columnNames) {
+    List<ColumnSpec> specs = new ArrayList<>(columnNames.size());
+    for (String column : columnNames) {
+      RawType type = columnType(column);
+      if (type == null) {
+        throw new IllegalArgumentException("Unknown column " + column + " in table " + name);
+      }
+      specs.add(new ColumnSpec(keyspace, name, column, specs.size(), type));
+    }
+    return Collections.unmodifiableList(specs);
+  }
+
+  /** Parses a CQL type name. Only primitive types and collections of primitives are supported. */
+  static RawType parseType(String type) {
+    String normalized = type.replace(" ", "").toLowerCase(Locale.ROOT);
+    if (normalized.startsWith("list<") || normalized.startsWith("set<")) {
+      RawType elementType =
+          parseType(normalized.substring(normalized.indexOf('<') + 1, normalized.length() - 1));
+      return normalized.startsWith("list<")
+          ? new RawType.RawList(elementType)
+          : new RawType.RawSet(elementType);
+    }
+    if (normalized.startsWith("map<")) {
+      String[] keyValue = normalized.substring(4, normalized.length() - 1).split(",", 2);
+      return new RawType.RawMap(parseType(keyValue[0]), parseType(keyValue[1]));
+    }
+    switch (normalized) {
+      case "ascii":
+        return RawType.PRIMITIVES.get(DataType.ASCII);
+      case "bigint":
+        return RawType.PRIMITIVES.get(DataType.BIGINT);
+      case "blob":
+        return RawType.PRIMITIVES.get(DataType.BLOB);
+      case "boolean":
+        return RawType.PRIMITIVES.get(DataType.BOOLEAN);
+      case "double":
+        return RawType.PRIMITIVES.get(DataType.DOUBLE);
+      case "float":
+        return RawType.PRIMITIVES.get(DataType.FLOAT);
+      case "int":
+        return RawType.PRIMITIVES.get(DataType.INT);
+      case "timestamp":
+        return RawType.PRIMITIVES.get(DataType.TIMESTAMP);
+      case "uuid":
+        return RawType.PRIMITIVES.get(DataType.UUID);
+      case "text":
+      case "varchar":
+        return RawType.PRIMITIVES.get(DataType.VARCHAR);
+      case "inet":
+        return RawType.PRIMITIVES.get(DataType.INET);
+      default:
+        throw new IllegalArgumentException("Unsupported CQL type: " + type);
+    }
+  }
+}
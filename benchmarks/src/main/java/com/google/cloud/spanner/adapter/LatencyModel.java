@@ -0,0 +1,105 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * A distribution of simulated backend latencies used by {@link FakeAdapterService}.
+ *
+ * <p>Samples are drawn from a caller-supplied {@link Random}, so a fixed seed yields the same
+ * sequence of latencies on every run.
+ */
+abstract class LatencyModel {
+
+  /** Returns the next simulated latency, in nanoseconds. */
+  abstract long nextLatencyNanos(Random random);
+
+  /** No added latency. */
+  static LatencyModel none() {
+    return of(random -> 0L);
+  }
+
+  /** A constant latency. */
+  static LatencyModel fixed(Duration latency) {
+    final long nanos = latency.toNanos();
+    return of(random -> nanos);
+  }
+
+  /** A latency uniformly distributed between {@code min} and {@code max}. */
+  static LatencyModel uniform(Duration min, Duration max) {
+    final long minNanos = min.toNanos();
+    final long rangeNanos = max.toNanos() - minNanos;
+    if (rangeNanos < 0) {
+      throw new IllegalArgumentException("max must not be smaller than min.");
+    }
+    return of(random -> minNanos + (long) (random.nextDouble() * rangeNanos));
+  }
+
+  /**
+   * A log-normal latency with the given median and 99th percentile, which approximates the long
+   * tail of real RPC latencies.
+   */
+  static LatencyModel logNormal(Duration median, Duration p99) {
+    if (p99.compareTo(median) < 0) {
+      throw new IllegalArgumentException("p99 must not be smaller than the median.");
+    }
+    final double mu = Math.log(median.toNanos());
+    // The 99th percentile of a standard normal distribution is ~2.326 standard deviations.
+    final double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+    return of(random -> (long) Math.exp(mu + sigma * random.nextGaussian()));
+  }
+
+  /**
+   * Parses a latency model specification: {@code none}, {@code fixed:<ms>}, {@code
+   * uniform:<minMs>:<maxMs>} or {@code lognormal:<medianMs>:<p99Ms>}.
+   */
+  static LatencyModel parse(String spec) {
+    String[] parts = spec.trim().split(":");
+    switch (parts[0].toLowerCase()) {
+      case "none":
+        return none();
+      case "fixed":
+        return fixed(millis(parts, 1));
+      case "uniform":
+        return uniform(millis(parts, 1), millis(parts, 2));
+      case "lognormal":
+        return logNormal(millis(parts, 1), millis(parts, 2));
+      default:
+        throw new IllegalArgumentException("Unknown latency model: " + spec);
+    }
+  }
+
+  private static Duration millis(String[] parts, int index) {
+    if (parts.length <= index) {
+      throw new IllegalArgumentException(
+          "Missing argument in latency model: " + String.join(":", parts));
+    }
+    return Duration.ofNanos((long) (Double.parseDouble(parts[index]) * 1_000_000));
+  }
+
+  private static LatencyModel of(ToLongFunction<Random> sampler) {
+    return new LatencyModel() {
+      @Override
+      long nextLatencyNanos(Random random) {
+        return sampler.applyAsLong(random);
+      }
+    };
+  }
+}
@@ -0,0 +1,163 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An offline smoke check of a launcher process, such as the native executable of the launcher,
+ * against a {@link FakeAdapterService} hosted on a loopback port.
+ *
+ * <p>The launcher is started with the fake backend as its Spanner endpoint, and the check reports
+ * how long it took to accept connections, then prepares, reads and writes through it with the
+ * driver. It exits with a non-zero status if any of this fails.
+ *
+ * <p>Configuration is provided via the following system properties:
+ *
+ * <ul>
+ *   <li>{@code launcher}: (Required) The command that starts the launcher, to which the system
+ *       properties of the launcher are added after the first word.
+ *   <li>{@code startTimeoutSeconds}: (Optional) How long to wait for the launcher to accept
+ *       connections. Defaults to 60.
+ * </ul>
+ *
+ * Example usage:
+ *
+ * <pre>
+ * java -Dlauncher=spanner-cassandra-launcher/target/spanner-cassandra-launcher \
+ * -cp benchmarks/target/benchmarks.jar com.google.cloud.spanner.adapter.LauncherSmokeCheck
+ * </pre>
+ */
+public final class LauncherSmokeCheck {
+
+  private static final int ROWS_PER_READ = 3;
+  private static final String KEYSPACE = "smoke";
+  private static final String TABLE = "kv";
+
+  private LauncherSmokeCheck() {}
+
+  public static void main(String[] args) throws Exception {
+    String launcher = System.getProperty("launcher");
+    if (launcher == null) {
+      throw new IllegalArgumentException("The launcher command must be set with -Dlauncher.");
+    }
+    Duration startTimeout = Duration.ofSeconds(Long.getLong("startTimeoutSeconds", 60));
+
+    NativeProtocolResponder responder = new NativeProtocolResponder(ROWS_PER_READ, 16, 0);
+    responder.addTable(
+        new FakeTable(KEYSPACE, TABLE, ImmutableMap.of("id", "int", "value", "text")));
+    FakeAdapterService service =
+        FakeAdapterService.newBuilder()
+            .setResponder(responder)
+            .setLatencyModel(LatencyModel.parse("none"))
+            .build();
+    try (FakeAdapterServer server = FakeAdapterServer.startOnPort(service, 0)) {
+      int port = freePort();
+      List<String> command = new ArrayList<>(Arrays.asList(launcher.trim().split("\\s+")));
+      command.addAll(
+          1,
+          Arrays.asList(
+              "-DdatabaseUri=projects/smoke/instances/smoke/databases/smoke",
+              "-DspannerEndpoint=localhost:" + server.getPort(),
+              "-DusePlainText=true",
+              "-Dhost=127.0.0.1",
+              "-Dport=" + port,
+              "-DnumGrpcChannels=1"));
+      long startNanos = System.nanoTime();
+      Process process = new ProcessBuilder(command).inheritIO().start();
+      try {
+        awaitListening(process, port, startTimeout);
+        System.out.printf(
+            "Launcher accepted connections after %d ms%n",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        query(port);
+        System.out.println("Smoke check passed.");
+      } finally {
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      }
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static void awaitListening(Process process, int port, Duration timeout)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (System.nanoTime() < deadline) {
+      if (!process.isAlive()) {
+        throw new IllegalStateException(
+            "The launcher exited with status " + process.exitValue() + " before starting.");
+      }
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+        return;
+      } catch (IOException e) {
+        Thread.sleep(5);
+      }
+    }
+    throw new IllegalStateException("The launcher did not accept connections within " + timeout);
+  }
+
+  private static void query(int port) {
+    try (CqlSession session =
+        CqlSession.builder()
+            .addContactPoint(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))
+            .withLocalDatacenter("datacenter1")
+            .withKeyspace(KEYSPACE)
+            .withConfigLoader(
+                DriverConfigLoader.programmaticBuilder()
+                    .withString(DefaultDriverOption.PROTOCOL_VERSION, "V4")
+                    .build())
+            .build()) {
+      PreparedStatement select =
+          session.prepare("SELECT id, value FROM " + TABLE + " WHERE id = ?");
+      int rows = 0;
+      for (Row row : session.execute(select.bind(1))) {
+        if (row.getString("value") == null) {
+          throw new IllegalStateException("Read a row without a value.");
+        }
+        rows++;
+      }
+      if (rows != ROWS_PER_READ) {
+        throw new IllegalStateException("Read " + rows + " rows instead of " + ROWS_PER_READ);
+      }
+      session.execute(
+          session.prepare("INSERT INTO " + TABLE + " (id, value) VALUES (?, ?)").bind(1, "smoke"));
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.google.cloud.spanner.adapter.cql.RandomSessionQueryGenerator;
+import com.google.cloud.spanner.adapter.cql.RandomSessionQueryGenerator.SessionData;
+import com.google.common.collect.ImmutableMap;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A standalone load generator, in the spirit of cassandra-stress, that drives a {@link
+ * SpannerCqlSession} with the random user_sessions workload of the integration tests.
+ *
+ * <p>Requests are issued asynchronously with at most {@code concurrency} requests in flight, either
+ * as fast as possible or on a fixed schedule of {@code rate} operations per second. With a fixed
+ * rate, latencies are measured from the scheduled start of every operation, so that a stalled
+ * backend is not hidden by the generator slowing down (coordinated omission). Latencies of reads
+ * and writes are recorded in separate HdrHistograms, reported every {@code reportIntervalSeconds}
+ * and summarized at the end of the run.
+ *
+ * <p>Configuration is provided via the following system properties:
+ *
+ * <ul>
+ *   <li>{@code databaseUri}: The URI of the target Spanner database. Required unless {@code fake}
+ *       is set.
+ *   <li>{@code fake}: Run against an in-process {@link FakeAdapterService} instead of Spanner.
+ *       Defaults to false.
+ *   <li>{@code fakeLatency}, {@code fakeChunks}: The {@link LatencyModel} and the number of
+ *       response chunks of the fake backend. Default to "lognormal:4:20" and 1.
+ *   <li>{@code keyspace}, {@code table}: The table to load. Default to "load" and "user_sessions".
+ *   <li>{@code port}: The local port of the adapter. Defaults to 9042.
+ *   <li>{@code numGrpcChannels}, {@code maxCommitDelayMillis}: Passed on to the adapter.
+ *   <li>{@code connections}: The number of driver connections to the adapter. The adapter serves
+ *       the requests of a connection one at a time, so this bounds the achievable throughput.
+ *       Defaults to 1.
+ *   <li>{@code concurrency}: The maximum number of requests in flight. Defaults to 64.
+ *   <li>{@code rate}: The target number of operations per second, 0 for unbounded. Defaults to 0.
+ *   <li>{@code durationSeconds}, {@code warmupSeconds}: The measured and the warmup duration of
+ *       the run. Default to 60 and 10.
+ *   <li>{@code readRatio}: The fraction of operations that are reads. Defaults to 0.5.
+ *   <li>{@code payloadSize}: The approximate number of characters of session properties written
+ *       by every insert. Defaults to 100.
+ *   <li>{@code prepared}: Use prepared statements rather than simple statements. Defaults to true.
+ *   <li>{@code reportIntervalSeconds}: How often to print interval statistics. Defaults to 5.
+ *   <li>{@code hdrLogFile}: An optional file to write the interval histograms to, for later
+ *       analysis with the HdrHistogram tools.
+ * </ul>
+ *
+ * Example usage:
+ *
+ * <pre>
+ * java -DdatabaseUri=projects/my-project/instances/my-instance/databases/my-database \
+ * -Dkeyspace=my-database -Dconcurrency=128 -Drate=5000 -DreadRatio=0.8 -DpayloadSize=1024 \
+ * -cp benchmarks/target/benchmarks.jar com.google.cloud.spanner.adapter.LoadGenerator
+ * </pre>
+ */
+public final class LoadGenerator {
+
+  private static final int WRITTEN_KEYS_CAPACITY = 1 << 16;
+  private static final long HIGHEST_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final LoadOptions options;
+  private final CqlSession session;
+  private final RandomSessionQueryGenerator generator;
+  private final Semaphore inFlight;
+  private final Recorder readRecorder = new Recorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+  private final Recorder writeRecorder = new Recorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+  private final Histogram readTotal = new Histogram(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+  private final Histogram writeTotal = new Histogram(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+  private final AtomicLong readErrors = new AtomicLong();
+  private final AtomicLong writeErrors = new AtomicLong();
+  private final AtomicLong writtenKeyCount = new AtomicLong();
+  private final AtomicReferenceArray<String> writtenKeys =
+      new AtomicReferenceArray<>(WRITTEN_KEYS_CAPACITY);
+
+  LoadGenerator(LoadOptions options, CqlSession session) {
+    this.options = options;
+    this.session = session;
+    this.generator = new RandomSessionQueryGenerator(session, options.keyspace, options.table);
+    this.inFlight = new Semaphore(options.concurrency);
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadOptions options = LoadOptions.fromSystemProperties();
+    System.out.println("Load options: " + options);
+
+    FakeAdapterServer fakeServer = options.fake ? startFakeServer(options) : null;
+    try (CqlSession session = createSession(options, fakeServer)) {
+      new LoadGenerator(options, session).run();
+    } finally {
+      if (fakeServer != null) {
+        fakeServer.close();
+      }
+    }
+  }
+
+  /** Runs the warmup and the measured phase, and prints the final summary. */
+  void run() throws IOException, InterruptedException {
+    // Prepare the statements up front, so that the first operations do not pay for it.
+    SessionData warmupData = generator.generateRandomSessionData(options.payloadSize);
+    generator.insertStatement(warmupData, options.prepared);
+    generator.selectBySessionIdStatement(warmupData.sessionId, options.prepared);
+
+    try (PrintStream hdrLog = openHdrLog()) {
+      HistogramLogWriter logWriter = hdrLog == null ? null : new HistogramLogWriter(hdrLog);
+      if (logWriter != null) {
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(System.currentTimeMillis());
+        logWriter.outputLegend();
+      }
+
+      runPhase("warmup", options.warmup, null, false);
+      long measuredStart = System.nanoTime();
+      runPhase("measure", options.duration, logWriter, true);
+      printSummary(System.nanoTime() - measuredStart);
+    }
+  }
+
+  private void runPhase(
+      String phase, Duration duration, HistogramLogWriter logWriter, boolean accumulate)
+      throws InterruptedException {
+    if (duration.isZero()) {
+      return;
+    }
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    long phaseStart = System.nanoTime();
+    long reportIntervalNanos = options.reportInterval.toNanos();
+    reporter.scheduleAtFixedRate(
+        () -> report(phase, phaseStart, logWriter, accumulate),
+        reportIntervalNanos,
+        reportIntervalNanos,
+        TimeUnit.NANOSECONDS);
+    try {
+      issueRequests(phaseStart + duration.toNanos());
+      // Wait for the requests still in flight before taking the last interval.
+      inFlight.acquire(options.concurrency);
+      inFlight.release(options.concurrency);
+    } finally {
+      reporter.shutdown();
+      reporter.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    report(phase, phaseStart, logWriter, accumulate);
+  }
+
+  private void issueRequests(long endNanos) throws InterruptedException {
+    long intervalNanos = options.rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / options.rate;
+    long nextStart = System.nanoTime();
+    while (nextStart < endNanos) {
+      final long startNanos;
+      if (intervalNanos == 0) {
+        inFlight.acquire();
+        startNanos = System.nanoTime();
+        nextStart = startNanos;
+      } else {
+        long delay;
+        while ((delay = nextStart - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(delay);
+        }
+        startNanos = nextStart;
+        nextStart += intervalNanos;
+        inFlight.acquire();
+      }
+      if (ThreadLocalRandom.current().nextDouble() < options.readRatio) {
+        read(startNanos);
+      } else {
+        write(startNanos);
+      }
+    }
+  }
+
+  private void read(long startNanos) {
+    Statement<?> statement =
+        generator.selectBySessionIdStatement(randomWrittenKey(), options.prepared);
+    session
+        .executeAsync(statement)
+        .whenComplete(
+            (resultSet, error) -> {
+              complete(startNanos, readRecorder, error == null ? null : readErrors);
+            });
+  }
+
+  private void write(long startNanos) {
+    SessionData data = generator.generateRandomSessionData(options.payloadSize);
+    Statement<?> statement = generator.insertStatement(data, options.prepared);
+    session
+        .executeAsync(statement)
+        .whenComplete(
+            (resultSet, error) -> {
+              if (error == null) {
+                long index = writtenKeyCount.getAndIncrement() % WRITTEN_KEYS_CAPACITY;
+                writtenKeys.set((int) index, data.sessionId);
+              }
+              complete(startNanos, writeRecorder, error == null ? null : writeErrors);
+            });
+  }
+
+  private void complete(long startNanos, Recorder recorder, AtomicLong errors) {
+    if (errors == null) {
+      recorder.recordValue(
+          Math.min(System.nanoTime() - startNanos, HIGHEST_TRACKABLE_LATENCY_NANOS));
+    } else {
+      errors.incrementAndGet();
+    }
+    inFlight.release();
+  }
+
+  /** Returns a recently written session id, or a random one while nothing has been written. */
+  private String randomWrittenKey() {
+    long written = Math.min(writtenKeyCount.get(), WRITTEN_KEYS_CAPACITY);
+    if (written > 0) {
+      String key = writtenKeys.get(ThreadLocalRandom.current().nextInt((int) written));
+      if (key != null) {
+        return key;
+      }
+    }
+    return generator.generateRandomSessionData(0).sessionId;
+  }
+
+  private synchronized void report(
+      String phase, long phaseStart, HistogramLogWriter logWriter, boolean accumulate) {
+    Histogram reads = readRecorder.getIntervalHistogram();
+    Histogram writes = writeRecorder.getIntervalHistogram();
+    double seconds = (reads.getEndTimeStamp() - reads.getStartTimeStamp()) / 1e3;
+    System.out.printf(
+        Locale.ROOT,
+        "%-8s %6.0fs %10.0f ops/s | read p50 %7.2f p99 %7.2f ms | write p50 %7.2f p99 %7.2f ms"
+            + " | errors %d%n",
+        phase,
+        (System.nanoTime() - phaseStart) / 1e9,
+        seconds > 0 ? (reads.getTotalCount() + writes.getTotalCount()) / seconds : 0,
+        millis(reads.getValueAtPercentile(50)),
+        millis(reads.getValueAtPercentile(99)),
+        millis(writes.getValueAtPercentile(50)),
+        millis(writes.getValueAtPercentile(99)),
+        readErrors.get() + writeErrors.get());
+    if (accumulate) {
+      readTotal.add(reads);
+      writeTotal.add(writes);
+      if (logWriter != null) {
+        reads.setTag("read");
+        writes.setTag("write");
+        logWriter.outputIntervalHistogram(reads);
+        logWriter.outputIntervalHistogram(writes);
+      }
+    } else {
+      readErrors.set(0);
+      writeErrors.set(0);
+    }
+  }
+
+  private void printSummary(long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    System.out.println();
+    System.out.printf(
+        Locale.ROOT,
+        "Total: %d ops in %.1fs, %.0f ops/s, %d errors%n",
+        readTotal.getTotalCount() + writeTotal.getTotalCount(),
+        seconds,
+        (readTotal.getTotalCount() + writeTotal.getTotalCount()) / seconds,
+        readErrors.get() + writeErrors.get());
+    printSummary("read", readTotal, readErrors.get(), seconds);
+    printSummary("write", writeTotal, writeErrors.get(), seconds);
+  }
+
+  private static void printSummary(String op, Histogram histogram, long errors, double seconds) {
+    System.out.printf(
+        Locale.ROOT,
+        "%-5s: %d ops, %.0f ops/s, %d errors, latency ms: mean %.2f, p50 %.2f, p90 %.2f,"
+            + " p99 %.2f, p99.9 %.2f, max %.2f%n",
+        op,
+        histogram.getTotalCount(),
+        histogram.getTotalCount() / seconds,
+        errors,
+        histogram.getMean() / 1e6,
+        millis(histogram.getValueAtPercentile(50)),
+        millis(histogram.getValueAtPercentile(90)),
+        millis(histogram.getValueAtPercentile(99)),
+        millis(histogram.getValueAtPercentile(99.9)),
+        millis(histogram.getMaxValue()));
+  }
+
+  private PrintStream openHdrLog() throws IOException {
+    if (!options.hdrLogFile.isPresent()) {
+      return null;
+    }
+    return new PrintStream(new FileOutputStream(options.hdrLogFile.get()), false, "UTF-8");
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static FakeAdapterServer startFakeServer(LoadOptions options) throws IOException {
+    NativeProtocolResponder responder = new NativeProtocolResponder(1, options.payloadSize, 0);
+    responder.addTable(
+        new FakeTable(
+            options.keyspace,
+            options.table,
+            ImmutableMap.<String, String>builder()
+                .put("session_id", "text")
+                .put("user_id", "text")
+                .put("start_time", "timestamp")
+                .put("end_time", "timestamp")
+                .put("duration_minutes", "int")
+                .put("device_type", "text")
+                .put("is_active", "boolean")
+                .put("session_properties", "map<text, text>")
+                .put("tags", "set<text>")
+                .build()));
+    return FakeAdapterServer.start(
+        FakeAdapterService.newBuilder()
+            .setResponder(responder)
+            .setLatencyModel(LatencyModel.parse(options.fakeLatency))
+            .setNumChunks(options.fakeChunks)
+            .build());
+  }
+
+  private static CqlSession createSession(LoadOptions options, FakeAdapterServer fakeServer) {
+    SpannerCqlSessionBuilder builder =
+        SpannerCqlSession.builder()
+            .setDatabaseUri(options.databaseUri)
+            .setNumGrpcChannels(options.numGrpcChannels)
+            .addContactPoint(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port))
+            .withLocalDatacenter("datacenter1")
+            .withKeyspace(options.keyspace)
+            .withConfigLoader(
+                DriverConfigLoader.programmaticBuilder()
+                    .withString(DefaultDriverOption.PROTOCOL_VERSION, "V4")
+                    .withInt(DefaultDriverOption.CONNECTION_POOL_LOCAL_SIZE, options.connections)
+                    .withInt(DefaultDriverOption.CONNECTION_MAX_REQUESTS, 32768)
+                    .withDuration(DefaultDriverOption.REQUEST_TIMEOUT, Duration.ofSeconds(30))
+                    .build());
+    options.maxCommitDelay.ifPresent(builder::setMaxCommitDelay);
+    if (fakeServer != null) {
+      builder.setChannelProvider(fakeServer.channelProvider());
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Options of a {@link LoadGenerator} run, read from system properties in the same way as the
+ * launcher reads its configuration.
+ */
+final class LoadOptions {
+
+  final String databaseUri;
+  final boolean fake;
+  final String fakeLatency;
+  final int fakeChunks;
+  final String keyspace;
+  final String table;
+  final int port;
+  final int numGrpcChannels;
+  final Optional<Duration> maxCommitDelay;
+  final int connections;
+  final int concurrency;
+  final int rate;
+  final Duration duration;
+  final Duration warmup;
+  final double readRatio;
+  final int payloadSize;
+  final boolean prepared;
+  final Duration reportInterval;
+  final Optional<String> hdrLogFile;
+
+  private LoadOptions() {
+    fake = Boolean.parseBoolean(System.getProperty("fake", "false"));
+    databaseUri =
+        System.getProperty(
+            "databaseUri", fake ? "projects/fake/instances/fake/databases/fake" : null);
+    fakeLatency = System.getProperty("fakeLatency", "lognormal:4:20");
+    fakeChunks = intProperty("fakeChunks", 1);
+    keyspace = System.getProperty("keyspace", "load");
+    table = System.getProperty("table", "user_sessions");
+    port = intProperty("port", 9042);
+    numGrpcChannels = intProperty("numGrpcChannels", 4);
+    String maxCommitDelayMillis = System.getProperty("maxCommitDelayMillis");
+    maxCommitDelay =
+        maxCommitDelayMillis == null
+            ? Optional.empty()
+            : Optional.of(Duration.ofMillis(Integer.parseInt(maxCommitDelayMillis)));
+    connections = intProperty("connections", 1);
+    concurrency = intProperty("concurrency", 64);
+    rate = intProperty("rate", 0);
+    duration = Duration.ofSeconds(intProperty("durationSeconds", 60));
+    warmup = Duration.ofSeconds(intProperty("warmupSeconds", 10));
+    readRatio = Double.parseDouble(System.getProperty("readRatio", "0.5"));
+    payloadSize = intProperty("payloadSize", 100);
+    prepared = Boolean.parseBoolean(System.getProperty("prepared", "true"));
+    reportInterval = Duration.ofSeconds(intProperty("reportIntervalSeconds", 5));
+    hdrLogFile = Optional.ofNullable(System.getProperty("hdrLogFile"));
+  }
+
+  static LoadOptions fromSystemProperties() {
+    LoadOptions options = new LoadOptions();
+    options.validate();
+    return options;
+  }
+
+  private void validate() {
+    if (databaseUri == null) {
+      throw new IllegalArgumentException(
+          "Spanner database URI not set. Please set it using -DdatabaseUri or use -Dfake=true.");
+    }
+    if (connections <= 0) {
+      throw new IllegalArgumentException("The number of connections must be greater than 0.");
+    }
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("The concurrency must be greater than 0.");
+    }
+    if (rate < 0) {
+      throw new IllegalArgumentException("The rate must not be negative.");
+    }
+    if (readRatio < 0 || readRatio > 1) {
+      throw new IllegalArgumentException("The read ratio must be between 0 and 1.");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "databaseUri=%s, fake=%s, table=%s.%s, connections=%d,"
+            + " concurrency=%d, rate=%s, duration=%ds, warmup=%ds,"
+            + " readRatio=%.2f, payloadSize=%d, prepared=%s",
+        databaseUri,
+        fake,
+        keyspace,
+        table,
+        connections,
+        concurrency,
+        rate == 0 ? "unbounded" : rate + "/s",
+        duration.getSeconds(),
+        warmup.getSeconds(),
+        readRatio,
+        payloadSize,
+        prepared);
+  }
+
+  private static int intProperty(String key, int defaultValue) {
+    String value = System.getProperty(key);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+}
@@ -0,0 +1,437 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants.DataType;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Options;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.Register;
+import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Error;
+import com.datastax.oss.protocol.internal.response.Ready;
+import com.datastax.oss.protocol.internal.response.Supported;
+import com.datastax.oss.protocol.internal.response.error.Unprepared;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.DefaultRows;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import com.datastax.oss.protocol.internal.response.result.SetKeyspace;
+import com.datastax.oss.protocol.internal.response.result.Void;
+import com.google.cloud.spanner.adapter.FakeAdapterService.FakeResponse;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.spanner.adapter.v1.AdaptMessageRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link FakeAdapterService.Responder} that speaks enough of the Cassandra native protocol for a
+ * real driver to connect, prepare statements and run reads and writes against declared {@link
+ * FakeTable}s.
+ *
+ * <p>Writes always succeed with a VOID result. Reads return {@code rowsPerRead} generated rows
+ * whose text and blob values are {@code valueSize} bytes long. Prepared statements are identified
+ * the same way the Spanner backend does it, with a {@code W} prefix for writes, and their state is
+ * returned as {@code pqid/} state updates.
+ */
+final class NativeProtocolResponder implements FakeAdapterService.Responder {
+
+  private static final String PREPARED_QUERY_ID_ATTACHMENT_PREFIX = "pqid/";
+  private static final Pattern INSERT_PATTERN =
+      Pattern.compile(
+          "^\\s*INSERT\\s+INTO\\s+([\\w.\"]+)\\s*\\(([^)]*)\\)",
+          Pattern.CASE_INSENSITIVE);
+  private static final Pattern SELECT_PATTERN =
+      Pattern.compile(
+          "^\\s*SELECT\\s+(.+?)\\s+FROM\\s+([\\w.\"]+)",
+          Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern UPDATE_PATTERN =
+      Pattern.compile("^\\s*UPDATE\\s+([\\w.\"]+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern DELETE_PATTERN =
+      Pattern.compile("^\\s*DELETE\\s+.*?FROM\\s+([\\w.\"]+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern USE_PATTERN =
+      Pattern.compile("^\\s*USE\\s+\"?(\\w+)\"?", Pattern.CASE_INSENSITIVE);
+  private static final Pattern BIND_MARKER_COLUMN_PATTERN =
+      Pattern.compile("(\\w+)\\s*(?:=|<=|>=|<|>|\\bIN\\b)\\s*\\?", Pattern.CASE_INSENSITIVE);
+
+  private final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private final Map<String, FakeTable> tables = new ConcurrentHashMap<>();
+  private final Map<String, PreparedStatementInfo> preparedStatements = new ConcurrentHashMap<>();
+  private final FakeTable systemLocal;
+  private final Map<String, ByteBuffer> systemLocalRow;
+  private final int rowsPerRead;
+  private final int valueSize;
+  private final Random random;
+
+  /**
+   * Constructs a responder.
+   *
+   * @param rowsPerRead The number of rows returned by every read of a declared table.
+   * @param valueSize The size in bytes of generated text and blob values.
+   * @param seed The seed of the generated values.
+   */
+  NativeProtocolResponder(int rowsPerRead, int valueSize, long seed) {
+    this.rowsPerRead = rowsPerRead;
+    this.valueSize = valueSize;
+    this.random = new Random(seed);
+    this.systemLocal =
+        new FakeTable(
+            "system",
+            "local",
+            ImmutableMap.<String, String>builder()
+                .put("key", "text")
+                .put("bootstrapped", "text")
+                .put("broadcast_address", "inet")
+                .put("cluster_name", "text")
+                .put("cql_version", "text")
+                .put("data_center", "text")
+                .put("host_id", "uuid")
+                .put("listen_address", "inet")
+                .put("partitioner", "text")
+                .put("rack", "text")
+                .put("release_version", "text")
+                .put("rpc_address", "inet")
+                .put("schema_version", "uuid")
+                .put("tokens", "set<text>")
+                .build());
+    UUID hostId = new UUID(0, 1);
+    ByteBuffer loopback = ByteBuffer.wrap(new byte[] {127, 0, 0, 1});
+    this.systemLocalRow =
+        ImmutableMap.<String, ByteBuffer>builder()
+            .put("key", text("local"))
+            .put("bootstrapped", text("COMPLETED"))
+            .put("broadcast_address", loopback)
+            .put("cluster_name", text("fake-spanner"))
+            .put("cql_version", text("3.4.5"))
+            .put("data_center", text("datacenter1"))
+            .put("host_id", uuid(hostId))
+            .put("listen_address", loopback)
+            .put("partitioner", text("org.apache.cassandra.dht.Murmur3Partitioner"))
+            .put("rack", text("rack1"))
+            .put("release_version", text("4.0.0"))
+            .put("rpc_address", loopback)
+            .put("schema_version", uuid(hostId))
+            .put("tokens", textSet("0"))
+            .build();
+  }
+
+  /** Declares a table, so that statements against it are typed and its reads return rows. */
+  NativeProtocolResponder addTable(FakeTable table) {
+    tables.put(qualifiedName(table.keyspace(), table.name()), table);
+    tables.put(table.name().toLowerCase(Locale.ROOT), table);
+    return this;
+  }
+
+  @Override
+  public FakeResponse respond(AdaptMessageRequest request) {
+    ByteBuf requestBuf = Unpooled.wrappedBuffer(request.getPayload().asReadOnlyByteBuffer());
+    Frame frame = serverFrameCodec.decode(requestBuf);
+    requestBuf.release();
+
+    Map<String, String> stateUpdates = Collections.emptyMap();
+    Message response;
+    if (frame.message instanceof Options) {
+      response =
+          new Supported(
+              ImmutableMap.of(
+                  "CQL_VERSION",
+                  ImmutableList.of("3.4.5"),
+                  "COMPRESSION",
+                  Collections.<String>emptyList()));
+    } else if (frame.message instanceof Startup || frame.message instanceof Register) {
+      response = new Ready();
+    } else if (frame.message instanceof Prepare) {
+      String query = ((Prepare) frame.message).cqlQuery;
+      PreparedStatementInfo info = analyze(query);
+      String queryId =
+          (info.isRead ? "R" : "W") + Hashing.sha256().hashString(query, StandardCharsets.UTF_8);
+      preparedStatements.put(queryId, info);
+      stateUpdates = ImmutableMap.of(PREPARED_QUERY_ID_ATTACHMENT_PREFIX + queryId, query);
+      byte[] id = queryId.getBytes(StandardCharsets.UTF_8);
+      response =
+          new Prepared(
+              id,
+              frame.protocolVersion >= 5 ? id : null,
+              new RowsMetadata(info.variables, null, new int[0], null),
+              new RowsMetadata(info.resultColumns, null, null, null));
+    } else if (frame.message instanceof Execute) {
+      Execute execute = (Execute) frame.message;
+      PreparedStatementInfo info =
+          preparedStatements.get(new String(execute.queryId, StandardCharsets.UTF_8));
+      if (info == null) {
+        response = new Unprepared("Unknown prepared statement", execute.queryId);
+      } else {
+        response = info.isRead ? rows(info, execute.options.skipMetadata) : Void.INSTANCE;
+      }
+    } else if (frame.message instanceof Query) {
+      String query = ((Query) frame.message).query;
+      Matcher use = USE_PATTERN.matcher(query);
+      if (use.find()) {
+        response = new SetKeyspace(use.group(1));
+      } else {
+        PreparedStatementInfo info = analyze(query);
+        response = info.isRead ? rows(info, false) : Void.INSTANCE;
+      }
+    } else if (frame.message instanceof Batch) {
+      response = Void.INSTANCE;
+    } else {
+      response =
+          new Error(
+              ErrorCode.PROTOCOL_ERROR,
+              "Unsupported message: " + frame.message.getClass().getSimpleName());
+    }
+    return new FakeResponse(encode(frame.protocolVersion, frame.streamId, response), stateUpdates);
+  }
+
+  /** Encodes a response frame. */
+  byte[] encode(int protocolVersion, int streamId, Message message) {
+    Frame frame =
+        Frame.forResponse(
+            protocolVersion, streamId, null, Frame.NO_PAYLOAD, Collections.emptyList(), message);
+    ByteBuf buf = serverFrameCodec.encode(frame);
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+
+  private DefaultRows rows(PreparedStatementInfo info, boolean skipMetadata) {
+    RowsMetadata metadata =
+        skipMetadata
+            ? new RowsMetadata(info.resultColumns.size(), null, null, null)
+            : new RowsMetadata(info.resultColumns, null, null, null);
+    Queue<List<ByteBuffer>> data = new ArrayDeque<>();
+    if (info.table == systemLocal) {
+      List<ByteBuffer> row = new ArrayList<>(info.resultColumns.size());
+      for (ColumnSpec column : info.resultColumns) {
+        row.add(systemLocalRow.get(column.name));
+      }
+      data.add(row);
+    } else if (info.table != null) {
+      for (int i = 0; i < rowsPerRead; i++) {
+        List<ByteBuffer> row = new ArrayList<>(info.resultColumns.size());
+        for (ColumnSpec column : info.resultColumns) {
+          row.add(randomValue(column.type));
+        }
+        data.add(row);
+      }
+    }
+    return new DefaultRows(metadata, data);
+  }
+
+  private PreparedStatementInfo analyze(String query) {
+    Matcher select = SELECT_PATTERN.matcher(query);
+    if (select.find()) {
+      FakeTable table = lookupTable(select.group(2));
+      if (table == null) {
+        return new PreparedStatementInfo(true, null, bindMarkerSpecs(null, query), emptyList());
+      }
+      String projection = select.group(1).trim();
+      List<ColumnSpec> resultColumns =
+          "*".equals(projection) ? table.columnSpecs() : table.columnSpecs(split(projection));
+      return new PreparedStatementInfo(true, table, bindMarkerSpecs(table, query), resultColumns);
+    }
+    Matcher insert = INSERT_PATTERN.matcher(query);
+    if (insert.find()) {
+      FakeTable table = lookupTable(insert.group(1));
+      List<ColumnSpec> variables =
+          table == null ? untypedSpecs(count(query)) : table.columnSpecs(split(insert.group(2)));
+      return new PreparedStatementInfo(false, table, variables, emptyList());
+    }
+    for (Pattern pattern : new Pattern[] {UPDATE_PATTERN, DELETE_PATTERN}) {
+      Matcher matcher = pattern.matcher(query);
+      if (matcher.find()) {
+        FakeTable table = lookupTable(matcher.group(1));
+        return new PreparedStatementInfo(false, table, bindMarkerSpecs(table, query), emptyList());
+      }
+    }
+    return new PreparedStatementInfo(false, null, untypedSpecs(count(query)), emptyList());
+  }
+
+  private List<ColumnSpec> bindMarkerSpecs(FakeTable table, String query) {
+    if (table == null) {
+      return untypedSpecs(count(query));
+    }
+    List<String> columns = new ArrayList<>();
+    Matcher matcher = BIND_MARKER_COLUMN_PATTERN.matcher(query);
+    while (matcher.find()) {
+      if (table.columnType(matcher.group(1)) != null) {
+        columns.add(matcher.group(1));
+      }
+    }
+    return columns.size() == count(query)
+        ? table.columnSpecs(columns)
+        : untypedSpecs(count(query));
+  }
+
+  private FakeTable lookupTable(String name) {
+    String normalized = name.replace("\"", "").toLowerCase(Locale.ROOT);
+    if (normalized.equals("system.local")) {
+      return systemLocal;
+    }
+    return tables.get(normalized);
+  }
+
+  private ByteBuffer randomValue(RawType type) {
+    byte[] bytes;
+    switch (type.id) {
+      case DataType.ASCII:
+      case DataType.VARCHAR:
+        bytes = new byte[valueSize];
+        for (int i = 0; i < valueSize; i++) {
+          bytes[i] = (byte) ('a' + nextInt(26));
+        }
+        return ByteBuffer.wrap(bytes);
+      case DataType.BLOB:
+        bytes = new byte[valueSize];
+        synchronized (random) {
+          random.nextBytes(bytes);
+        }
+        return ByteBuffer.wrap(bytes);
+      case DataType.BOOLEAN:
+        return ByteBuffer.wrap(new byte[] {(byte) nextInt(2)});
+      case DataType.INT:
+      case DataType.FLOAT:
+      case DataType.INET:
+        return randomBytes(4);
+      case DataType.BIGINT:
+      case DataType.DOUBLE:
+      case DataType.TIMESTAMP:
+        return randomBytes(8);
+      case DataType.UUID:
+        return randomBytes(16);
+      default:
+        // Collections are returned empty.
+        return ByteBuffer.wrap(new byte[4]);
+    }
+  }
+
+  private ByteBuffer randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    synchronized (random) {
+      random.nextBytes(bytes);
+    }
+    return ByteBuffer.wrap(bytes);
+  }
+
+  private int nextInt(int bound) {
+    synchronized (random) {
+      return random.nextInt(bound);
+    }
+  }
+
+  private static List<ColumnSpec> untypedSpecs(int count) {
+    List<ColumnSpec> specs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      specs.add(
+          new ColumnSpec("ks", "unknown", "c" + i, i, RawType.PRIMITIVES.get(DataType.BLOB)));
+    }
+    return specs;
+  }
+
+  private static List<ColumnSpec> emptyList() {
+    return Collections.emptyList();
+  }
+
+  private static int count(String query) {
+    int count = 0;
+    for (int i = 0; i < query.length(); i++) {
+      if (query.charAt(i) == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static List<String> split(String columns) {
+    List<String> names = new ArrayList<>();
+    for (String column : columns.split(",")) {
+      names.add(column.trim().replace("\"", ""));
+    }
+    return names;
+  }
+
+  private static String qualifiedName(String keyspace, String table) {
+    return (keyspace + "." + table).toLowerCase(Locale.ROOT);
+  }
+
+  private static ByteBuffer text(String value) {
+    return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ByteBuffer uuid(UUID value) {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    buffer.putLong(value.getMostSignificantBits()).putLong(value.getLeastSignificantBits());
+    buffer.flip();
+    return buffer;
+  }
+
+  private static ByteBuffer textSet(String element) {
+    byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(8 + bytes.length);
+    buffer.putInt(1).putInt(bytes.length).put(bytes);
+    buffer.flip();
+    return buffer;
+  }
+
+  /** What the responder knows about a statement. */
+  private static final class PreparedStatementInfo {
+    final boolean isRead;
+    final FakeTable table;
+    final List<ColumnSpec> variables;
+    final List<ColumnSpec> resultColumns;
+
+    PreparedStatementInfo(
+        boolean isRead,
+        FakeTable table,
+        List<ColumnSpec> variables,
+        List<ColumnSpec> resultColumns) {
+      this.isRead = isRead;
+      this.table = table;
+      this.variables = variables;
+      this.resultColumns = resultColumns;
+    }
+  }
+}
@@ -0,0 +1,499 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Replays a traffic capture recorded by the adapter ({@link TrafficCapture}) against an adapter
+ * backed by the in-process {@link FakeAdapterService}, and reports the latency distribution of the
+ * replayed requests.
+ *
+ * <p>Every captured connection is replayed on its own connection to the adapter, and frames are
+ * sent at their captured arrival times divided by {@code speed}. Latencies are measured from the
+ * scheduled send time, so a slower build shows up as higher latencies rather than as a slower
+ * replay. Before the replay, every captured prepared statement is prepared again and the ids of
+ * the captured EXECUTE and BATCH frames are rewritten to the ids issued by the fake backend.
+ *
+ * <p>Replay configuration is provided via the following system properties:
+ *
+ * <ul>
+ *   <li>{@code captureFile}: (Required) The traffic capture to replay.
+ *   <li>{@code speed}: The replay speed relative to the capture, 0 to send as fast as possible.
+ *       Defaults to 1.
+ *   <li>{@code fakeLatency}, {@code fakeChunks}: The {@link LatencyModel} and the number of
+ *       response chunks of the fake backend. Default to "lognormal:4:20" and 1.
+ *   <li>{@code port}: The local port of the adapter. Defaults to 9042.
+ *   <li>{@code hdrLogFile}: An optional file to write the latency histogram to, for comparison.
+ * </ul>
+ *
+ * <p>Two replays, typically of the same capture against two adapter builds, are compared by
+ * setting {@code compare} to the two histogram log files, separated by a comma:
+ *
+ * <pre>
+ * java -Dcompare=baseline.hlog,candidate.hlog \
+ * -cp benchmarks/target/benchmarks.jar com.google.cloud.spanner.adapter.TrafficReplayer
+ * </pre>
+ */
+public final class TrafficReplayer {
+
+  private static final int HEADER_LENGTH = 9;
+  private static final byte OPCODE_ERROR = 0x00;
+  private static final long HIGHEST_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+  private final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+  private final AtomicLong errors = new AtomicLong();
+  private final int port;
+
+  TrafficReplayer(int port) {
+    this.port = port;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String compare = System.getProperty("compare");
+    if (compare != null) {
+      String[] files = compare.split(",");
+      if (files.length != 2) {
+        throw new IllegalArgumentException("Set -Dcompare to two histogram log files.");
+      }
+      compare(files[0].trim(), files[1].trim());
+      return;
+    }
+
+    String captureFile = System.getProperty("captureFile");
+    if (captureFile == null) {
+      throw new IllegalArgumentException("Traffic capture not set. Please set -DcaptureFile.");
+    }
+    double speed = Double.parseDouble(System.getProperty("speed", "1"));
+    int port = Integer.parseInt(System.getProperty("port", "9042"));
+    Optional<String> hdrLogFile = Optional.ofNullable(System.getProperty("hdrLogFile"));
+
+    List<TrafficCapture.Record> records = readCapture(captureFile);
+    try (FakeAdapterServer server =
+        FakeAdapterServer.start(
+            FakeAdapterService.newBuilder()
+                .setLatencyModel(
+                    LatencyModel.parse(System.getProperty("fakeLatency", "lognormal:4:20")))
+                .setNumChunks(Integer.parseInt(System.getProperty("fakeChunks", "1")))
+                .build())) {
+      Adapter adapter =
+          new Adapter(
+              AdapterOptions.newBuilder()
+                  .spannerEndpoint("localhost:0")
+                  .databaseUri("projects/fake/instances/fake/databases/fake")
+                  .inetAddress(InetAddress.getLoopbackAddress())
+                  .port(port)
+                  .numGrpcChannels(1)
+                  .channelProvider(server.channelProvider())
+                  .build());
+      adapter.start();
+      try {
+        Histogram histogram = new TrafficReplayer(port).replay(records, speed);
+        printSummary("replay", histogram);
+        if (hdrLogFile.isPresent()) {
+          try (PrintStream out =
+              new PrintStream(new FileOutputStream(hdrLogFile.get()), false, "UTF-8")) {
+            HistogramLogWriter writer = new HistogramLogWriter(out);
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            writer.outputIntervalHistogram(histogram);
+          }
+        }
+      } finally {
+        adapter.stop();
+      }
+    }
+  }
+
+  private static List<TrafficCapture.Record> readCapture(String captureFile) throws IOException {
+    List<TrafficCapture.Record> records = new ArrayList<>();
+    try (TrafficCapture.Reader reader = new TrafficCapture.Reader(Paths.get(captureFile))) {
+      TrafficCapture.Record record;
+      while ((record = reader.next()) != null) {
+        records.add(record);
+      }
+    }
+    // Records of different connections are written concurrently, so restore the arrival order.
+    records.sort((a, b) -> Long.compare(a.arrivalMicros, b.arrivalMicros));
+    return records;
+  }
+
+  /** Replays the given records and returns the latency histogram of the replayed requests. */
+  Histogram replay(List<TrafficCapture.Record> records, double speed)
+      throws IOException, InterruptedException {
+    Map<ByteBuffer, byte[]> preparedIds = prepareAgain(records);
+
+    Map<Integer, ReplayConnection> connections = new HashMap<>();
+    List<TrafficCapture.Record> requests = new ArrayList<>();
+    for (TrafficCapture.Record record : records) {
+      if (record.type == TrafficCapture.REQUEST_RECORD) {
+        requests.add(record);
+        connections.computeIfAbsent(record.connectionId, id -> new ReplayConnection()).expected++;
+      }
+    }
+    for (ReplayConnection connection : connections.values()) {
+      connection.open();
+    }
+    CountDownLatch done = new CountDownLatch(connections.size());
+    for (ReplayConnection connection : connections.values()) {
+      connection.startReading(done);
+    }
+
+    System.out.printf(
+        Locale.ROOT,
+        "Replaying %d requests on %d connections at speed %s%n",
+        requests.size(),
+        connections.size(),
+        speed == 0 ? "max" : speed + "x");
+    long replayStart = System.nanoTime();
+    long firstArrival = requests.isEmpty() ? 0 : requests.get(0).arrivalMicros;
+    for (TrafficCapture.Record request : requests) {
+      long sendNanos = System.nanoTime();
+      if (speed > 0) {
+        long offsetNanos = TimeUnit.MICROSECONDS.toNanos(request.arrivalMicros - firstArrival);
+        sendNanos = replayStart + (long) (offsetNanos / speed);
+        long delay;
+        while ((delay = sendNanos - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(delay);
+        }
+      }
+      connections.get(request.connectionId).send(rewrite(request.bytes, preparedIds), sendNanos);
+    }
+    if (!done.await(1, TimeUnit.MINUTES)) {
+      System.out.println("Timed out waiting for the last responses.");
+    }
+    for (ReplayConnection connection : connections.values()) {
+      connection.close();
+    }
+    System.out.printf(
+        Locale.ROOT,
+        "Replayed in %.1fs, %d error responses%n",
+        (System.nanoTime() - replayStart) / 1e9,
+        errors.get());
+    return recorder.getIntervalHistogram();
+  }
+
+  /**
+   * Prepares every captured prepared statement again, and returns the ids issued by the replay
+   * backend keyed by the captured ids.
+   */
+  private Map<ByteBuffer, byte[]> prepareAgain(List<TrafficCapture.Record> records)
+      throws IOException {
+    Map<Long, Prepare> pendingPrepares = new HashMap<>();
+    Map<ByteBuffer, Prepare> capturedIds = new HashMap<>();
+    for (TrafficCapture.Record record : records) {
+      long key = ((long) record.connectionId << 16) | (record.streamId & 0xFFFF);
+      if (record.type == TrafficCapture.REQUEST_RECORD) {
+        Message message = decodeRequest(record.bytes).message;
+        if (message instanceof Prepare) {
+          pendingPrepares.put(key, (Prepare) message);
+        }
+      } else if (record.type == TrafficCapture.PREPARED_RECORD) {
+        Prepare prepare = pendingPrepares.remove(key);
+        if (prepare != null) {
+          capturedIds.put(ByteBuffer.wrap(record.bytes), prepare);
+        }
+      }
+    }
+
+    Map<ByteBuffer, byte[]> preparedIds = new HashMap<>();
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      OutputStream out = socket.getOutputStream();
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      for (Map.Entry<ByteBuffer, Prepare> entry : capturedIds.entrySet()) {
+        Frame prepare = Frame.forRequest(4, 0, false, Frame.NO_PAYLOAD, entry.getValue());
+        out.write(encodeRequest(prepare));
+        out.flush();
+        Message response = decodeResponse(readFrame(in)).message;
+        if (response instanceof Prepared) {
+          preparedIds.put(entry.getKey(), ((Prepared) response).preparedQueryId);
+        }
+      }
+    }
+    System.out.printf(
+        Locale.ROOT, "Prepared %d captured statements again%n", preparedIds.size());
+    return preparedIds;
+  }
+
+  /** Rewrites the prepared statement ids of an EXECUTE or BATCH frame to the replay ids. */
+  private byte[] rewrite(byte[] frameBytes, Map<ByteBuffer, byte[]> preparedIds) {
+    Frame frame = decodeRequest(frameBytes);
+    Message rewritten = null;
+    if (frame.message instanceof Execute) {
+      Execute execute = (Execute) frame.message;
+      byte[] id = preparedIds.get(ByteBuffer.wrap(execute.queryId));
+      if (id != null) {
+        rewritten = new Execute(id, execute.resultMetadataId, execute.options);
+      }
+    } else if (frame.message instanceof Batch) {
+      Batch batch = (Batch) frame.message;
+      List<Object> queriesOrIds = new ArrayList<>(batch.queriesOrIds.size());
+      boolean changed = false;
+      for (Object queryOrId : batch.queriesOrIds) {
+        byte[] id =
+            queryOrId instanceof byte[]
+                ? preparedIds.get(ByteBuffer.wrap((byte[]) queryOrId))
+                : null;
+        changed |= id != null;
+        queriesOrIds.add(id != null ? id : queryOrId);
+      }
+      if (changed) {
+        rewritten =
+            new Batch(
+                batch.flags,
+                batch.type,
+                queriesOrIds,
+                batch.values,
+                batch.consistency,
+                batch.serialConsistency,
+                batch.defaultTimestamp,
+                batch.keyspace,
+                batch.nowInSeconds);
+      }
+    }
+    if (rewritten == null) {
+      return frameBytes;
+    }
+    return encodeRequest(
+        Frame.forRequest(
+            frame.protocolVersion, frame.streamId, frame.tracing, frame.customPayload, rewritten));
+  }
+
+  private Frame decodeRequest(byte[] bytes) {
+    ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+    try {
+      return serverFrameCodec.decode(buf);
+    } finally {
+      buf.release();
+    }
+  }
+
+  private Frame decodeResponse(byte[] bytes) {
+    ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+    try {
+      return clientFrameCodec.decode(buf);
+    } finally {
+      buf.release();
+    }
+  }
+
+  private byte[] encodeRequest(Frame frame) {
+    ByteBuf buf = clientFrameCodec.encode(frame);
+    try {
+      byte[] bytes = new byte[buf.readableBytes()];
+      buf.readBytes(bytes);
+      return bytes;
+    } finally {
+      buf.release();
+    }
+  }
+
+  private static byte[] readFrame(DataInputStream in) throws IOException {
+    byte[] header = new byte[HEADER_LENGTH];
+    in.readFully(header);
+    int bodyLength = ByteBuffer.wrap(header, 5, 4).getInt();
+    byte[] frame = new byte[HEADER_LENGTH + bodyLength];
+    System.arraycopy(header, 0, frame, 0, HEADER_LENGTH);
+    in.readFully(frame, HEADER_LENGTH, bodyLength);
+    return frame;
+  }
+
+  /** A replayed driver connection, matching responses to the send times of their requests. */
+  private final class ReplayConnection {
+    private final Map<Short, Queue<Long>> sendTimes = new HashMap<>();
+    private Socket socket;
+    private OutputStream out;
+    private InputStream in;
+    private int expected;
+
+    void open() throws IOException {
+      socket = new Socket(InetAddress.getLoopbackAddress(), port);
+      socket.setTcpNoDelay(true);
+      out = socket.getOutputStream();
+      in = new BufferedInputStream(socket.getInputStream());
+    }
+
+    void send(byte[] frame, long sendNanos) throws IOException {
+      short streamId = ByteBuffer.wrap(frame, 2, 2).getShort();
+      synchronized (sendTimes) {
+        sendTimes.computeIfAbsent(streamId, id -> new ArrayDeque<>()).add(sendNanos);
+      }
+      out.write(frame);
+      out.flush();
+    }
+
+    void startReading(CountDownLatch done) {
+      Thread reader =
+          new Thread(
+              () -> {
+                DataInputStream data = new DataInputStream(in);
+                try {
+                  for (int i = 0; i < expected; i++) {
+                    byte[] frame = readFrame(data);
+                    long receivedNanos = System.nanoTime();
+                    short streamId = ByteBuffer.wrap(frame, 2, 2).getShort();
+                    Long sendNanos;
+                    synchronized (sendTimes) {
+                      Queue<Long> queue = sendTimes.get(streamId);
+                      sendNanos = queue == null ? null : queue.poll();
+                    }
+                    if (frame[4] == OPCODE_ERROR) {
+                      errors.incrementAndGet();
+                    }
+                    if (sendNanos != null) {
+                      recorder.recordValue(
+                          Math.min(receivedNanos - sendNanos, HIGHEST_TRACKABLE_LATENCY_NANOS));
+                    }
+                  }
+                } catch (EOFException e) {
+                  // The adapter closed the connection.
+                } catch (IOException e) {
+                  if (!socket.isClosed()) {
+                    System.out.println("Error reading replay responses: " + e.getMessage());
+                  }
+                } finally {
+                  done.countDown();
+                }
+              },
+              "traffic-replayer-reader");
+      reader.setDaemon(true);
+      reader.start();
+    }
+
+    void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  private static void printSummary(String name, Histogram histogram) {
+    StringBuilder line =
+        new StringBuilder(
+            String.format(
+                Locale.ROOT,
+                "%s: %d requests, latency ms: mean %.2f",
+                name,
+                histogram.getTotalCount(),
+                histogram.getMean() / 1e6));
+    for (double percentile : PERCENTILES) {
+      line.append(
+          String.format(
+              Locale.ROOT,
+              ", %s %.2f",
+              percentileName(percentile),
+              histogram.getValueAtPercentile(percentile) / 1e6));
+    }
+    System.out.println(line);
+  }
+
+  /** Prints the latency percentiles of two histogram logs side by side. */
+  private static void compare(String baselineFile, String candidateFile) throws IOException {
+    Histogram baseline = readHistogramLog(baselineFile);
+    Histogram candidate = readHistogramLog(candidateFile);
+    printSummary("baseline", baseline);
+    printSummary("candidate", candidate);
+    System.out.printf(
+        Locale.ROOT,
+        "%-10s %12s %12s %9s%n",
+        "percentile",
+        "baseline ms",
+        "candidate ms",
+        "change");
+    for (double percentile : PERCENTILES) {
+      double before = baseline.getValueAtPercentile(percentile) / 1e6;
+      double after = candidate.getValueAtPercentile(percentile) / 1e6;
+      System.out.printf(
+          Locale.ROOT,
+          "%-10s %12.2f %12.2f %+8.1f%%%n",
+          percentileName(percentile),
+          before,
+          after,
+          before == 0 ? 0 : (after - before) / before * 100);
+    }
+  }
+
+  private static Histogram readHistogramLog(String file) throws IOException {
+    Histogram total = new Histogram(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+    HistogramLogReader reader = new HistogramLogReader(file);
+    try {
+      EncodableHistogram histogram;
+      while ((histogram = reader.nextIntervalHistogram()) != null) {
+        if (histogram instanceof Histogram) {
+          total.add((Histogram) histogram);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return total;
+  }
+
+  private static String percentileName(double percentile) {
+    if (percentile == 100) {
+      return "max";
+    }
+    return percentile == Math.rint(percentile)
+        ? "p" + (int) percentile
+        : "p" + percentile;
+  }
+}
@@ -16,6 +16,7 @@ limitations under the License.
 package com.google.cloud.spanner.adapter;
 
 import com.google.api.gax.core.GaxProperties;
+import com.google.api.gax.core.NoCredentialsProvider;
 import com.google.api.gax.grpc.ChannelPoolSettings;
 import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
 import com.google.api.gax.rpc.FixedHeaderProvider;
@@ -29,11 +30,23 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.management.ObjectName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +57,12 @@ final class Adapter {
   private static final String RESOURCE_PREFIX_HEADER_KEY = "google-cloud-resource-prefix";
   private static final long MAX_GLOBAL_STATE_SIZE = (long) (1e8 / 256); // ~100 MB
   private static final int DEFAULT_CONNECTION_BACKLOG = 50;
+  private static final Duration CONNECTION_THREAD_KEEP_ALIVE = Duration.ofSeconds(60);
+  private static final int MAX_PENDING_REJECTIONS = 64;
+  private static final Duration MEMORY_BUDGET_MAX_WAIT = Duration.ofMillis(500);
+  private static final long LARGEST_MAX_COMMIT_DELAY_MILLIS = 500;
+  private static final String RESTART_REQUIRED_MESSAGE =
+      "The change of {} takes effect when the adapter is restarted.";
   private static final String ENV_VAR_GOOGLE_SPANNER_ENABLE_DIRECT_ACCESS =
       "GOOGLE_SPANNER_ENABLE_DIRECT_ACCESS";
 
@@ -56,16 +75,34 @@ final class Adapter {
           + CLIENT_VERSION
           + GaxProperties.getLibraryVersion(Adapter.class);
 
-  private final InetAddress inetAddress;
-  private final int port;
-  private final String host;
-  private final String databaseUri;
-  private final int numGrpcChannels;
-  private final Optional<Duration> maxCommitDelay;
+  private final AdapterOptions options;
+  // The options last applied by update, guarded by this.
+  private AdapterOptions appliedOptions;
   private AdapterClientWrapper adapterClientWrapper;
   private ServerSocket serverSocket;
-  private ExecutorService executor;
-  private boolean started = false;
+  private ConnectionExecutor connectionExecutor;
+  private ThreadPoolExecutor rejectionExecutor;
+  private ThreadPoolExecutor prefetchExecutor;
+  private BatchSplitter batchSplitter;
+  private ObjectName batchSplitterMetricsName;
+  private ObjectName connectionExecutorMetricsName;
+  private MemoryBudget memoryBudget;
+  private ObjectName memoryBudgetMetricsName;
+  private WriteCoalescer writeCoalescer;
+  private ObjectName writeCoalescerMetricsName;
+  private AdaptiveCommitDelay adaptiveCommitDelay;
+  private ConfiguredCommitDelay configuredCommitDelay;
+  private ObjectName adaptiveCommitDelayMetricsName;
+  private PreparedResponseCache preparedResponseCache;
+  private ObjectName preparedResponseCacheMetricsName;
+  private ResultCache resultCache;
+  private ObjectName resultCacheMetricsName;
+  private CompletableFuture<AdapterClientWrapper> backendReady;
+  // The connections accepted with fast start before the Spanner client is ready, guarded by this.
+  private List<Socket> heldConnections;
+  private Thread acceptThread;
+  private TrafficCapture trafficCapture;
+  private volatile boolean started = false;
 
   /**
    * Constructor for the Adapter class, specifying a specific address to bind to.
@@ -84,82 +121,176 @@ final class Adapter {
       int port,
       int numGrpcChannels,
       Optional<Duration> maxCommitDelay) {
-    // TODO: Encapsulate arguments in an Options class to accomodate future fields without having to
-    // pass them individually.
-    this.host = host;
-    this.databaseUri = databaseUri;
-    this.inetAddress = inetAddress;
-    this.port = port;
-    this.numGrpcChannels = numGrpcChannels;
-    this.maxCommitDelay = maxCommitDelay;
+    this(
+        AdapterOptions.newBuilder()
+            .spannerEndpoint(host)
+            .databaseUri(databaseUri)
+            .inetAddress(inetAddress)
+            .port(port)
+            .numGrpcChannels(numGrpcChannels)
+            .maxCommitDelay(maxCommitDelay)
+            .build());
   }
 
-  /** Starts the adapter, initializing the local TCP server and handling client connections. */
+  /**
+   * Constructor for the Adapter class.
+   *
+   * @param options The configuration of the adapter.
+   */
+  Adapter(AdapterOptions options) {
+    this.options = options;
+    this.appliedOptions = options;
+  }
+
+  /**
+   * Starts the adapter, initializing the local TCP server and handling client connections.
+   *
+   * <p>With fast start, this returns as soon as the server socket is bound and accepting
+   * connections, while the Spanner client and then its first session, which is created through it,
+   * are created in the background. Connections accepted meanwhile are held, their requests unread,
+   * and are handled once the client is ready; use {@link #awaitReady()} to wait for it. If it
+   * cannot be created, the held connections and the server socket are closed and the adapter is
+   * stopped.
+   */
   void start() {
     if (started) {
       return;
     }
 
+    final String databaseUri = options.getDatabaseUri();
     try {
-      GoogleCredentials credentials = GoogleCredentials.getApplicationDefault();
-
-      InstantiatingGrpcChannelProvider.Builder channelProviderBuilder =
-          AdapterSettings.defaultGrpcTransportProviderBuilder();
-
-      channelProviderBuilder
-          .setCredentials(credentials)
-          .setAllowNonDefaultServiceAccount(true)
-          .setChannelPoolSettings(ChannelPoolSettings.staticallySized(numGrpcChannels));
-
-      if (isEnableDirectPathXdsEnv()) {
-        channelProviderBuilder.setAttemptDirectPath(true);
-        // This will let the credentials try to fetch a hard-bound access token if the runtime
-        // environment supports it.
-        channelProviderBuilder.setAllowHardBoundTokenTypes(
-            Collections.singletonList(InstantiatingGrpcChannelProvider.HardBoundTokenTypes.ALTS));
-        channelProviderBuilder.setAttemptDirectPathXds();
-      }
-      HeaderProvider headerProvider =
-          FixedHeaderProvider.create(
-              RESOURCE_PREFIX_HEADER_KEY, databaseUri, USER_AGENT_KEY, DEFAULT_USER_AGENT);
-      AdapterSettings settings =
-          AdapterSettings.newBuilder()
-              .setEndpoint(host)
-              .setTransportChannelProvider(channelProviderBuilder.build())
-              .setHeaderProvider(headerProvider)
-              .build();
-
-      AdapterClient adapterClient = AdapterClient.create(settings);
-
       AttachmentsCache attachmentsCache = new AttachmentsCache(MAX_GLOBAL_STATE_SIZE);
-      SessionManager sessionManager = new SessionManager(adapterClient, databaseUri);
+      if (options.getMemoryBudgetBytes() > 0) {
+        memoryBudget = new MemoryBudget(options.getMemoryBudgetBytes(), MEMORY_BUDGET_MAX_WAIT);
+      }
+      backendReady = new CompletableFuture<>();
+      if (options.isFastStart()) {
+        heldConnections = new ArrayList<>();
+        // The Spanner client and its first session are created while the local server starts.
+        newDaemonThread(
+                () -> initializeBackend(attachmentsCache), "spanner-cassandra-adapter-init")
+            .start();
+      } else {
+        initializeBackend(attachmentsCache);
+        awaitBackend();
+      }
 
-      // Create initial session to verify database existence
-      sessionManager.getSession();
+      if (options.getAdaptiveMaxCommitDelay().isPresent()) {
+        adaptiveCommitDelay =
+            new AdaptiveCommitDelay(
+                options.getAdaptiveMaxCommitDelay().get(), options.getWriteLatencyTarget());
+      } else {
+        configuredCommitDelay = new ConfiguredCommitDelay(options.getMaxCommitDelay());
+      }
+      if (options.getPreparedResponseCacheSize() > 0) {
+        preparedResponseCache =
+            new PreparedResponseCache(
+                attachmentsCache,
+                options.getPreparedResponseCacheSize(),
+                options.getPreparedResponseCacheTtl());
+      }
+      if (!options.getResultCacheTables().isEmpty()) {
+        resultCache = new ResultCache(options.getResultCacheTables());
+      }
 
-      adapterClientWrapper =
-          new AdapterClientWrapper(adapterClient, attachmentsCache, sessionManager);
+      if (options.getTrafficCaptureFile() != null) {
+        trafficCapture =
+            TrafficCapture.open(
+                options.getTrafficCaptureFile(),
+                options.getTrafficCaptureSampleRate(),
+                options.getTrafficCaptureMaxBytes());
+      }
 
       // Start listening on the specified host and port.
-      serverSocket = new ServerSocket(port, DEFAULT_CONNECTION_BACKLOG, inetAddress);
-      LOG.info("Local TCP server started on {}:{}", inetAddress, port);
+      serverSocket =
+          new ServerSocket(
+              options.getPort(), DEFAULT_CONNECTION_BACKLOG, options.getInetAddress());
+      LOG.info(
+          "Local TCP server started on {}:{}", options.getInetAddress(), options.getPort());
 
-      executor = Executors.newCachedThreadPool();
+      connectionExecutor =
+          new ConnectionExecutor(
+              "spanner-cassandra-adapter-connection",
+              options.getCoreConnectionThreads(),
+              options.getMaxConnectionThreads(),
+              options.getConnectionQueueSize(),
+              CONNECTION_THREAD_KEEP_ALIVE,
+              this::rejectClientConnection);
+      // Rejected connections are answered on their own thread, so that a slow client cannot stall
+      // the accept loop.
+      rejectionExecutor =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(MAX_PENDING_REJECTIONS),
+              runnable -> newDaemonThread(runnable, "spanner-cassandra-adapter-rejection"));
+      if (options.getPrefetchPages() > 0) {
+        // Prefetches are skipped rather than queued when every connection thread has one in flight.
+        prefetchExecutor =
+            new ThreadPoolExecutor(
+                0,
+                options.getMaxConnectionThreads(),
+                CONNECTION_THREAD_KEEP_ALIVE.toMillis(),
+                TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                runnable -> newDaemonThread(runnable, "spanner-cassandra-adapter-prefetch"));
+      }
+      connectionExecutorMetricsName =
+          JmxMetrics.register("ConnectionExecutor", options.getPort(), connectionExecutor);
+      if (memoryBudget != null) {
+        memoryBudgetMetricsName =
+            JmxMetrics.register("MemoryBudget", options.getPort(), memoryBudget);
+      }
+      if (adaptiveCommitDelay != null) {
+        adaptiveCommitDelayMetricsName =
+            JmxMetrics.register("AdaptiveCommitDelay", options.getPort(), adaptiveCommitDelay);
+      }
+      if (preparedResponseCache != null) {
+        preparedResponseCacheMetricsName =
+            JmxMetrics.register(
+                "PreparedResponseCache", options.getPort(), preparedResponseCache);
+      }
+      if (resultCache != null) {
+        resultCacheMetricsName = JmxMetrics.register("ResultCache", options.getPort(), resultCache);
+      }
+
+      if (!options.isFastStart()) {
+        onBackendReady(awaitBackend());
+      }
 
       // Start accepting client connections.
-      executor.execute(this::acceptClientConnections);
+      acceptThread =
+          newDaemonThread(this::acceptClientConnections, "spanner-cassandra-adapter-accept");
+      acceptThread.start();
 
       started = true;
       LOG.info("Adapter started for database '{}'.", databaseUri);
 
     } catch (IOException | RuntimeException e) {
+      closeServerSocketQuietly();
+      releaseResources();
+      throw new AdapterStartException(e);
+    } catch (ExecutionException e) {
+      closeServerSocketQuietly();
+      releaseResources();
+      throw new AdapterStartException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      closeServerSocketQuietly();
+      releaseResources();
       throw new AdapterStartException(e);
     }
   }
 
   /**
-   * Stops the adapter, shutting down the executor, closing the server socket, and closing the
-   * adapter client.
+   * Stops the adapter: closes the server socket, drains the open connections, then shuts down the
+   * executors and closes the adapter client.
+   *
+   * <p>Connections waiting for a thread are closed right away. The others stop reading requests,
+   * and are closed once they have answered those already received, or once the drain timeout has
+   * elapsed.
    *
    * @throws IOException If an I/O error occurs while closing the server socket.
    */
@@ -167,17 +298,362 @@ final class Adapter {
     if (!started) {
       throw new IllegalStateException("Adapter was never started!");
     }
-    executor.shutdownNow();
+    acceptThread.interrupt();
     serverSocket.close();
+    drainConnections();
+    releaseResources();
     LOG.info("Adapter stopped.");
   }
 
+  /** Drains the connections being served, up to the drain timeout, and closes the others. */
+  private void drainConnections() {
+    for (Runnable connection : connectionExecutor.shutdownQueued()) {
+      ((DriverConnectionHandler) connection).closeQuietly();
+    }
+    for (Runnable connection : connectionExecutor.getRunningConnections()) {
+      ((DriverConnectionHandler) connection).drain();
+    }
+    try {
+      if (connectionExecutor.awaitTermination(
+          options.getDrainTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    List<Runnable> remaining = connectionExecutor.getRunningConnections();
+    if (!remaining.isEmpty()) {
+      LOG.warn(
+          "Closing {} connections with requests still in flight after {}.",
+          remaining.size(),
+          options.getDrainTimeout());
+    }
+    for (Runnable connection : remaining) {
+      ((DriverConnectionHandler) connection).abort();
+    }
+  }
+
+  /**
+   * Applies the settings of the given options that can change while connections are open: the max
+   * commit delay, the sizes of the connection thread pool, the memory budget, the write coalescing
+   * window and batch size, the size of the prepared response cache and the mutation limit of
+   * batches. A feature disabled at start cannot be enabled this way. Changes to the other settings
+   * are logged and ignored until the adapter is restarted.
+   *
+   * @throws IllegalArgumentException If a setting is invalid, in which case none is applied. The
+   *     settings are also restored if one of them fails to apply.
+   */
+  synchronized void update(AdapterOptions updated) {
+    if (!started) {
+      throw new IllegalStateException("Adapter was never started!");
+    }
+    AdapterOptions current = appliedOptions;
+    // Check the new values before applying any of them.
+    checkLiveSettings(updated);
+    try {
+      applyLiveSettings(current, updated);
+    } catch (RuntimeException e) {
+      // Restore the settings applied before the failure, so that they match the applied options.
+      try {
+        applyLiveSettings(updated, current);
+      } catch (RuntimeException rollbackException) {
+        e.addSuppressed(rollbackException);
+      }
+      throw e;
+    }
+
+    logIfChanged("spannerEndpoint", current, updated, AdapterOptions::getSpannerEndpoint);
+    logIfChanged("databaseUri", current, updated, AdapterOptions::getDatabaseUri);
+    logIfChanged("inetAddress", current, updated, AdapterOptions::getInetAddress);
+    logIfChanged("port", current, updated, AdapterOptions::getPort);
+    logIfChanged("numGrpcChannels", current, updated, AdapterOptions::getNumGrpcChannels);
+    logIfChanged("usePlainText", current, updated, AdapterOptions::isUsePlainText);
+    logIfChanged("maxStaleness", current, updated, AdapterOptions::getMaxStaleness);
+    logIfChanged("trafficCaptureFile", current, updated, AdapterOptions::getTrafficCaptureFile);
+    logIfChanged(
+        "trafficCaptureSampleRate", current, updated, AdapterOptions::getTrafficCaptureSampleRate);
+    logIfChanged(
+        "trafficCaptureMaxBytes", current, updated, AdapterOptions::getTrafficCaptureMaxBytes);
+    logIfChanged("connectionQueueSize", current, updated, AdapterOptions::getConnectionQueueSize);
+    logIfChanged("streamResponses", current, updated, AdapterOptions::isStreamResponses);
+    logIfChanged(
+        "responseSpillThresholdBytes",
+        current,
+        updated,
+        AdapterOptions::getResponseSpillThresholdBytes);
+    logIfChanged("maxFrameBytes", current, updated, AdapterOptions::getMaxFrameBytes);
+    logIfChanged(
+        "adaptiveMaxCommitDelay", current, updated, AdapterOptions::getAdaptiveMaxCommitDelay);
+    logIfChanged("writeLatencyTarget", current, updated, AdapterOptions::getWriteLatencyTarget);
+    logIfChanged(
+        "preparedResponseCacheTtl", current, updated, AdapterOptions::getPreparedResponseCacheTtl);
+    logIfChanged("resultCacheTables", current, updated, AdapterOptions::getResultCacheTables);
+    logIfChanged("prefetchPages", current, updated, AdapterOptions::getPrefetchPages);
+    logIfChanged("drainTimeout", current, updated, AdapterOptions::getDrainTimeout);
+    appliedOptions = updated;
+  }
+
+  /** Checks the settings applied by {@link #update}, so that none is applied if one is invalid. */
+  private void checkLiveSettings(AdapterOptions updated) {
+    Optional<Duration> maxCommitDelay = updated.getMaxCommitDelay();
+    if (maxCommitDelay.isPresent()
+        && (maxCommitDelay.get().isNegative()
+            || maxCommitDelay.get().toMillis() > LARGEST_MAX_COMMIT_DELAY_MILLIS)) {
+      throw new IllegalArgumentException(
+          "The max commit delay must be between 0 and " + LARGEST_MAX_COMMIT_DELAY_MILLIS + "ms.");
+    }
+    if (updated.getMaxConnectionThreads() < 1) {
+      throw new IllegalArgumentException("The max connection threads must be at least 1.");
+    }
+    if (updated.getCoreConnectionThreads() < 0
+        || updated.getCoreConnectionThreads() > updated.getMaxConnectionThreads()) {
+      throw new IllegalArgumentException(
+          "The core connection threads must be between 0 and the max connection threads.");
+    }
+    if (memoryBudget != null && updated.getMemoryBudgetBytes() <= 0) {
+      throw new IllegalArgumentException("The memory budget cannot be disabled while running.");
+    }
+    if (writeCoalescer != null
+        && (updated.getWriteCoalescingWindow().isZero()
+            || updated.getWriteCoalescingWindow().isNegative()
+            || updated.getMaxWriteCoalescingBatchSize() < 2)) {
+      throw new IllegalArgumentException("Write coalescing cannot be disabled while running.");
+    }
+    if (updated.getPreparedResponseCacheSize() < 0) {
+      throw new IllegalArgumentException("The prepared response cache size cannot be negative.");
+    }
+    if (updated.getMaxBatchMutations() < 0) {
+      throw new IllegalArgumentException("The max batch mutations cannot be negative.");
+    }
+  }
+
+  /** Applies the settings that changed from the given options and can change while running. */
+  private void applyLiveSettings(AdapterOptions current, AdapterOptions updated) {
+    if (!updated.getMaxCommitDelay().equals(current.getMaxCommitDelay())) {
+      if (configuredCommitDelay != null) {
+        configuredCommitDelay.set(updated.getMaxCommitDelay());
+        LOG.info("Max commit delay changed to {}.", updated.getMaxCommitDelay().orElse(null));
+      } else {
+        LOG.warn(RESTART_REQUIRED_MESSAGE, "maxCommitDelay");
+      }
+    }
+    if (updated.getCoreConnectionThreads() != current.getCoreConnectionThreads()
+        || updated.getMaxConnectionThreads() != current.getMaxConnectionThreads()) {
+      connectionExecutor.setPoolSizes(
+          updated.getCoreConnectionThreads(), updated.getMaxConnectionThreads());
+      LOG.info(
+          "Connection threads changed to {} core and {} max.",
+          updated.getCoreConnectionThreads(),
+          updated.getMaxConnectionThreads());
+    }
+    if (updated.getMemoryBudgetBytes() != current.getMemoryBudgetBytes()) {
+      if (memoryBudget != null) {
+        memoryBudget.setCapacityBytes(updated.getMemoryBudgetBytes());
+        LOG.info("Memory budget changed to {} bytes.", updated.getMemoryBudgetBytes());
+      } else {
+        LOG.warn(RESTART_REQUIRED_MESSAGE, "memoryBudgetBytes");
+      }
+    }
+    if (!updated.getWriteCoalescingWindow().equals(current.getWriteCoalescingWindow())) {
+      if (writeCoalescer != null) {
+        writeCoalescer.setWindow(updated.getWriteCoalescingWindow());
+        LOG.info("Write coalescing window changed to {}.", updated.getWriteCoalescingWindow());
+      } else {
+        LOG.warn(RESTART_REQUIRED_MESSAGE, "writeCoalescingWindow");
+      }
+    }
+    if (writeCoalescer != null
+        && updated.getMaxWriteCoalescingBatchSize() != current.getMaxWriteCoalescingBatchSize()) {
+      writeCoalescer.setMaxBatchSize(updated.getMaxWriteCoalescingBatchSize());
+      LOG.info(
+          "Max write coalescing batch size changed to {}.",
+          updated.getMaxWriteCoalescingBatchSize());
+    }
+    if (updated.getPreparedResponseCacheSize() != current.getPreparedResponseCacheSize()) {
+      if (preparedResponseCache != null && updated.getPreparedResponseCacheSize() > 0) {
+        preparedResponseCache.setMaxSize(updated.getPreparedResponseCacheSize());
+        LOG.info(
+            "Prepared response cache size changed to {}.",
+            updated.getPreparedResponseCacheSize());
+      } else {
+        LOG.warn(RESTART_REQUIRED_MESSAGE, "preparedResponseCacheSize");
+      }
+    }
+    if (updated.getMaxBatchMutations() != current.getMaxBatchMutations()) {
+      if (batchSplitter != null && updated.getMaxBatchMutations() > 0) {
+        batchSplitter.setMaxBatchMutations(updated.getMaxBatchMutations());
+        LOG.info("Max batch mutations changed to {}.", updated.getMaxBatchMutations());
+      } else {
+        LOG.warn(RESTART_REQUIRED_MESSAGE, "maxBatchMutations");
+      }
+    }
+  }
+
+  /** Logs that a setting which cannot change while the adapter runs was changed. */
+  private static void logIfChanged(
+      String name,
+      AdapterOptions current,
+      AdapterOptions updated,
+      Function<AdapterOptions, ?> setting) {
+    if (!Objects.equals(setting.apply(current), setting.apply(updated))) {
+      LOG.warn(RESTART_REQUIRED_MESSAGE, name);
+    }
+  }
+
+  /**
+   * Waits for the Spanner client to be ready, which with fast start completes after {@link #start}.
+   *
+   * @return Whether the client is ready, or {@code false} if it could not be created.
+   */
+  boolean awaitReady() throws InterruptedException {
+    try {
+      backendReady.get();
+      return true;
+    } catch (ExecutionException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Waits for the Spanner client to be ready, for at most the given time.
+   *
+   * @return Whether the client is ready.
+   */
+  boolean awaitReady(Duration timeout) throws InterruptedException {
+    try {
+      backendReady.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+      return true;
+    } catch (ExecutionException | TimeoutException e) {
+      return false;
+    }
+  }
+
+  /** Creates the Spanner client and its first session, completing {@link #backendReady}. */
+  private void initializeBackend(AttachmentsCache attachmentsCache) {
+    try {
+      HeaderProvider headerProvider =
+          FixedHeaderProvider.create(
+              RESOURCE_PREFIX_HEADER_KEY,
+              options.getDatabaseUri(),
+              USER_AGENT_KEY,
+              DEFAULT_USER_AGENT);
+      AdapterSettings.Builder settingsBuilder =
+          AdapterSettings.newBuilder()
+              .setEndpoint(options.getSpannerEndpoint())
+              .setHeaderProvider(headerProvider);
+      if (options.getChannelProvider() != null) {
+        // A local stand-in backend is used, so no credentials are needed.
+        settingsBuilder
+            .setTransportChannelProvider(options.getChannelProvider())
+            .setCredentialsProvider(NoCredentialsProvider.create());
+      } else if (options.isUsePlainText()) {
+        settingsBuilder
+            .setTransportChannelProvider(
+                AdapterSettings.defaultGrpcTransportProviderBuilder()
+                    .setChannelConfigurator(builder -> builder.usePlaintext())
+                    .setChannelPoolSettings(
+                        ChannelPoolSettings.staticallySized(options.getNumGrpcChannels()))
+                    .build())
+            .setCredentialsProvider(NoCredentialsProvider.create());
+      } else {
+        settingsBuilder.setTransportChannelProvider(createChannelProvider());
+      }
+      AdapterSettings settings = settingsBuilder.build();
+
+      AdapterClient adapterClient = AdapterClient.create(settings);
+      SessionManager sessionManager = new SessionManager(adapterClient, options.getDatabaseUri());
+
+      // Create initial session to verify database existence
+      sessionManager.getSession();
+
+      backendReady.complete(
+          new AdapterClientWrapper(adapterClient, attachmentsCache, sessionManager, memoryBudget));
+    } catch (IOException | RuntimeException e) {
+      backendReady.completeExceptionally(e);
+    }
+  }
+
+  private AdapterClientWrapper awaitBackend() throws ExecutionException, InterruptedException {
+    return backendReady.get();
+  }
+
+  /** Creates the parts of the adapter that send requests to Spanner. */
+  private synchronized void onBackendReady(AdapterClientWrapper adapterClientWrapper) {
+    this.adapterClientWrapper = adapterClientWrapper;
+    if (!options.getWriteCoalescingWindow().isZero()) {
+      writeCoalescer =
+          new WriteCoalescer(
+              adapterClientWrapper,
+              options.getWriteCoalescingWindow(),
+              options.getMaxWriteCoalescingBatchSize());
+      writeCoalescerMetricsName =
+          JmxMetrics.register("WriteCoalescer", options.getPort(), writeCoalescer);
+    }
+    if (options.getMaxBatchMutations() > 0) {
+      batchSplitter = new BatchSplitter(adapterClientWrapper, options.getMaxBatchMutations());
+      batchSplitterMetricsName =
+          JmxMetrics.register("BatchSplitter", options.getPort(), batchSplitter);
+    }
+  }
+
+  /** Shuts down the executors and releases what was set up by {@link #start}. */
+  private synchronized void releaseResources() {
+    if (connectionExecutor != null) {
+      connectionExecutor.shutdownNow();
+    }
+    if (rejectionExecutor != null) {
+      rejectionExecutor.shutdownNow();
+    }
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+    }
+    JmxMetrics.unregister(connectionExecutorMetricsName);
+    JmxMetrics.unregister(memoryBudgetMetricsName);
+    JmxMetrics.unregister(writeCoalescerMetricsName);
+    JmxMetrics.unregister(adaptiveCommitDelayMetricsName);
+    JmxMetrics.unregister(preparedResponseCacheMetricsName);
+    JmxMetrics.unregister(resultCacheMetricsName);
+    JmxMetrics.unregister(batchSplitterMetricsName);
+    if (trafficCapture != null) {
+      try {
+        trafficCapture.close();
+      } catch (IOException e) {
+        LOG.warn("Error closing the traffic capture", e);
+      }
+    }
+    if (heldConnections != null) {
+      for (Socket clientSocket : heldConnections) {
+        closeQuietly(clientSocket);
+      }
+      heldConnections = null;
+    }
+    if (backendReady != null) {
+      // With fast start, a client still being created is closed once it is.
+      backendReady.thenAccept(AdapterClientWrapper::close);
+    }
+  }
+
+  private void closeServerSocketQuietly() {
+    if (serverSocket == null) {
+      return;
+    }
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      LOG.warn("Error closing the server socket", e);
+    }
+  }
+
   private void acceptClientConnections() {
+    if (options.isFastStart()) {
+      backendReady.whenComplete(this::completeFastStart);
+    }
     try {
       while (!Thread.currentThread().isInterrupted()) {
         final Socket clientSocket = serverSocket.accept();
-        executor.execute(
-            new DriverConnectionHandler(clientSocket, adapterClientWrapper, maxCommitDelay));
+        if (!holdConnection(clientSocket)) {
+          connectionExecutor.execute(newConnectionHandler(clientSocket));
+        }
         LOG.debug("Accepted client connection from: {}", clientSocket.getRemoteSocketAddress());
       }
     } catch (SocketException e) {
@@ -189,6 +665,125 @@ final class Adapter {
     }
   }
 
+  /**
+   * Holds a connection accepted with fast start before the Spanner client is ready.
+   *
+   * @return Whether the connection was held, or {@code false} if it can be handled right away.
+   */
+  private synchronized boolean holdConnection(Socket clientSocket) {
+    if (heldConnections == null) {
+      return false;
+    }
+    heldConnections.add(clientSocket);
+    return true;
+  }
+
+  /**
+   * Completes a fast start once the Spanner client is created, handling the connections held until
+   * then, or stops the adapter if the client could not be created.
+   */
+  private void completeFastStart(
+      @Nullable AdapterClientWrapper adapterClientWrapper, @Nullable Throwable error) {
+    List<Socket> connections;
+    synchronized (this) {
+      if (serverSocket.isClosed()) {
+        // The adapter was stopped meanwhile.
+        return;
+      }
+      if (error != null) {
+        LOG.error("Failed to connect to Spanner, stopping the adapter", error);
+        started = false;
+        closeServerSocketQuietly();
+        releaseResources();
+        return;
+      }
+      onBackendReady(adapterClientWrapper);
+      connections = heldConnections;
+      heldConnections = null;
+    }
+    LOG.info("Adapter ready for database '{}'.", options.getDatabaseUri());
+    for (Socket clientSocket : connections) {
+      connectionExecutor.execute(newConnectionHandler(clientSocket));
+    }
+  }
+
+  private DriverConnectionHandler newConnectionHandler(Socket clientSocket) {
+    return new DriverConnectionHandler(
+        clientSocket,
+        adapterClientWrapper,
+        DriverConnectionHandler.Settings.newBuilder()
+            .maxCommitDelay(options.getMaxCommitDelay())
+            .maxStaleness(options.getMaxStaleness())
+            .maxFrameBytes(options.getMaxFrameBytes())
+            .trafficCapture(trafficCapture)
+            .responseSpool(
+                options.isStreamResponses()
+                    ? new ResponseSpool(options.getResponseSpillThresholdBytes())
+                    : null)
+            .memoryBudget(memoryBudget)
+            .writeCoalescer(writeCoalescer)
+            .adaptiveCommitDelay(adaptiveCommitDelay)
+            .configuredCommitDelay(configuredCommitDelay)
+            .preparedResponseCache(preparedResponseCache)
+            .resultCache(resultCache)
+            .pagePrefetcher(
+                prefetchExecutor != null
+                    ? new PagePrefetcher(
+                        adapterClientWrapper,
+                        prefetchExecutor,
+                        memoryBudget,
+                        options.getPrefetchPages())
+                    : null)
+            .batchSplitter(batchSplitter)
+            .build());
+  }
+
+  private static void closeQuietly(Socket clientSocket) {
+    try {
+      clientSocket.close();
+    } catch (IOException e) {
+      LOG.debug("Error closing a held client connection", e);
+    }
+  }
+
+  private void rejectClientConnection(Runnable connection) {
+    DriverConnectionHandler handler = (DriverConnectionHandler) connection;
+    try {
+      rejectionExecutor.execute(handler::rejectOverloaded);
+    } catch (RejectedExecutionException e) {
+      handler.closeQuietly();
+    }
+  }
+
+  private static Thread newDaemonThread(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private InstantiatingGrpcChannelProvider createChannelProvider() throws IOException {
+    GoogleCredentials credentials = GoogleCredentials.getApplicationDefault();
+
+    InstantiatingGrpcChannelProvider.Builder channelProviderBuilder =
+        AdapterSettings.defaultGrpcTransportProviderBuilder();
+
+    channelProviderBuilder
+        .setCredentials(credentials)
+        .setAllowNonDefaultServiceAccount(true)
+        .setChannelPoolSettings(
+            ChannelPoolSettings.staticallySized(options.getNumGrpcChannels()));
+
+    if (isEnableDirectPathXdsEnv()) {
+      channelProviderBuilder.setAttemptDirectPath(true);
+      // This will let the credentials try to fetch a hard-bound access token if the runtime
+      // environment supports it.
+      channelProviderBuilder.setAllowHardBoundTokenTypes(
+          Collections.singletonList(InstantiatingGrpcChannelProvider.HardBoundTokenTypes.ALTS));
+      channelProviderBuilder.setAttemptDirectPathXds();
+    }
+    return channelProviderBuilder.build();
+  }
+
   private static boolean isEnableDirectPathXdsEnv() {
     return Boolean.parseBoolean(System.getenv(ENV_VAR_GOOGLE_SPANNER_ENABLE_DIRECT_ACCESS));
   }
@@ -20,24 +20,33 @@ import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.serverErro
 
 import com.google.api.gax.rpc.ApiCallContext;
 import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.spanner.adapter.util.ErrorFrameTemplate;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.spanner.adapter.v1.AdaptMessageRequest;
 import com.google.spanner.adapter.v1.AdaptMessageResponse;
 import com.google.spanner.adapter.v1.AdapterClient;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** Wraps an {@link AdapterClient} to manage gRPC communication with the Adapter service. */
 final class AdapterClientWrapper {
   private static final Logger LOG = LoggerFactory.getLogger(AdapterClientWrapper.class);
+  private static final ErrorFrameTemplate MEMORY_BUDGET_EXHAUSTED =
+      ErrorFrameTemplate.overloaded(
+          "The Spanner Cassandra adapter is out of memory for in-flight responses.");
+  private static final ErrorFrameTemplate NO_RESPONSE =
+      ErrorFrameTemplate.serverError("No response received from the server.");
   private final AdapterClient adapterClient;
   private final AttachmentsCache attachmentsCache;
   private final SessionManager sessionManager;
+  @Nullable private final MemoryBudget memoryBudget;
 
   /**
    * Constructs a wrapper around the AdapterClient responsible for procession gRPC communication.
@@ -45,14 +54,25 @@ final class AdapterClientWrapper {
    * @param adapterClient Stub used to communicate with the Adapter service.
    * @param attachmentsCache The global cache for the attachments.
    * @param sessionManager The manager providing session for requests.
+   * @param memoryBudget The budget reserved by response chunks while they are received, or {@code
+   *     null} if response buffers are not limited.
    */
   AdapterClientWrapper(
       AdapterClient adapterClient,
       AttachmentsCache attachmentsCache,
-      SessionManager sessionManager) {
+      SessionManager sessionManager,
+      @Nullable MemoryBudget memoryBudget) {
     this.adapterClient = adapterClient;
     this.attachmentsCache = attachmentsCache;
     this.sessionManager = sessionManager;
+    this.memoryBudget = memoryBudget;
+  }
+
+  AdapterClientWrapper(
+      AdapterClient adapterClient,
+      AttachmentsCache attachmentsCache,
+      SessionManager sessionManager) {
+    this(adapterClient, attachmentsCache, sessionManager, null);
   }
 
   /**
@@ -67,51 +87,168 @@ final class AdapterClientWrapper {
   byte[] sendGrpcRequest(
       byte[] payload, Map<String, String> attachments, ApiCallContext context, int streamId) {
 
-    AdaptMessageRequest request =
-        AdaptMessageRequest.newBuilder()
-            .setName(sessionManager.getSession().getName())
-            .setProtocol("cassandra")
-            .putAllAttachments(attachments)
-            .setPayload(ByteString.copyFrom(payload))
-            .build();
+    AdaptMessageRequest request = createRequest(payload, attachments);
 
     List<ByteString> collectedPayloads = new ArrayList<>();
+    long reservedBytes = 0;
 
     try {
-      ServerStream<AdaptMessageResponse> serverStream =
-          adapterClient.adaptMessageCallable().call(request, context);
-      for (AdaptMessageResponse adaptMessageResponse : serverStream) {
-        adaptMessageResponse.getStateUpdatesMap().forEach(attachmentsCache::put);
-        collectedPayloads.add(adaptMessageResponse.getPayload());
+      try {
+        ServerStream<AdaptMessageResponse> serverStream =
+            adapterClient.adaptMessageCallable().call(request, context);
+        for (AdaptMessageResponse adaptMessageResponse : serverStream) {
+          adaptMessageResponse.getStateUpdatesMap().forEach(attachmentsCache::put);
+          ByteString chunk = adaptMessageResponse.getPayload();
+          if (!reserve(chunk.size())) {
+            serverStream.cancel();
+            return MEMORY_BUDGET_EXHAUSTED.forStream(streamId);
+          }
+          reservedBytes += chunk.size();
+          collectedPayloads.add(chunk);
+        }
+      } catch (RuntimeException e) {
+        LOG.error("Error executing AdaptMessage request: ", e);
+        // Any error in getting the AdaptMessageResponse should be reported back to the client.
+        return serverErrorResponse(streamId, e.getMessage());
       }
-    } catch (RuntimeException e) {
-      LOG.error("Error executing AdaptMessage request: ", e);
-      // Any error in getting the AdaptMessageResponse should be reported back to the client.
-      return serverErrorResponse(streamId, e.getMessage());
-    }
 
-    if (collectedPayloads.isEmpty()) {
-      return serverErrorResponse(
-          streamId, "No response received from the server."); // No response payloads at all.
-    }
+      if (collectedPayloads.isEmpty()) {
+        return NO_RESPONSE.forStream(streamId); // No response payloads at all.
+      }
 
-    try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
       final int numPayloads = collectedPayloads.size();
+      ByteString lastPayload = collectedPayloads.get(numPayloads - 1);
+      if (numPayloads == 1) {
+        return lastPayload.toByteArray();
+      }
+      // Copy the chunks once, into a response of their total size.
+      int responseSize = 0;
+      for (ByteString chunk : collectedPayloads) {
+        responseSize += chunk.size();
+      }
+      byte[] response = new byte[responseSize];
       // In case of multiple responses, the last response contains the header. So write it first.
-      outputStream.write(collectedPayloads.get(numPayloads - 1).toByteArray());
+      lastPayload.copyTo(response, 0);
+      int offset = lastPayload.size();
 
       // Then write the remaining responses.
       for (int i = 0; i < numPayloads - 1; i++) {
-        outputStream.write(collectedPayloads.get(i).toByteArray());
+        ByteString chunk = collectedPayloads.get(i);
+        chunk.copyTo(response, offset);
+        offset += chunk.size();
+      }
+      return response;
+    } finally {
+      release(reservedBytes);
+    }
+  }
+
+  /**
+   * Sends a gRPC request to the adapter to process a message, and writes the adapter's response to
+   * the given stream as soon as it is complete.
+   *
+   * <p>Unlike {@link #sendGrpcRequest}, the response is never copied into a single array: the
+   * chunks received before the last one, which carries the frame header, are held by the given
+   * spool, and written after the header.
+   *
+   * @param payload The byte array payload of the message to send.
+   * @param attachments A map of string key-value pairs to be included as attachments in the
+   *     request.
+   * @param streamId The stream id of the message to send.
+   * @param responseSpool The spool holding the response chunks until the header is received.
+   * @param outputStream The stream to write the response, or an error response, to.
+   * @throws IOException If the response could not be written to the output stream.
+   */
+  void streamGrpcRequest(
+      byte[] payload,
+      Map<String, String> attachments,
+      ApiCallContext context,
+      int streamId,
+      ResponseSpool responseSpool,
+      OutputStream outputStream)
+      throws IOException {
+
+    AdaptMessageRequest request = createRequest(payload, attachments);
+
+    ByteString lastPayload = null;
+    ServerStream<AdaptMessageResponse> serverStream = null;
+    long reservedBytes = 0;
+    try {
+      try {
+        serverStream = adapterClient.adaptMessageCallable().call(request, context);
+        for (AdaptMessageResponse adaptMessageResponse : serverStream) {
+          adaptMessageResponse.getStateUpdatesMap().forEach(attachmentsCache::put);
+          ByteString chunk = adaptMessageResponse.getPayload();
+          if (!reserve(chunk.size())) {
+            serverStream.cancel();
+            responseSpool.clear();
+            outputStream.write(MEMORY_BUDGET_EXHAUSTED.forStream(streamId));
+            return;
+          }
+          reservedBytes += chunk.size();
+          if (lastPayload != null) {
+            long spilledBytes = responseSpool.spilledSize();
+            responseSpool.add(lastPayload);
+            // Chunks spilled to disk no longer hold memory.
+            long spilledChunkBytes = responseSpool.spilledSize() - spilledBytes;
+            release(spilledChunkBytes);
+            reservedBytes -= spilledChunkBytes;
+          }
+          lastPayload = chunk;
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.error("Error executing AdaptMessage request: ", e);
+        if (serverStream != null) {
+          serverStream.cancel();
+        }
+        responseSpool.clear();
+        // Any error in getting the AdaptMessageResponse should be reported back to the client.
+        outputStream.write(serverErrorResponse(streamId, e.getMessage()));
+        return;
       }
-      return outputStream.toByteArray();
-    } catch (IOException e) {
-      LOG.error("Error stitching chunked payloads: ", e);
-      return serverErrorResponse(streamId, e.getMessage());
+
+      if (lastPayload == null) {
+        outputStream.write(NO_RESPONSE.forStream(streamId));
+        return;
+      }
+
+      // In case of multiple responses, the last response contains the header. So write it first.
+      lastPayload.writeTo(outputStream);
+      responseSpool.writeTo(outputStream);
+    } finally {
+      release(reservedBytes);
     }
   }
 
+  /**
+   * Closes the adapter client. Requests still in flight are completed, and no new request can be
+   * sent.
+   */
+  void close() {
+    adapterClient.close();
+  }
+
   AttachmentsCache getAttachmentsCache() {
     return attachmentsCache;
   }
+
+  private boolean reserve(long bytes) {
+    return memoryBudget == null || memoryBudget.tryAcquire(bytes);
+  }
+
+  private void release(long bytes) {
+    if (memoryBudget != null) {
+      memoryBudget.release(bytes);
+    }
+  }
+
+  private AdaptMessageRequest createRequest(byte[] payload, Map<String, String> attachments) {
+    return AdaptMessageRequest.newBuilder()
+        .setName(sessionManager.getSession().getName())
+        .setProtocol("cassandra")
+        .putAllAttachments(attachments)
+        // The payload is never modified once sent, so it needs no defensive copy.
+        .setPayload(UnsafeByteOperations.unsafeWrap(payload))
+        .build();
+  }
 }
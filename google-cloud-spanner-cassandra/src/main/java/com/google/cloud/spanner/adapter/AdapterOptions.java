@@ -0,0 +1,491 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.gax.rpc.TransportChannelProvider;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/** Immutable configuration of an {@link Adapter}. Use {@link #newBuilder()} to create one. */
+final class AdapterOptions {
+
+  static final long DEFAULT_TRAFFIC_CAPTURE_MAX_BYTES = 1L << 30; // 1 GiB
+  static final int DEFAULT_CORE_CONNECTION_THREADS = 8;
+  static final int DEFAULT_MAX_CONNECTION_THREADS = 1024;
+  static final int DEFAULT_CONNECTION_QUEUE_SIZE = 64;
+  static final long DEFAULT_RESPONSE_SPILL_THRESHOLD_BYTES = 16L << 20; // 16 MiB
+  static final int DEFAULT_MAX_FRAME_BYTES = 256 << 20; // 256 MiB, as in the Java driver
+  static final int DEFAULT_MAX_WRITE_COALESCING_BATCH_SIZE = 64;
+  static final Duration DEFAULT_WRITE_LATENCY_TARGET = Duration.ofMillis(100);
+  static final long DEFAULT_PREPARED_RESPONSE_CACHE_SIZE = 0;
+  static final Duration DEFAULT_PREPARED_RESPONSE_CACHE_TTL = Duration.ofMinutes(5);
+  static final int DEFAULT_MAX_BATCH_MUTATIONS = 0;
+  static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final String spannerEndpoint;
+  private final String databaseUri;
+  private final InetAddress inetAddress;
+  private final int port;
+  private final int numGrpcChannels;
+  private final Optional<Duration> maxCommitDelay;
+  private final Optional<Duration> maxStaleness;
+  @Nullable private final TransportChannelProvider channelProvider;
+  @Nullable private final Path trafficCaptureFile;
+  private final double trafficCaptureSampleRate;
+  private final long trafficCaptureMaxBytes;
+  private final int coreConnectionThreads;
+  private final int maxConnectionThreads;
+  private final int connectionQueueSize;
+  private final boolean streamResponses;
+  private final long responseSpillThresholdBytes;
+  private final int maxFrameBytes;
+  private final long memoryBudgetBytes;
+  private final Duration writeCoalescingWindow;
+  private final int maxWriteCoalescingBatchSize;
+  private final Optional<Duration> adaptiveMaxCommitDelay;
+  private final Duration writeLatencyTarget;
+  private final long preparedResponseCacheSize;
+  private final Duration preparedResponseCacheTtl;
+  private final Map<String, ResultCache.TableSettings> resultCacheTables;
+  private final int prefetchPages;
+  private final int maxBatchMutations;
+  private final boolean fastStart;
+  private final boolean usePlainText;
+  private final Duration drainTimeout;
+
+  private AdapterOptions(Builder builder) {
+    this.spannerEndpoint = builder.spannerEndpoint;
+    this.databaseUri = builder.databaseUri;
+    this.inetAddress = builder.inetAddress;
+    this.port = builder.port;
+    this.numGrpcChannels = builder.numGrpcChannels;
+    this.maxCommitDelay = builder.maxCommitDelay;
+    this.maxStaleness = builder.maxStaleness;
+    this.channelProvider = builder.channelProvider;
+    this.trafficCaptureFile = builder.trafficCaptureFile;
+    this.trafficCaptureSampleRate = builder.trafficCaptureSampleRate;
+    this.trafficCaptureMaxBytes = builder.trafficCaptureMaxBytes;
+    this.coreConnectionThreads = builder.coreConnectionThreads;
+    this.maxConnectionThreads = builder.maxConnectionThreads;
+    this.connectionQueueSize = builder.connectionQueueSize;
+    this.streamResponses = builder.streamResponses;
+    this.responseSpillThresholdBytes = builder.responseSpillThresholdBytes;
+    this.maxFrameBytes = builder.maxFrameBytes;
+    this.memoryBudgetBytes = builder.memoryBudgetBytes;
+    this.writeCoalescingWindow = builder.writeCoalescingWindow;
+    this.maxWriteCoalescingBatchSize = builder.maxWriteCoalescingBatchSize;
+    this.adaptiveMaxCommitDelay = builder.adaptiveMaxCommitDelay;
+    this.writeLatencyTarget = builder.writeLatencyTarget;
+    this.preparedResponseCacheSize = builder.preparedResponseCacheSize;
+    this.preparedResponseCacheTtl = builder.preparedResponseCacheTtl;
+    this.resultCacheTables = builder.resultCacheTables;
+    this.prefetchPages = builder.prefetchPages;
+    this.maxBatchMutations = builder.maxBatchMutations;
+    this.fastStart = builder.fastStart;
+    this.usePlainText = builder.usePlainText;
+    this.drainTimeout = builder.drainTimeout;
+  }
+
+  /** The default memory budget: half of the maximum heap size. */
+  static long defaultMemoryBudgetBytes() {
+    return Runtime.getRuntime().maxMemory() / 2;
+  }
+
+  static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** The Spanner endpoint, as {@code host:port}, the adapter sends requests to. */
+  String getSpannerEndpoint() {
+    return spannerEndpoint;
+  }
+
+  /** The URI of the Cloud Spanner database to connect to. */
+  String getDatabaseUri() {
+    return databaseUri;
+  }
+
+  /** The local address the adapter's server socket binds to. */
+  InetAddress getInetAddress() {
+    return inetAddress;
+  }
+
+  /** The local TCP port the adapter listens on. */
+  int getPort() {
+    return port;
+  }
+
+  /** The number of gRPC channels used to communicate with Spanner. */
+  int getNumGrpcChannels() {
+    return numGrpcChannels;
+  }
+
+  /** The max commit delay to set in write requests, if any. */
+  Optional<Duration> getMaxCommitDelay() {
+    return maxCommitDelay;
+  }
+
+  /**
+   * The staleness bound of reads at consistency level ONE or LOCAL_ONE, if they may be served
+   * stale.
+   */
+  Optional<Duration> getMaxStaleness() {
+    return maxStaleness;
+  }
+
+  /**
+   * A transport channel provider replacing the default authenticated Spanner channel pool, or
+   * {@code null} to use the default. Used to run the adapter against a local stand-in backend.
+   */
+  @Nullable
+  TransportChannelProvider getChannelProvider() {
+    return channelProvider;
+  }
+
+  /** The file to capture driver traffic to, or {@code null} if traffic capture is disabled. */
+  @Nullable
+  Path getTrafficCaptureFile() {
+    return trafficCaptureFile;
+  }
+
+  /** The fraction of QUERY, EXECUTE and BATCH frames recorded by traffic capture. */
+  double getTrafficCaptureSampleRate() {
+    return trafficCaptureSampleRate;
+  }
+
+  /** The size of the traffic capture log after which capture stops. */
+  long getTrafficCaptureMaxBytes() {
+    return trafficCaptureMaxBytes;
+  }
+
+  /** The number of connection threads kept alive even when idle. */
+  int getCoreConnectionThreads() {
+    return coreConnectionThreads;
+  }
+
+  /** The maximum number of connection threads, and thus of connections served concurrently. */
+  int getMaxConnectionThreads() {
+    return maxConnectionThreads;
+  }
+
+  /** The maximum number of accepted connections waiting for a connection thread. */
+  int getConnectionQueueSize() {
+    return connectionQueueSize;
+  }
+
+  /**
+   * Whether responses are streamed to drivers as soon as their last chunk is received, instead of
+   * being assembled in memory first.
+   */
+  boolean isStreamResponses() {
+    return streamResponses;
+  }
+
+  /**
+   * The number of bytes of a streamed response kept in memory per connection, beyond which
+   * response chunks are spilled to a temporary file.
+   */
+  long getResponseSpillThresholdBytes() {
+    return responseSpillThresholdBytes;
+  }
+
+  /** The maximum length of a request frame, header included. Longer frames are refused. */
+  int getMaxFrameBytes() {
+    return maxFrameBytes;
+  }
+
+  /**
+   * The number of bytes that in-flight request and response buffers may hold at once across all
+   * connections, or 0 if they are not limited.
+   */
+  long getMemoryBudgetBytes() {
+    return memoryBudgetBytes;
+  }
+
+  /**
+   * How long a prepared write waits for concurrent writes to be coalesced with into a batch, or
+   * zero if writes are not coalesced.
+   */
+  Duration getWriteCoalescingWindow() {
+    return writeCoalescingWindow;
+  }
+
+  /** The maximum number of writes coalesced into a batch. */
+  int getMaxWriteCoalescingBatchSize() {
+    return maxWriteCoalescingBatchSize;
+  }
+
+  /**
+   * The upper bound of the max commit delay tuned from the observed write load, if the max commit
+   * delay is adaptive.
+   */
+  Optional<Duration> getAdaptiveMaxCommitDelay() {
+    return adaptiveMaxCommitDelay;
+  }
+
+  /** The average write latency the adaptive max commit delay must keep writes within. */
+  Duration getWriteLatencyTarget() {
+    return writeLatencyTarget;
+  }
+
+  /** The maximum number of PREPARE responses cached, or 0 if they are not cached. */
+  long getPreparedResponseCacheSize() {
+    return preparedResponseCacheSize;
+  }
+
+  /** How long a PREPARE response is cached. */
+  Duration getPreparedResponseCacheTtl() {
+    return preparedResponseCacheTtl;
+  }
+
+  /** The tables whose read results are cached, by keyspace-qualified name. */
+  Map<String, ResultCache.TableSettings> getResultCacheTables() {
+    return resultCacheTables;
+  }
+
+  /** The maximum number of prefetched pages kept per connection, or 0 to disable prefetching. */
+  int getPrefetchPages() {
+    return prefetchPages;
+  }
+
+  /**
+   * The estimated number of mutations over which UNLOGGED batches are split, or 0 to never split
+   * them.
+   */
+  int getMaxBatchMutations() {
+    return maxBatchMutations;
+  }
+
+  /**
+   * Whether the adapter accepts connections as soon as its server socket is bound, their requests
+   * waiting for the Spanner client to be ready, instead of once it is.
+   */
+  boolean isFastStart() {
+    return fastStart;
+  }
+
+  /**
+   * Whether the Spanner endpoint is a local backend, such as a test server, reached without TLS
+   * and credentials.
+   */
+  boolean isUsePlainText() {
+    return usePlainText;
+  }
+
+  /**
+   * How long stopping the adapter waits for open connections to complete the requests they have in
+   * flight, after which they are closed.
+   */
+  Duration getDrainTimeout() {
+    return drainTimeout;
+  }
+
+  /** Builder for {@link AdapterOptions}. */
+  static final class Builder {
+    private String spannerEndpoint;
+    private String databaseUri;
+    private InetAddress inetAddress;
+    private int port;
+    private int numGrpcChannels;
+    private Optional<Duration> maxCommitDelay = Optional.empty();
+    private Optional<Duration> maxStaleness = Optional.empty();
+    @Nullable private TransportChannelProvider channelProvider;
+    @Nullable private Path trafficCaptureFile;
+    private double trafficCaptureSampleRate = 1.0;
+    private long trafficCaptureMaxBytes = DEFAULT_TRAFFIC_CAPTURE_MAX_BYTES;
+    private int coreConnectionThreads = DEFAULT_CORE_CONNECTION_THREADS;
+    private int maxConnectionThreads = DEFAULT_MAX_CONNECTION_THREADS;
+    private int connectionQueueSize = DEFAULT_CONNECTION_QUEUE_SIZE;
+    private boolean streamResponses;
+    private long responseSpillThresholdBytes = DEFAULT_RESPONSE_SPILL_THRESHOLD_BYTES;
+    private int maxFrameBytes = DEFAULT_MAX_FRAME_BYTES;
+    private long memoryBudgetBytes = defaultMemoryBudgetBytes();
+    private Duration writeCoalescingWindow = Duration.ZERO;
+    private int maxWriteCoalescingBatchSize = DEFAULT_MAX_WRITE_COALESCING_BATCH_SIZE;
+    private Optional<Duration> adaptiveMaxCommitDelay = Optional.empty();
+    private Duration writeLatencyTarget = DEFAULT_WRITE_LATENCY_TARGET;
+    private long preparedResponseCacheSize = DEFAULT_PREPARED_RESPONSE_CACHE_SIZE;
+    private Duration preparedResponseCacheTtl = DEFAULT_PREPARED_RESPONSE_CACHE_TTL;
+    private Map<String, ResultCache.TableSettings> resultCacheTables = Collections.emptyMap();
+    private int prefetchPages = 0;
+    private int maxBatchMutations = DEFAULT_MAX_BATCH_MUTATIONS;
+    private boolean fastStart;
+    private boolean usePlainText;
+    private Duration drainTimeout = DEFAULT_DRAIN_TIMEOUT;
+
+    private Builder() {}
+
+    Builder spannerEndpoint(String spannerEndpoint) {
+      this.spannerEndpoint = spannerEndpoint;
+      return this;
+    }
+
+    Builder databaseUri(String databaseUri) {
+      this.databaseUri = databaseUri;
+      return this;
+    }
+
+    Builder inetAddress(InetAddress inetAddress) {
+      this.inetAddress = inetAddress;
+      return this;
+    }
+
+    Builder port(int port) {
+      this.port = port;
+      return this;
+    }
+
+    Builder numGrpcChannels(int numGrpcChannels) {
+      this.numGrpcChannels = numGrpcChannels;
+      return this;
+    }
+
+    Builder maxCommitDelay(Optional<Duration> maxCommitDelay) {
+      this.maxCommitDelay = maxCommitDelay;
+      return this;
+    }
+
+    Builder maxStaleness(Optional<Duration> maxStaleness) {
+      this.maxStaleness = maxStaleness;
+      return this;
+    }
+
+    Builder channelProvider(@Nullable TransportChannelProvider channelProvider) {
+      this.channelProvider = channelProvider;
+      return this;
+    }
+
+    Builder trafficCaptureFile(@Nullable Path trafficCaptureFile) {
+      this.trafficCaptureFile = trafficCaptureFile;
+      return this;
+    }
+
+    Builder trafficCaptureSampleRate(double trafficCaptureSampleRate) {
+      this.trafficCaptureSampleRate = trafficCaptureSampleRate;
+      return this;
+    }
+
+    Builder trafficCaptureMaxBytes(long trafficCaptureMaxBytes) {
+      this.trafficCaptureMaxBytes = trafficCaptureMaxBytes;
+      return this;
+    }
+
+    Builder coreConnectionThreads(int coreConnectionThreads) {
+      this.coreConnectionThreads = coreConnectionThreads;
+      return this;
+    }
+
+    Builder maxConnectionThreads(int maxConnectionThreads) {
+      this.maxConnectionThreads = maxConnectionThreads;
+      return this;
+    }
+
+    Builder connectionQueueSize(int connectionQueueSize) {
+      this.connectionQueueSize = connectionQueueSize;
+      return this;
+    }
+
+    Builder streamResponses(boolean streamResponses) {
+      this.streamResponses = streamResponses;
+      return this;
+    }
+
+    Builder responseSpillThresholdBytes(long responseSpillThresholdBytes) {
+      this.responseSpillThresholdBytes = responseSpillThresholdBytes;
+      return this;
+    }
+
+    Builder maxFrameBytes(int maxFrameBytes) {
+      this.maxFrameBytes = maxFrameBytes;
+      return this;
+    }
+
+    Builder memoryBudgetBytes(long memoryBudgetBytes) {
+      this.memoryBudgetBytes = memoryBudgetBytes;
+      return this;
+    }
+
+    Builder writeCoalescingWindow(Duration writeCoalescingWindow) {
+      this.writeCoalescingWindow = writeCoalescingWindow;
+      return this;
+    }
+
+    Builder maxWriteCoalescingBatchSize(int maxWriteCoalescingBatchSize) {
+      this.maxWriteCoalescingBatchSize = maxWriteCoalescingBatchSize;
+      return this;
+    }
+
+    Builder adaptiveMaxCommitDelay(Optional<Duration> adaptiveMaxCommitDelay) {
+      this.adaptiveMaxCommitDelay = adaptiveMaxCommitDelay;
+      return this;
+    }
+
+    Builder writeLatencyTarget(Duration writeLatencyTarget) {
+      this.writeLatencyTarget = writeLatencyTarget;
+      return this;
+    }
+
+    Builder preparedResponseCacheSize(long preparedResponseCacheSize) {
+      this.preparedResponseCacheSize = preparedResponseCacheSize;
+      return this;
+    }
+
+    Builder preparedResponseCacheTtl(Duration preparedResponseCacheTtl) {
+      this.preparedResponseCacheTtl = preparedResponseCacheTtl;
+      return this;
+    }
+
+    Builder resultCacheTables(Map<String, ResultCache.TableSettings> resultCacheTables) {
+      this.resultCacheTables = resultCacheTables;
+      return this;
+    }
+
+    Builder prefetchPages(int prefetchPages) {
+      this.prefetchPages = prefetchPages;
+      return this;
+    }
+
+    Builder maxBatchMutations(int maxBatchMutations) {
+      this.maxBatchMutations = maxBatchMutations;
+      return this;
+    }
+
+    Builder fastStart(boolean fastStart) {
+      this.fastStart = fastStart;
+      return this;
+    }
+
+    Builder usePlainText(boolean usePlainText) {
+      this.usePlainText = usePlainText;
+      return this;
+    }
+
+    Builder drainTimeout(Duration drainTimeout) {
+      this.drainTimeout = drainTimeout;
+      return this;
+    }
+
+    AdapterOptions build() {
+      return new AdapterOptions(this);
+    }
+  }
+}
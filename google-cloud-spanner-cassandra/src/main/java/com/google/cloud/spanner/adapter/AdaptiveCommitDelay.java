@@ -0,0 +1,173 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Tunes the max commit delay attached to writes from their observed arrival rate and latency.
+ *
+ * <p>A max commit delay lets Spanner wait for other writes to commit them together, which raises
+ * write throughput at the cost of latency. It only pays off when enough writes arrive within the
+ * delay, so the delay is kept at zero under light load: when even the upper bound of the delay
+ * would not gather two writes on average. Under heavier load the delay grows additively, one tenth
+ * of its upper bound per interval, as long as the average write latency stays within the latency
+ * target, and is halved as soon as it exceeds it.
+ *
+ * <p>The rate and latency of writes are measured by the connections that send them, and the delay
+ * is adjusted once per interval, of one second, by the first write that completes after the
+ * interval elapsed.
+ */
+final class AdaptiveCommitDelay implements AdaptiveCommitDelayMXBean, CommitDelaySource {
+
+  private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // The average number of writes the upper bound of the delay must gather for a delay to be used.
+  private static final double MIN_WRITES_PER_DELAY = 2;
+  private static final int STEPS = 10;
+
+  private final long maxDelayMillis;
+  private final long stepMillis;
+  private final long latencyTargetNanos;
+  private final LongSupplier nanoTime;
+  private final LongAdder writes = new LongAdder();
+  private final LongAdder writeLatencyNanos = new LongAdder();
+  private final AtomicLong intervalStart;
+  private final AtomicLong adjustments = new AtomicLong();
+  private volatile Delay delay = new Delay(0);
+  private volatile double writesPerSecond;
+  private volatile double averageWriteLatencyMillis;
+
+  /**
+   * Constructor for AdaptiveCommitDelay.
+   *
+   * @param maxDelay The upper bound of the max commit delay.
+   * @param latencyTarget The average latency of writes the delay must keep them within.
+   */
+  AdaptiveCommitDelay(Duration maxDelay, Duration latencyTarget) {
+    this(maxDelay, latencyTarget, System::nanoTime);
+  }
+
+  AdaptiveCommitDelay(Duration maxDelay, Duration latencyTarget, LongSupplier nanoTime) {
+    this.maxDelayMillis = maxDelay.toMillis();
+    this.stepMillis = Math.max(1, maxDelayMillis / STEPS);
+    this.latencyTargetNanos = latencyTarget.toNanos();
+    this.nanoTime = nanoTime;
+    this.intervalStart = new AtomicLong(nanoTime.getAsLong());
+  }
+
+  /**
+   * Returns the current max commit delay, in milliseconds. The same instance is returned until the
+   * delay changes.
+   */
+  @Override
+  public String delayMillis() {
+    return delay.millis;
+  }
+
+  /** Returns the attachments of a write that isn't prepared, holding the current delay. */
+  @Override
+  public Map<String, String> attachments() {
+    return delay.attachments;
+  }
+
+  /** Returns the current time, to be passed to {@link #recordWrite} once the write completed. */
+  long startWrite() {
+    return nanoTime.getAsLong();
+  }
+
+  /**
+   * Records the completion of a write started at the given time, after adjusting the delay if the
+   * current interval elapsed.
+   */
+  void recordWrite(long startNanos) {
+    long now = nanoTime.getAsLong();
+    long start = intervalStart.get();
+    if (now - start >= INTERVAL_NANOS && intervalStart.compareAndSet(start, now)) {
+      long count = writes.sumThenReset();
+      long latencyNanos = writeLatencyNanos.sumThenReset();
+      adjust(
+          count * (double) TimeUnit.SECONDS.toNanos(1) / (now - start),
+          count == 0 ? 0 : latencyNanos / count);
+    }
+    writes.increment();
+    writeLatencyNanos.add(now - startNanos);
+  }
+
+  private void adjust(double writesPerSecond, long averageLatencyNanos) {
+    this.writesPerSecond = writesPerSecond;
+    this.averageWriteLatencyMillis =
+        averageLatencyNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    long current = delay.delayMillis;
+    long next;
+    if (writesPerSecond * maxDelayMillis / TimeUnit.SECONDS.toMillis(1) < MIN_WRITES_PER_DELAY) {
+      next = 0;
+    } else if (averageLatencyNanos > latencyTargetNanos) {
+      next = current / 2;
+    } else {
+      next = Math.min(maxDelayMillis, current + stepMillis);
+    }
+    if (next != current) {
+      delay = new Delay(next);
+      adjustments.incrementAndGet();
+    }
+  }
+
+  @Override
+  public long getCommitDelayMillis() {
+    return delay.delayMillis;
+  }
+
+  @Override
+  public long getMaxCommitDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  @Override
+  public double getWritesPerSecond() {
+    return writesPerSecond;
+  }
+
+  @Override
+  public double getAverageWriteLatencyMillis() {
+    return averageWriteLatencyMillis;
+  }
+
+  @Override
+  public long getAdjustmentCount() {
+    return adjustments.get();
+  }
+
+  /** A max commit delay, and its attachment value. */
+  private static final class Delay {
+    private final long delayMillis;
+    private final String millis;
+    private final Map<String, String> attachments;
+
+    private Delay(long delayMillis) {
+      this.delayMillis = delayMillis;
+      this.millis = String.valueOf(delayMillis);
+      this.attachments =
+          ImmutableMap.of(QueryIdAttachments.MAX_COMMIT_DELAY_ATTACHMENT_KEY, millis);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.core.InternalApi;
+
+/** State of the adaptive max commit delay of writes, exported over JMX. */
+@InternalApi
+public interface AdaptiveCommitDelayMXBean {
+
+  /** The max commit delay currently attached to writes, in milliseconds. */
+  long getCommitDelayMillis();
+
+  /** The upper bound of the max commit delay, in milliseconds. */
+  long getMaxCommitDelayMillis();
+
+  /** The rate of writes measured over the last interval, per second. */
+  double getWritesPerSecond();
+
+  /** The average latency of the writes of the last interval, in milliseconds. */
+  double getAverageWriteLatencyMillis();
+
+  /** The number of times the max commit delay was changed. */
+  long getAdjustmentCount();
+}
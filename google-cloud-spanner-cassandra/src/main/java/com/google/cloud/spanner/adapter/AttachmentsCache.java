@@ -19,6 +19,7 @@ package com.google.cloud.spanner.adapter;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * A thread-safe attachments cache maintained across all connections and requests.
@@ -59,4 +60,15 @@ final class AttachmentsCache {
   Optional<String> get(String key) {
     return Optional.ofNullable(cache.getIfPresent(key));
   }
+
+  /**
+   * Retrieves the value associated with the specified key from the cache, without allocating.
+   *
+   * @param key The key whose associated value is to be returned.
+   * @return The value associated with the key, or {@code null} if there is none.
+   */
+  @Nullable
+  String getIfPresent(String key) {
+    return cache.getIfPresent(key);
+  }
 }
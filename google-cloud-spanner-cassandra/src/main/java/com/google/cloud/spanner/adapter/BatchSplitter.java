@@ -0,0 +1,263 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import com.google.api.gax.rpc.ApiCallContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Splits UNLOGGED batches that exceed the mutation limit of a Spanner commit into batches within
+ * the limit, which are sent one after the other.
+ *
+ * <p>The mutations of a statement are estimated as its number of bound values, as Spanner counts
+ * a mutation for every column written, or as one for a statement without values. The statements of
+ * a batch are split in order, and a single statement over the limit makes a batch of its own.
+ *
+ * <p>The parts are sent in the order of the batch, each once the previous one was committed, as
+ * statements of the batch may write the same partition, and parts sent in parallel could commit a
+ * later write of a row before an earlier one. The parts following a failed part are not sent, and
+ * the response to a split batch is the error of the failed part, or the response of its first part
+ * if all succeeded. Like an UNLOGGED batch in Cassandra, a split batch is thus not atomic: the
+ * parts preceding a failed one are applied. LOGGED and COUNTER batches are never split. Instances
+ * are shared by all connections.
+ */
+final class BatchSplitter implements BatchSplitterMXBean {
+
+  private static final int HEADER_LENGTH = 9;
+  private static final int FLAGS_OFFSET = 1;
+  private static final int OPCODE_OFFSET = 4;
+  private static final int LENGTH_OFFSET = 5;
+  private static final int PROTOCOL_VERSION = 4;
+  private static final int CUSTOM_PAYLOAD_FLAG = 0x04;
+  private static final int UNLOGGED_BATCH_TYPE = 1;
+  private static final byte QUERY_KIND_STRING = 0;
+  private static final byte QUERY_KIND_PREPARED = 1;
+
+  private final AdapterClientWrapper adapterClientWrapper;
+  private volatile int maxBatchMutations;
+  private final AtomicLong splitBatches = new AtomicLong();
+  private final AtomicLong parts = new AtomicLong();
+
+  /**
+   * Constructor for BatchSplitter.
+   *
+   * @param adapterClientWrapper The adapter client wrapper used to send the parts of batches.
+   * @param maxBatchMutations The estimated number of mutations over which a batch is split.
+   */
+  BatchSplitter(AdapterClientWrapper adapterClientWrapper, int maxBatchMutations) {
+    this.adapterClientWrapper = adapterClientWrapper;
+    this.maxBatchMutations = maxBatchMutations;
+  }
+
+  /** Sets the estimated number of mutations over which the batches sent from now on are split. */
+  void setMaxBatchMutations(int maxBatchMutations) {
+    this.maxBatchMutations = maxBatchMutations;
+  }
+
+  /**
+   * Sends a protocol v4 batch request split into parts within the mutation limit, and returns the
+   * response to it, or {@code null} if the request is not an UNLOGGED batch over the limit and must
+   * be sent as it is.
+   *
+   * @param request The request.
+   * @param attachments The attachments to send the parts with.
+   * @param context The context to send the parts with.
+   * @param streamId The stream id of the request.
+   */
+  @Nullable
+  byte[] execute(
+      byte[] request, Map<String, String> attachments, ApiCallContext context, int streamId) {
+    List<byte[]> batches = split(request);
+    if (batches == null) {
+      return null;
+    }
+    splitBatches.incrementAndGet();
+    parts.addAndGet(batches.size());
+    byte[] combined = null;
+    for (byte[] batch : batches) {
+      byte[] part = adapterClientWrapper.sendGrpcRequest(batch, attachments, context, streamId);
+      if (combined == null || isVoid(combined)) {
+        combined = part;
+      }
+      if (isError(part)) {
+        // The following parts may write the same rows as the failed one, and are not sent so that
+        // none of their writes is applied without those that precede it in the batch.
+        break;
+      }
+    }
+    return combined;
+  }
+
+  @Override
+  public long getSplitBatchCount() {
+    return splitBatches.get();
+  }
+
+  @Override
+  public long getPartCount() {
+    return parts.get();
+  }
+
+  /**
+   * Returns the requests of the parts of a protocol v4 UNLOGGED batch request over the mutation
+   * limit, or {@code null} if the request is not one, or is not well formed.
+   */
+  @Nullable
+  private List<byte[]> split(byte[] request) {
+    if (request.length < HEADER_LENGTH
+        || request[0] != PROTOCOL_VERSION
+        || request[OPCODE_OFFSET] != Opcode.BATCH) {
+      return null;
+    }
+    int offset = HEADER_LENGTH;
+    if ((request[FLAGS_OFFSET] & CUSTOM_PAYLOAD_FLAG) != 0) {
+      // The custom payload, as [bytes map], precedes the message and is kept by every part.
+      offset = skipBytesMap(request, offset);
+    }
+    // A Batch message starts with its type, as [byte], followed by its queries as [short n] and n
+    // queries, each with its kind as [byte], a [long string] query or a [short bytes] query id, and
+    // its values as [short n] and n [value]. Its options follow the queries.
+    if (offset < 0 || offset + 3 > request.length || request[offset] != UNLOGGED_BATCH_TYPE) {
+      return null;
+    }
+    int messageOffset = offset;
+    int queryCount = getUnsignedShort(request, offset + 1);
+    offset += 3;
+    // Each value takes at least 4 bytes, which bounds the mutations of batches too small to split
+    // without scanning them.
+    if (queryCount + (request.length - offset) / 4 <= maxBatchMutations) {
+      return null;
+    }
+    int[] queryOffsets = new int[queryCount + 1];
+    int[] mutations = new int[queryCount];
+    int totalMutations = 0;
+    for (int i = 0; i < queryCount; i++) {
+      queryOffsets[i] = offset;
+      if (offset + 1 > request.length) {
+        return null;
+      }
+      byte kind = request[offset++];
+      if (kind == QUERY_KIND_STRING && offset + 4 <= request.length) {
+        offset += 4 + Math.max(getInt(request, offset), 0);
+      } else if (kind == QUERY_KIND_PREPARED && offset + 2 <= request.length) {
+        offset += 2 + getUnsignedShort(request, offset);
+      } else {
+        return null;
+      }
+      // Lengths that overflow make the offset negative.
+      if (offset < 0 || offset + 2 > request.length) {
+        return null;
+      }
+      int valueCount = getUnsignedShort(request, offset);
+      offset += 2;
+      for (int j = 0; j < valueCount; j++) {
+        if (offset < 0 || offset + 4 > request.length) {
+          return null;
+        }
+        offset += 4 + Math.max(getInt(request, offset), 0);
+      }
+      mutations[i] = Math.max(valueCount, 1);
+      totalMutations += mutations[i];
+    }
+    queryOffsets[queryCount] = offset;
+    if (totalMutations <= maxBatchMutations
+        || queryCount < 2
+        || offset < 0
+        || offset > request.length) {
+      return null;
+    }
+    List<byte[]> batches = new ArrayList<>();
+    int first = 0;
+    int partMutations = 0;
+    for (int i = 0; i < queryCount; i++) {
+      if (i > first && partMutations + mutations[i] > maxBatchMutations) {
+        batches.add(part(request, messageOffset, queryOffsets, first, i));
+        first = i;
+        partMutations = 0;
+      }
+      partMutations += mutations[i];
+    }
+    batches.add(part(request, messageOffset, queryOffsets, first, queryCount));
+    return batches;
+  }
+
+  /** Returns the request of the batch of the queries of a request from first to end, exclusive. */
+  private static byte[] part(
+      byte[] request, int messageOffset, int[] queryOffsets, int first, int end) {
+    int queriesLength = queryOffsets[end] - queryOffsets[first];
+    int optionsOffset = queryOffsets[queryOffsets.length - 1];
+    int optionsLength = request.length - optionsOffset;
+    byte[] part = new byte[messageOffset + 3 + queriesLength + optionsLength];
+    System.arraycopy(request, 0, part, 0, messageOffset + 1);
+    part[messageOffset + 1] = (byte) ((end - first) >>> 8);
+    part[messageOffset + 2] = (byte) (end - first);
+    System.arraycopy(request, queryOffsets[first], part, messageOffset + 3, queriesLength);
+    System.arraycopy(
+        request, optionsOffset, part, messageOffset + 3 + queriesLength, optionsLength);
+    int length = part.length - HEADER_LENGTH;
+    part[LENGTH_OFFSET] = (byte) (length >>> 24);
+    part[LENGTH_OFFSET + 1] = (byte) (length >>> 16);
+    part[LENGTH_OFFSET + 2] = (byte) (length >>> 8);
+    part[LENGTH_OFFSET + 3] = (byte) length;
+    return part;
+  }
+
+  /** Returns the offset following a [bytes map] at the given offset, or -1 if it overflows. */
+  private static int skipBytesMap(byte[] request, int offset) {
+    if (offset + 2 > request.length) {
+      return -1;
+    }
+    int entryCount = getUnsignedShort(request, offset);
+    offset += 2;
+    for (int i = 0; i < entryCount; i++) {
+      // The key, as [string], and the value, as [bytes].
+      if (offset + 2 > request.length) {
+        return -1;
+      }
+      offset += 2 + getUnsignedShort(request, offset);
+      if (offset + 4 > request.length) {
+        return -1;
+      }
+      offset += 4 + Math.max(getInt(request, offset), 0);
+    }
+    return offset;
+  }
+
+  private static boolean isError(byte[] response) {
+    return response.length > OPCODE_OFFSET && response[OPCODE_OFFSET] == Opcode.ERROR;
+  }
+
+  private static boolean isVoid(byte[] response) {
+    return response.length >= HEADER_LENGTH + 4
+        && response[OPCODE_OFFSET] == Opcode.RESULT
+        && getInt(response, HEADER_LENGTH) == ResultKind.VOID;
+  }
+
+  private static int getUnsignedShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return (getUnsignedShort(bytes, offset) << 16) | getUnsignedShort(bytes, offset + 2);
+  }
+}
@@ -0,0 +1,30 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.core.InternalApi;
+
+/** Activity of the splitting of oversized batches, exported over JMX. */
+@InternalApi
+public interface BatchSplitterMXBean {
+
+  /** The number of batches split because they exceeded the mutation limit. */
+  long getSplitBatchCount();
+
+  /** The number of batches sent in place of the split batches. */
+  long getPartCount();
+}
@@ -0,0 +1,479 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.servererrors.QueryValidationException;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads rows into a table with concurrent UNLOGGED batches of inserts, for example to migrate data
+ * from Cassandra.
+ *
+ * <p>Rows are grouped into batches that stay within Spanner's limits on the mutations and size of
+ * a commit, and up to a given number of batches are executed at once. Batches are idempotent and
+ * are retried with exponential backoff when they fail, except for invalid queries. The load stops
+ * at the first batch that still fails after its retries, and throws its error; as batches only
+ * insert, loading the same rows again is safe.
+ *
+ * <p>Values are bound to the bind markers of the insert query in order. Strings bound to columns of
+ * another type than text are parsed as CQL literals, so rows read from text formats such as CSV can
+ * be loaded as they are.
+ *
+ * <pre>{@code
+ * BulkLoader loader =
+ *     BulkLoader.newBuilder(session, "INSERT INTO ks.users (id, name) VALUES (?, ?)")
+ *         .setConcurrency(16)
+ *         .build();
+ * BulkLoader.Progress progress = loader.load(rows);
+ * }</pre>
+ */
+public final class BulkLoader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BulkLoader.class);
+  // Spanner allows 80,000 mutations per commit, which also counts the secondary index entries.
+  static final int DEFAULT_MAX_BATCH_MUTATIONS = 20_000;
+  static final int DEFAULT_MAX_BATCH_BYTES = 4 << 20;
+  static final int DEFAULT_CONCURRENCY = 8;
+  static final int DEFAULT_MAX_RETRIES = 5;
+  static final Duration DEFAULT_MAX_COMMIT_DELAY = Duration.ofMillis(100);
+  static final Duration DEFAULT_BATCH_TIMEOUT = Duration.ofSeconds(60);
+  static final Duration DEFAULT_PROGRESS_INTERVAL = Duration.ofSeconds(10);
+  private static final int LARGEST_MAX_COMMIT_DELAY_MILLIS = 500;
+  private static final long INITIAL_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = 10_000;
+  // The length of a bound value, which precedes it in the frame.
+  private static final int VALUE_OVERHEAD_BYTES = 4;
+
+  private final CqlSession session;
+  private final PreparedStatement insert;
+  private final CodecRegistry codecRegistry;
+  private final ProtocolVersion protocolVersion;
+  private final int maxBatchMutations;
+  private final int maxBatchBytes;
+  private final int concurrency;
+  private final int maxRetries;
+  private final Map<String, ByteBuffer> customPayload;
+  private final Duration batchTimeout;
+  private final Duration progressInterval;
+  private final Consumer<Progress> progressListener;
+
+  private BulkLoader(Builder builder) {
+    this.session = builder.session;
+    this.insert = session.prepare(builder.insertQuery);
+    this.codecRegistry = session.getContext().getCodecRegistry();
+    this.protocolVersion = session.getContext().getProtocolVersion();
+    this.maxBatchMutations = builder.maxBatchMutations;
+    this.maxBatchBytes = builder.maxBatchBytes;
+    this.concurrency = builder.concurrency;
+    this.maxRetries = builder.maxRetries;
+    this.customPayload =
+        builder.maxCommitDelay.isZero()
+            ? Collections.emptyMap()
+            : Collections.singletonMap(
+                RequestOverrides.MAX_COMMIT_DELAY_KEY,
+                ByteBuffer.wrap(
+                    String.valueOf(builder.maxCommitDelay.toMillis())
+                        .getBytes(StandardCharsets.UTF_8)));
+    this.batchTimeout = builder.batchTimeout;
+    this.progressInterval = builder.progressInterval;
+    this.progressListener = builder.progressListener;
+  }
+
+  /**
+   * Returns a builder of a loader.
+   *
+   * @param session The session the rows are inserted with.
+   * @param insertQuery The query inserting a row, with a bind marker for each value of a row.
+   */
+  public static Builder newBuilder(CqlSession session, String insertQuery) {
+    return new Builder(session, insertQuery);
+  }
+
+  /**
+   * Loads rows, and returns once all of them are inserted.
+   *
+   * @param rows The values of the rows, in the order of the bind markers of the insert query.
+   * @return The final progress of the load.
+   * @throws IllegalArgumentException If a row can't be bound to the insert query.
+   * @throws DriverException The error of a batch that failed after all its retries.
+   */
+  public Progress load(Stream<? extends List<?>> rows) {
+    Load load = new Load();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            concurrency,
+            new ThreadFactoryBuilder()
+                .setNameFormat("spanner-cassandra-bulk-loader-%d")
+                .setDaemon(true)
+                .build());
+    // Bounds the batches waiting for a thread, so that rows are read only as fast as they load.
+    Semaphore permits = new Semaphore(2 * concurrency);
+    try {
+      BatchStatementBuilder batch = newBatch();
+      int batchRows = 0;
+      int batchMutations = 0;
+      long batchBytes = 0;
+      Iterator<? extends List<?>> iterator = rows.iterator();
+      while (iterator.hasNext() && load.error.get() == null) {
+        List<?> row = iterator.next();
+        BoundStatement statement = bind(row);
+        int mutations = row.size();
+        long bytes = size(statement);
+        if (batchRows > 0
+            && (batchMutations + mutations > maxBatchMutations
+                || batchBytes + bytes > maxBatchBytes)) {
+          submit(executor, permits, load, batch.build(), batchRows);
+          batch = newBatch();
+          batchRows = 0;
+          batchMutations = 0;
+          batchBytes = 0;
+        }
+        batch.addStatement(statement);
+        batchRows++;
+        batchMutations += mutations;
+        batchBytes += bytes;
+      }
+      if (batchRows > 0 && load.error.get() == null) {
+        submit(executor, permits, load, batch.build(), batchRows);
+      }
+      permits.acquire(2 * concurrency);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading rows.", e);
+    } finally {
+      executor.shutdownNow();
+    }
+    Progress progress = load.progress();
+    progressListener.accept(progress);
+    if (load.error.get() != null) {
+      throw load.error.get();
+    }
+    return progress;
+  }
+
+  private BatchStatementBuilder newBatch() {
+    BatchStatementBuilder batch =
+        BatchStatement.builder(DefaultBatchType.UNLOGGED)
+            .setIdempotence(true)
+            .setTimeout(batchTimeout);
+    for (Map.Entry<String, ByteBuffer> entry : customPayload.entrySet()) {
+      batch = batch.addCustomPayload(entry.getKey(), entry.getValue());
+    }
+    return batch;
+  }
+
+  private void submit(
+      ExecutorService executor, Semaphore permits, Load load, BatchStatement batch, int rows)
+      throws InterruptedException {
+    permits.acquire();
+    executor.execute(
+        () -> {
+          try {
+            execute(load, batch);
+            load.rows.addAndGet(rows);
+            load.batches.incrementAndGet();
+            load.reportIfDue();
+          } catch (RuntimeException e) {
+            load.error.compareAndSet(null, e);
+          } finally {
+            permits.release();
+          }
+        });
+  }
+
+  private void execute(Load load, BatchStatement batch) {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        session.execute(batch);
+        return;
+      } catch (QueryValidationException e) {
+        throw e;
+      } catch (DriverException e) {
+        if (attempt >= maxRetries || load.error.get() != null) {
+          throw e;
+        }
+        load.retries.incrementAndGet();
+        long backoffMillis = Math.min(INITIAL_BACKOFF_MILLIS << attempt, MAX_BACKOFF_MILLIS);
+        LOG.debug("Retrying a batch in {} ms after: {}", backoffMillis, e.getMessage());
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private BoundStatement bind(List<?> row) {
+    ColumnDefinitions variables = insert.getVariableDefinitions();
+    if (row.size() != variables.size()) {
+      throw new IllegalArgumentException(
+          "Expected " + variables.size() + " values but got " + row.size() + ": " + row);
+    }
+    BoundStatementBuilder builder = insert.boundStatementBuilder();
+    for (int i = 0; i < row.size(); i++) {
+      DataType type = variables.get(i).getType();
+      Object value = row.get(i);
+      ByteBuffer bytes;
+      try {
+        if (value instanceof String
+            && !type.equals(DataTypes.TEXT)
+            && !type.equals(DataTypes.ASCII)) {
+          value = parse(type, (String) value);
+        }
+        bytes =
+            value == null
+                ? null
+                : codecRegistry.codecFor(type, value).encode(value, protocolVersion);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "Invalid value of " + variables.get(i).getName() + ": " + e.getMessage(), e);
+      }
+      builder = builder.setBytesUnsafe(i, bytes);
+    }
+    return builder.build();
+  }
+
+  @Nullable
+  private Object parse(DataType type, String value) {
+    TypeCodec<Object> codec = codecRegistry.codecFor(type);
+    try {
+      return codec.parse(value);
+    } catch (IllegalArgumentException e) {
+      // Literals such as dates and timestamps are only parsed when quoted.
+      try {
+        return codec.parse("'" + value.replace("'", "''") + "'");
+      } catch (IllegalArgumentException quotedException) {
+        throw e;
+      }
+    }
+  }
+
+  private static long size(BoundStatement statement) {
+    long size = 0;
+    for (ByteBuffer value : statement.getValues()) {
+      size += VALUE_OVERHEAD_BYTES + (value == null ? 0 : value.remaining());
+    }
+    return size;
+  }
+
+  /** The counters of a load in progress. */
+  private final class Load {
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong lastReportNanos = new AtomicLong(startNanos);
+    private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+
+    private void reportIfDue() {
+      long last = lastReportNanos.get();
+      long now = System.nanoTime();
+      if (now - last >= progressInterval.toNanos() && lastReportNanos.compareAndSet(last, now)) {
+        progressListener.accept(progress());
+      }
+    }
+
+    private Progress progress() {
+      Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+      return new Progress(rows.get(), batches.get(), retries.get(), elapsed);
+    }
+  }
+
+  /** The progress of a load. */
+  public static final class Progress {
+    private final long rows;
+    private final long batches;
+    private final long retries;
+    private final Duration elapsed;
+
+    Progress(long rows, long batches, long retries, Duration elapsed) {
+      this.rows = rows;
+      this.batches = batches;
+      this.retries = retries;
+      this.elapsed = elapsed;
+    }
+
+    /** Returns the number of rows loaded. */
+    public long getRows() {
+      return rows;
+    }
+
+    /** Returns the number of batches loaded. */
+    public long getBatches() {
+      return batches;
+    }
+
+    /** Returns the number of times a batch was retried. */
+    public long getRetries() {
+      return retries;
+    }
+
+    /** Returns the time since the load started. */
+    public Duration getElapsed() {
+      return elapsed;
+    }
+
+    /** Returns the average number of rows loaded per second. */
+    public double getRowsPerSecond() {
+      return elapsed.isZero() ? 0 : rows * 1e9 / elapsed.toNanos();
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d rows in %d batches loaded in %.1f s (%.0f rows/s, %d retries)",
+          rows, batches, elapsed.toMillis() / 1000.0, getRowsPerSecond(), retries);
+    }
+  }
+
+  /** A builder of {@link BulkLoader}. */
+  public static final class Builder {
+    private final CqlSession session;
+    private final String insertQuery;
+    private int maxBatchMutations = DEFAULT_MAX_BATCH_MUTATIONS;
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private Duration maxCommitDelay = DEFAULT_MAX_COMMIT_DELAY;
+    private Duration batchTimeout = DEFAULT_BATCH_TIMEOUT;
+    private Duration progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private Consumer<Progress> progressListener = progress -> LOG.info("{}", progress);
+
+    private Builder(CqlSession session, String insertQuery) {
+      this.session = session;
+      this.insertQuery = insertQuery;
+    }
+
+    /**
+     * Sets the maximum number of values of a batch, each of which is a mutation for Spanner.
+     * Defaults to 20000, which leaves room for the entries of secondary indexes within Spanner's
+     * limit of 80000 mutations per commit.
+     */
+    public Builder setMaxBatchMutations(int maxBatchMutations) {
+      if (maxBatchMutations <= 0) {
+        throw new IllegalArgumentException("Max batch mutations must be positive.");
+      }
+      this.maxBatchMutations = maxBatchMutations;
+      return this;
+    }
+
+    /** Sets the maximum size of the values of a batch, in bytes. Defaults to 4 MiB. */
+    public Builder setMaxBatchBytes(int maxBatchBytes) {
+      if (maxBatchBytes <= 0) {
+        throw new IllegalArgumentException("Max batch bytes must be positive.");
+      }
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    /** Sets the maximum number of batches executed at once. Defaults to 8. */
+    public Builder setConcurrency(int concurrency) {
+      if (concurrency <= 0) {
+        throw new IllegalArgumentException("Concurrency must be positive.");
+      }
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /** Sets the number of times a failed batch is retried. Defaults to 5. */
+    public Builder setMaxRetries(int maxRetries) {
+      if (maxRetries < 0) {
+        throw new IllegalArgumentException("Max retries must not be negative.");
+      }
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Sets the max commit delay of the batches, which trades their latency for throughput. Defaults
+     * to 100 ms; zero leaves the max commit delay of the session.
+     */
+    public Builder setMaxCommitDelay(Duration maxCommitDelay) {
+      if (maxCommitDelay.isNegative()
+          || maxCommitDelay.toMillis() > LARGEST_MAX_COMMIT_DELAY_MILLIS) {
+        throw new IllegalArgumentException(
+            "Max commit delay must be between 0 and "
+                + LARGEST_MAX_COMMIT_DELAY_MILLIS
+                + " milliseconds.");
+      }
+      this.maxCommitDelay = maxCommitDelay;
+      return this;
+    }
+
+    /** Sets the timeout of a batch. Defaults to 60 seconds. */
+    public Builder setBatchTimeout(Duration batchTimeout) {
+      if (batchTimeout.isNegative() || batchTimeout.isZero()) {
+        throw new IllegalArgumentException("Batch timeout must be positive.");
+      }
+      this.batchTimeout = batchTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the listener the progress of a load is reported to, at most once per interval and once
+     * it is over. Defaults to logging the progress every 10 seconds.
+     */
+    public Builder setProgressListener(Consumer<Progress> progressListener, Duration interval) {
+      this.progressListener = progressListener;
+      this.progressInterval = interval;
+      return this;
+    }
+
+    /**
+     * Builds the loader, preparing its insert query.
+     *
+     * @throws DriverException If the insert query can't be prepared.
+     */
+    public BulkLoader build() {
+      return new BulkLoader(this);
+    }
+  }
+}
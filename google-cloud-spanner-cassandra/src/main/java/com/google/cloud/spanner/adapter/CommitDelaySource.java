@@ -0,0 +1,34 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/** A max commit delay of writes that may change while connections are open. */
+interface CommitDelaySource {
+
+  /**
+   * Returns the current max commit delay, in milliseconds, or {@code null} if writes have none. The
+   * same instance is returned until the delay changes.
+   */
+  @Nullable
+  String delayMillis();
+
+  /** Returns the attachments of a write that isn't prepared, holding the current delay. */
+  Map<String, String> attachments();
+}
@@ -0,0 +1,77 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * The configured max commit delay of writes, shared by all connections so that it can be changed
+ * while they are open.
+ */
+final class ConfiguredCommitDelay implements CommitDelaySource {
+
+  private volatile Delay delay;
+
+  /**
+   * Constructor for ConfiguredCommitDelay.
+   *
+   * @param maxCommitDelay The max commit delay to set in writes, if any.
+   */
+  ConfiguredCommitDelay(Optional<Duration> maxCommitDelay) {
+    this.delay = new Delay(maxCommitDelay);
+  }
+
+  /** Sets the max commit delay of the writes sent from now on. */
+  void set(Optional<Duration> maxCommitDelay) {
+    delay = new Delay(maxCommitDelay);
+  }
+
+  Optional<Duration> get() {
+    return delay.maxCommitDelay;
+  }
+
+  @Nullable
+  @Override
+  public String delayMillis() {
+    return delay.millis;
+  }
+
+  @Override
+  public Map<String, String> attachments() {
+    return delay.attachments;
+  }
+
+  /** A max commit delay, and its attachment value. */
+  private static final class Delay {
+    private final Optional<Duration> maxCommitDelay;
+    @Nullable private final String millis;
+    private final Map<String, String> attachments;
+
+    private Delay(Optional<Duration> maxCommitDelay) {
+      this.maxCommitDelay = maxCommitDelay;
+      this.millis = maxCommitDelay.map(delay -> String.valueOf(delay.toMillis())).orElse(null);
+      this.attachments =
+          millis == null
+              ? ImmutableMap.of()
+              : ImmutableMap.of(QueryIdAttachments.MAX_COMMIT_DELAY_ATTACHMENT_KEY, millis);
+    }
+  }
+}
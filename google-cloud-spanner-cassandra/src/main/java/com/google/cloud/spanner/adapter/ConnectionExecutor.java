@@ -0,0 +1,221 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of named daemon threads serving driver connections, one thread per connection.
+ *
+ * <p>Unlike a plain {@link ThreadPoolExecutor}, which only grows beyond its core size once its
+ * queue is full, this pool first grows to its maximum size and only then queues connections, as a
+ * queued connection waits for another connection to close. Connections that find both the threads
+ * and the queue exhausted are handed to the rejection handler, which answers them with an
+ * overloaded error.
+ */
+final class ConnectionExecutor extends ThreadPoolExecutor implements ConnectionExecutorMXBean {
+
+  private final ConnectionQueue queue;
+  private final int queueCapacity;
+  private final AtomicInteger submitted = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+  // The connections being served.
+  private final Set<Runnable> running = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructor for ConnectionExecutor.
+   *
+   * @param threadNamePrefix The prefix of the names of the threads.
+   * @param coreThreads The number of threads kept alive even when idle.
+   * @param maxThreads The maximum number of threads.
+   * @param queueCapacity The maximum number of connections waiting for a thread.
+   * @param keepAlive How long threads above the core size are kept alive when idle.
+   * @param rejectionHandler Called with the connections that can neither run nor be queued.
+   */
+  ConnectionExecutor(
+      String threadNamePrefix,
+      int coreThreads,
+      int maxThreads,
+      int queueCapacity,
+      Duration keepAlive,
+      Consumer<Runnable> rejectionHandler) {
+    this(
+        threadNamePrefix,
+        coreThreads,
+        maxThreads,
+        queueCapacity,
+        keepAlive,
+        new ConnectionQueue(queueCapacity),
+        rejectionHandler);
+  }
+
+  private ConnectionExecutor(
+      String threadNamePrefix,
+      int coreThreads,
+      int maxThreads,
+      int queueCapacity,
+      Duration keepAlive,
+      ConnectionQueue queue,
+      Consumer<Runnable> rejectionHandler) {
+    super(
+        coreThreads,
+        maxThreads,
+        keepAlive.toNanos(),
+        TimeUnit.NANOSECONDS,
+        queue,
+        new ThreadFactoryBuilder().setNameFormat(threadNamePrefix + "-%d").setDaemon(true).build(),
+        new QueueOrReject(queue, rejectionHandler));
+    this.queue = queue;
+    this.queueCapacity = queueCapacity;
+    queue.executor = this;
+    ((QueueOrReject) getRejectedExecutionHandler()).executor = this;
+  }
+
+  /**
+   * Changes the number of threads kept alive and the maximum number of threads. Connections served
+   * by threads beyond the new maximum are served until they are closed.
+   */
+  void setPoolSizes(int coreThreads, int maxThreads) {
+    if (coreThreads < 0 || maxThreads <= 0 || coreThreads > maxThreads) {
+      throw new IllegalArgumentException(
+          "Invalid connection pool sizes: " + coreThreads + " core and " + maxThreads + " max.");
+    }
+    // The core size must not exceed the maximum size at any time.
+    if (maxThreads >= getCorePoolSize()) {
+      setMaximumPoolSize(maxThreads);
+      setCorePoolSize(coreThreads);
+    } else {
+      setCorePoolSize(coreThreads);
+      setMaximumPoolSize(maxThreads);
+    }
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    submitted.incrementAndGet();
+    super.execute(command);
+  }
+
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    running.add(r);
+  }
+
+  @Override
+  protected void afterExecute(Runnable r, Throwable t) {
+    running.remove(r);
+    submitted.decrementAndGet();
+  }
+
+  /**
+   * Stops taking connections, and returns the queued connections, which are removed from the queue
+   * and will not be served.
+   */
+  List<Runnable> shutdownQueued() {
+    shutdown();
+    List<Runnable> queued = new ArrayList<>();
+    queue.drainTo(queued);
+    return queued;
+  }
+
+  /** Returns the connections being served. */
+  List<Runnable> getRunningConnections() {
+    return new ArrayList<>(running);
+  }
+
+  @Override
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  @Override
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  @Override
+  public double getSaturation() {
+    return (double) getActiveCount() / getMaximumPoolSize();
+  }
+
+  /** A queue that refuses connections while the pool can still grow or an idle thread exists. */
+  private static final class ConnectionQueue extends LinkedBlockingQueue<Runnable> {
+    private final int capacity;
+    private ConnectionExecutor executor;
+
+    ConnectionQueue(int capacity) {
+      super(Math.max(1, capacity));
+      this.capacity = capacity;
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+      if (executor.submitted.get() <= executor.getPoolSize()) {
+        // An idle thread will pick it up right away, whatever the configured capacity.
+        return super.offer(runnable);
+      }
+      if (executor.getPoolSize() < executor.getMaximumPoolSize()) {
+        // Make the executor start a new thread.
+        return false;
+      }
+      return forceOffer(runnable);
+    }
+
+    boolean forceOffer(Runnable runnable) {
+      return capacity > 0 && super.offer(runnable);
+    }
+  }
+
+  /** Queues connections refused while growing the pool, and rejects them once it is full. */
+  private static final class QueueOrReject implements RejectedExecutionHandler {
+    private final ConnectionQueue queue;
+    private final Consumer<Runnable> rejectionHandler;
+    private ConnectionExecutor executor;
+
+    QueueOrReject(ConnectionQueue queue, Consumer<Runnable> rejectionHandler) {
+      this.queue = queue;
+      this.rejectionHandler = rejectionHandler;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor threadPoolExecutor) {
+      if (!threadPoolExecutor.isShutdown() && queue.forceOffer(runnable)) {
+        return;
+      }
+      executor.submitted.decrementAndGet();
+      executor.rejected.incrementAndGet();
+      rejectionHandler.accept(runnable);
+    }
+  }
+}
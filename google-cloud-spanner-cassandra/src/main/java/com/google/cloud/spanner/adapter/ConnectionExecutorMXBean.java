@@ -0,0 +1,54 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.core.InternalApi;
+
+/** Saturation metrics of the pool of threads serving driver connections, exported over JMX. */
+@InternalApi
+public interface ConnectionExecutorMXBean {
+
+  /** The number of threads kept alive even when idle. */
+  int getCorePoolSize();
+
+  /** The maximum number of threads, and thus of connections served concurrently. */
+  int getMaximumPoolSize();
+
+  /** The current number of threads. */
+  int getPoolSize();
+
+  /** The largest number of threads the pool has ever had. */
+  int getLargestPoolSize();
+
+  /** The number of threads currently serving a connection. */
+  int getActiveCount();
+
+  /** The number of accepted connections waiting for a thread. */
+  int getQueueSize();
+
+  /** The maximum number of accepted connections that can wait for a thread. */
+  int getQueueCapacity();
+
+  /** The number of connections served to completion. */
+  long getCompletedTaskCount();
+
+  /** The number of connections rejected with an overloaded error because the pool was full. */
+  long getRejectedCount();
+
+  /** The fraction of the maximum number of threads currently serving a connection. */
+  double getSaturation();
+}
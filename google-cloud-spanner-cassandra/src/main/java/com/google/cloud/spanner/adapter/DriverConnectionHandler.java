@@ -16,19 +16,27 @@ limitations under the License.
 
 package com.google.cloud.spanner.adapter;
 
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.protocolErrorResponse;
 import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.serverErrorResponse;
-import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.unpreparedResponse;
 import static com.google.cloud.spanner.adapter.util.StringUtils.startsWith;
 
 import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
 import com.datastax.oss.protocol.internal.Compressor;
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ConsistencyLevel;
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
 import com.datastax.oss.protocol.internal.request.Batch;
 import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
 import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Supported;
 import com.google.api.gax.grpc.GrpcCallContext;
 import com.google.api.gax.rpc.ApiCallContext;
+import com.google.cloud.spanner.adapter.util.ErrorFrameTemplate;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -42,11 +50,13 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,41 +65,147 @@ final class DriverConnectionHandler implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(DriverConnectionHandler.class);
   private static final int HEADER_LENGTH = 9;
-  private static final String PREPARED_QUERY_ID_ATTACHMENT_PREFIX = "pqid/";
-  private static final char WRITE_ACTION_QUERY_ID_PREFIX = 'W';
+  private static final int OPCODE_OFFSET = 4;
+  private static final int FLAGS_OFFSET = 1;
+  // The flags of request frames whose body can be scanned in place: only tracing, as custom
+  // payloads precede the message in the body.
+  private static final int SCANNABLE_FLAGS = 0x02;
+  private static final byte BATCH_QUERY_KIND_STRING = 0;
+  private static final byte BATCH_QUERY_KIND_PREPARED = 1;
+  private static final byte[] EOF_PAYLOAD = new byte[0];
+  private static final String MALFORMED_PAYLOAD_MESSAGE = "Payload is not well formed.";
+  private static final int SEGMENT_FRAMING_PROTOCOL_VERSION = 5;
+  private static final int REJECTION_READ_TIMEOUT_MILLIS = 1000;
   private static final String ROUTE_TO_LEADER_HEADER_KEY = "x-goog-spanner-route-to-leader";
-  private static final String MAX_COMMIT_DELAY_ATTACHMENT_KEY = "max_commit_delay";
+  private static final String MEMORY_BUDGET_EXHAUSTED_MESSAGE =
+      "The Spanner Cassandra adapter is out of memory for in-flight requests.";
+  private static final ErrorFrameTemplate MEMORY_BUDGET_EXHAUSTED =
+      ErrorFrameTemplate.overloaded(MEMORY_BUDGET_EXHAUSTED_MESSAGE);
+  private static final ErrorFrameTemplate TOO_MANY_CONNECTIONS =
+      ErrorFrameTemplate.overloaded("Too many connections to the Spanner Cassandra adapter.");
   private static final ByteBufAllocator byteBufAllocator = ByteBufAllocator.DEFAULT;
   private static final FrameCodec<ByteBuf> serverFrameCodec =
       FrameCodec.defaultServer(new ByteBufPrimitiveCodec(byteBufAllocator), Compressor.none());
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(new ByteBufPrimitiveCodec(byteBufAllocator), Compressor.none());
   private final Socket socket;
   private final AdapterClientWrapper adapterClientWrapper;
-  private final Optional<String> maxCommitDelayMillis;
+  // The attachments of writes that aren't prepared, precomputed as they only hold the max commit
+  // delay.
+  private final Map<String, String> writeAttachments;
+  @Nullable private final AdaptiveCommitDelay adaptiveCommitDelay;
+  // The shared max commit delay of writes, which supersedes writeAttachments, or null.
+  @Nullable private final CommitDelaySource commitDelay;
+  // The attachments of reads that may be served stale, or null if stale reads are disabled.
+  @Nullable private final Map<String, String> staleReadAttachments;
+  private final QueryIdAttachments queryIdAttachments;
   private final GrpcCallContext defaultContext;
   private final GrpcCallContext defaultContextWithLAR;
+  @Nullable private final TrafficCapture trafficCapture;
+  @Nullable private final ResponseSpool responseSpool;
+  @Nullable private final MemoryBudget memoryBudget;
+  private final int maxFrameBytes;
+  @Nullable private final WriteCoalescer writeCoalescer;
+  // The prepared write of the request being processed, if it is sent through the write coalescer.
+  @Nullable private QueryIdAttachments.Entry coalescedWrite;
+  @Nullable private final PreparedResponseCache preparedResponseCache;
+  // The keyspace of the connection, as last set by a USE query.
+  @Nullable private String keyspace;
+  // The keyspace and query being prepared by Spanner, whose response is to be cached.
+  @Nullable private String preparedKeyspace;
+  @Nullable private String preparedQuery;
+  // Whether the response to the request being processed may change the schema or the keyspace, in
+  // which case it is not streamed.
+  private boolean observedResponse;
+  @Nullable private final ResultCache resultCache;
+  // The cached table read by the request being processed, the key of its result and the
+  // generation of the table when it was sent.
+  @Nullable private ResultCache.Table cachedRead;
+  @Nullable private ByteBuffer cachedReadKey;
+  private long cachedReadGeneration;
+  // The cached tables written by the request being processed.
+  private final List<ResultCache.Table> writtenTables = new ArrayList<>();
+  @Nullable private final PagePrefetcher pagePrefetcher;
+  @Nullable private final BatchSplitter batchSplitter;
+  // Per-connection scratch objects, reused by every request so that the request path does not
+  // allocate beyond the frame itself.
+  private final byte[] header = new byte[HEADER_LENGTH];
+  private final PreparePayloadResult prepareResult;
+  // The bytes of the memory budget reserved by the request being processed.
+  private long reservedBytes;
+  private final int connectionId;
+  // Whether the connection was closed by the adapter while being served, after which nothing more
+  // is sent to Spanner for it.
+  private volatile boolean aborted;
+  // The framing negotiated by the driver, applied from the first frame after STARTUP.
+  @Nullable private FrameCompressor compressor;
+  @Nullable private SegmentFraming segmentFraming;
+  @Nullable private FrameCompressor pendingCompressor;
+  private boolean startupPending;
+  private int requestVersion = ProtocolVersionTranslator.SPANNER_PROTOCOL_VERSION;
   private static final Map<String, List<String>> ROUTE_TO_LEADER_HEADER_MAP =
       ImmutableMap.of(ROUTE_TO_LEADER_HEADER_KEY, Collections.singletonList("true"));
   private static final int defaultStreamId = -1;
+  private static final Map<String, String> EMPTY_ATTACHMENTS = Collections.emptyMap();
 
   /**
    * Constructor for DriverConnectionHandler.
    *
    * @param socket The client's socket.
    * @param adapterClientWrapper The adapter client wrapper used for gRPC communication.
-   * @param maxCommitDelay The max commit delay to set in requests to optimize write throughput.
+   * @param settings The settings of the connection and the adapter components it uses.
    */
   public DriverConnectionHandler(
-      Socket socket, AdapterClientWrapper adapterClientWrapper, Optional<Duration> maxCommitDelay) {
+      Socket socket, AdapterClientWrapper adapterClientWrapper, Settings settings) {
     this.socket = socket;
     this.adapterClientWrapper = adapterClientWrapper;
     this.defaultContext = GrpcCallContext.createDefault();
     this.defaultContextWithLAR =
         GrpcCallContext.createDefault().withExtraHeaders(ROUTE_TO_LEADER_HEADER_MAP);
-    if (maxCommitDelay.isPresent()) {
-      this.maxCommitDelayMillis = Optional.of(String.valueOf(maxCommitDelay.get().toMillis()));
-    } else {
-      this.maxCommitDelayMillis = Optional.empty();
-    }
+    Optional<String> maxCommitDelayMillis =
+        settings.maxCommitDelay.map(delay -> String.valueOf(delay.toMillis()));
+    this.writeAttachments =
+        maxCommitDelayMillis.isPresent()
+            ? ImmutableMap.of(
+                QueryIdAttachments.MAX_COMMIT_DELAY_ATTACHMENT_KEY, maxCommitDelayMillis.get())
+            : EMPTY_ATTACHMENTS;
+    Optional<String> maxStalenessMillis =
+        settings.maxStaleness.map(staleness -> String.valueOf(staleness.toMillis()));
+    this.staleReadAttachments =
+        maxStalenessMillis.isPresent()
+            ? ImmutableMap.of(
+                QueryIdAttachments.MAX_STALENESS_ATTACHMENT_KEY, maxStalenessMillis.get())
+            : null;
+    this.adaptiveCommitDelay = settings.adaptiveCommitDelay;
+    this.commitDelay =
+        settings.adaptiveCommitDelay != null
+            ? settings.adaptiveCommitDelay
+            : settings.configuredCommitDelay;
+    this.preparedResponseCache = settings.preparedResponseCache;
+    this.resultCache = settings.resultCache;
+    this.pagePrefetcher = settings.pagePrefetcher;
+    this.batchSplitter = settings.batchSplitter;
+    this.queryIdAttachments =
+        new QueryIdAttachments(
+            adapterClientWrapper.getAttachmentsCache(),
+            maxCommitDelayMillis,
+            maxStalenessMillis,
+            commitDelay);
+    this.prepareResult = new PreparePayloadResult(defaultContext, defaultStreamId);
+    this.trafficCapture = settings.trafficCapture;
+    this.connectionId = trafficCapture != null ? trafficCapture.newConnectionId() : 0;
+    this.responseSpool = settings.responseSpool;
+    this.memoryBudget = settings.memoryBudget;
+    this.maxFrameBytes = settings.maxFrameBytes;
+    this.writeCoalescer = settings.writeCoalescer;
+  }
+
+  public DriverConnectionHandler(
+      Socket socket, AdapterClientWrapper adapterClientWrapper, Optional<Duration> maxCommitDelay) {
+    this(
+        socket,
+        adapterClientWrapper,
+        Settings.newBuilder().maxCommitDelay(maxCommitDelay).build());
   }
 
   public DriverConnectionHandler(Socket socket, AdapterClientWrapper adapterClientWrapper) {
@@ -105,16 +221,87 @@ final class DriverConnectionHandler implements Runnable {
         BufferedOutputStream outputStream = new BufferedOutputStream(socket.getOutputStream())) {
       processRequestsLoop(inputStream, outputStream);
     } catch (IOException e) {
-      LOG.error(
-          "Exception handling connection from {}: {}",
-          socket.getRemoteSocketAddress(),
-          e.getMessage(),
-          e);
+      if (aborted) {
+        LOG.debug("Closed connection from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+      } else {
+        LOG.error(
+            "Exception handling connection from {}: {}",
+            socket.getRemoteSocketAddress(),
+            e.getMessage(),
+            e);
+      }
+    } finally {
+      closeQuietly();
+    }
+  }
+
+  /**
+   * Rejects the connection because the adapter is overloaded: answers its first request with an
+   * overloaded error, so that the driver backs off before reconnecting, and closes it.
+   */
+  void rejectOverloaded() {
+    LOG.warn(
+        "Rejecting connection from {}: all connection threads are busy.",
+        socket.getRemoteSocketAddress());
+    try {
+      socket.setSoTimeout(REJECTION_READ_TIMEOUT_MILLIS);
+      byte[] payload = constructPayload(new BufferedInputStream(socket.getInputStream()));
+      if (payload.length > 0) {
+        byte[] response = TOO_MANY_CONNECTIONS.forStream(streamId(payload));
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(
+            ProtocolVersionTranslator.toDriverResponse(
+                response, ProtocolVersionTranslator.version(payload)));
+        outputStream.flush();
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Error rejecting connection: {}", e.getMessage());
     } finally {
+      closeQuietly();
+    }
+  }
+
+  /**
+   * Stops reading requests from the driver. The request being processed and the requests already
+   * received are served, after which the connection is closed.
+   */
+  void drain() {
+    try {
+      socket.shutdownInput();
+    } catch (IOException e) {
+      LOG.debug("Error draining connection: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Closes the connection while it is being served. The request being processed is not answered,
+   * and the requests already received are not sent to Spanner.
+   */
+  void abort() {
+    aborted = true;
+    try {
+      socket.close();
+    } catch (IOException e) {
+      LOG.warn("Error closing socket: {}", e.getMessage());
+    }
+  }
+
+  /** Closes the connection without serving it. */
+  void closeQuietly() {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      LOG.warn("Error closing socket: {}", e.getMessage());
+    }
+    releaseReservedBytes();
+    if (pagePrefetcher != null) {
+      pagePrefetcher.close();
+    }
+    if (responseSpool != null) {
       try {
-        socket.close();
+        responseSpool.close();
       } catch (IOException e) {
-        LOG.warn("Error closing socket: {}", e.getMessage());
+        LOG.warn("Error closing response spool: {}", e.getMessage());
       }
     }
   }
@@ -127,27 +314,136 @@ final class DriverConnectionHandler implements Runnable {
       int streamId = defaultStreamId; // Initialize with a default value.
       try {
         // 1. Read and construct the payload from the input stream
-        byte[] payload = constructPayload(inputStream);
+        byte[] payload =
+            segmentFraming != null
+                ? segmentFraming.readFrame(inputStream)
+                : constructPayload(inputStream);
 
         // 2. Check for EOF signaled by an empty payload
         if (payload.length == 0) {
           break; // Break out of the loop gracefully in case of EOF
         }
+        // Frames buffered before the connection was closed are not sent.
+        if (aborted) {
+          break;
+        }
+        streamId = streamId(payload);
+        requestVersion = ProtocolVersionTranslator.version(payload);
+        if (!ProtocolVersionTranslator.isSupported(requestVersion)) {
+          releaseReservedBytes();
+          writeResponse(
+              outputStream,
+              protocolErrorResponse(
+                  streamId, ProtocolVersionTranslator.unsupportedVersionMessage(requestVersion)));
+          continue;
+        }
+        if (FrameCompressor.isCompressed(payload)) {
+          payload = decompressPayload(payload, streamId);
+        }
+        // Spanner speaks protocol v4, whatever the version negotiated by the driver.
+        try {
+          payload = ProtocolVersionTranslator.toSpannerRequest(payload);
+        } catch (IllegalArgumentException e) {
+          throw RejectedFrameException.unsupported(streamId, e.getMessage());
+        }
+        if (trafficCapture != null) {
+          trafficCapture.recordRequest(connectionId, System.nanoTime(), payload);
+        }
 
         // 3. Prepare the payload.
         PreparePayloadResult prepareResult = preparePayload(payload);
         streamId = prepareResult.getStreamId();
         Optional<byte[]> response = prepareResult.getAttachmentErrorResponse();
+        if (!response.isPresent() && cachedRead != null) {
+          response = cachedResult(payload, streamId);
+        }
+        // Pages of reads are prefetched after their previous page, whether or not it was itself.
+        boolean pagedRead =
+            pagePrefetcher != null
+                && prepareResult.getContext() == defaultContext
+                && (opcode(payload) == Opcode.QUERY || opcode(payload) == Opcode.EXECUTE);
+        if (!response.isPresent() && pagedRead) {
+          response = Optional.ofNullable(pagePrefetcher.take(payload, streamId));
+        }
 
         // 4. If attachment preparation didn't yield an immediate response, send the gRPC request.
         if (!response.isPresent()) {
-          responseToWrite =
-              adapterClientWrapper.sendGrpcRequest(
-                  payload, prepareResult.getAttachments(), prepareResult.getContext(), streamId);
+          payload = prepareResult.getPayload().orElse(payload);
+          boolean timedWrite =
+              adaptiveCommitDelay != null && prepareResult.getContext() == defaultContextWithLAR;
+          long writeStartNanos = timedWrite ? adaptiveCommitDelay.startWrite() : 0;
+          invalidateWrittenTables();
+          try {
+            byte[] splitBatchResponse =
+                batchSplitter != null && opcode(payload) == Opcode.BATCH
+                    ? batchSplitter.execute(
+                        payload,
+                        prepareResult.getAttachments(),
+                        prepareResult.getContext(),
+                        streamId)
+                    : null;
+            if (splitBatchResponse != null) {
+              responseToWrite = splitBatchResponse;
+            } else if (coalescedWrite != null) {
+              responseToWrite =
+                  writeCoalescer.execute(
+                      payload,
+                      coalescedWrite,
+                      prepareResult.getAttachments(),
+                      prepareResult.getContext(),
+                      streamId);
+            } else if (canStreamResponse(payload)) {
+              adapterClientWrapper.streamGrpcRequest(
+                  payload,
+                  prepareResult.getAttachments(),
+                  prepareResult.getContext(),
+                  streamId,
+                  responseSpool,
+                  outputStream);
+              outputStream.flush();
+              releaseReservedBytes();
+              continue;
+            } else {
+              responseToWrite =
+                  adapterClientWrapper.sendGrpcRequest(
+                      payload,
+                      prepareResult.getAttachments(),
+                      prepareResult.getContext(),
+                      streamId);
+              if (opcode(payload) == Opcode.OPTIONS
+                  && opcode(responseToWrite) == Opcode.SUPPORTED) {
+                responseToWrite = advertiseCompression(responseToWrite);
+              }
+            }
+          } finally {
+            // Streamed and failed writes are recorded as well, as they added to the load.
+            if (timedWrite) {
+              adaptiveCommitDelay.recordWrite(writeStartNanos);
+            }
+            // Reads sent while the write was in flight may have cached the previous rows, whether
+            // its response was streamed or not, and a failed write may still have been applied.
+            invalidateWrittenTables();
+          }
+          if (cachedRead != null) {
+            cachedRead.put(cachedReadKey, cachedReadGeneration, responseToWrite);
+          }
+          if (preparedResponseCache != null || resultCache != null) {
+            observeResponse(responseToWrite);
+          }
           // Now response holds the gRPC result, which might still be empty.
+          if (trafficCapture != null) {
+            trafficCapture.recordResponse(connectionId, payload, responseToWrite);
+          }
         } else {
           responseToWrite = response.get();
         }
+        if (pagedRead) {
+          pagePrefetcher.onResponse(
+              payload, responseToWrite, prepareResult.getAttachments(), prepareResult.getContext());
+        }
+      } catch (RejectedFrameException e) {
+        LOG.warn("Rejecting request: {}", e.getMessage());
+        responseToWrite = e.getResponse();
       } catch (RuntimeException e) {
         // 5. Handle any error during payload construction or attachment processing.
         // Create a server error response to send back to the client.
@@ -157,13 +453,117 @@ final class DriverConnectionHandler implements Runnable {
                 streamId, "Server error during request processing: " + e.getMessage());
       }
 
-      outputStream.write(responseToWrite);
-      outputStream.flush();
+      responseToWrite = ProtocolVersionTranslator.toDriverResponse(responseToWrite, requestVersion);
+      writeResponse(outputStream, responseToWrite);
+      releaseReservedBytes();
+
+      // The response to STARTUP itself is never compressed, nor wrapped in a segment.
+      if (startupPending) {
+        if (opcode(responseToWrite) != Opcode.ERROR) {
+          startNegotiatedFraming();
+        }
+        startupPending = false;
+        pendingCompressor = null;
+      }
+    }
+  }
+
+  private void writeResponse(OutputStream outputStream, byte[] response) throws IOException {
+    if (segmentFraming != null) {
+      segmentFraming.write(response);
+      // Responses to frames received in the same segment are sent in the same segment.
+      if (!segmentFraming.hasReceivedFrames()) {
+        segmentFraming.flush(outputStream);
+      }
+      return;
     }
+    outputStream.write(compressor != null ? compressor.compressFrame(response) : response);
+    outputStream.flush();
   }
 
-  private static int readNBytesJava8(InputStream in, byte[] b, int off, int len)
-      throws IOException {
+  /**
+   * Returns whether the response to the given request can be written to the driver as it is
+   * received, which requires that it is neither captured nor transformed before being written.
+   */
+  private boolean canStreamResponse(byte[] payload) {
+    int opcode = opcode(payload);
+    return responseSpool != null
+        && trafficCapture == null
+        && compressor == null
+        && segmentFraming == null
+        && !observedResponse
+        && cachedRead == null
+        && pagePrefetcher == null
+        && requestVersion <= ProtocolVersionTranslator.SPANNER_PROTOCOL_VERSION
+        && (opcode == Opcode.QUERY || opcode == Opcode.EXECUTE || opcode == Opcode.BATCH);
+  }
+
+  private void startNegotiatedFraming() {
+    if (requestVersion >= SEGMENT_FRAMING_PROTOCOL_VERSION) {
+      segmentFraming = new SegmentFraming(pendingCompressor, maxFrameBytes, this::reserveBytes);
+      LOG.debug("Negotiated protocol v{} segment framing.", requestVersion);
+    } else if (pendingCompressor != null) {
+      compressor = pendingCompressor;
+    }
+    if (pendingCompressor != null) {
+      LOG.debug("Negotiated {} compression.", pendingCompressor.algorithm());
+    }
+  }
+
+  private byte[] decompressPayload(byte[] payload, int streamId) {
+    if (compressor == null) {
+      throw new IllegalArgumentException(
+          "Received a compressed payload, but no compression was negotiated.");
+    }
+    // The decompressed frame is checked and reserved like any other before it is allocated.
+    long frameLength = compressor.uncompressedFrameLength(payload);
+    if (frameLength > maxFrameBytes) {
+      throw RejectedFrameException.tooLarge(streamId, frameLength, maxFrameBytes);
+    }
+    if (!reserveBytes(frameLength)) {
+      throw RejectedFrameException.overloaded(streamId);
+    }
+    return compressor.decompressFrame(payload, maxFrameBytes);
+  }
+
+  private static int streamId(byte[] frame) {
+    return (short) (((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF));
+  }
+
+  private static int opcode(byte[] frame) {
+    return frame.length >= HEADER_LENGTH ? frame[OPCODE_OFFSET] : -1;
+  }
+
+  /**
+   * Adds the compression algorithms that the adapter supports to a SUPPORTED response. Compression
+   * is handled by the adapter, and never forwarded to Spanner.
+   */
+  private static byte[] advertiseCompression(byte[] response) {
+    List<String> algorithms = FrameCompressor.supportedAlgorithms();
+    if (algorithms.isEmpty()) {
+      return response;
+    }
+    ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
+    Frame frame = clientFrameCodec.decode(responseBuf);
+    responseBuf.release();
+    Map<String, List<String>> options = new HashMap<>(((Supported) frame.message).options);
+    options.put(Startup.COMPRESSION_KEY, algorithms);
+    Frame supportedFrame =
+        Frame.forResponse(
+            frame.protocolVersion,
+            frame.streamId,
+            frame.tracingId,
+            frame.customPayload,
+            frame.warnings,
+            new Supported(options));
+    ByteBuf supportedBuf = serverFrameCodec.encode(supportedFrame);
+    byte[] supported = new byte[supportedBuf.readableBytes()];
+    supportedBuf.readBytes(supported);
+    supportedBuf.release();
+    return supported;
+  }
+
+  static int readNBytesJava8(InputStream in, byte[] b, int off, int len) throws IOException {
     if (off < 0 || len < 0 || len > b.length - off) {
       throw new IndexOutOfBoundsException(
           String.format("offset %d, length %d, buffer length %d", off, len, b.length));
@@ -197,39 +597,91 @@ final class DriverConnectionHandler implements Runnable {
     return totalBytesRead;
   }
 
-  private byte[] constructPayload(InputStream socketInputStream)
+  @VisibleForTesting
+  byte[] constructPayload(InputStream socketInputStream)
       throws IOException, IllegalArgumentException {
-    byte[] header = new byte[HEADER_LENGTH];
     int bytesRead = readNBytesJava8(socketInputStream, header, 0, HEADER_LENGTH);
     if (bytesRead == 0) {
       // EOF
-      return new byte[0];
+      return EOF_PAYLOAD;
     } else if (bytesRead < HEADER_LENGTH) {
-      throw new IllegalArgumentException("Payload is not well formed.");
+      throw new IllegalArgumentException(MALFORMED_PAYLOAD_MESSAGE);
     }
 
     // Extract the body length from the header.
     int bodyLength = load32BigEndian(header, 5);
 
     if (bodyLength < 0) {
-      throw new IllegalArgumentException("Payload is not well formed.");
+      throw new IllegalArgumentException(MALFORMED_PAYLOAD_MESSAGE);
     }
 
-    byte[] body = new byte[bodyLength];
-    if (readNBytesJava8(socketInputStream, body, 0, bodyLength) < bodyLength) {
-      throw new IllegalArgumentException("Payload is not well formed.");
+    // Refuse frames that are too big before allocating them, and skip their body to keep the
+    // connection usable.
+    long frameLength = (long) HEADER_LENGTH + bodyLength;
+    if (frameLength > maxFrameBytes) {
+      skipFully(socketInputStream, bodyLength);
+      throw RejectedFrameException.tooLarge(streamId(header), frameLength, maxFrameBytes);
+    }
+    if (!reserveBytes(frameLength)) {
+      skipFully(socketInputStream, bodyLength);
+      throw RejectedFrameException.overloaded(streamId(header));
     }
 
-    // Combine the header and body into the payload.
+    // Read the body right after the header in the payload.
     byte[] payload = new byte[HEADER_LENGTH + bodyLength];
     System.arraycopy(header, 0, payload, 0, HEADER_LENGTH);
-    System.arraycopy(body, 0, payload, HEADER_LENGTH, bodyLength);
+    if (readNBytesJava8(socketInputStream, payload, HEADER_LENGTH, bodyLength) < bodyLength) {
+      throw new IllegalArgumentException(MALFORMED_PAYLOAD_MESSAGE);
+    }
 
     return payload;
   }
 
-  private int load32BigEndian(byte[] bytes, int offset) {
-    return ByteBuffer.wrap(bytes, offset, 4).getInt();
+  /** Returns the error message for a request frame longer than the maximum frame length. */
+  static String frameTooLargeMessage(long frameLength, int maxFrameBytes) {
+    return String.format(
+        "Request is too big: length %d exceeds maximum allowed length %d.",
+        frameLength, maxFrameBytes);
+  }
+
+  private static void skipFully(InputStream inputStream, long length) throws IOException {
+    long remaining = length;
+    while (remaining > 0) {
+      long skipped = inputStream.skip(remaining);
+      if (skipped <= 0) {
+        // skip() may return 0 before the end of the stream, so check it with a read.
+        if (inputStream.read() < 0) {
+          throw new IllegalArgumentException(MALFORMED_PAYLOAD_MESSAGE);
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+  }
+
+  private boolean reserveBytes(long bytes) {
+    if (memoryBudget == null) {
+      return true;
+    }
+    if (!memoryBudget.tryAcquire(bytes)) {
+      return false;
+    }
+    reservedBytes += bytes;
+    return true;
+  }
+
+  private void releaseReservedBytes() {
+    if (memoryBudget != null && reservedBytes > 0) {
+      memoryBudget.release(reservedBytes);
+      reservedBytes = 0;
+    }
+  }
+
+  private static int load32BigEndian(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 24)
+        | ((bytes[offset + 1] & 0xFF) << 16)
+        | ((bytes[offset + 2] & 0xFF) << 8)
+        | (bytes[offset + 3] & 0xFF);
   }
 
   /**
@@ -242,90 +694,611 @@ final class DriverConnectionHandler implements Runnable {
    * query to the attachments map. If a prepared query is not found, it sets an error in the result
    * object.
    *
+   * <p>Query, Execute and Batch messages are scanned in place rather than decoded, and their result
+   * reuses the objects of the connection, so that preparing them does not allocate once their
+   * query ids have been seen. The result is only valid until the next payload is prepared.
+   *
    * @param payload The payload to process.
    * @return A {@link PreparePayloadResult} containing the result of the operation.
    */
-  private PreparePayloadResult preparePayload(byte[] payload) {
+  @VisibleForTesting
+  PreparePayloadResult preparePayload(byte[] payload) {
+    coalescedWrite = null;
+    preparedQuery = null;
+    observedResponse = false;
+    cachedRead = null;
+    writtenTables.clear();
+    if (isScannable(payload)) {
+      switch (payload[OPCODE_OFFSET]) {
+        case Opcode.EXECUTE:
+          return prepareExecuteFrame(payload);
+        case Opcode.BATCH:
+          return prepareBatchFrame(payload);
+        case Opcode.QUERY:
+          return prepareQueryFrame(payload);
+        default:
+          break;
+      }
+    }
+
     ByteBuf payloadBuf = Unpooled.wrappedBuffer(payload);
     Frame frame = serverFrameCodec.decode(payloadBuf);
     payloadBuf.release();
 
-    Map<String, String> attachments = new HashMap<>();
     if (frame.message instanceof Execute) {
-      return prepareExecuteMessage((Execute) frame.message, frame.streamId, attachments);
+      Execute execute = (Execute) frame.message;
+      return withCustomPayload(
+          frame,
+          prepareExecute(
+              frame.streamId,
+              queryIdAttachments.lookup(execute.queryId, 0, execute.queryId.length),
+              execute.options.consistency));
     } else if (frame.message instanceof Batch) {
-      return prepareBatchMessage((Batch) frame.message, frame.streamId, attachments);
+      return withCustomPayload(frame, prepareBatchMessage((Batch) frame.message, frame.streamId));
     } else if (frame.message instanceof Query) {
-      return prepareQueryMessage((Query) frame.message, frame.streamId, attachments);
+      Query query = (Query) frame.message;
+      if (resultCache != null && !startsWith(query.query, "SELECT")) {
+        byte[] text = query.query.getBytes(StandardCharsets.UTF_8);
+        resultCache.addMentionedTables(text, 0, text.length, writtenTables);
+      }
+      return withCustomPayload(
+          frame,
+          prepareQuery(
+              frame.streamId, startsWith(query.query, "SELECT"), query.options.consistency));
+    } else if (frame.message instanceof Prepare
+        && (preparedResponseCache != null || resultCache != null)) {
+      return preparePrepare(frame.streamId, (Prepare) frame.message);
+    } else if (frame.message instanceof Startup) {
+      return prepareStartupMessage(frame);
     } else {
       return new PreparePayloadResult(defaultContext, frame.streamId);
     }
   }
 
-  private PreparePayloadResult prepareExecuteMessage(
-      Execute message, int streamId, Map<String, String> attachments) {
-    ApiCallContext context;
-    if (message.queryId != null
-        && message.queryId.length > 0
-        && message.queryId[0] == WRITE_ACTION_QUERY_ID_PREFIX) {
-      context = defaultContextWithLAR;
-      if (maxCommitDelayMillis.isPresent()) {
-        attachments.put(MAX_COMMIT_DELAY_ATTACHMENT_KEY, maxCommitDelayMillis.get());
+  /**
+   * Applies the per-request overrides carried in the custom payload of a Query, Execute or Batch
+   * frame to the attachments of its prepared result. Frames with a custom payload are always
+   * decoded, so the scan path never needs to.
+   */
+  private PreparePayloadResult withCustomPayload(Frame frame, PreparePayloadResult result) {
+    if (frame.customPayload.isEmpty() || result.getAttachmentErrorResponse().isPresent()) {
+      return result;
+    }
+    ApiCallContext context = result.getContext();
+    try {
+      Map<String, String> attachments =
+          RequestOverrides.apply(
+              result.getAttachments(), frame.customPayload, context == defaultContextWithLAR);
+      return prepareResult.reset(context, frame.streamId, attachments, Optional.empty());
+    } catch (IllegalArgumentException e) {
+      return prepareResult.reset(
+          context,
+          frame.streamId,
+          EMPTY_ATTACHMENTS,
+          Optional.of(protocolErrorResponse(frame.streamId, e.getMessage())));
+    }
+  }
+
+  /** Returns whether the message of the given request frame can be read without decoding it. */
+  private static boolean isScannable(byte[] payload) {
+    return payload.length >= HEADER_LENGTH
+        && ProtocolVersionTranslator.version(payload)
+            <= ProtocolVersionTranslator.SPANNER_PROTOCOL_VERSION
+        && (payload[FLAGS_OFFSET] & ~SCANNABLE_FLAGS) == 0;
+  }
+
+  private PreparePayloadResult prepareExecuteFrame(byte[] payload) {
+    // An Execute message starts with the query id, as [short bytes], followed by the consistency
+    // level, as [short].
+    int queryIdLength = readUnsignedShort(payload, HEADER_LENGTH);
+    int queryIdOffset = checkAvailable(payload, HEADER_LENGTH + 2, queryIdLength);
+    return prepareExecute(
+        streamId(payload),
+        queryIdAttachments.lookup(payload, queryIdOffset, queryIdLength),
+        readUnsignedShort(payload, queryIdOffset + queryIdLength));
+  }
+
+  private PreparePayloadResult prepareExecute(
+      int streamId, QueryIdAttachments.Entry queryId, int consistency) {
+    ApiCallContext context = queryId.isWrite() ? defaultContextWithLAR : defaultContext;
+    if (!queryId.isPrepared()) {
+      return unprepared(context, streamId, queryId);
+    }
+    if (writeCoalescer != null && queryId.isWrite()) {
+      coalescedWrite = queryId;
+    }
+    if (resultCache != null) {
+      ResultCache.Table table = resultCache.table(queryId.key());
+      if (table != null && queryId.isWrite()) {
+        writtenTables.add(table);
+      } else {
+        cachedRead = table;
+      }
+    }
+    Map<String, String> attachments =
+        isStaleRead(consistency) ? queryId.staleReadAttachments() : queryId.executeAttachments();
+    return prepareResult.reset(context, streamId, attachments, Optional.empty());
+  }
+
+  /**
+   * Returns whether a read at the given consistency level may be served stale: reads at ONE or
+   * LOCAL_ONE only ask for a single replica, so they are served by the nearest replica within the
+   * staleness bound, while reads at any other level remain strong.
+   */
+  private boolean isStaleRead(int consistency) {
+    return staleReadAttachments != null
+        && (consistency == ConsistencyLevel.ONE || consistency == ConsistencyLevel.LOCAL_ONE);
+  }
+
+  private PreparePayloadResult prepareBatchFrame(byte[] payload) {
+    int streamId = streamId(payload);
+    // A Batch message starts with its type, as [byte], followed by its queries as [short n] and n
+    // queries, each with its kind as [byte], a [long string] query or a [short bytes] query id, and
+    // its values as [short n] and n [value].
+    int offset = checkAvailable(payload, HEADER_LENGTH, 1) + 1;
+    int queryCount = readUnsignedShort(payload, offset);
+    offset += 2;
+    QueryIdAttachments.Entry firstQueryId = null;
+    Map<String, String> attachments = null;
+    for (int i = 0; i < queryCount; i++) {
+      byte kind = payload[checkAvailable(payload, offset, 1)];
+      offset++;
+      if (kind == BATCH_QUERY_KIND_STRING) {
+        int queryLength = readInt(payload, offset);
+        int queryOffset = checkAvailable(payload, offset + 4, queryLength);
+        if (resultCache != null) {
+          resultCache.addMentionedTables(payload, queryOffset, queryLength, writtenTables);
+        }
+        offset = queryOffset + queryLength;
+      } else if (kind == BATCH_QUERY_KIND_PREPARED) {
+        int queryIdLength = readUnsignedShort(payload, offset);
+        int queryIdOffset = checkAvailable(payload, offset + 2, queryIdLength);
+        offset = queryIdOffset + queryIdLength;
+        // Batches usually repeat the same statement, which only needs to be looked up once.
+        if (firstQueryId == null || !firstQueryId.matches(payload, queryIdOffset, queryIdLength)) {
+          QueryIdAttachments.Entry queryId =
+              queryIdAttachments.lookup(payload, queryIdOffset, queryIdLength);
+          if (!queryId.isPrepared()) {
+            return unprepared(defaultContextWithLAR, streamId, queryId);
+          }
+          addWrittenTable(queryId);
+          if (firstQueryId == null) {
+            firstQueryId = queryId;
+          } else {
+            attachments = addBatchAttachment(attachments, firstQueryId, queryId);
+          }
+        }
+      } else {
+        throw new IllegalArgumentException(MALFORMED_PAYLOAD_MESSAGE);
+      }
+      int valueCount = readUnsignedShort(payload, offset);
+      offset += 2;
+      for (int j = 0; j < valueCount; j++) {
+        int valueLength = readInt(payload, offset);
+        offset += 4;
+        if (valueLength > 0) {
+          offset = checkAvailable(payload, offset, valueLength) + valueLength;
+        }
       }
-    } else {
-      context = defaultContext;
     }
-    Optional<byte[]> errorResponse =
-        prepareAttachmentForQueryId(streamId, attachments, message.queryId);
-    return new PreparePayloadResult(context, streamId, attachments, errorResponse);
+    return prepareBatch(streamId, firstQueryId, attachments);
   }
 
-  private PreparePayloadResult prepareBatchMessage(
-      Batch message, int streamId, Map<String, String> attachments) {
-    Optional<byte[]> attachmentErrorResponse = Optional.empty();
+  private PreparePayloadResult prepareBatchMessage(Batch message, int streamId) {
+    QueryIdAttachments.Entry firstQueryId = null;
+    Map<String, String> attachments = null;
     for (Object obj : message.queriesOrIds) {
       if (obj instanceof byte[]) {
-        Optional<byte[]> errorResponse =
-            prepareAttachmentForQueryId(streamId, attachments, (byte[]) obj);
-        if (errorResponse.isPresent()) {
-          attachmentErrorResponse = errorResponse;
-          break;
+        byte[] id = (byte[]) obj;
+        QueryIdAttachments.Entry queryId = queryIdAttachments.lookup(id, 0, id.length);
+        if (!queryId.isPrepared()) {
+          return unprepared(defaultContextWithLAR, streamId, queryId);
+        }
+        addWrittenTable(queryId);
+        if (firstQueryId == null) {
+          firstQueryId = queryId;
+        } else {
+          attachments = addBatchAttachment(attachments, firstQueryId, queryId);
         }
+      } else if (resultCache != null) {
+        byte[] text = ((String) obj).getBytes(StandardCharsets.UTF_8);
+        resultCache.addMentionedTables(text, 0, text.length, writtenTables);
       }
     }
-    if (maxCommitDelayMillis.isPresent()) {
-      attachments.put(MAX_COMMIT_DELAY_ATTACHMENT_KEY, maxCommitDelayMillis.get());
+    return prepareBatch(streamId, firstQueryId, attachments);
+  }
+
+  /**
+   * Adds the attachment of a query id of a batch to the attachments of the batch, which are only
+   * built once the batch holds a query id other than its first one.
+   */
+  @Nullable
+  private static Map<String, String> addBatchAttachment(
+      @Nullable Map<String, String> attachments,
+      QueryIdAttachments.Entry firstQueryId,
+      QueryIdAttachments.Entry queryId) {
+    if (attachments == null) {
+      if (queryId.key().equals(firstQueryId.key())) {
+        return null;
+      }
+      attachments = new HashMap<>(firstQueryId.batchAttachments());
     }
-    return new PreparePayloadResult(
-        defaultContextWithLAR, streamId, attachments, attachmentErrorResponse);
+    attachments.put(queryId.key(), queryId.value());
+    return attachments;
   }
 
-  private PreparePayloadResult prepareQueryMessage(
-      Query message, int streamId, Map<String, String> attachments) {
-    ApiCallContext context;
-    if (startsWith(message.query, "SELECT")) {
-      context = defaultContext;
-    } else {
-      context = defaultContextWithLAR;
-      if (maxCommitDelayMillis.isPresent()) {
-        attachments.put(MAX_COMMIT_DELAY_ATTACHMENT_KEY, maxCommitDelayMillis.get());
+  private PreparePayloadResult prepareBatch(
+      int streamId,
+      @Nullable QueryIdAttachments.Entry firstQueryId,
+      @Nullable Map<String, String> attachments) {
+    if (attachments == null) {
+      attachments = firstQueryId != null ? firstQueryId.batchAttachments() : writeAttachments();
+    }
+    return prepareResult.reset(defaultContextWithLAR, streamId, attachments, Optional.empty());
+  }
+
+  private PreparePayloadResult prepareQueryFrame(byte[] payload) {
+    // A Query message starts with the query, as [long string], followed by the consistency
+    // level, as [short].
+    int queryLength = readInt(payload, HEADER_LENGTH);
+    int queryOffset = checkAvailable(payload, HEADER_LENGTH + 4, queryLength);
+    boolean isSelect = startsWith(payload, queryOffset, queryLength, "SELECT");
+    if (resultCache != null && !isSelect) {
+      resultCache.addMentionedTables(payload, queryOffset, queryLength, writtenTables);
+    }
+    return prepareQuery(
+        streamId(payload),
+        isSelect,
+        readUnsignedShort(payload, queryOffset + queryLength));
+  }
+
+  private PreparePayloadResult prepareQuery(int streamId, boolean isSelect, int consistency) {
+    // Other queries may be USE queries or schema changes.
+    observedResponse = !isSelect && (preparedResponseCache != null || resultCache != null);
+    if (isSelect) {
+      return prepareResult.reset(
+          defaultContext,
+          streamId,
+          isStaleRead(consistency) ? staleReadAttachments : EMPTY_ATTACHMENTS,
+          Optional.empty());
+    }
+    return prepareResult.reset(
+        defaultContextWithLAR, streamId, writeAttachments(), Optional.empty());
+  }
+
+  /** Answers the preparation of a query from the cache, or lets Spanner prepare it. */
+  private PreparePayloadResult preparePrepare(int streamId, Prepare prepare) {
+    byte[] cachedResponse =
+        preparedResponseCache != null
+            ? preparedResponseCache.get(keyspace, prepare.cqlQuery, requestVersion, streamId)
+            : null;
+    if (cachedResponse != null) {
+      return new PreparePayloadResult(
+          defaultContext, streamId, EMPTY_ATTACHMENTS, Optional.of(cachedResponse));
+    }
+    preparedKeyspace = keyspace;
+    preparedQuery = prepare.cqlQuery;
+    return new PreparePayloadResult(defaultContext, streamId);
+  }
+
+  /** Adds the cached table written by a prepared query id of a batch, if any. */
+  private void addWrittenTable(QueryIdAttachments.Entry queryId) {
+    if (resultCache != null) {
+      ResultCache.Table table = resultCache.table(queryId.key());
+      if (table != null) {
+        writtenTables.add(table);
       }
     }
-    return new PreparePayloadResult(context, streamId, attachments);
   }
 
-  private Optional<byte[]> prepareAttachmentForQueryId(
-      int streamId, Map<String, String> attachments, byte[] queryId) {
-    String key = constructKey(queryId);
-    Optional<String> val = adapterClientWrapper.getAttachmentsCache().get(key);
-    if (!val.isPresent()) {
-      return Optional.of(unpreparedResponse(streamId, queryId));
+  /**
+   * Returns the cached result of a read of a cached table, or otherwise records what is needed to
+   * cache its result once received.
+   */
+  private Optional<byte[]> cachedResult(byte[] payload, int streamId) {
+    cachedReadKey = cachedRead.key(payload);
+    byte[] cached = cachedRead.get(cachedReadKey, streamId);
+    if (cached != null) {
+      return Optional.of(cached);
     }
-    attachments.put(key, val.get());
+    cachedReadGeneration = cachedRead.generation();
     return Optional.empty();
   }
 
-  private static String constructKey(byte[] queryId) {
-    return PREPARED_QUERY_ID_ATTACHMENT_PREFIX + new String(queryId, StandardCharsets.UTF_8);
+  private void invalidateWrittenTables() {
+    for (int i = 0; i < writtenTables.size(); i++) {
+      writtenTables.get(i).invalidate();
+    }
+  }
+
+  /**
+   * Updates the prepared response cache, the result cache and the keyspace of the connection from
+   * a response of Spanner.
+   */
+  private void observeResponse(byte[] response) {
+    if (preparedResponseCache != null) {
+      preparedResponseCache.onResponse(response);
+    }
+    if (resultCache != null) {
+      resultCache.onResponse(response);
+    }
+    if (preparedQuery != null) {
+      if (preparedResponseCache != null) {
+        preparedResponseCache.put(preparedKeyspace, preparedQuery, requestVersion, response);
+      }
+      if (resultCache != null) {
+        resultCache.onPrepared(preparedQuery, response);
+      }
+    } else if (PreparedResponseCache.resultKind(response) == ResultKind.SET_KEYSPACE
+        && response.length >= HEADER_LENGTH + 6) {
+      // A SetKeyspace result is followed by the keyspace, as [string].
+      int keyspaceLength = readUnsignedShort(response, HEADER_LENGTH + 4);
+      if (HEADER_LENGTH + 6 + keyspaceLength <= response.length) {
+        keyspace = new String(response, HEADER_LENGTH + 6, keyspaceLength, StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  private Map<String, String> writeAttachments() {
+    return commitDelay != null ? commitDelay.attachments() : writeAttachments;
+  }
+
+  private PreparePayloadResult unprepared(
+      ApiCallContext context, int streamId, QueryIdAttachments.Entry queryId) {
+    return prepareResult.reset(
+        context, streamId, EMPTY_ATTACHMENTS, Optional.of(queryId.unpreparedResponse(streamId)));
+  }
+
+  private static int readUnsignedShort(byte[] payload, int offset) {
+    checkAvailable(payload, offset, 2);
+    return ((payload[offset] & 0xFF) << 8) | (payload[offset + 1] & 0xFF);
+  }
+
+  private static int readInt(byte[] payload, int offset) {
+    checkAvailable(payload, offset, 4);
+    return load32BigEndian(payload, offset);
+  }
+
+  /**
+   * Checks that the payload holds {@code length} bytes at {@code offset}, and returns the offset.
+   */
+  private static int checkAvailable(byte[] payload, int offset, int length) {
+    if (length < 0 || offset > payload.length - length) {
+      throw new IllegalArgumentException(MALFORMED_PAYLOAD_MESSAGE);
+    }
+    return offset;
+  }
+
+  /**
+   * Negotiates the compression requested by the driver. Frames are decompressed by the adapter, so
+   * the compression option is removed from the STARTUP message forwarded to Spanner.
+   */
+  private PreparePayloadResult prepareStartupMessage(Frame frame) {
+    Map<String, String> options = ((Startup) frame.message).options;
+    String algorithm = options.get(Startup.COMPRESSION_KEY);
+    startupPending = true;
+    if (algorithm == null) {
+      return new PreparePayloadResult(defaultContext, frame.streamId);
+    }
+    Optional<FrameCompressor> frameCompressor = FrameCompressor.forAlgorithm(algorithm);
+    List<String> supportedAlgorithms = FrameCompressor.supportedAlgorithms();
+    if (requestVersion >= SEGMENT_FRAMING_PROTOCOL_VERSION) {
+      // Protocol v5 only allows LZ4 compression of segments.
+      frameCompressor = frameCompressor.filter(c -> FrameCompressor.LZ4.equals(c.algorithm()));
+      supportedAlgorithms =
+          supportedAlgorithms.contains(FrameCompressor.LZ4)
+              ? Collections.singletonList(FrameCompressor.LZ4)
+              : Collections.emptyList();
+    }
+    if (!frameCompressor.isPresent()) {
+      byte[] errorResponse =
+          protocolErrorResponse(
+              frame.streamId,
+              "Unsupported compression algorithm: "
+                  + algorithm
+                  + ". Supported algorithms: "
+                  + supportedAlgorithms);
+      return new PreparePayloadResult(
+          defaultContext, frame.streamId, EMPTY_ATTACHMENTS, Optional.of(errorResponse));
+    }
+    pendingCompressor = frameCompressor.get();
+
+    Map<String, String> forwardedOptions = new HashMap<>(options);
+    forwardedOptions.remove(Startup.COMPRESSION_KEY);
+    Frame startupFrame =
+        Frame.forRequest(
+            frame.protocolVersion,
+            frame.streamId,
+            frame.tracing,
+            frame.customPayload,
+            new Startup(forwardedOptions));
+    ByteBuf startupBuf = clientFrameCodec.encode(startupFrame);
+    byte[] startup = new byte[startupBuf.readableBytes()];
+    startupBuf.readBytes(startup);
+    startupBuf.release();
+    return new PreparePayloadResult(
+        defaultContext, frame.streamId, EMPTY_ATTACHMENTS, Optional.empty(), Optional.of(startup));
+  }
+
+  /**
+   * The settings of a connection and the adapter components it uses, all of which are optional.
+   */
+  static final class Settings {
+    private final Optional<Duration> maxCommitDelay;
+    private final Optional<Duration> maxStaleness;
+    private final int maxFrameBytes;
+    @Nullable private final TrafficCapture trafficCapture;
+    @Nullable private final ResponseSpool responseSpool;
+    @Nullable private final MemoryBudget memoryBudget;
+    @Nullable private final WriteCoalescer writeCoalescer;
+    @Nullable private final AdaptiveCommitDelay adaptiveCommitDelay;
+    @Nullable private final ConfiguredCommitDelay configuredCommitDelay;
+    @Nullable private final PreparedResponseCache preparedResponseCache;
+    @Nullable private final ResultCache resultCache;
+    @Nullable private final PagePrefetcher pagePrefetcher;
+    @Nullable private final BatchSplitter batchSplitter;
+
+    private Settings(Builder builder) {
+      this.maxCommitDelay = builder.maxCommitDelay;
+      this.maxStaleness = builder.maxStaleness;
+      this.maxFrameBytes = builder.maxFrameBytes;
+      this.trafficCapture = builder.trafficCapture;
+      this.responseSpool = builder.responseSpool;
+      this.memoryBudget = builder.memoryBudget;
+      this.writeCoalescer = builder.writeCoalescer;
+      this.adaptiveCommitDelay = builder.adaptiveCommitDelay;
+      this.configuredCommitDelay = builder.configuredCommitDelay;
+      this.preparedResponseCache = builder.preparedResponseCache;
+      this.resultCache = builder.resultCache;
+      this.pagePrefetcher = builder.pagePrefetcher;
+      this.batchSplitter = builder.batchSplitter;
+    }
+
+    static Builder newBuilder() {
+      return new Builder();
+    }
+
+    /** Builder for {@link Settings}. */
+    static final class Builder {
+      private Optional<Duration> maxCommitDelay = Optional.empty();
+      private Optional<Duration> maxStaleness = Optional.empty();
+      private int maxFrameBytes = AdapterOptions.DEFAULT_MAX_FRAME_BYTES;
+      @Nullable private TrafficCapture trafficCapture;
+      @Nullable private ResponseSpool responseSpool;
+      @Nullable private MemoryBudget memoryBudget;
+      @Nullable private WriteCoalescer writeCoalescer;
+      @Nullable private AdaptiveCommitDelay adaptiveCommitDelay;
+      @Nullable private ConfiguredCommitDelay configuredCommitDelay;
+      @Nullable private PreparedResponseCache preparedResponseCache;
+      @Nullable private ResultCache resultCache;
+      @Nullable private PagePrefetcher pagePrefetcher;
+      @Nullable private BatchSplitter batchSplitter;
+
+      private Builder() {}
+
+      /** The max commit delay to set in requests to optimize write throughput. */
+      Builder maxCommitDelay(Optional<Duration> maxCommitDelay) {
+        this.maxCommitDelay = maxCommitDelay;
+        return this;
+      }
+
+      /**
+       * The staleness bound of reads at consistency level ONE or LOCAL_ONE, which are strong reads
+       * if empty.
+       */
+      Builder maxStaleness(Optional<Duration> maxStaleness) {
+        this.maxStaleness = maxStaleness;
+        return this;
+      }
+
+      /** The maximum length of a request frame, header included. */
+      Builder maxFrameBytes(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+        return this;
+      }
+
+      /** The capture to record the received frames to. */
+      Builder trafficCapture(@Nullable TrafficCapture trafficCapture) {
+        this.trafficCapture = trafficCapture;
+        return this;
+      }
+
+      /**
+       * The spool used to stream large results to the driver, without which results are assembled
+       * in memory before being written.
+       */
+      Builder responseSpool(@Nullable ResponseSpool responseSpool) {
+        this.responseSpool = responseSpool;
+        return this;
+      }
+
+      /** The budget reserved by request frames until they are answered. */
+      Builder memoryBudget(@Nullable MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+      }
+
+      /** The coalescer to send prepared writes through, instead of sending each on its own. */
+      Builder writeCoalescer(@Nullable WriteCoalescer writeCoalescer) {
+        this.writeCoalescer = writeCoalescer;
+        return this;
+      }
+
+      /**
+       * The adaptive max commit delay to set in writes in place of the max commit delay, which
+       * measures their rate and latency.
+       */
+      Builder adaptiveCommitDelay(@Nullable AdaptiveCommitDelay adaptiveCommitDelay) {
+        this.adaptiveCommitDelay = adaptiveCommitDelay;
+        return this;
+      }
+
+      /**
+       * The max commit delay to set in writes in place of the max commit delay, which may change
+       * while the connection is open. The adaptive max commit delay takes precedence over it.
+       */
+      Builder configuredCommitDelay(@Nullable ConfiguredCommitDelay configuredCommitDelay) {
+        this.configuredCommitDelay = configuredCommitDelay;
+        return this;
+      }
+
+      /** The cache answering PREPARE requests locally. */
+      Builder preparedResponseCache(@Nullable PreparedResponseCache preparedResponseCache) {
+        this.preparedResponseCache = preparedResponseCache;
+        return this;
+      }
+
+      /** The cache answering reads of designated tables locally. */
+      Builder resultCache(@Nullable ResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+      }
+
+      /** The prefetcher of the next pages of paged reads. */
+      Builder pagePrefetcher(@Nullable PagePrefetcher pagePrefetcher) {
+        this.pagePrefetcher = pagePrefetcher;
+        return this;
+      }
+
+      /** The splitter of UNLOGGED batches over the mutation limit of a commit. */
+      Builder batchSplitter(@Nullable BatchSplitter batchSplitter) {
+        this.batchSplitter = batchSplitter;
+        return this;
+      }
+
+      Settings build() {
+        return new Settings(this);
+      }
+    }
+  }
+
+  /** Thrown when a request frame is refused before being processed. */
+  static final class RejectedFrameException extends RuntimeException {
+    private final byte[] response;
+
+    private RejectedFrameException(String message, byte[] response) {
+      // Rejections are expected under overload, so they skip the cost of a stack trace.
+      super(message, null, false, false);
+      this.response = response;
+    }
+
+    static RejectedFrameException tooLarge(int streamId, long frameLength, int maxFrameBytes) {
+      String message = frameTooLargeMessage(frameLength, maxFrameBytes);
+      return new RejectedFrameException(message, protocolErrorResponse(streamId, message));
+    }
+
+    static RejectedFrameException unsupported(int streamId, String message) {
+      return new RejectedFrameException(message, protocolErrorResponse(streamId, message));
+    }
+
+    static RejectedFrameException overloaded(int streamId) {
+      return new RejectedFrameException(
+          MEMORY_BUDGET_EXHAUSTED_MESSAGE, MEMORY_BUDGET_EXHAUSTED.forStream(streamId));
+    }
+
+    /** The error response to answer the refused frame with. */
+    byte[] getResponse() {
+      return response;
+    }
   }
 }
@@ -0,0 +1,267 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Compresses and decompresses the body of native protocol v4 frames, as negotiated by the driver
+ * through the {@code COMPRESSION} option of its STARTUP message.
+ *
+ * <p>Frames are handled as raw bytes: only the compression flag and the body length of the header
+ * are rewritten, so that frames never need to be decoded to be compressed. The compression
+ * libraries are optional dependencies, and an algorithm is only offered when its library is on the
+ * classpath.
+ */
+abstract class FrameCompressor {
+
+  static final String LZ4 = "lz4";
+  static final String SNAPPY = "snappy";
+
+  private static final int HEADER_LENGTH = 9;
+  private static final int FLAGS_OFFSET = 1;
+  private static final int LENGTH_OFFSET = 5;
+  private static final int COMPRESSION_FLAG = 0x01;
+
+  /** Returns the name of the algorithm, as used in the STARTUP {@code COMPRESSION} option. */
+  abstract String algorithm();
+
+  abstract byte[] compress(byte[] source, int offset, int length) throws IOException;
+
+  /** Returns the uncompressed length of the given compressed body, as written in it. */
+  abstract int uncompressedLength(byte[] source, int offset, int length) throws IOException;
+
+  /** Decompresses a body whose {@link #uncompressedLength} was checked by the caller. */
+  abstract byte[] decompress(byte[] source, int offset, int length, int uncompressedLength)
+      throws IOException;
+
+  /**
+   * Returns the compressor for the given algorithm, or an empty optional if the algorithm is not
+   * known or its library is not on the classpath.
+   */
+  static Optional<FrameCompressor> forAlgorithm(String algorithm) {
+    if (LZ4.equalsIgnoreCase(algorithm) && isPresent("net.jpountz.lz4.LZ4Factory")) {
+      return Optional.of(new Lz4FrameCompressor());
+    } else if (SNAPPY.equalsIgnoreCase(algorithm) && isPresent("org.xerial.snappy.Snappy")) {
+      return Optional.of(new SnappyFrameCompressor());
+    }
+    return Optional.empty();
+  }
+
+  /** Returns the algorithms that can be negotiated with this classpath. */
+  static List<String> supportedAlgorithms() {
+    ImmutableList.Builder<String> algorithms = ImmutableList.builder();
+    for (String algorithm : ImmutableList.of(LZ4, SNAPPY)) {
+      if (forAlgorithm(algorithm).isPresent()) {
+        algorithms.add(algorithm);
+      }
+    }
+    return algorithms.build();
+  }
+
+  /** Returns whether the given frame has its compression flag set. */
+  static boolean isCompressed(byte[] frame) {
+    return frame.length >= HEADER_LENGTH && (frame[FLAGS_OFFSET] & COMPRESSION_FLAG) != 0;
+  }
+
+  /**
+   * Compresses the body of the given frame. Frames without a body, or that are already compressed,
+   * are returned as is.
+   */
+  byte[] compressFrame(byte[] frame) {
+    if (frame.length <= HEADER_LENGTH || isCompressed(frame)) {
+      return frame;
+    }
+    byte[] body;
+    try {
+      body = compress(frame, HEADER_LENGTH, frame.length - HEADER_LENGTH);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to compress frame with " + algorithm(), e);
+    }
+    return withBody(frame, body, (byte) (frame[FLAGS_OFFSET] | COMPRESSION_FLAG));
+  }
+
+  /**
+   * Returns the length the given compressed frame will have once decompressed, header included, as
+   * written in its body. The value is sent by the driver, and must be checked before the frame is
+   * decompressed.
+   */
+  long uncompressedFrameLength(byte[] frame) {
+    try {
+      return HEADER_LENGTH
+          + (long) uncompressedLength(frame, HEADER_LENGTH, frame.length - HEADER_LENGTH);
+    } catch (IOException | RuntimeException e) {
+      throw malformed(e);
+    }
+  }
+
+  /**
+   * Decompresses the body of the given frame, and clears its compression flag.
+   *
+   * @throws IllegalArgumentException If the body is not well formed, or if the frame would be
+   *     longer than {@code maxFrameBytes} once decompressed, in which case nothing is allocated.
+   */
+  byte[] decompressFrame(byte[] frame, int maxFrameBytes) {
+    long frameLength = uncompressedFrameLength(frame);
+    if (frameLength > maxFrameBytes) {
+      throw new IllegalArgumentException(
+          "Decompressed payload length "
+              + frameLength
+              + " exceeds maximum allowed length "
+              + maxFrameBytes);
+    }
+    byte[] body;
+    try {
+      body =
+          decompress(
+              frame,
+              HEADER_LENGTH,
+              frame.length - HEADER_LENGTH,
+              (int) (frameLength - HEADER_LENGTH));
+    } catch (IOException | RuntimeException e) {
+      throw malformed(e);
+    }
+    return withBody(frame, body, (byte) (frame[FLAGS_OFFSET] & ~COMPRESSION_FLAG));
+  }
+
+  private static IllegalArgumentException malformed(Exception e) {
+    return new IllegalArgumentException(
+        "Compressed payload is not well formed: " + e.getMessage(), e);
+  }
+
+  private static byte[] withBody(byte[] frame, byte[] body, byte flags) {
+    byte[] result = new byte[HEADER_LENGTH + body.length];
+    System.arraycopy(frame, 0, result, 0, HEADER_LENGTH);
+    result[FLAGS_OFFSET] = flags;
+    ByteBuffer.wrap(result, LENGTH_OFFSET, 4).putInt(body.length);
+    System.arraycopy(body, 0, result, HEADER_LENGTH, body.length);
+    return result;
+  }
+
+  private static boolean isPresent(String className) {
+    try {
+      Class.forName(className, false, FrameCompressor.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * LZ4 block compression, with the uncompressed length prepended as a 4-byte integer. This is the
+   * only algorithm allowed by protocol v5, whose segments carry the uncompressed length in their
+   * header and compress their payload without it.
+   */
+  static final class Lz4FrameCompressor extends FrameCompressor {
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+    private final LZ4Compressor compressor = factory.fastCompressor();
+    // The safe decompressor never reads or writes past the bounds it is given, whatever the input,
+    // which comes from the driver.
+    private final LZ4SafeDecompressor decompressor = factory.safeDecompressor();
+
+    @Override
+    String algorithm() {
+      return LZ4;
+    }
+
+    @Override
+    byte[] compress(byte[] source, int offset, int length) {
+      byte[] compressed = compressWithoutLength(source, offset, length);
+      byte[] result = new byte[4 + compressed.length];
+      ByteBuffer.wrap(result).putInt(length);
+      System.arraycopy(compressed, 0, result, 4, compressed.length);
+      return result;
+    }
+
+    @Override
+    int uncompressedLength(byte[] source, int offset, int length) throws IOException {
+      if (length < 4) {
+        throw new IOException("Missing uncompressed length.");
+      }
+      int uncompressedLength = ByteBuffer.wrap(source, offset, 4).getInt();
+      if (uncompressedLength < 0) {
+        throw new IOException("Negative uncompressed length.");
+      }
+      return uncompressedLength;
+    }
+
+    @Override
+    byte[] decompress(byte[] source, int offset, int length, int uncompressedLength) {
+      return decompressWithoutLength(source, offset + 4, length - 4, uncompressedLength);
+    }
+
+    /** Compresses a protocol v5 segment payload. */
+    byte[] compressWithoutLength(byte[] source, int offset, int length) {
+      byte[] buffer = new byte[compressor.maxCompressedLength(length)];
+      int compressedLength = compressor.compress(source, offset, length, buffer, 0, buffer.length);
+      byte[] result = new byte[compressedLength];
+      System.arraycopy(buffer, 0, result, 0, compressedLength);
+      return result;
+    }
+
+    /** Decompresses a protocol v5 segment payload of the given uncompressed length. */
+    byte[] decompressWithoutLength(
+        byte[] source, int offset, int length, int uncompressedLength) {
+      byte[] result = new byte[uncompressedLength];
+      int decompressedLength =
+          decompressor.decompress(source, offset, length, result, 0, uncompressedLength);
+      if (decompressedLength != uncompressedLength) {
+        throw new IllegalArgumentException(
+            "Decompressed length does not match the uncompressed length.");
+      }
+      return result;
+    }
+  }
+
+  /** Snappy raw compression. */
+  private static final class SnappyFrameCompressor extends FrameCompressor {
+    @Override
+    String algorithm() {
+      return SNAPPY;
+    }
+
+    @Override
+    byte[] compress(byte[] source, int offset, int length) throws IOException {
+      byte[] buffer = new byte[Snappy.maxCompressedLength(length)];
+      int compressedLength = Snappy.compress(source, offset, length, buffer, 0);
+      byte[] result = new byte[compressedLength];
+      System.arraycopy(buffer, 0, result, 0, compressedLength);
+      return result;
+    }
+
+    @Override
+    int uncompressedLength(byte[] source, int offset, int length) throws IOException {
+      return Snappy.uncompressedLength(source, offset, length);
+    }
+
+    @Override
+    byte[] decompress(byte[] source, int offset, int length, int uncompressedLength)
+        throws IOException {
+      byte[] result = new byte[uncompressedLength];
+      Snappy.uncompress(source, offset, length, result, 0);
+      return result;
+    }
+  }
+}
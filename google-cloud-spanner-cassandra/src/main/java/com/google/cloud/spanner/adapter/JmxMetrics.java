@@ -0,0 +1,69 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Registers the metrics of an adapter with the platform MBean server. */
+final class JmxMetrics {
+
+  private static final Logger LOG = LoggerFactory.getLogger(JmxMetrics.class);
+  private static final String DOMAIN = "com.google.cloud.spanner.adapter";
+
+  private JmxMetrics() {
+    throw new IllegalStateException("Utility class cannot be instantiated");
+  }
+
+  /**
+   * Registers an MXBean as {@code com.google.cloud.spanner.adapter:type=<type>,port=<port>}.
+   *
+   * @return The name the bean was registered under, or {@code null} if registration failed.
+   */
+  @Nullable
+  static ObjectName register(String type, int port, Object mxBean) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName(DOMAIN + ":type=" + type + ",port=" + port);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(mxBean, name);
+      return name;
+    } catch (JMException e) {
+      LOG.warn("Could not register {} metrics: {}", type, e.getMessage());
+      return null;
+    }
+  }
+
+  /** Unregisters a bean registered by {@link #register}, ignoring {@code null}. */
+  static void unregister(@Nullable ObjectName name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (JMException e) {
+      LOG.debug("Could not unregister {}: {}", name, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An adapter-wide budget of bytes shared by the request and response buffers in flight on all
+ * connections, so that a few large frames cannot exhaust the heap of a proxy serving many
+ * applications.
+ *
+ * <p>Buffers reserve their size before being filled and release it once they are written. A
+ * reservation that cannot be satisfied waits for other buffers to be released, up to a maximum
+ * wait, and is then rejected.
+ */
+final class MemoryBudget implements MemoryBudgetMXBean {
+
+  private volatile long capacityBytes;
+  private final long maxWaitNanos;
+  private final Lock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private long availableBytes;
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * Constructor for MemoryBudget.
+   *
+   * @param capacityBytes The number of bytes that buffers may hold at once.
+   * @param maxWait How long a reservation waits for other buffers to be released.
+   */
+  MemoryBudget(long capacityBytes, Duration maxWait) {
+    if (capacityBytes <= 0) {
+      throw new IllegalArgumentException("The memory budget must be positive.");
+    }
+    this.capacityBytes = capacityBytes;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.availableBytes = capacityBytes;
+  }
+
+  /**
+   * Changes the number of bytes that buffers may hold at once. Buffers already reserved are kept,
+   * so the available bytes may fall below zero until enough of them are released.
+   */
+  void setCapacityBytes(long capacityBytes) {
+    if (capacityBytes <= 0) {
+      throw new IllegalArgumentException("The memory budget must be positive.");
+    }
+    lock.lock();
+    try {
+      availableBytes += capacityBytes - this.capacityBytes;
+      this.capacityBytes = capacityBytes;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reserves the given number of bytes, waiting for other buffers to be released if needed.
+   *
+   * @return Whether the bytes were reserved, in which case they must be {@link #release released}.
+   */
+  boolean tryAcquire(long bytes) {
+    if (bytes > capacityBytes) {
+      rejected.incrementAndGet();
+      return false;
+    }
+    long deadline = System.nanoTime() + maxWaitNanos;
+    lock.lock();
+    try {
+      while (availableBytes < bytes) {
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          rejected.incrementAndGet();
+          return false;
+        }
+        released.awaitNanos(remainingNanos);
+      }
+      availableBytes -= bytes;
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejected.incrementAndGet();
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reserves the given number of bytes only if they are available right away, for buffers that can
+   * be done without. Such refusals are not counted as rejections.
+   *
+   * @return Whether the bytes were reserved, in which case they must be {@link #release released}.
+   */
+  boolean tryAcquireNow(long bytes) {
+    lock.lock();
+    try {
+      if (availableBytes < bytes) {
+        return false;
+      }
+      availableBytes -= bytes;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Releases bytes reserved by {@link #tryAcquire} or {@link #tryAcquireNow}. */
+  void release(long bytes) {
+    if (bytes == 0) {
+      return;
+    }
+    lock.lock();
+    try {
+      availableBytes += bytes;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long getCapacityBytes() {
+    return capacityBytes;
+  }
+
+  @Override
+  public long getAvailableBytes() {
+    lock.lock();
+    try {
+      return availableBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  @Override
+  public double getUtilization() {
+    return 1.0 - (double) getAvailableBytes() / capacityBytes;
+  }
+}
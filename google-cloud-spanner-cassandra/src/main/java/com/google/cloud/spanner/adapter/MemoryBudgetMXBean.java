@@ -0,0 +1,36 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.core.InternalApi;
+
+/** Usage of the adapter-wide budget of in-flight request and response bytes, exported over JMX. */
+@InternalApi
+public interface MemoryBudgetMXBean {
+
+  /** The number of bytes that request and response buffers may hold at once. */
+  long getCapacityBytes();
+
+  /** The number of bytes currently available to new request and response buffers. */
+  long getAvailableBytes();
+
+  /** The number of frames rejected with an overloaded error because the budget was exhausted. */
+  long getRejectedCount();
+
+  /** The fraction of the budget currently held by request and response buffers. */
+  double getUtilization();
+}
@@ -0,0 +1,376 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import com.google.api.gax.rpc.ApiCallContext;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prefetches the next page of the paged reads of a connection, so that a driver paging through a
+ * large result does not wait a full round trip for every page.
+ *
+ * <p>When a read returns rows along with a paging state, the request for the next page is sent in
+ * the background right away, and its response is kept until the driver asks for that page. Only
+ * the last response of each read is followed, so a read that is not paged further stops being
+ * prefetched. A connection keeps a bounded number of pages; the oldest is dropped to make room for
+ * a new one, which bounds the pages of reads that the driver abandoned.
+ *
+ * <p>Pages are held in the memory budget, if any, until they are taken or dropped. A prefetch
+ * reserves the size of the page it follows, as the pages of a read are about as large, and is
+ * skipped if those bytes are not available right away; the reservation is then adjusted to the
+ * size of the page received, which is dropped if the budget cannot hold it. Instances are owned by
+ * a single connection, and are not thread-safe.
+ */
+final class PagePrefetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PagePrefetcher.class);
+  private static final int HEADER_LENGTH = 9;
+  private static final int FLAGS_OFFSET = 1;
+  private static final int OPCODE_OFFSET = 4;
+  private static final int LENGTH_OFFSET = 5;
+  private static final int PROTOCOL_VERSION = 4;
+  private static final int TRACING_FLAG = 0x02;
+  // The query flags of a Query or Execute message.
+  private static final int FLAG_VALUES = 0x01;
+  private static final int FLAG_PAGE_SIZE = 0x04;
+  private static final int FLAG_PAGING_STATE = 0x08;
+  private static final int FLAG_DEFAULT_TIMESTAMP = 0x20;
+  private static final int FLAG_NAMES_FOR_VALUES = 0x40;
+  private static final int TIMESTAMP_LENGTH = 8;
+  // The flag of the metadata of a Rows result that has more pages.
+  private static final int HAS_MORE_PAGES_FLAG = 0x0002;
+
+  private final AdapterClientWrapper adapterClientWrapper;
+  private final Executor executor;
+  @Nullable private final MemoryBudget memoryBudget;
+  private final int maxPages;
+  // The pages being prefetched or prefetched, by key of their request, oldest first.
+  private final LinkedHashMap<ByteBuffer, CompletableFuture<byte[]>> pages = new LinkedHashMap<>();
+
+  /**
+   * Constructor for PagePrefetcher.
+   *
+   * @param adapterClientWrapper The adapter client wrapper used to prefetch pages.
+   * @param executor The executor running the prefetch requests.
+   * @param memoryBudget The budget holding the prefetched pages, or {@code null} if there is none.
+   * @param maxPages The maximum number of pages kept by the connection.
+   */
+  PagePrefetcher(
+      AdapterClientWrapper adapterClientWrapper,
+      Executor executor,
+      @Nullable MemoryBudget memoryBudget,
+      int maxPages) {
+    this.adapterClientWrapper = adapterClientWrapper;
+    this.executor = executor;
+    this.memoryBudget = memoryBudget;
+    this.maxPages = maxPages;
+  }
+
+  /**
+   * Returns the prefetched response to the given protocol v4 Query or Execute request, for the
+   * given stream, waiting for it if it is still being fetched, or {@code null} if the request must
+   * be sent.
+   */
+  @Nullable
+  byte[] take(byte[] request, int streamId) {
+    if (pages.isEmpty()) {
+      return null;
+    }
+    int flagsOffset = queryFlagsOffset(request);
+    if (flagsOffset < 0) {
+      return null;
+    }
+    CompletableFuture<byte[]> page = pages.remove(key(request, flagsOffset));
+    if (page == null) {
+      return null;
+    }
+    byte[] response;
+    try {
+      response = page.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      drop(page);
+      return null;
+    } catch (ExecutionException e) {
+      LOG.debug("Error prefetching page: {}", e.getCause().getMessage());
+      return null;
+    }
+    // A page that the budget could not hold was not kept.
+    if (response == null) {
+      return null;
+    }
+    release(response.length);
+    // Errors are not served, as the request may succeed if it is sent again.
+    if (resultKind(response) != ResultKind.ROWS) {
+      return null;
+    }
+    response[2] = (byte) (streamId >>> 8);
+    response[3] = (byte) streamId;
+    return response;
+  }
+
+  /**
+   * Prefetches the next page of a read, if its response has more pages.
+   *
+   * @param request The protocol v4 Query or Execute request of the read.
+   * @param response The response to the request.
+   * @param attachments The attachments the request was sent with.
+   * @param context The context the request was sent with.
+   */
+  void onResponse(
+      byte[] request, byte[] response, Map<String, String> attachments, ApiCallContext context) {
+    byte[] pagingState = pagingState(response);
+    if (pagingState == null) {
+      return;
+    }
+    int flagsOffset = queryFlagsOffset(request);
+    if (flagsOffset < 0) {
+      return;
+    }
+    byte[] nextPage = withPagingState(request, flagsOffset, pagingState);
+    if (nextPage == null) {
+      return;
+    }
+    ByteBuffer key = key(nextPage, flagsOffset);
+    if (pages.containsKey(key)) {
+      return;
+    }
+    if (pages.size() >= maxPages) {
+      Iterator<CompletableFuture<byte[]>> oldest = pages.values().iterator();
+      drop(oldest.next());
+      oldest.remove();
+    }
+    // The next page is expected to be about as large as this one.
+    long reservedBytes = response.length;
+    if (memoryBudget != null && !memoryBudget.tryAcquireNow(reservedBytes)) {
+      LOG.debug("Not prefetching page: the memory budget is exhausted.");
+      return;
+    }
+    int streamId = ((request[2] & 0xFF) << 8) | (request[3] & 0xFF);
+    CompletableFuture<byte[]> page = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> fetch(page, nextPage, attachments, context, streamId, reservedBytes));
+    } catch (RejectedExecutionException e) {
+      release(reservedBytes);
+      LOG.debug("Not prefetching page: {}", e.getMessage());
+      return;
+    }
+    pages.put(key, page);
+  }
+
+  /** Drops the pages of the connection, which is closed. */
+  void close() {
+    for (CompletableFuture<byte[]> page : pages.values()) {
+      drop(page);
+    }
+    pages.clear();
+  }
+
+  /**
+   * Fetches a page, and completes it with its response, or with {@code null} if the memory budget
+   * cannot hold it.
+   */
+  private void fetch(
+      CompletableFuture<byte[]> page,
+      byte[] request,
+      Map<String, String> attachments,
+      ApiCallContext context,
+      int streamId,
+      long reservedBytes) {
+    byte[] response;
+    try {
+      response = adapterClientWrapper.sendGrpcRequest(request, attachments, context, streamId);
+    } catch (RuntimeException e) {
+      release(reservedBytes);
+      page.completeExceptionally(e);
+      return;
+    }
+    if (response.length > reservedBytes
+        && memoryBudget != null
+        && !memoryBudget.tryAcquireNow(response.length - reservedBytes)) {
+      release(reservedBytes);
+      page.complete(null);
+      return;
+    }
+    release(reservedBytes - response.length);
+    if (!page.complete(response)) {
+      // The page was dropped while it was being fetched.
+      release(response.length);
+    }
+  }
+
+  /** Drops a page, releasing its bytes if it was fetched, or once it is otherwise. */
+  private void drop(CompletableFuture<byte[]> page) {
+    if (!page.cancel(false) && !page.isCompletedExceptionally()) {
+      byte[] response = page.join();
+      if (response != null) {
+        release(response.length);
+      }
+    }
+  }
+
+  private void release(long bytes) {
+    if (memoryBudget != null && bytes > 0) {
+      memoryBudget.release(bytes);
+    }
+  }
+
+  /**
+   * Returns the offset of the query flags of a protocol v4 Query or Execute request, or -1 if the
+   * request is not one, or carries a custom payload.
+   */
+  private static int queryFlagsOffset(byte[] request) {
+    if (request.length < HEADER_LENGTH + 4
+        || request[0] != PROTOCOL_VERSION
+        || (request[FLAGS_OFFSET] & ~TRACING_FLAG) != 0) {
+      return -1;
+    }
+    int offset;
+    if (request[OPCODE_OFFSET] == Opcode.QUERY) {
+      // The query, as [long string].
+      offset = HEADER_LENGTH + 4 + getInt(request, HEADER_LENGTH);
+    } else if (request[OPCODE_OFFSET] == Opcode.EXECUTE) {
+      // The query id, as [short bytes].
+      offset = HEADER_LENGTH + 2 + getUnsignedShort(request, HEADER_LENGTH);
+    } else {
+      return -1;
+    }
+    // The query flags follow the consistency level, as [short].
+    return offset >= HEADER_LENGTH && offset + 2 < request.length ? offset + 2 : -1;
+  }
+
+  /**
+   * Returns the request for the next page of a read, which is the request of the read with the
+   * given paging state, or {@code null} if the request is not well formed.
+   */
+  @Nullable
+  private static byte[] withPagingState(byte[] request, int flagsOffset, byte[] pagingState) {
+    int flags = request[flagsOffset];
+    // The values, page size and paging state follow the flags, in that order.
+    int offset = flagsOffset + 1;
+    if ((flags & FLAG_VALUES) != 0) {
+      if (offset + 2 > request.length) {
+        return null;
+      }
+      int valueCount = getUnsignedShort(request, offset);
+      offset += 2;
+      for (int i = 0; i < valueCount; i++) {
+        if ((flags & FLAG_NAMES_FOR_VALUES) != 0) {
+          if (offset + 2 > request.length) {
+            return null;
+          }
+          offset += 2 + getUnsignedShort(request, offset);
+        }
+        if (offset + 4 > request.length) {
+          return null;
+        }
+        offset += 4 + Math.max(getInt(request, offset), 0);
+      }
+    }
+    if ((flags & FLAG_PAGE_SIZE) != 0) {
+      offset += 4;
+    }
+    int pagingStateStart = offset;
+    if ((flags & FLAG_PAGING_STATE) != 0) {
+      if (offset + 4 > request.length) {
+        return null;
+      }
+      offset += 4 + Math.max(getInt(request, offset), 0);
+    }
+    if (offset > request.length) {
+      return null;
+    }
+    int tailLength = request.length - offset;
+    byte[] nextPage = new byte[pagingStateStart + 4 + pagingState.length + tailLength];
+    System.arraycopy(request, 0, nextPage, 0, pagingStateStart);
+    nextPage[flagsOffset] = (byte) (flags | FLAG_PAGING_STATE);
+    putInt(nextPage, pagingStateStart, pagingState.length);
+    System.arraycopy(pagingState, 0, nextPage, pagingStateStart + 4, pagingState.length);
+    System.arraycopy(
+        request, offset, nextPage, pagingStateStart + 4 + pagingState.length, tailLength);
+    putInt(nextPage, LENGTH_OFFSET, nextPage.length - HEADER_LENGTH);
+    return nextPage;
+  }
+
+  /**
+   * Returns the key of a request: the request without its stream id and its client-side
+   * timestamp, which drivers set anew for every page.
+   */
+  private static ByteBuffer key(byte[] request, int flagsOffset) {
+    int length = request.length;
+    if ((request[flagsOffset] & FLAG_DEFAULT_TIMESTAMP) != 0) {
+      length -= TIMESTAMP_LENGTH;
+    }
+    byte[] key = Arrays.copyOf(request, length);
+    key[2] = 0;
+    key[3] = 0;
+    return ByteBuffer.wrap(key);
+  }
+
+  /** Returns the paging state of a Rows result that has more pages, or {@code null}. */
+  @Nullable
+  private static byte[] pagingState(byte[] response) {
+    // A Rows result starts with its metadata: its flags, its column count, and the paging state
+    // as [bytes] if it has more pages.
+    if (resultKind(response) != ResultKind.ROWS
+        || response[FLAGS_OFFSET] != 0
+        || response.length < HEADER_LENGTH + 16
+        || (getInt(response, HEADER_LENGTH + 4) & HAS_MORE_PAGES_FLAG) == 0) {
+      return null;
+    }
+    int length = getInt(response, HEADER_LENGTH + 12);
+    if (length < 0 || HEADER_LENGTH + 16 + length > response.length) {
+      return null;
+    }
+    return Arrays.copyOfRange(response, HEADER_LENGTH + 16, HEADER_LENGTH + 16 + length);
+  }
+
+  private static int resultKind(byte[] response) {
+    return response.length >= HEADER_LENGTH + 4 && response[OPCODE_OFFSET] == Opcode.RESULT
+        ? getInt(response, HEADER_LENGTH)
+        : -1;
+  }
+
+  private static int getUnsignedShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return (getUnsignedShort(bytes, offset) << 16) | getUnsignedShort(bytes, offset + 2);
+  }
+
+  private static void putInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 24);
+    bytes[offset + 1] = (byte) (value >>> 16);
+    bytes[offset + 2] = (byte) (value >>> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+}
@@ -0,0 +1,245 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * The rows of a table read by concurrent range queries, as returned by {@link
+ * SpannerCqlSession#scanParallel(String, List, int)}.
+ *
+ * <p>Each range is read page by page, with at most {@code parallelism} requests in flight across
+ * all ranges. No more pages are requested while {@code 2 * parallelism} pages wait to be consumed,
+ * so a slow consumer holds back the scan instead of filling up memory. Rows are returned in no
+ * particular order.
+ *
+ * <p>A scan is meant to be iterated by a single thread, and must be closed if it is not read to the
+ * end.
+ */
+public final class ParallelScan implements Iterator<Row>, AutoCloseable {
+
+  private static final Object END = new Object();
+
+  private final CqlSession session;
+  private final int maxInFlight;
+  private final int maxBuffered;
+  private final BlockingQueue<Object> pages = new LinkedBlockingQueue<>();
+
+  // Guarded by this.
+  private final Deque<Statement<?>> ranges;
+  private final Deque<AsyncResultSet> unfinishedRanges = new ArrayDeque<>();
+  private int remainingRanges;
+  private int inFlight;
+  private int buffered;
+  private boolean closed;
+
+  // Only used by the consuming thread.
+  private Iterator<Row> rows = Collections.emptyIterator();
+  private boolean done;
+
+  /**
+   * Constructor for ParallelScan, which starts the scan.
+   *
+   * @param session The session the range queries are run on.
+   * @param ranges The queries of the ranges the table is split into.
+   * @param parallelism The maximum number of requests in flight.
+   */
+  ParallelScan(CqlSession session, List<? extends Statement<?>> ranges, int parallelism) {
+    this.session = session;
+    this.ranges = new ArrayDeque<>(ranges);
+    this.remainingRanges = ranges.size();
+    this.maxInFlight = parallelism;
+    this.maxBuffered = 2 * parallelism;
+    if (remainingRanges == 0) {
+      pages.add(END);
+    }
+    schedule();
+  }
+
+  /**
+   * Returns the queries of the ranges of a table delimited by split points of its leading primary
+   * key column: up to the first split point, between consecutive split points, and after the last
+   * split point, each range excluding its start and including its end.
+   *
+   * @param session The session the queries are prepared on.
+   * @param table The table, as a qualified CQL name.
+   * @param keyColumn The leading primary key column of the table, as a CQL name.
+   * @param splitPoints The split points, in ascending order.
+   * @throws IllegalArgumentException If a split point is {@code null}.
+   */
+  static List<BoundStatement> keyRanges(
+      CqlSession session, String table, String keyColumn, List<?> splitPoints) {
+    if (splitPoints.isEmpty()) {
+      return Collections.singletonList(session.prepare("SELECT * FROM " + table).bind());
+    }
+    for (Object splitPoint : splitPoints) {
+      if (splitPoint == null) {
+        throw new IllegalArgumentException("Split points must not be null.");
+      }
+    }
+    String select = "SELECT * FROM " + table + " WHERE " + keyColumn;
+    PreparedStatement first = session.prepare(select + " <= ? ALLOW FILTERING");
+    PreparedStatement last = session.prepare(select + " > ? ALLOW FILTERING");
+    PreparedStatement between =
+        splitPoints.size() > 1
+            ? session.prepare(select + " > ? AND " + keyColumn + " <= ? ALLOW FILTERING")
+            : null;
+    List<BoundStatement> ranges = new ArrayList<>(splitPoints.size() + 1);
+    ranges.add(first.bind(splitPoints.get(0)));
+    for (int i = 1; i < splitPoints.size(); i++) {
+      ranges.add(between.bind(splitPoints.get(i - 1), splitPoints.get(i)));
+    }
+    ranges.add(last.bind(splitPoints.get(splitPoints.size() - 1)));
+    return ranges;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Blocks until a row is available or the scan is over.
+   *
+   * @throws RuntimeException The error of a range query, which ends the scan.
+   */
+  @Override
+  public boolean hasNext() {
+    while (!rows.hasNext()) {
+      if (done) {
+        return false;
+      }
+      Object next;
+      try {
+        next = pages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for rows.", e);
+      }
+      if (next == END) {
+        done = true;
+        return false;
+      }
+      if (next instanceof Throwable) {
+        close();
+        Throwable error = (Throwable) next;
+        if (error instanceof CompletionException) {
+          error = error.getCause();
+        }
+        throw error instanceof RuntimeException
+            ? (RuntimeException) error
+            : new IllegalStateException("Range query failed.", error);
+      }
+      synchronized (this) {
+        buffered--;
+      }
+      schedule();
+      rows = ((AsyncResultSet) next).currentPage().iterator();
+    }
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return rows.next();
+  }
+
+  /** Stops the scan. The responses to the requests in flight are discarded. */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      ranges.clear();
+      unfinishedRanges.clear();
+    }
+    pages.clear();
+    rows = Collections.emptyIterator();
+    done = true;
+  }
+
+  /** Sends as many requests as the limits allow, continuing unfinished ranges first. */
+  private void schedule() {
+    List<Supplier<CompletionStage<AsyncResultSet>>> requests = new ArrayList<>();
+    synchronized (this) {
+      while (!closed && inFlight < maxInFlight && inFlight + buffered < maxBuffered) {
+        AsyncResultSet page = unfinishedRanges.poll();
+        if (page != null) {
+          requests.add(page::fetchNextPage);
+        } else if (!ranges.isEmpty()) {
+          Statement<?> range = ranges.poll();
+          requests.add(() -> session.executeAsync(range));
+        } else {
+          break;
+        }
+        inFlight++;
+      }
+    }
+    // The requests are sent outside of the lock, as their callbacks may run on this thread.
+    for (Supplier<CompletionStage<AsyncResultSet>> request : requests) {
+      CompletionStage<AsyncResultSet> response;
+      try {
+        response = request.get();
+      } catch (RuntimeException e) {
+        CompletableFuture<AsyncResultSet> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e);
+        response = failed;
+      }
+      response.whenComplete(this::onPage);
+    }
+  }
+
+  private void onPage(AsyncResultSet page, Throwable error) {
+    synchronized (this) {
+      inFlight--;
+      if (closed) {
+        return;
+      }
+      if (error != null) {
+        closed = true;
+        pages.add(error);
+        return;
+      }
+      buffered++;
+      pages.add(page);
+      if (page.hasMorePages()) {
+        unfinishedRanges.add(page);
+      } else if (--remainingRanges == 0) {
+        pages.add(END);
+      }
+    }
+    schedule();
+  }
+}
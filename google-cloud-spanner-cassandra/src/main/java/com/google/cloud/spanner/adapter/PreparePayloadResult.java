@@ -30,17 +30,28 @@ public class PreparePayloadResult {
   private int streamId;
   private Map<String, String> attachments;
   private Optional<byte[]> attachmentErrorResponse;
+  private Optional<byte[]> payload;
   private static final Map<String, String> EMPTY_ATTACHMENTS = Collections.emptyMap();
 
   public PreparePayloadResult(
       ApiCallContext context,
       int streamId,
       Map<String, String> attachments,
-      Optional<byte[]> attachmentErrorResponse) {
+      Optional<byte[]> attachmentErrorResponse,
+      Optional<byte[]> payload) {
     this.context = context;
     this.streamId = streamId;
     this.attachments = attachments;
     this.attachmentErrorResponse = attachmentErrorResponse;
+    this.payload = payload;
+  }
+
+  public PreparePayloadResult(
+      ApiCallContext context,
+      int streamId,
+      Map<String, String> attachments,
+      Optional<byte[]> attachmentErrorResponse) {
+    this(context, streamId, attachments, attachmentErrorResponse, Optional.empty());
   }
 
   public PreparePayloadResult(
@@ -52,6 +63,23 @@ public class PreparePayloadResult {
     this(context, streamId, EMPTY_ATTACHMENTS, Optional.empty());
   }
 
+  /**
+   * Reuses this result for the preparation of another payload, so that preparing a payload does not
+   * allocate. The result must have been consumed before it is reused.
+   */
+  PreparePayloadResult reset(
+      ApiCallContext context,
+      int streamId,
+      Map<String, String> attachments,
+      Optional<byte[]> attachmentErrorResponse) {
+    this.context = context;
+    this.streamId = streamId;
+    this.attachments = attachments;
+    this.attachmentErrorResponse = attachmentErrorResponse;
+    this.payload = Optional.empty();
+    return this;
+  }
+
   public Map<String, String> getAttachments() {
     return attachments;
   }
@@ -60,6 +88,11 @@ public class PreparePayloadResult {
     return attachmentErrorResponse;
   }
 
+  /** Returns the payload to send instead of the received one, if it had to be rewritten. */
+  public Optional<byte[]> getPayload() {
+    return payload;
+  }
+
   public ApiCallContext getContext() {
     return context;
   }
@@ -0,0 +1,243 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of the PREPARED responses of Spanner, shared by all connections, so that drivers
+ * preparing the same query again, as they do on every new connection, are answered locally.
+ *
+ * <p>Responses are keyed by the keyspace of the connection, the query and the protocol version of
+ * the driver, and are kept along with the attachment of their prepared query id, which is put back
+ * in the attachments cache when they are served. The cache is cleared whenever a response reports a
+ * schema change, and responses expire after a while to pick up schema changes made by other
+ * clients. A prepared query id that Spanner no longer knows is evicted from the cache.
+ */
+final class PreparedResponseCache implements PreparedResponseCacheMXBean {
+
+  private static final int HEADER_LENGTH = 9;
+  private static final int OPCODE_OFFSET = 4;
+
+  private final AttachmentsCache attachmentsCache;
+  private final Duration ttl;
+  private volatile Cache<Key, Prepared> cache;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Constructor for PreparedResponseCache.
+   *
+   * @param attachmentsCache The global cache for the attachments.
+   * @param maxSize The maximum number of responses kept.
+   * @param ttl How long a response is kept.
+   */
+  PreparedResponseCache(AttachmentsCache attachmentsCache, long maxSize, Duration ttl) {
+    this.attachmentsCache = attachmentsCache;
+    this.ttl = ttl;
+    this.cache = newCache(maxSize, ttl);
+  }
+
+  /**
+   * Changes the maximum number of responses kept. The cached responses are carried over, up to the
+   * new size.
+   */
+  void setMaxSize(long maxSize) {
+    Cache<Key, Prepared> resized = newCache(maxSize, ttl);
+    resized.putAll(cache.asMap());
+    cache = resized;
+  }
+
+  private static Cache<Key, Prepared> newCache(long maxSize, Duration ttl) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the cached response to the preparation of a query for the given stream, or {@code
+   * null} if the query must be prepared by Spanner.
+   */
+  @Nullable
+  byte[] get(@Nullable String keyspace, String query, int protocolVersion, int streamId) {
+    Prepared prepared = cache.getIfPresent(new Key(keyspace, query, protocolVersion));
+    if (prepared == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    // The attachment may have been evicted from its cache since the query was prepared.
+    if (attachmentsCache.getIfPresent(prepared.attachmentKey) == null) {
+      attachmentsCache.put(prepared.attachmentKey, prepared.attachmentValue);
+    }
+    byte[] response = prepared.response.clone();
+    response[2] = (byte) (streamId >>> 8);
+    response[3] = (byte) streamId;
+    return response;
+  }
+
+  /**
+   * Caches the response of Spanner to the preparation of a query, if it is a PREPARED result whose
+   * attachment is known.
+   */
+  void put(@Nullable String keyspace, String query, int protocolVersion, byte[] response) {
+    if (resultKind(response) != ResultKind.PREPARED || response.length < HEADER_LENGTH + 6) {
+      return;
+    }
+    // A PREPARED result starts with the prepared query id, as [short bytes].
+    int queryIdLength = getUnsignedShort(response, HEADER_LENGTH + 4);
+    if (HEADER_LENGTH + 6 + queryIdLength > response.length) {
+      return;
+    }
+    byte[] queryId =
+        Arrays.copyOfRange(response, HEADER_LENGTH + 6, HEADER_LENGTH + 6 + queryIdLength);
+    String attachmentKey =
+        QueryIdAttachments.PREPARED_QUERY_ID_ATTACHMENT_PREFIX
+            + new String(queryId, StandardCharsets.UTF_8);
+    String attachmentValue = attachmentsCache.getIfPresent(attachmentKey);
+    if (attachmentValue != null) {
+      cache.put(
+          new Key(keyspace, query, protocolVersion),
+          new Prepared(response, queryId, attachmentKey, attachmentValue));
+    }
+  }
+
+  /**
+   * Updates the cache from a response of Spanner: it is cleared if the response reports a schema
+   * change, and a query id reported as unprepared is evicted.
+   */
+  void onResponse(byte[] response) {
+    if (response.length < HEADER_LENGTH + 4) {
+      return;
+    }
+    if (resultKind(response) == ResultKind.SCHEMA_CHANGE) {
+      invalidations.incrementAndGet();
+      cache.invalidateAll();
+    } else if (response[OPCODE_OFFSET] == Opcode.ERROR
+        && getInt(response, HEADER_LENGTH) == ErrorCode.UNPREPARED) {
+      // An Unprepared error is its code, its message as [string] and the query id as [short bytes].
+      int offset = HEADER_LENGTH + 4;
+      if (offset + 2 > response.length) {
+        return;
+      }
+      offset += 2 + getUnsignedShort(response, offset);
+      if (offset + 2 > response.length) {
+        return;
+      }
+      int queryIdLength = getUnsignedShort(response, offset);
+      offset += 2;
+      if (offset + queryIdLength > response.length) {
+        return;
+      }
+      byte[] queryId = Arrays.copyOfRange(response, offset, offset + queryIdLength);
+      cache.asMap().values().removeIf(prepared -> Arrays.equals(prepared.queryId, queryId));
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  @Override
+  public long getInvalidationCount() {
+    return invalidations.get();
+  }
+
+  @Override
+  public long getSize() {
+    return cache.size();
+  }
+
+  /** Returns the kind of a RESULT response, or -1 if the response isn't a result. */
+  static int resultKind(byte[] response) {
+    return response.length >= HEADER_LENGTH + 4 && response[OPCODE_OFFSET] == Opcode.RESULT
+        ? getInt(response, HEADER_LENGTH)
+        : -1;
+  }
+
+  private static int getUnsignedShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return (getUnsignedShort(bytes, offset) << 16) | getUnsignedShort(bytes, offset + 2);
+  }
+
+  /** The keyspace, query and protocol version a response is cached for. */
+  private static final class Key {
+    @Nullable private final String keyspace;
+    private final String query;
+    private final int protocolVersion;
+
+    private Key(@Nullable String keyspace, String query, int protocolVersion) {
+      this.keyspace = keyspace;
+      this.query = query;
+      this.protocolVersion = protocolVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return protocolVersion == other.protocolVersion
+          && query.equals(other.query)
+          && Objects.equals(keyspace, other.keyspace);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(keyspace, query, protocolVersion);
+    }
+  }
+
+  /** A PREPARED response, and the attachment of its prepared query id. */
+  private static final class Prepared {
+    private final byte[] response;
+    private final byte[] queryId;
+    private final String attachmentKey;
+    private final String attachmentValue;
+
+    private Prepared(
+        byte[] response, byte[] queryId, String attachmentKey, String attachmentValue) {
+      this.response = response;
+      this.queryId = queryId;
+      this.attachmentKey = attachmentKey;
+      this.attachmentValue = attachmentValue;
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+
+/**
+ * Translates frames between native protocol v5, which drivers may negotiate with the adapter, and
+ * native protocol v4, which is the version spoken by Spanner.
+ *
+ * <p>Most messages have the same body in both versions, and only get their version byte patched.
+ * QUERY, EXECUTE, BATCH and PREPARE requests, as well as ERROR responses and PREPARED results, are
+ * decoded and re-encoded in the target version.
+ */
+final class ProtocolVersionTranslator {
+
+  static final int SPANNER_PROTOCOL_VERSION = 4;
+  static final int MIN_PROTOCOL_VERSION = 3;
+  static final int MAX_PROTOCOL_VERSION = 5;
+
+  private static final int HEADER_LENGTH = 9;
+  private static final int FLAGS_OFFSET = 1;
+  private static final int OPCODE_OFFSET = 4;
+  private static final int TRACING_FLAG = 0x02;
+  private static final int CUSTOM_PAYLOAD_FLAG = 0x04;
+  private static final int WARNING_FLAG = 0x08;
+  private static final int TRACING_ID_LENGTH = 16;
+  private static final int VERSION_MASK = 0x7F;
+  private static final int RESPONSE_FLAG = 0x80;
+  private static final ByteBufAllocator byteBufAllocator = ByteBufAllocator.DEFAULT;
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(new ByteBufPrimitiveCodec(byteBufAllocator), Compressor.none());
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(new ByteBufPrimitiveCodec(byteBufAllocator), Compressor.none());
+
+  private ProtocolVersionTranslator() {}
+
+  /** Returns the protocol version of the given frame. */
+  static int version(byte[] frame) {
+    return frame[0] & VERSION_MASK;
+  }
+
+  /** Returns whether the adapter can serve drivers using the given protocol version. */
+  static boolean isSupported(int version) {
+    return version >= MIN_PROTOCOL_VERSION && version <= MAX_PROTOCOL_VERSION;
+  }
+
+  /** Returns the error message that makes drivers negotiate a lower protocol version. */
+  static String unsupportedVersionMessage(int version) {
+    return String.format(
+        "Invalid or unsupported protocol version (%d); supported versions are (3/v3, 4/v4, 5/v5)",
+        version);
+  }
+
+  /**
+   * Translates a request received from the driver to the protocol version spoken by Spanner.
+   *
+   * @throws IllegalArgumentException if the request uses a feature that has no equivalent in
+   *     protocol v4.
+   */
+  static byte[] toSpannerRequest(byte[] frame) {
+    if (version(frame) <= SPANNER_PROTOCOL_VERSION) {
+      return frame;
+    }
+    int opcode = frame[OPCODE_OFFSET];
+    if (opcode == Opcode.QUERY
+        || opcode == Opcode.EXECUTE
+        || opcode == Opcode.BATCH
+        || opcode == Opcode.PREPARE) {
+      Frame request = decode(serverFrameCodec, frame);
+      checkTranslatable(request.message);
+      return encode(
+          clientFrameCodec,
+          Frame.forRequest(
+              SPANNER_PROTOCOL_VERSION,
+              request.streamId,
+              request.tracing,
+              request.customPayload,
+              request.message));
+    }
+    return withVersion(frame, SPANNER_PROTOCOL_VERSION);
+  }
+
+  /**
+   * Translates a response from Spanner, or generated by the adapter, to the protocol version of
+   * the request it answers.
+   */
+  static byte[] toDriverResponse(byte[] frame, int version) {
+    if (version <= SPANNER_PROTOCOL_VERSION
+        || frame.length < HEADER_LENGTH
+        || version(frame) != SPANNER_PROTOCOL_VERSION) {
+      return frame;
+    }
+    int opcode = frame[OPCODE_OFFSET];
+    if (opcode == Opcode.ERROR || (opcode == Opcode.RESULT && isPreparedResult(frame))) {
+      Frame response = decode(clientFrameCodec, frame);
+      Message message = response.message;
+      if (message instanceof Prepared) {
+        // Spanner does not send result metadata ids, which protocol v5 requires. The prepared id
+        // is derived from the statement, so it also identifies its result metadata.
+        Prepared prepared = (Prepared) message;
+        message =
+            new Prepared(
+                prepared.preparedQueryId,
+                prepared.preparedQueryId,
+                prepared.variablesMetadata,
+                prepared.resultMetadata);
+      }
+      return encode(
+          serverFrameCodec,
+          Frame.forResponse(
+              version,
+              response.streamId,
+              response.tracingId,
+              response.customPayload,
+              response.warnings,
+              message));
+    }
+    return withVersion(frame, version);
+  }
+
+  private static void checkTranslatable(Message message) {
+    String keyspace = null;
+    int nowInSeconds = QueryOptions.NO_NOW_IN_SECONDS;
+    if (message instanceof Query) {
+      keyspace = ((Query) message).options.keyspace;
+      nowInSeconds = ((Query) message).options.nowInSeconds;
+    } else if (message instanceof Execute) {
+      keyspace = ((Execute) message).options.keyspace;
+      nowInSeconds = ((Execute) message).options.nowInSeconds;
+    } else if (message instanceof Batch) {
+      keyspace = ((Batch) message).keyspace;
+      nowInSeconds = ((Batch) message).nowInSeconds;
+    } else if (message instanceof Prepare) {
+      keyspace = ((Prepare) message).keyspace;
+    }
+    if (keyspace != null) {
+      throw new IllegalArgumentException(
+          "Per-query keyspaces are not supported, use the session keyspace instead.");
+    }
+    if (nowInSeconds != QueryOptions.NO_NOW_IN_SECONDS) {
+      throw new IllegalArgumentException("Per-query current times are not supported.");
+    }
+  }
+
+  private static boolean isPreparedResult(byte[] frame) {
+    int flags = frame[FLAGS_OFFSET];
+    int offset = HEADER_LENGTH;
+    // The result kind follows the tracing id, the warnings and the custom payload, if flagged.
+    if ((flags & TRACING_FLAG) != 0) {
+      offset += TRACING_ID_LENGTH;
+    }
+    if ((flags & WARNING_FLAG) != 0) {
+      offset = skipStringList(frame, offset);
+    }
+    if ((flags & CUSTOM_PAYLOAD_FLAG) != 0) {
+      offset = skipBytesMap(frame, offset);
+    }
+    return offset >= 0
+        && offset + 4 <= frame.length
+        && ByteBuffer.wrap(frame, offset, 4).getInt() == ResultKind.PREPARED;
+  }
+
+  /** Returns the offset following a [string list] at the given offset, or -1 if it overflows. */
+  private static int skipStringList(byte[] frame, int offset) {
+    if (offset < 0 || offset + 2 > frame.length) {
+      return -1;
+    }
+    int count = getUnsignedShort(frame, offset);
+    offset += 2;
+    for (int i = 0; i < count; i++) {
+      if (offset + 2 > frame.length) {
+        return -1;
+      }
+      offset += 2 + getUnsignedShort(frame, offset);
+    }
+    return offset;
+  }
+
+  /** Returns the offset following a [bytes map] at the given offset, or -1 if it overflows. */
+  private static int skipBytesMap(byte[] frame, int offset) {
+    if (offset < 0 || offset + 2 > frame.length) {
+      return -1;
+    }
+    int count = getUnsignedShort(frame, offset);
+    offset += 2;
+    for (int i = 0; i < count; i++) {
+      // The key, as [string], and the value, as [bytes].
+      if (offset + 2 > frame.length) {
+        return -1;
+      }
+      offset += 2 + getUnsignedShort(frame, offset);
+      if (offset + 4 > frame.length) {
+        return -1;
+      }
+      offset += 4 + Math.max(ByteBuffer.wrap(frame, offset, 4).getInt(), 0);
+      if (offset < 0) {
+        return -1;
+      }
+    }
+    return offset;
+  }
+
+  private static int getUnsignedShort(byte[] frame, int offset) {
+    return ((frame[offset] & 0xFF) << 8) | (frame[offset + 1] & 0xFF);
+  }
+
+  private static byte[] withVersion(byte[] frame, int version) {
+    byte[] translated = frame.clone();
+    translated[0] = (byte) ((frame[0] & RESPONSE_FLAG) | version);
+    return translated;
+  }
+
+  private static Frame decode(FrameCodec<ByteBuf> codec, byte[] frame) {
+    ByteBuf frameBuf = Unpooled.wrappedBuffer(frame);
+    try {
+      return codec.decode(frameBuf);
+    } finally {
+      frameBuf.release();
+    }
+  }
+
+  private static byte[] encode(FrameCodec<ByteBuf> codec, Frame frame) {
+    ByteBuf frameBuf = codec.encode(frame);
+    byte[] encoded = new byte[frameBuf.readableBytes()];
+    frameBuf.readBytes(encoded);
+    frameBuf.release();
+    return encoded;
+  }
+}
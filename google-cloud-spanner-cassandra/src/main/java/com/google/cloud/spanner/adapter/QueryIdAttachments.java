@@ -0,0 +1,239 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.cloud.spanner.adapter.util.ErrorFrameTemplate;
+import com.google.common.collect.ImmutableMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the attachments of the prepared query ids received on a connection, without allocating
+ * once an id has been seen.
+ *
+ * <p>The attachment key of every id, and the attachments built from its cached value, are kept in
+ * a small direct-mapped table. An entry is only rebuilt when another id takes its slot, or when the
+ * value cached for its id changes. Instances are owned by a single connection, and are not
+ * thread-safe.
+ */
+final class QueryIdAttachments {
+  static final String PREPARED_QUERY_ID_ATTACHMENT_PREFIX = "pqid/";
+  static final String MAX_COMMIT_DELAY_ATTACHMENT_KEY = "max_commit_delay";
+  static final String MAX_STALENESS_ATTACHMENT_KEY = "max_staleness";
+  private static final int SLOTS = 256;
+  private static final byte WRITE_ACTION_QUERY_ID_PREFIX = 'W';
+  private final AttachmentsCache attachmentsCache;
+  @Nullable private final String maxCommitDelayMillis;
+  @Nullable private final String maxStalenessMillis;
+  @Nullable private final CommitDelaySource commitDelay;
+  private final Entry[] entries = new Entry[SLOTS];
+
+  /**
+   * Creates the table of the query ids of a connection.
+   *
+   * @param attachmentsCache The global cache for the attachments.
+   * @param maxCommitDelayMillis The max commit delay added to the attachments of writes.
+   * @param maxStalenessMillis The staleness bound added to the attachments of stale reads.
+   * @param commitDelay The adaptive or configured max commit delay added to the attachments of
+   *     writes in place of {@code maxCommitDelayMillis}, or {@code null}.
+   */
+  QueryIdAttachments(
+      AttachmentsCache attachmentsCache,
+      Optional<String> maxCommitDelayMillis,
+      Optional<String> maxStalenessMillis,
+      @Nullable CommitDelaySource commitDelay) {
+    this.attachmentsCache = attachmentsCache;
+    this.maxCommitDelayMillis = maxCommitDelayMillis.orElse(null);
+    this.maxStalenessMillis = maxStalenessMillis.orElse(null);
+    this.commitDelay = commitDelay;
+  }
+
+  QueryIdAttachments(
+      AttachmentsCache attachmentsCache,
+      Optional<String> maxCommitDelayMillis,
+      Optional<String> maxStalenessMillis) {
+    this(attachmentsCache, maxCommitDelayMillis, maxStalenessMillis, null);
+  }
+
+  QueryIdAttachments(AttachmentsCache attachmentsCache, Optional<String> maxCommitDelayMillis) {
+    this(attachmentsCache, maxCommitDelayMillis, Optional.empty());
+  }
+
+  /**
+   * Returns the entry of the query id of {@code length} bytes at {@code offset} in {@code frame}.
+   * Its attachments are up to date with the attachments cache, unless the id isn't prepared.
+   */
+  Entry lookup(byte[] frame, int offset, int length) {
+    int hash = hash(frame, offset, length);
+    int slot = hash & (SLOTS - 1);
+    Entry entry = entries[slot];
+    if (entry == null || entry.hash != hash || !entry.matches(frame, offset, length)) {
+      entry = new Entry(hash, Arrays.copyOfRange(frame, offset, offset + length));
+      entries[slot] = entry;
+    }
+    String value = attachmentsCache.getIfPresent(entry.key);
+    String commitDelayMillis =
+        commitDelay != null ? commitDelay.delayMillis() : maxCommitDelayMillis;
+    if (value == null) {
+      entry.clear();
+    } else if (!value.equals(entry.value)) {
+      // The query may have been prepared again with another statement.
+      entry.coalescable = null;
+      entry.update(value, commitDelayMillis, maxStalenessMillis);
+    } else if (entry.commitDelayMillis != commitDelayMillis) {
+      // The adaptive and configured delays return the same instance until they change.
+      entry.update(value, commitDelayMillis, maxStalenessMillis);
+    }
+    return entry;
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int hash = 1;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    // Spread the high bits, as ids often only differ in their last bytes.
+    return hash ^ (hash >>> 16);
+  }
+
+  /** The attachments of a prepared query id. */
+  static final class Entry {
+    private final int hash;
+    private final byte[] queryId;
+    private final String key;
+    @Nullable private String value;
+    @Nullable private Map<String, String> attachments;
+    @Nullable private Map<String, String> writeAttachments;
+    @Nullable private Map<String, String> staleReadAttachments;
+    @Nullable private String commitDelayMillis;
+    // Built on the first unprepared error of the id, which is likely to be repeated until the
+    // driver prepares the query again.
+    @Nullable private ErrorFrameTemplate unprepared;
+    // Whether the writes of the query id may be coalesced into batches, updated by any connection
+    // that sent them; null until a write has been sent on its own.
+    @Nullable private volatile Boolean coalescable;
+
+    private Entry(int hash, byte[] queryId) {
+      this.hash = hash;
+      this.queryId = queryId;
+      this.key = PREPARED_QUERY_ID_ATTACHMENT_PREFIX + new String(queryId, StandardCharsets.UTF_8);
+    }
+
+    /** Returns whether this is the entry of the query id at the given offset of the frame. */
+    boolean matches(byte[] frame, int offset, int length) {
+      if (queryId.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (queryId[i] != frame[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void update(
+        String value, @Nullable String maxCommitDelayMillis, @Nullable String maxStalenessMillis) {
+      this.value = value;
+      this.commitDelayMillis = maxCommitDelayMillis;
+      this.attachments = ImmutableMap.of(key, value);
+      this.writeAttachments =
+          maxCommitDelayMillis == null
+              ? attachments
+              : ImmutableMap.of(key, value, MAX_COMMIT_DELAY_ATTACHMENT_KEY, maxCommitDelayMillis);
+      this.staleReadAttachments =
+          maxStalenessMillis == null
+              ? attachments
+              : ImmutableMap.of(key, value, MAX_STALENESS_ATTACHMENT_KEY, maxStalenessMillis);
+    }
+
+    private void clear() {
+      value = null;
+      attachments = null;
+      writeAttachments = null;
+      staleReadAttachments = null;
+    }
+
+    /** Returns whether the query id is in the attachments cache. */
+    boolean isPrepared() {
+      return value != null;
+    }
+
+    /** Returns whether the query id is the id of a write, which is routed to the leader. */
+    boolean isWrite() {
+      return queryId.length > 0 && queryId[0] == WRITE_ACTION_QUERY_ID_PREFIX;
+    }
+
+    byte[] queryId() {
+      return queryId;
+    }
+
+    /**
+     * Returns whether the writes of the query id may be coalesced into batches, or {@code null} if
+     * it is not known yet.
+     */
+    @Nullable
+    Boolean isCoalescable() {
+      return coalescable;
+    }
+
+    void setCoalescable(boolean coalescable) {
+      this.coalescable = coalescable;
+    }
+
+    /** Returns the unprepared error response of the query id for the given stream. */
+    byte[] unpreparedResponse(int streamId) {
+      if (unprepared == null) {
+        unprepared = ErrorFrameTemplate.unprepared(queryId);
+      }
+      return unprepared.forStream(streamId);
+    }
+
+    String key() {
+      return key;
+    }
+
+    @Nullable
+    String value() {
+      return value;
+    }
+
+    /** Returns the attachments of an Execute message of the query id. */
+    @Nullable
+    Map<String, String> executeAttachments() {
+      return isWrite() ? writeAttachments : attachments;
+    }
+
+    /**
+     * Returns the attachments of an Execute message of the query id that may be served stale,
+     * which are those of a strong read if stale reads are disabled.
+     */
+    @Nullable
+    Map<String, String> staleReadAttachments() {
+      return isWrite() ? writeAttachments : staleReadAttachments;
+    }
+
+    /** Returns the attachments of a Batch message of only this query id. */
+    @Nullable
+    Map<String, String> batchAttachments() {
+      return writeAttachments;
+    }
+  }
+}
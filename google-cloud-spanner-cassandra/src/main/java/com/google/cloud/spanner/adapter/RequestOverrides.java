@@ -0,0 +1,122 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.common.collect.ImmutableSet;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Maps the per-request overrides carried in the custom payload of a native protocol frame to the
+ * attachments of its AdaptMessage request.
+ *
+ * <p>A driver sets them as the custom payload of a statement, with UTF-8 values:
+ *
+ * <ul>
+ *   <li>{@code max_commit_delay}: the max commit delay of a write, in milliseconds, which replaces
+ *       the one of the adapter. It is ignored for reads.
+ *   <li>{@code request_priority}: the priority of the request, one of {@code LOW}, {@code MEDIUM}
+ *       or {@code HIGH}.
+ *   <li>{@code request_tag}: the tag of the request, reported in Spanner's query statistics.
+ * </ul>
+ *
+ * <p>Other custom payload entries are left to the request.
+ */
+final class RequestOverrides {
+  static final String MAX_COMMIT_DELAY_KEY = QueryIdAttachments.MAX_COMMIT_DELAY_ATTACHMENT_KEY;
+  static final String REQUEST_PRIORITY_KEY = "request_priority";
+  static final String REQUEST_TAG_KEY = "request_tag";
+  private static final long LARGEST_MAX_COMMIT_DELAY_MILLIS = 500;
+  private static final Set<String> PRIORITIES = ImmutableSet.of("LOW", "MEDIUM", "HIGH");
+
+  private RequestOverrides() {}
+
+  /**
+   * Returns the attachments of a request overridden by its custom payload, or the given attachments
+   * if the custom payload holds no override.
+   *
+   * @param attachments The attachments of the request.
+   * @param customPayload The custom payload of the request frame.
+   * @param write Whether the request is a write, to which a max commit delay applies.
+   * @throws IllegalArgumentException If an override has an invalid value.
+   */
+  static Map<String, String> apply(
+      Map<String, String> attachments, Map<String, ByteBuffer> customPayload, boolean write) {
+    String maxCommitDelay = write ? decode(customPayload.get(MAX_COMMIT_DELAY_KEY)) : null;
+    String priority = decode(customPayload.get(REQUEST_PRIORITY_KEY));
+    String tag = decode(customPayload.get(REQUEST_TAG_KEY));
+    if (maxCommitDelay == null && priority == null && tag == null) {
+      return attachments;
+    }
+    Map<String, String> overridden = new HashMap<>(attachments);
+    if (maxCommitDelay != null) {
+      overridden.put(MAX_COMMIT_DELAY_KEY, checkMaxCommitDelay(maxCommitDelay));
+    }
+    if (priority != null) {
+      overridden.put(REQUEST_PRIORITY_KEY, checkPriority(priority));
+    }
+    if (tag != null) {
+      overridden.put(REQUEST_TAG_KEY, tag);
+    }
+    return overridden;
+  }
+
+  private static String checkMaxCommitDelay(String maxCommitDelay) {
+    long millis;
+    try {
+      millis = Long.parseLong(maxCommitDelay.trim());
+    } catch (NumberFormatException e) {
+      millis = -1;
+    }
+    if (millis < 0 || millis > LARGEST_MAX_COMMIT_DELAY_MILLIS) {
+      throw new IllegalArgumentException(
+          "Invalid "
+              + MAX_COMMIT_DELAY_KEY
+              + " custom payload: "
+              + maxCommitDelay
+              + ". It must be a number of milliseconds between 0 and "
+              + LARGEST_MAX_COMMIT_DELAY_MILLIS
+              + ".");
+    }
+    return String.valueOf(millis);
+  }
+
+  private static String checkPriority(String priority) {
+    String normalized = priority.trim().toUpperCase(Locale.ROOT);
+    if (!PRIORITIES.contains(normalized)) {
+      throw new IllegalArgumentException(
+          "Invalid "
+              + REQUEST_PRIORITY_KEY
+              + " custom payload: "
+              + priority
+              + ". It must be one of "
+              + PRIORITIES
+              + ".");
+    }
+    return normalized;
+  }
+
+  @Nullable
+  private static String decode(@Nullable ByteBuffer value) {
+    return value == null ? null : StandardCharsets.UTF_8.decode(value.duplicate()).toString();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.protobuf.ByteString;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the body chunks of a response until its last chunk, which carries the frame header, is
+ * received.
+ *
+ * <p>Chunks are kept as received, without being copied, until they exceed the spill threshold.
+ * Following chunks are appended to a temporary file, so that the memory used by a connection does
+ * not depend on the size of the results it reads. The file is created on first use, reused for
+ * the following responses of the connection, and deleted when the spool is closed.
+ *
+ * <p>Spilled chunks are read back through a buffer allocated once per spool, as they are written to
+ * the buffered stream of a connection socket rather than to a channel that the file could be
+ * transferred to.
+ */
+final class ResponseSpool implements Closeable {
+
+  private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+  private final long spillThresholdBytes;
+  private final List<ByteString> chunks = new ArrayList<>();
+  private long bufferedBytes;
+  @Nullable private Path spillPath;
+  @Nullable private FileChannel spillChannel;
+  private long spilledBytes;
+  @Nullable private byte[] readBuffer;
+
+  /**
+   * Constructor for ResponseSpool.
+   *
+   * @param spillThresholdBytes The number of bytes kept in memory before chunks are spilled to a
+   *     temporary file.
+   */
+  ResponseSpool(long spillThresholdBytes) {
+    this.spillThresholdBytes = spillThresholdBytes;
+  }
+
+  /** Appends a chunk to the spooled response. */
+  void add(ByteString chunk) throws IOException {
+    if (spilledBytes == 0 && bufferedBytes + chunk.size() <= spillThresholdBytes) {
+      chunks.add(chunk);
+      bufferedBytes += chunk.size();
+      return;
+    }
+    FileChannel channel = spillChannel();
+    ByteBuffer buffer = chunk.asReadOnlyByteBuffer();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    spilledBytes += chunk.size();
+  }
+
+  /** Returns the number of spooled bytes. */
+  long size() {
+    return bufferedBytes + spilledBytes;
+  }
+
+  /** Returns the number of spooled bytes that were spilled to the temporary file. */
+  long spilledSize() {
+    return spilledBytes;
+  }
+
+  /** Writes the spooled chunks, in order, to the given stream, and clears the spool. */
+  void writeTo(OutputStream outputStream) throws IOException {
+    try {
+      for (ByteString chunk : chunks) {
+        chunk.writeTo(outputStream);
+      }
+      if (spilledBytes > 0) {
+        if (readBuffer == null) {
+          readBuffer = new byte[READ_BUFFER_BYTES];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(readBuffer);
+        long position = 0;
+        while (position < spilledBytes) {
+          buffer.clear();
+          buffer.limit((int) Math.min(readBuffer.length, spilledBytes - position));
+          int read = spillChannel.read(buffer, position);
+          if (read < 0) {
+            throw new IOException("The spooled response file was truncated.");
+          }
+          outputStream.write(readBuffer, 0, read);
+          position += read;
+        }
+      }
+    } finally {
+      clear();
+    }
+  }
+
+  /** Discards the spooled chunks. */
+  void clear() throws IOException {
+    chunks.clear();
+    bufferedBytes = 0;
+    if (spilledBytes > 0) {
+      spillChannel.truncate(0);
+      spillChannel.position(0);
+      spilledBytes = 0;
+    }
+  }
+
+  /** Discards the spooled chunks and deletes the temporary file, if any. */
+  @Override
+  public void close() throws IOException {
+    chunks.clear();
+    bufferedBytes = 0;
+    spilledBytes = 0;
+    readBuffer = null;
+    if (spillChannel != null) {
+      try {
+        spillChannel.close();
+      } finally {
+        Files.deleteIfExists(spillPath);
+        spillChannel = null;
+        spillPath = null;
+      }
+    }
+  }
+
+  private FileChannel spillChannel() throws IOException {
+    if (spillChannel == null) {
+      spillPath = Files.createTempFile("spanner-cassandra-response", ".spool");
+      spillChannel =
+          FileChannel.open(
+              spillPath,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+    }
+    return spillChannel;
+  }
+}
@@ -0,0 +1,404 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A read-through cache of the results of prepared reads of designated tables, shared by all
+ * connections, for small tables that are read far more often than they are written.
+ *
+ * <p>Each table has its own TTL and size limit. Results are keyed by the whole Execute request,
+ * which holds the prepared query id, the bound values and the paging state. The prepared query ids
+ * of a table are learnt from the responses of Spanner to their preparation. Any write to a table
+ * that flows through the adapter, whether a prepared write, a query or a batch mentioning the
+ * table, invalidates its results, as does a schema change. Writes made by other clients are only
+ * picked up once results expire.
+ */
+final class ResultCache implements ResultCacheMXBean {
+
+  private static final int HEADER_LENGTH = 9;
+  private static final int FLAGS_OFFSET = 1;
+  private static final int CUSTOM_PAYLOAD_FLAG = 0x04;
+  // The flag of query parameters ending with a client-side timestamp, as [long].
+  private static final int TIMESTAMP_FLAG = 0x20;
+  private static final int TIMESTAMP_LENGTH = 8;
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+
+  private final Map<String, Table> tables;
+  // The tables read or written by prepared query ids, by attachment key.
+  private final ConcurrentMap<String, Table> statements = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Constructor for ResultCache.
+   *
+   * @param tableSettings The TTL and size limit of the results of each cached table, by
+   *     keyspace-qualified name.
+   */
+  ResultCache(Map<String, TableSettings> tableSettings) {
+    ImmutableMap.Builder<String, Table> tables = ImmutableMap.builder();
+    for (Map.Entry<String, TableSettings> entry : tableSettings.entrySet()) {
+      String name = entry.getKey().toLowerCase(Locale.ROOT);
+      tables.put(name, new Table(name, entry.getValue()));
+    }
+    this.tables = tables.build();
+  }
+
+  /**
+   * Parses the settings of cached tables, given as comma-separated {@code
+   * keyspace.table:ttlSeconds:maxEntries} items.
+   *
+   * @throws IllegalArgumentException if the settings are not well formed.
+   */
+  static Map<String, TableSettings> parseTableSettings(String spec) {
+    Map<String, TableSettings> tableSettings = new LinkedHashMap<>();
+    for (String item : spec.split(",")) {
+      String[] parts = item.trim().split(":");
+      if (parts.length != 3 || parts[0].indexOf('.') <= 0) {
+        throw new IllegalArgumentException(
+            "Invalid result cache table '" + item + "', expected keyspace.table:ttlSeconds:size.");
+      }
+      try {
+        tableSettings.put(
+            parts[0],
+            new TableSettings(
+                Duration.ofSeconds(Long.parseLong(parts[1])), Long.parseLong(parts[2])));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid result cache table '" + item + "'.", e);
+      }
+    }
+    return tableSettings;
+  }
+
+  /**
+   * Learns the table read or written by a prepared query from the response of Spanner to its
+   * preparation. The table is taken from the metadata of the results or bound values, or from the
+   * query itself if it has neither.
+   */
+  void onPrepared(String query, byte[] response) {
+    if (PreparedResponseCache.resultKind(response) != ResultKind.PREPARED) {
+      return;
+    }
+    ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
+    Frame frame;
+    try {
+      frame = clientFrameCodec.decode(responseBuf);
+    } finally {
+      responseBuf.release();
+    }
+    Prepared prepared = (Prepared) frame.message;
+    String name = tableName(prepared.resultMetadata);
+    if (name == null) {
+      name = tableName(prepared.variablesMetadata);
+    }
+    Table table = null;
+    if (name != null) {
+      table = tables.get(name);
+    } else {
+      byte[] text = query.getBytes(StandardCharsets.UTF_8);
+      for (Table candidate : tables.values()) {
+        if (candidate.isMentionedIn(text, 0, text.length)) {
+          table = candidate;
+          break;
+        }
+      }
+    }
+    String key =
+        QueryIdAttachments.PREPARED_QUERY_ID_ATTACHMENT_PREFIX
+            + new String(prepared.preparedQueryId, StandardCharsets.UTF_8);
+    if (table != null) {
+      statements.put(key, table);
+    } else {
+      statements.remove(key);
+    }
+  }
+
+  @Nullable
+  private static String tableName(@Nullable RowsMetadata metadata) {
+    if (metadata == null || metadata.columnSpecs.isEmpty()) {
+      return null;
+    }
+    ColumnSpec column = metadata.columnSpecs.get(0);
+    return (column.ksName + "." + column.tableName).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the cached table read or written by the prepared query id with the given attachment
+   * key, or {@code null} if it is not a cached table.
+   */
+  @Nullable
+  Table table(String attachmentKey) {
+    return statements.get(attachmentKey);
+  }
+
+  /** Adds the cached tables whose name appears in the given query text to {@code out}. */
+  void addMentionedTables(byte[] text, int offset, int length, List<Table> out) {
+    for (Table table : tables.values()) {
+      if (table.isMentionedIn(text, offset, length)) {
+        out.add(table);
+      }
+    }
+  }
+
+  /** Clears every table if the given response of Spanner reports a schema change. */
+  void onResponse(byte[] response) {
+    if (PreparedResponseCache.resultKind(response) == ResultKind.SCHEMA_CHANGE) {
+      for (Table table : tables.values()) {
+        table.invalidate();
+      }
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  @Override
+  public long getInvalidationCount() {
+    return invalidations.get();
+  }
+
+  @Override
+  public long getSize() {
+    long size = 0;
+    for (Table table : tables.values()) {
+      size += table.results.size();
+    }
+    return size;
+  }
+
+  /** The TTL and size limit of the results of a cached table. */
+  static final class TableSettings {
+    private final Duration ttl;
+    private final long maxSize;
+
+    TableSettings(Duration ttl, long maxSize) {
+      this.ttl = ttl;
+      this.maxSize = maxSize;
+    }
+
+    Duration getTtl() {
+      return ttl;
+    }
+
+    long getMaxSize() {
+      return maxSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TableSettings)) {
+        return false;
+      }
+      TableSettings other = (TableSettings) o;
+      return maxSize == other.maxSize && ttl.equals(other.ttl);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(ttl, maxSize);
+    }
+  }
+
+  /** The cached results of a table. */
+  final class Table {
+    private final String name;
+    // The unqualified name of the table, as it may appear in queries.
+    private final byte[] tableName;
+    private final Cache<ByteBuffer, byte[]> results;
+    // Incremented by every invalidation, so that results read before a write are not cached after.
+    private final AtomicLong generation = new AtomicLong();
+
+    private Table(String name, TableSettings settings) {
+      this.name = name;
+      this.tableName = name.substring(name.indexOf('.') + 1).getBytes(StandardCharsets.UTF_8);
+      this.results =
+          CacheBuilder.newBuilder()
+              .maximumSize(settings.maxSize)
+              .expireAfterWrite(settings.ttl.toNanos(), TimeUnit.NANOSECONDS)
+              .build();
+    }
+
+    String name() {
+      return name;
+    }
+
+    /**
+     * Returns the key of the results of the given protocol v4 Execute request: the request without
+     * its stream id and its client-side timestamp, which do not affect its results.
+     */
+    ByteBuffer key(byte[] request) {
+      int length = request.length;
+      if (hasTimestamp(request)) {
+        length -= TIMESTAMP_LENGTH;
+      }
+      byte[] key = Arrays.copyOf(request, length);
+      key[2] = 0;
+      key[3] = 0;
+      return ByteBuffer.wrap(key);
+    }
+
+    /**
+     * Returns the cached response to the request with the given key, for the given stream, or
+     * {@code null} if the request must be sent to Spanner.
+     */
+    @Nullable
+    byte[] get(ByteBuffer key, int streamId) {
+      byte[] cached = results.getIfPresent(key);
+      if (cached == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+      hits.incrementAndGet();
+      byte[] response = cached.clone();
+      response[2] = (byte) (streamId >>> 8);
+      response[3] = (byte) streamId;
+      return response;
+    }
+
+    /** Returns the generation to pass to {@link #put} for a request about to be sent. */
+    long generation() {
+      return generation.get();
+    }
+
+    /**
+     * Caches the response to the request with the given key if it holds rows, and if the table
+     * was not invalidated since the generation the request was sent at.
+     */
+    void put(ByteBuffer key, long sentGeneration, byte[] response) {
+      if (PreparedResponseCache.resultKind(response) == ResultKind.ROWS
+          && generation.get() == sentGeneration) {
+        results.put(key, response);
+        // An invalidation may have raced with the put.
+        if (generation.get() != sentGeneration) {
+          results.invalidate(key);
+        }
+      }
+    }
+
+    /** Drops the cached results of the table, which is being written. */
+    void invalidate() {
+      generation.incrementAndGet();
+      invalidations.incrementAndGet();
+      results.invalidateAll();
+    }
+
+    /**
+     * Returns whether the unqualified name of the table appears as a word in the given query text,
+     * ignoring case.
+     */
+    boolean isMentionedIn(byte[] text, int offset, int length) {
+      int end = offset + length - tableName.length;
+      for (int i = offset; i <= end; i++) {
+        if (regionMatches(text, i)
+            && (i == offset || !isIdentifierPart(text[i - 1]))
+            && (i == end || !isIdentifierPart(text[i + tableName.length]))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean regionMatches(byte[] text, int offset) {
+      for (int i = 0; i < tableName.length; i++) {
+        if (Character.toLowerCase(text[offset + i]) != tableName[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns whether the query parameters of a protocol v4 Execute request end with a timestamp,
+   * which drivers set to a different value on every request.
+   */
+  private static boolean hasTimestamp(byte[] request) {
+    int offset = HEADER_LENGTH;
+    if ((request[FLAGS_OFFSET] & CUSTOM_PAYLOAD_FLAG) != 0) {
+      // The custom payload precedes the message, as [bytes map].
+      if (offset + 2 > request.length) {
+        return false;
+      }
+      int entries = unsignedShort(request, offset);
+      offset += 2;
+      for (int i = 0; i < entries && offset + 2 <= request.length; i++) {
+        offset += 2 + unsignedShort(request, offset);
+        if (offset + 4 > request.length) {
+          return false;
+        }
+        int valueLength =
+            (unsignedShort(request, offset) << 16) | unsignedShort(request, offset + 2);
+        offset += 4 + Math.max(valueLength, 0);
+      }
+    }
+    // The query id, as [short bytes], is followed by the consistency level and the flags.
+    if (offset + 2 > request.length) {
+      return false;
+    }
+    offset += 2 + unsignedShort(request, offset) + 2;
+    return offset < request.length
+        && (request[offset] & TIMESTAMP_FLAG) != 0
+        && request.length - offset > TIMESTAMP_LENGTH;
+  }
+
+  private static int unsignedShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private static boolean isIdentifierPart(byte b) {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_';
+  }
+}
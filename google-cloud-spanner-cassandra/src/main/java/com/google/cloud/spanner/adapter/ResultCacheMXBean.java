@@ -0,0 +1,36 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.google.api.core.InternalApi;
+
+/** Activity of the result cache of designated tables, exported over JMX. */
+@InternalApi
+public interface ResultCacheMXBean {
+
+  /** The number of reads answered from the cache. */
+  long getHitCount();
+
+  /** The number of reads of cached tables sent to Spanner. */
+  long getMissCount();
+
+  /** The number of times the results of a table were dropped because of a write. */
+  long getInvalidationCount();
+
+  /** The number of cached results, across all tables. */
+  long getSize();
+}
@@ -0,0 +1,348 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.CrcMismatchException;
+import com.datastax.oss.protocol.internal.Segment;
+import com.datastax.oss.protocol.internal.SegmentCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongPredicate;
+import javax.annotation.Nullable;
+
+/**
+ * Reads and writes the segment framing of native protocol v5, used on a connection once the
+ * STARTUP handshake completed.
+ *
+ * <p>Each segment carries a CRC24-protected header and a CRC32-protected payload. A self-contained
+ * segment holds one or more complete frames; larger frames are split across several segments.
+ * Responses are buffered with {@link #write(byte[])} and packed into as few segments as possible
+ * on {@link #flush(OutputStream)}, so that the responses to frames received in one segment are
+ * returned in one segment as well.
+ *
+ * <p>Received frames reserve their length from the memory budget of the connection before being
+ * returned. Frames split across several segments reserve it as soon as their header is received,
+ * since they are buffered until complete, and are skipped if it cannot be reserved.
+ */
+final class SegmentFraming {
+
+  private static final int FRAME_HEADER_LENGTH = 9;
+  private static final int FRAME_FLAGS_OFFSET = 1;
+  private static final int FRAME_LENGTH_OFFSET = 5;
+  private static final int FRAME_COMPRESSION_FLAG = 0x01;
+
+  private final SegmentCodec<ByteBuf> segmentCodec;
+  private final int maxFrameLength;
+  private final LongPredicate reserve;
+  private final Deque<byte[]> receivedFrames = new ArrayDeque<>();
+  private final ByteArrayOutputStream partialFrame = new ByteArrayOutputStream();
+  private int partialFrameLength = -1;
+  private int partialFrameReceived;
+  // Whether the frame being received is skipped, as its length could not be reserved.
+  private boolean skippingPartialFrame;
+  private int partialFrameStreamId;
+  // Whether the next received frame was reserved while its segments were received.
+  private boolean receivedFrameReserved;
+  // Whether a skipped frame was completely received, and must be answered as refused.
+  private boolean skippedFrameReceived;
+  private final List<byte[]> pendingFrames = new ArrayList<>();
+  private int pendingLength;
+
+  /**
+   * Creates the framing for a connection that negotiated the given compressor in its STARTUP
+   * message, or no compression if {@code null}.
+   *
+   * @param maxFrameLength The length, header included, beyond which received frames are refused.
+   * @param reserve Reserves the given number of bytes for a received frame, and returns whether
+   *     they were reserved. Reserved bytes are released by the caller once the frame is answered.
+   * @throws IllegalArgumentException If the compressor is not LZ4, the only algorithm allowed by
+   *     protocol v5. Other algorithms are refused when the STARTUP message is received.
+   */
+  SegmentFraming(
+      @Nullable FrameCompressor compressor, int maxFrameLength, LongPredicate reserve) {
+    if (compressor != null && !(compressor instanceof FrameCompressor.Lz4FrameCompressor)) {
+      throw new IllegalArgumentException(
+          "Protocol v5 does not support " + compressor.algorithm() + " compression.");
+    }
+    this.segmentCodec =
+        new SegmentCodec<>(
+            new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT),
+            compressor == null
+                ? Compressor.none()
+                : new SegmentCompressor((FrameCompressor.Lz4FrameCompressor) compressor));
+    this.maxFrameLength = maxFrameLength;
+    this.reserve = reserve;
+  }
+
+  SegmentFraming(@Nullable FrameCompressor compressor, int maxFrameLength) {
+    this(compressor, maxFrameLength, bytes -> true);
+  }
+
+  SegmentFraming(@Nullable FrameCompressor compressor) {
+    this(compressor, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the next frame received from the driver, reading segments from the given stream as
+   * needed.
+   *
+   * @return The complete frame, or an empty array if the end of the stream was reached.
+   * @throws IOException if the stream is not a valid sequence of segments.
+   * @throws DriverConnectionHandler.RejectedFrameException if the length of the frame could not be
+   *     reserved, in which case it was skipped.
+   */
+  byte[] readFrame(InputStream inputStream) throws IOException {
+    while (receivedFrames.isEmpty()) {
+      if (!readSegment(inputStream)) {
+        return new byte[0];
+      }
+      if (skippedFrameReceived) {
+        skippedFrameReceived = false;
+        throw DriverConnectionHandler.RejectedFrameException.overloaded(partialFrameStreamId);
+      }
+    }
+    byte[] frame = receivedFrames.poll();
+    boolean reserved = receivedFrameReserved;
+    receivedFrameReserved = false;
+    if (!reserved && !reserve.test(frame.length)) {
+      throw DriverConnectionHandler.RejectedFrameException.overloaded(streamId(frame, 0));
+    }
+    // Compression applies to whole segments: drivers may still set the frame flag, which is
+    // meaningless in protocol v5.
+    frame[FRAME_FLAGS_OFFSET] &= ~FRAME_COMPRESSION_FLAG;
+    return frame;
+  }
+
+  /** Returns whether frames that were already received are waiting to be read. */
+  boolean hasReceivedFrames() {
+    return !receivedFrames.isEmpty();
+  }
+
+  /** Buffers a frame to send to the driver on the next {@link #flush(OutputStream)}. */
+  void write(byte[] frame) {
+    pendingFrames.add(frame);
+    pendingLength += frame.length;
+  }
+
+  /** Writes the buffered frames to the given stream, packed into segments. */
+  void flush(OutputStream outputStream) throws IOException {
+    int maxPayloadLength = Segment.MAX_PAYLOAD_LENGTH;
+    if (pendingLength <= maxPayloadLength) {
+      // Small frames share one self-contained segment.
+      ByteBuf payload = Unpooled.buffer(pendingLength);
+      for (byte[] frame : pendingFrames) {
+        payload.writeBytes(frame);
+      }
+      writeSegment(outputStream, payload, true);
+    } else {
+      for (byte[] frame : pendingFrames) {
+        if (frame.length <= maxPayloadLength) {
+          writeSegment(outputStream, Unpooled.wrappedBuffer(frame), true);
+        } else {
+          for (int offset = 0; offset < frame.length; offset += maxPayloadLength) {
+            int length = Math.min(maxPayloadLength, frame.length - offset);
+            writeSegment(outputStream, Unpooled.wrappedBuffer(frame, offset, length), false);
+          }
+        }
+      }
+    }
+    pendingFrames.clear();
+    pendingLength = 0;
+    outputStream.flush();
+  }
+
+  private void writeSegment(OutputStream outputStream, ByteBuf payload, boolean selfContained)
+      throws IOException {
+    List<Object> encoded = new ArrayList<>(3);
+    segmentCodec.encode(new Segment<>(payload, selfContained), encoded);
+    for (Object part : encoded) {
+      ByteBuf buf = (ByteBuf) part;
+      buf.readBytes(outputStream, buf.readableBytes());
+      buf.release();
+    }
+  }
+
+  private boolean readSegment(InputStream inputStream) throws IOException {
+    byte[] header = new byte[segmentCodec.headerLength() + SegmentCodec.CRC24_LENGTH];
+    int bytesRead = DriverConnectionHandler.readNBytesJava8(inputStream, header, 0, header.length);
+    if (bytesRead == 0 && partialFrameReceived == 0) {
+      return false;
+    } else if (bytesRead < header.length) {
+      throw new IOException("Segment is not well formed.");
+    }
+    try {
+      SegmentCodec.Header segmentHeader = segmentCodec.decodeHeader(Unpooled.wrappedBuffer(header));
+      byte[] body = new byte[segmentHeader.payloadLength + SegmentCodec.CRC32_LENGTH];
+      if (DriverConnectionHandler.readNBytesJava8(inputStream, body, 0, body.length)
+          < body.length) {
+        throw new IOException("Segment is not well formed.");
+      }
+      Segment<ByteBuf> segment = segmentCodec.decode(segmentHeader, Unpooled.wrappedBuffer(body));
+      byte[] payload = new byte[segment.payload.readableBytes()];
+      segment.payload.readBytes(payload);
+      segment.payload.release();
+      if (segment.isSelfContained) {
+        splitFrames(payload);
+      } else {
+        appendToPartialFrame(payload);
+      }
+      return true;
+    } catch (CrcMismatchException e) {
+      throw new IOException("Segment checksum mismatch: " + e.getMessage(), e);
+    }
+  }
+
+  private void splitFrames(byte[] payload) throws IOException {
+    if (partialFrameReceived > 0) {
+      throw new IOException("Self-contained segment received in the middle of a frame.");
+    }
+    int offset = 0;
+    while (offset < payload.length) {
+      int frameLength = frameLength(payload, offset, payload.length - offset);
+      if (frameLength < 0 || frameLength > payload.length - offset) {
+        throw new IOException("Self-contained segment holds an incomplete frame.");
+      }
+      byte[] frame = new byte[frameLength];
+      System.arraycopy(payload, offset, frame, 0, frameLength);
+      receivedFrames.add(frame);
+      offset += frameLength;
+    }
+  }
+
+  private void appendToPartialFrame(byte[] payload) throws IOException {
+    partialFrameReceived += payload.length;
+    if (!skippingPartialFrame) {
+      partialFrame.write(payload);
+    }
+    if (partialFrameLength < 0) {
+      byte[] header = partialFrame.toByteArray();
+      partialFrameLength = frameLength(header, 0, header.length);
+      if (partialFrameLength > maxFrameLength) {
+        // The frame would be buffered until complete, so refuse it before its remainder arrives.
+        throw new IOException(
+            DriverConnectionHandler.frameTooLargeMessage(partialFrameLength, maxFrameLength));
+      }
+      if (partialFrameLength >= 0) {
+        partialFrameStreamId = streamId(header, 0);
+        // The frame is reserved before it is buffered, and its remainder is skipped otherwise.
+        if (!reserve.test(partialFrameLength)) {
+          skippingPartialFrame = true;
+          partialFrame.reset();
+        }
+      }
+    }
+    if (partialFrameLength >= 0 && partialFrameReceived >= partialFrameLength) {
+      if (partialFrameReceived > partialFrameLength) {
+        throw new IOException("Segment holds more than the remainder of a frame.");
+      }
+      if (skippingPartialFrame) {
+        skippedFrameReceived = true;
+      } else {
+        receivedFrames.add(partialFrame.toByteArray());
+        receivedFrameReserved = true;
+      }
+      partialFrame.reset();
+      partialFrameLength = -1;
+      partialFrameReceived = 0;
+      skippingPartialFrame = false;
+    }
+  }
+
+  private static int streamId(byte[] bytes, int offset) {
+    return (short) (((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF));
+  }
+
+  /** Returns the total length of the frame at the given offset, or -1 if its header is cut. */
+  private static int frameLength(byte[] bytes, int offset, int available) throws IOException {
+    if (available < FRAME_HEADER_LENGTH) {
+      return -1;
+    }
+    int bodyLength = ByteBuffer.wrap(bytes, offset + FRAME_LENGTH_OFFSET, 4).getInt();
+    if (bodyLength < 0) {
+      throw new IOException("Payload is not well formed.");
+    }
+    return FRAME_HEADER_LENGTH + bodyLength;
+  }
+
+  /**
+   * Adapts the LZ4 compressor to the segment codec. The codec only compresses segment payloads
+   * without their length, and the length-prefixed methods delegate to the frame compressor for
+   * completeness.
+   */
+  private static final class SegmentCompressor implements Compressor<ByteBuf> {
+    private final FrameCompressor.Lz4FrameCompressor compressor;
+
+    SegmentCompressor(FrameCompressor.Lz4FrameCompressor compressor) {
+      this.compressor = compressor;
+    }
+
+    @Override
+    public String algorithm() {
+      return compressor.algorithm();
+    }
+
+    @Override
+    public ByteBuf compress(ByteBuf uncompressed) {
+      byte[] bytes = toBytes(uncompressed);
+      return Unpooled.wrappedBuffer(compressor.compress(bytes, 0, bytes.length));
+    }
+
+    @Override
+    public ByteBuf decompress(ByteBuf compressed) {
+      byte[] bytes = toBytes(compressed);
+      try {
+        return Unpooled.wrappedBuffer(
+            compressor.decompress(
+                bytes, 0, bytes.length, compressor.uncompressedLength(bytes, 0, bytes.length)));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(
+            "Compressed payload is not well formed: " + e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public ByteBuf compressWithoutLength(ByteBuf uncompressed) {
+      byte[] bytes = toBytes(uncompressed);
+      return Unpooled.wrappedBuffer(compressor.compressWithoutLength(bytes, 0, bytes.length));
+    }
+
+    @Override
+    public ByteBuf decompressWithoutLength(ByteBuf compressed, int uncompressedLength) {
+      byte[] bytes = toBytes(compressed);
+      return Unpooled.wrappedBuffer(
+          compressor.decompressWithoutLength(bytes, 0, bytes.length, uncompressedLength));
+    }
+
+    private static byte[] toBytes(ByteBuf buf) {
+      byte[] bytes = new byte[buf.readableBytes()];
+      buf.getBytes(buf.readerIndex(), bytes);
+      return bytes;
+    }
+  }
+}
@@ -19,11 +19,14 @@ package com.google.cloud.spanner.adapter;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
 import com.datastax.oss.driver.api.core.metrics.Metrics;
 import com.datastax.oss.driver.api.core.session.Request;
 import com.datastax.oss.driver.api.core.type.reflect.GenericType;
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -38,6 +41,7 @@ import org.slf4j.LoggerFactory;
 public final class SpannerCqlSession implements CqlSession {
 
   private static final Logger LOG = LoggerFactory.getLogger(SpannerCqlSession.class);
+
   private final CqlSession delegate;
   private final Adapter adapter;
 
@@ -124,6 +128,53 @@ public final class SpannerCqlSession implements CqlSession {
     return delegate.execute(request, resultType);
   }
 
+  /**
+   * Reads all the rows of a table with concurrent queries over ranges of its primary key, which
+   * are spread across the gRPC channels of the Adapter.
+   *
+   * <p>Spanner stores the rows of a table in the order of their primary key, so each range is
+   * read from the rows it holds alone. The ranges are delimited by split points of the leading
+   * primary key column, the first column of the partition key, which could come for example from
+   * the keys of an earlier export or from a sample of the keys of the table. Splitting the table
+   * into a few times more ranges than requests in flight evens out ranges of unequal sizes.
+   *
+   * <p>The table must be known to the schema metadata of the session.
+   *
+   * @param table The table to scan, as {@code keyspace.table}, or the name of a table in the
+   *     keyspace of the session.
+   * @param splitPoints Values of the leading primary key column, in ascending order. The table is
+   *     split into {@code splitPoints.size() + 1} ranges, and is read with a single query if there
+   *     are none.
+   * @param parallelism The maximum number of queries in flight.
+   * @return The scan, to be iterated by a single thread and closed if not read to the end.
+   * @throws IllegalArgumentException If the parallelism isn't positive, the table is unknown or a
+   *     split point is {@code null}.
+   */
+  public ParallelScan scanParallel(String table, List<?> splitPoints, int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    TableMetadata metadata = tableMetadata(table);
+    List<BoundStatement> ranges =
+        ParallelScan.keyRanges(
+            this,
+            metadata.getKeyspace().asCql(true) + "." + metadata.getName().asCql(true),
+            metadata.getPrimaryKey().get(0).getName().asCql(true),
+            splitPoints);
+    return new ParallelScan(this, ranges, parallelism);
+  }
+
+  private TableMetadata tableMetadata(String table) {
+    int dot = table.indexOf('.');
+    Optional<CqlIdentifier> keyspace =
+        dot < 0 ? getKeyspace() : Optional.of(CqlIdentifier.fromCql(table.substring(0, dot)));
+    CqlIdentifier name = CqlIdentifier.fromCql(table.substring(dot + 1));
+    return keyspace
+        .flatMap(getMetadata()::getKeyspace)
+        .flatMap(keyspaceMetadata -> keyspaceMetadata.getTable(name))
+        .orElseThrow(() -> new IllegalArgumentException("Unknown table: " + table));
+  }
+
   /**
    * {@inheritDoc}
    *
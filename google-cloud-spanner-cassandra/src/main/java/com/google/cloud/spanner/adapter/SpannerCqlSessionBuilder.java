@@ -19,11 +19,14 @@ package com.google.cloud.spanner.adapter;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.metadata.EndPoint;
 import com.datastax.oss.driver.api.core.session.SessionBuilder;
+import com.google.api.gax.rpc.TransportChannelProvider;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -54,6 +57,25 @@ public final class SpannerCqlSessionBuilder
   private String databaseUri = null;
   private String host = null;
   private Optional<Duration> maxCommitDelay = Optional.empty();
+  private Optional<Duration> maxStaleness = Optional.empty();
+  private Optional<Duration> adaptiveMaxCommitDelay = Optional.empty();
+  private Duration writeLatencyTarget = AdapterOptions.DEFAULT_WRITE_LATENCY_TARGET;
+  private TransportChannelProvider channelProvider = null;
+  private int coreConnectionThreads = AdapterOptions.DEFAULT_CORE_CONNECTION_THREADS;
+  private int maxConnectionThreads = AdapterOptions.DEFAULT_MAX_CONNECTION_THREADS;
+  private int connectionQueueSize = AdapterOptions.DEFAULT_CONNECTION_QUEUE_SIZE;
+  private boolean streamResponses = false;
+  private long responseSpillThresholdBytes = AdapterOptions.DEFAULT_RESPONSE_SPILL_THRESHOLD_BYTES;
+  private int maxFrameBytes = AdapterOptions.DEFAULT_MAX_FRAME_BYTES;
+  private long memoryBudgetBytes = AdapterOptions.defaultMemoryBudgetBytes();
+  private Duration writeCoalescingWindow = Duration.ZERO;
+  private int maxWriteCoalescingBatchSize = AdapterOptions.DEFAULT_MAX_WRITE_COALESCING_BATCH_SIZE;
+  private long preparedResponseCacheSize = AdapterOptions.DEFAULT_PREPARED_RESPONSE_CACHE_SIZE;
+  private Duration preparedResponseCacheTtl = AdapterOptions.DEFAULT_PREPARED_RESPONSE_CACHE_TTL;
+  private final Map<String, ResultCache.TableSettings> resultCacheTables = new LinkedHashMap<>();
+  private int prefetchPages = 0;
+  private int maxBatchMutations = AdapterOptions.DEFAULT_MAX_BATCH_MUTATIONS;
+  private Duration drainTimeout = AdapterOptions.DEFAULT_DRAIN_TIMEOUT;
 
   /**
    * Wraps the default CQL session with a SpannerCqlSession instance.
@@ -104,6 +126,199 @@ public final class SpannerCqlSessionBuilder
     return this;
   }
 
+  /**
+   * Makes the max commit delay of writes adaptive, up to the given bound: it is kept at zero under
+   * light write load, and grows under heavy write load to let Spanner commit more writes together,
+   * as long as the average write latency stays within the write latency target. Cannot be combined
+   * with {@link #setMaxCommitDelay}. By default the max commit delay is not adaptive.
+   */
+  public SpannerCqlSessionBuilder setAdaptiveMaxCommitDelay(Duration adaptiveMaxCommitDelay) {
+    this.adaptiveMaxCommitDelay = Optional.of(adaptiveMaxCommitDelay);
+    return this;
+  }
+
+  /**
+   * Sets the average write latency the adaptive max commit delay keeps writes within. Defaults to
+   * 100 milliseconds.
+   */
+  public SpannerCqlSessionBuilder setWriteLatencyTarget(Duration writeLatencyTarget) {
+    this.writeLatencyTarget = writeLatencyTarget;
+    return this;
+  }
+
+  /**
+   * Allows reads at consistency level ONE or LOCAL_ONE to be served stale, by the nearest replica,
+   * up to the given staleness. Reads at any other consistency level, such as QUORUM or
+   * LOCAL_QUORUM, remain strong. By default all reads are strong.
+   */
+  public SpannerCqlSessionBuilder setMaxStaleness(Duration maxStaleness) {
+    this.maxStaleness = Optional.of(maxStaleness);
+    return this;
+  }
+
+  /**
+   * Sets the number of threads serving driver connections that are kept alive even when idle. By
+   * default 8 threads are kept.
+   */
+  public SpannerCqlSessionBuilder setCoreConnectionThreads(int coreConnectionThreads) {
+    this.coreConnectionThreads = coreConnectionThreads;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of threads serving driver connections, which is the maximum number of
+   * connections served concurrently. By default at most 1024 threads are created.
+   */
+  public SpannerCqlSessionBuilder setMaxConnectionThreads(int maxConnectionThreads) {
+    this.maxConnectionThreads = maxConnectionThreads;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of accepted connections waiting for a thread once all connection
+   * threads are busy. Connections beyond it are answered with an overloaded error and closed. By
+   * default up to 64 connections wait.
+   */
+  public SpannerCqlSessionBuilder setConnectionQueueSize(int connectionQueueSize) {
+    this.connectionQueueSize = connectionQueueSize;
+    return this;
+  }
+
+  /**
+   * Sets whether results are streamed to the driver as soon as they are received from Spanner,
+   * instead of being assembled in memory first. This bounds the memory used by each connection
+   * when reading large result pages. By default results are assembled in memory.
+   */
+  public SpannerCqlSessionBuilder setStreamResponses(boolean streamResponses) {
+    this.streamResponses = streamResponses;
+    return this;
+  }
+
+  /**
+   * Sets the number of bytes of a streamed result kept in memory per connection, beyond which the
+   * result is spilled to a temporary file until it is complete. By default up to 16 MiB are kept
+   * in memory.
+   */
+  public SpannerCqlSessionBuilder setResponseSpillThresholdBytes(long responseSpillThresholdBytes) {
+    this.responseSpillThresholdBytes = responseSpillThresholdBytes;
+    return this;
+  }
+
+  /**
+   * Sets the maximum length of a request frame sent by the driver. Longer frames are answered with
+   * a protocol error without being buffered. By default frames of up to 256 MiB are accepted.
+   */
+  public SpannerCqlSessionBuilder setMaxFrameBytes(int maxFrameBytes) {
+    this.maxFrameBytes = maxFrameBytes;
+    return this;
+  }
+
+  /**
+   * Sets the number of bytes that request and response buffers in flight may hold at once. Frames
+   * that would exceed it wait for other frames to complete, and are answered with an overloaded
+   * error if they cannot be buffered in time. Set it to 0 to not limit buffers. By default half of
+   * the maximum heap size is used.
+   */
+  public SpannerCqlSessionBuilder setMemoryBudgetBytes(long memoryBudgetBytes) {
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    return this;
+  }
+
+  /**
+   * Enables the coalescing of concurrent prepared writes into UNLOGGED batches: a write waits up to
+   * the given window for concurrent writes with the same consistency level to be sent with it in a
+   * single batch, trading that much latency for fewer requests and commits. A write is only delayed
+   * while other writes are in flight. Conditional statements are never coalesced, nor are writes
+   * with a client-side timestamp, which the driver sets by default: configure it with {@code
+   * advanced.timestamp-generator.class = ServerSideTimestampGenerator} for its writes to be
+   * coalesced. By default writes are not coalesced.
+   */
+  public SpannerCqlSessionBuilder setWriteCoalescingWindow(Duration writeCoalescingWindow) {
+    this.writeCoalescingWindow = writeCoalescingWindow;
+    return this;
+  }
+
+  /** Sets the maximum number of writes coalesced into a batch. Defaults to 64. */
+  public SpannerCqlSessionBuilder setMaxWriteCoalescingBatchSize(int maxWriteCoalescingBatchSize) {
+    this.maxWriteCoalescingBatchSize = maxWriteCoalescingBatchSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of PREPARE responses cached, so that queries prepared again, as drivers
+   * do on every new connection, are answered without a round trip to Spanner. Defaults to 0, which
+   * disables the cache. Cached responses may hold stale metadata until they expire when the schema
+   * is changed by other clients.
+   */
+  public SpannerCqlSessionBuilder setPreparedResponseCacheSize(long preparedResponseCacheSize) {
+    this.preparedResponseCacheSize = preparedResponseCacheSize;
+    return this;
+  }
+
+  /**
+   * Sets how long a PREPARE response is cached, which bounds how long schema changes made by other
+   * clients go unnoticed. Defaults to 5 minutes.
+   */
+  public SpannerCqlSessionBuilder setPreparedResponseCacheTtl(Duration preparedResponseCacheTtl) {
+    this.preparedResponseCacheTtl = preparedResponseCacheTtl;
+    return this;
+  }
+
+  /**
+   * Caches the results of prepared reads of a small, rarely updated table, such as a configuration
+   * table, so that repeated reads are answered without a round trip to Spanner. Writes to the table
+   * through this session invalidate its results; writes by other clients are only seen once
+   * results expire. By default no results are cached.
+   *
+   * @param table The keyspace-qualified name of the table.
+   * @param ttl How long a result is cached.
+   * @param maxSize The maximum number of results cached for the table.
+   */
+  public SpannerCqlSessionBuilder setResultCache(String table, Duration ttl, long maxSize) {
+    this.resultCacheTables.put(table, new ResultCache.TableSettings(ttl, maxSize));
+    return this;
+  }
+
+  /**
+   * Prefetches the next page of paged reads as soon as a page is returned, keeping up to the given
+   * number of pages per connection, so that paging through large results does not wait a round
+   * trip per page. Results are then no longer streamed. Defaults to 0, which disables prefetching.
+   */
+  public SpannerCqlSessionBuilder setPrefetchPages(int prefetchPages) {
+    this.prefetchPages = prefetchPages;
+    return this;
+  }
+
+  /**
+   * Sets the estimated number of mutations over which an UNLOGGED batch is split into batches
+   * within it, which are sent one after the other in the order of the batch. The mutations of a
+   * statement are estimated as its number of bound values; set it below 80000, the limit of a
+   * Spanner commit, to leave room for the entries of secondary indexes. Defaults to 0, which never
+   * splits batches.
+   */
+  public SpannerCqlSessionBuilder setMaxBatchMutations(int maxBatchMutations) {
+    this.maxBatchMutations = maxBatchMutations;
+    return this;
+  }
+
+  /**
+   * Sets how long closing the session waits for the in-process adapter to complete the requests it
+   * has in flight before closing its connections. Defaults to 10 seconds.
+   */
+  public SpannerCqlSessionBuilder setDrainTimeout(Duration drainTimeout) {
+    this.drainTimeout = drainTimeout;
+    return this;
+  }
+
+  /**
+   * Sets the transport channel provider used to reach the Spanner Adapter service, replacing the
+   * default authenticated channel pool. Only meant for running against a local stand-in backend.
+   */
+  SpannerCqlSessionBuilder setChannelProvider(TransportChannelProvider channelProvider) {
+    this.channelProvider = channelProvider;
+    return this;
+  }
+
   /**
    * Creates the session with the options set by this builder.
    *
@@ -141,6 +356,17 @@ public final class SpannerCqlSessionBuilder
     checkContactPoints();
     checkNumGrpcChannels();
     checkMaxCommitDelay();
+    checkMaxStaleness();
+    checkAdaptiveMaxCommitDelay();
+    checkConnectionThreads();
+    checkResponseSpillThreshold();
+    checkMemoryLimits();
+    checkWriteCoalescing();
+    checkPreparedResponseCache();
+    checkResultCache();
+    checkPrefetchPages();
+    checkMaxBatchMutations();
+    checkDrainTimeout();
   }
 
   private void checkAndSetupHost() {
@@ -204,8 +430,139 @@ public final class SpannerCqlSessionBuilder
     }
   }
 
+  private void checkAdaptiveMaxCommitDelay() {
+    if (!adaptiveMaxCommitDelay.isPresent()) {
+      return;
+    }
+    if (maxCommitDelay.isPresent()) {
+      throw new IllegalArgumentException(
+          "The max commit delay and the adaptive max commit delay cannot both be set.");
+    }
+    if (adaptiveMaxCommitDelay.get().toMillis() <= 0
+        || adaptiveMaxCommitDelay.get().toMillis() > LARGEST_MAX_COMMIT_DELAY_MILLIS) {
+      throw new IllegalArgumentException(
+          "The adaptive max commit delay must be > 0 and <= "
+              + LARGEST_MAX_COMMIT_DELAY_MILLIS
+              + "ms.");
+    }
+    if (writeLatencyTarget.isNegative() || writeLatencyTarget.isZero()) {
+      throw new IllegalArgumentException("The write latency target must be positive.");
+    }
+  }
+
+  private void checkMaxStaleness() {
+    if (maxStaleness.isPresent() && maxStaleness.get().isNegative()) {
+      throw new IllegalArgumentException("The max staleness must not be negative.");
+    }
+  }
+
+  private void checkConnectionThreads() {
+    if (coreConnectionThreads < 0
+        || maxConnectionThreads <= 0
+        || coreConnectionThreads > maxConnectionThreads) {
+      throw new IllegalArgumentException(
+          "Connection threads must satisfy 0 <= core threads <= max threads and max threads > 0.");
+    }
+    if (connectionQueueSize < 0) {
+      throw new IllegalArgumentException("The connection queue size must not be negative.");
+    }
+  }
+
+  private void checkResponseSpillThreshold() {
+    if (responseSpillThresholdBytes < 0) {
+      throw new IllegalArgumentException("The response spill threshold must not be negative.");
+    }
+  }
+
+  private void checkWriteCoalescing() {
+    if (writeCoalescingWindow.isNegative()) {
+      throw new IllegalArgumentException("The write coalescing window must not be negative.");
+    }
+    if (maxWriteCoalescingBatchSize < 2) {
+      throw new IllegalArgumentException("The max write coalescing batch size must be >= 2.");
+    }
+  }
+
+  private void checkPreparedResponseCache() {
+    if (preparedResponseCacheSize < 0) {
+      throw new IllegalArgumentException("The prepared response cache size must not be negative.");
+    }
+    if (preparedResponseCacheTtl.isNegative() || preparedResponseCacheTtl.isZero()) {
+      throw new IllegalArgumentException("The prepared response cache TTL must be positive.");
+    }
+  }
+
+  private void checkResultCache() {
+    for (Map.Entry<String, ResultCache.TableSettings> entry : resultCacheTables.entrySet()) {
+      if (entry.getKey().indexOf('.') <= 0) {
+        throw new IllegalArgumentException(
+            "The result cache table " + entry.getKey() + " must be qualified by its keyspace.");
+      }
+      Duration ttl = entry.getValue().getTtl();
+      if (ttl.isNegative() || ttl.isZero() || entry.getValue().getMaxSize() <= 0) {
+        throw new IllegalArgumentException(
+            "The result cache TTL and size of " + entry.getKey() + " must be positive.");
+      }
+    }
+  }
+
+  private void checkPrefetchPages() {
+    if (prefetchPages < 0) {
+      throw new IllegalArgumentException("The number of prefetched pages must not be negative.");
+    }
+  }
+
+  private void checkMaxBatchMutations() {
+    if (maxBatchMutations < 0) {
+      throw new IllegalArgumentException("The max batch mutations must not be negative.");
+    }
+  }
+
+  private void checkDrainTimeout() {
+    if (drainTimeout.isNegative()) {
+      throw new IllegalArgumentException("The drain timeout must not be negative.");
+    }
+  }
+
+  private void checkMemoryLimits() {
+    if (maxFrameBytes <= 0) {
+      throw new IllegalArgumentException("The max frame size must be > 0.");
+    }
+    if (memoryBudgetBytes < 0) {
+      throw new IllegalArgumentException("The memory budget must not be negative.");
+    }
+  }
+
   private void createAndStartAdapter() {
-    adapter = new Adapter(host, databaseUri, iNetAddress, port, numGrpcChannels, maxCommitDelay);
+    adapter =
+        new Adapter(
+            AdapterOptions.newBuilder()
+                .spannerEndpoint(host)
+                .databaseUri(databaseUri)
+                .inetAddress(iNetAddress)
+                .port(port)
+                .numGrpcChannels(numGrpcChannels)
+                .maxCommitDelay(maxCommitDelay)
+                .maxStaleness(maxStaleness)
+                .adaptiveMaxCommitDelay(adaptiveMaxCommitDelay)
+                .writeLatencyTarget(writeLatencyTarget)
+                .channelProvider(channelProvider)
+                .coreConnectionThreads(coreConnectionThreads)
+                .maxConnectionThreads(maxConnectionThreads)
+                .connectionQueueSize(connectionQueueSize)
+                .streamResponses(streamResponses)
+                .responseSpillThresholdBytes(responseSpillThresholdBytes)
+                .maxFrameBytes(maxFrameBytes)
+                .memoryBudgetBytes(memoryBudgetBytes)
+                .writeCoalescingWindow(writeCoalescingWindow)
+                .maxWriteCoalescingBatchSize(maxWriteCoalescingBatchSize)
+                .preparedResponseCacheSize(preparedResponseCacheSize)
+                .preparedResponseCacheTtl(preparedResponseCacheTtl)
+                .resultCacheTables(resultCacheTables)
+                .prefetchPages(prefetchPages)
+                .maxBatchMutations(maxBatchMutations)
+                .drainTimeout(drainTimeout)
+                .build());
     adapter.start();
   }
 }
@@ -0,0 +1,302 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the native protocol request frames received from drivers to a compact binary log, so
+ * that production traffic can later be replayed against new adapter builds.
+ *
+ * <p>Control frames (STARTUP, OPTIONS, PREPARE, REGISTER, ...) are always recorded, since a replay
+ * depends on them. QUERY, EXECUTE and BATCH frames are recorded with the configured sample rate.
+ * The ids returned for PREPARE requests are recorded too, so that a replay can map the captured
+ * EXECUTE and BATCH frames to the ids issued by the replay backend. Capture stops once the log
+ * reaches its size cap.
+ *
+ * <p>The log has the following layout, with varints in unsigned LEB128 encoding:
+ *
+ * <pre>
+ * log    := magic:int32 version:int8 startEpochMillis:int64 record*
+ * record := type:int8 connectionId:varint arrivalMicros:varint streamId:int16 length:varint
+ *           bytes[length]
+ * </pre>
+ *
+ * where {@code arrivalMicros} is relative to the start of the capture, and {@code bytes} is either
+ * a complete request frame or the id of a prepared statement.
+ */
+final class TrafficCapture implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TrafficCapture.class);
+  static final int MAGIC = 0x53435443; // "SCTC"
+  static final byte FORMAT_VERSION = 1;
+  static final byte REQUEST_RECORD = 0;
+  static final byte PREPARED_RECORD = 1;
+
+  private static final int HEADER_LENGTH = 9;
+  private static final int OPCODE_OFFSET = 4;
+
+  private final DataOutputStream out;
+  private final double sampleRate;
+  private final long maxBytes;
+  private final long startNanos;
+  private final AtomicInteger connectionIds = new AtomicInteger();
+  private long bytesWritten;
+  private boolean stopped;
+
+  private TrafficCapture(DataOutputStream out, double sampleRate, long maxBytes) {
+    this.out = out;
+    this.sampleRate = sampleRate;
+    this.maxBytes = maxBytes;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Creates a capture writing to the given file, replacing any existing content.
+   *
+   * @param file The file to write the log to.
+   * @param sampleRate The fraction, between 0 and 1, of QUERY, EXECUTE and BATCH frames to record.
+   * @param maxBytes The size of the log after which capture stops.
+   */
+  static TrafficCapture open(Path file, double sampleRate, long maxBytes) throws IOException {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("The traffic capture sample rate must be in [0, 1].");
+    }
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    out.writeInt(MAGIC);
+    out.writeByte(FORMAT_VERSION);
+    out.writeLong(System.currentTimeMillis());
+    TrafficCapture capture = new TrafficCapture(out, sampleRate, maxBytes);
+    capture.bytesWritten = out.size();
+    LOG.info(
+        "Capturing driver traffic to {} with sample rate {} and a cap of {} bytes.",
+        file,
+        sampleRate,
+        maxBytes);
+    return capture;
+  }
+
+  /** Returns a new id identifying the frames of one driver connection in the log. */
+  int newConnectionId() {
+    return connectionIds.incrementAndGet();
+  }
+
+  /**
+   * Records a request frame, subject to sampling.
+   *
+   * @param connectionId The id of the connection the frame was received on.
+   * @param arrivalNanos The {@link System#nanoTime()} at which the frame was fully received.
+   * @param frame The complete request frame.
+   */
+  void recordRequest(int connectionId, long arrivalNanos, byte[] frame) {
+    if (frame.length < HEADER_LENGTH) {
+      return;
+    }
+    byte opcode = frame[OPCODE_OFFSET];
+    boolean sampled = opcode == Opcode.QUERY || opcode == Opcode.EXECUTE || opcode == Opcode.BATCH;
+    if (sampled && (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return;
+    }
+    write(REQUEST_RECORD, connectionId, arrivalNanos, streamId(frame), frame, 0, frame.length);
+  }
+
+  /**
+   * Records the id of a prepared statement if the given response answers a PREPARE request.
+   *
+   * @param connectionId The id of the connection the request was received on.
+   * @param request The complete request frame.
+   * @param response The complete response frame.
+   */
+  void recordResponse(int connectionId, byte[] request, byte[] response) {
+    if (request.length < HEADER_LENGTH
+        || request[OPCODE_OFFSET] != Opcode.PREPARE
+        || response.length < HEADER_LENGTH + 6
+        || response[OPCODE_OFFSET] != Opcode.RESULT
+        || readInt(response, HEADER_LENGTH) != ResultKind.PREPARED) {
+      return;
+    }
+    int idLength = readUnsignedShort(response, HEADER_LENGTH + 4);
+    if (response.length < HEADER_LENGTH + 6 + idLength) {
+      return;
+    }
+    write(
+        PREPARED_RECORD,
+        connectionId,
+        System.nanoTime(),
+        streamId(request),
+        response,
+        HEADER_LENGTH + 6,
+        idLength);
+  }
+
+  private synchronized void write(
+      byte type,
+      int connectionId,
+      long timeNanos,
+      short streamId,
+      byte[] bytes,
+      int offset,
+      int length) {
+    if (stopped) {
+      return;
+    }
+    // Upper bound of the record size: type, two varints of at most 10 bytes, stream id and length.
+    if (bytesWritten + 1 + 10 + 10 + 2 + 5 + length > maxBytes) {
+      LOG.info("Traffic capture reached its cap of {} bytes and stopped.", maxBytes);
+      stopped = true;
+      return;
+    }
+    try {
+      int before = out.size();
+      out.writeByte(type);
+      writeVarint(out, connectionId);
+      writeVarint(out, TimeUnit.NANOSECONDS.toMicros(timeNanos - startNanos));
+      out.writeShort(streamId);
+      writeVarint(out, length);
+      out.write(bytes, offset, length);
+      bytesWritten += out.size() - before;
+    } catch (IOException e) {
+      LOG.warn("Error writing traffic capture, capture stopped: {}", e.getMessage());
+      stopped = true;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    stopped = true;
+    out.close();
+  }
+
+  private static short streamId(byte[] frame) {
+    return (short) readUnsignedShort(frame, 2);
+  }
+
+  private static int readUnsignedShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private static int readInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 24)
+        | ((bytes[offset + 1] & 0xFF) << 16)
+        | ((bytes[offset + 2] & 0xFF) << 8)
+        | (bytes[offset + 3] & 0xFF);
+  }
+
+  private static void writeVarint(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarint(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint in traffic capture.");
+  }
+
+  /** A record of a traffic capture log. */
+  static final class Record {
+    final byte type;
+    final int connectionId;
+    final long arrivalMicros;
+    final short streamId;
+    final byte[] bytes;
+
+    Record(byte type, int connectionId, long arrivalMicros, short streamId, byte[] bytes) {
+      this.type = type;
+      this.connectionId = connectionId;
+      this.arrivalMicros = arrivalMicros;
+      this.streamId = streamId;
+      this.bytes = bytes;
+    }
+  }
+
+  /** Reads the records of a traffic capture log in order. */
+  static final class Reader implements Closeable {
+    private final DataInputStream in;
+    private final long startEpochMillis;
+
+    Reader(Path file) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+      if (in.readInt() != MAGIC) {
+        in.close();
+        throw new IOException(file + " is not a traffic capture log.");
+      }
+      byte version = in.readByte();
+      if (version != FORMAT_VERSION) {
+        in.close();
+        throw new IOException("Unsupported traffic capture format version " + version + ".");
+      }
+      this.startEpochMillis = in.readLong();
+    }
+
+    /** The wall clock time, in milliseconds since the epoch, at which the capture started. */
+    long getStartEpochMillis() {
+      return startEpochMillis;
+    }
+
+    /** Returns the next record, or {@code null} at the end of the log. */
+    @Nullable
+    Record next() throws IOException {
+      int type = in.read();
+      if (type < 0) {
+        return null;
+      }
+      try {
+        int connectionId = (int) readVarint(in);
+        long arrivalMicros = readVarint(in);
+        short streamId = in.readShort();
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new Record((byte) type, connectionId, arrivalMicros, streamId, bytes);
+      } catch (EOFException e) {
+        // The capture was cut off while writing its last record.
+        return null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,576 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.google.api.gax.rpc.ApiCallContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the concurrent prepared writes of all connections into UNLOGGED batches, so that
+ * bursts of small writes take fewer AdaptMessage calls and commits.
+ *
+ * <p>Writes are grouped by consistency level and call context, so that a batch is sent with the
+ * deadline and call options of every write it holds. The first write of a group waits up to the
+ * coalescing window for other writes to join it, unless no other write is in flight, in which case
+ * it is sent right away; a group is also sent as soon as it is full. The VOID result of a batch is
+ * fanned out to the stream of every write of the group.
+ *
+ * <p>Only writes of statements known to return a VOID result on their own are coalesced, which
+ * excludes conditional statements. Spanner applies a batch in a single transaction, so a batch
+ * that fails applied none of its writes: they are then sent again one by one, and their
+ * statements are no longer coalesced. Writes with a client-side timestamp are sent on their own, as
+ * a batch can only carry one timestamp for all its writes. The DataStax Java driver 4.x sets one on
+ * every request by default, so its writes are only coalesced when it is configured with {@code
+ * advanced.timestamp-generator.class = ServerSideTimestampGenerator}; a warning is logged the first
+ * time a timestamped write of a coalescable statement is sent on its own.
+ */
+final class WriteCoalescer implements WriteCoalescerMXBean {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WriteCoalescer.class);
+  private static final int HEADER_LENGTH = 9;
+  private static final int PROTOCOL_VERSION = 4;
+  private static final int RESPONSE_FLAG = 0x80;
+  private static final int OPCODE_OFFSET = 4;
+  private static final byte UNLOGGED_BATCH = 1;
+  private static final byte BATCH_QUERY_KIND_PREPARED = 1;
+  private static final int RESULT_KIND_VOID = 0x0001;
+  // The query flags of an Execute message.
+  private static final int FLAG_VALUES = 0x01;
+  private static final int FLAG_SKIP_METADATA = 0x02;
+  private static final int FLAG_PAGE_SIZE = 0x04;
+  private static final int FLAG_SERIAL_CONSISTENCY = 0x10;
+  private static final int FLAG_DEFAULT_TIMESTAMP = 0x20;
+  // The flags that a write may carry to be coalesced; paging state, timestamps and named values
+  // are not.
+  private static final int COALESCABLE_FLAGS =
+      FLAG_VALUES | FLAG_SKIP_METADATA | FLAG_PAGE_SIZE | FLAG_SERIAL_CONSISTENCY;
+
+  private final AdapterClientWrapper adapterClientWrapper;
+  private volatile long windowNanos;
+  // Guarded by lock.
+  private int maxBatchSize;
+  private final Lock lock = new ReentrantLock();
+  // The groups that writes can still join, by group key. Guarded by the lock.
+  private final Map<GroupKey, Group> openGroups = new HashMap<>();
+  // The number of coalescable writes being processed. Guarded by the lock.
+  private int inFlight;
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong coalescedWrites = new AtomicLong();
+  private final AtomicLong fallbackWrites = new AtomicLong();
+  private final AtomicBoolean timestampWarningLogged = new AtomicBoolean();
+
+  /**
+   * Constructor for WriteCoalescer.
+   *
+   * @param adapterClientWrapper The adapter client wrapper used to send writes and batches.
+   * @param window How long the first write of a group waits for other writes to join it.
+   * @param maxBatchSize The maximum number of writes coalesced into a batch.
+   */
+  WriteCoalescer(AdapterClientWrapper adapterClientWrapper, Duration window, int maxBatchSize) {
+    if (maxBatchSize < 2) {
+      throw new IllegalArgumentException("The max batch size must be at least 2.");
+    }
+    this.adapterClientWrapper = adapterClientWrapper;
+    this.windowNanos = window.toNanos();
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /** Sets how long the first write of the groups opened from now on waits for other writes. */
+  void setWindow(Duration window) {
+    windowNanos = window.toNanos();
+  }
+
+  /** Sets the maximum number of writes coalesced into the batches of groups opened from now on. */
+  void setMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize < 2) {
+      throw new IllegalArgumentException("The max batch size must be at least 2.");
+    }
+    lock.lock();
+    try {
+      this.maxBatchSize = maxBatchSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Executes a prepared write, coalesced with concurrent writes if possible, and returns its
+   * response.
+   *
+   * @param payload The Execute frame of the write.
+   * @param queryId The prepared query id of the write.
+   * @param attachments The attachments of the write when it is sent on its own.
+   * @param context The call context of the write.
+   * @param streamId The stream id of the write.
+   * @return A byte array payload of the response to the write.
+   */
+  byte[] execute(
+      byte[] payload,
+      QueryIdAttachments.Entry queryId,
+      Map<String, String> attachments,
+      ApiCallContext context,
+      int streamId) {
+    Boolean coalescable = queryId.isCoalescable();
+    Write write = null;
+    if (Boolean.TRUE.equals(coalescable)) {
+      write = Write.parse(payload, queryId, context, streamId);
+      if (write == null && hasTimestamp(payload) && !timestampWarningLogged.getAndSet(true)) {
+        LOG.warn(
+            "Prepared writes with a client-side timestamp are sent without being coalesced. Set"
+                + " advanced.timestamp-generator.class = ServerSideTimestampGenerator in the driver"
+                + " configuration for them to be coalesced.");
+      }
+    }
+    if (write == null) {
+      byte[] response =
+          adapterClientWrapper.sendGrpcRequest(payload, attachments, context, streamId);
+      if (coalescable == null) {
+        queryId.setCoalescable(isVoidResult(response));
+      }
+      return response;
+    }
+
+    Group group;
+    boolean leader;
+    boolean wait;
+    lock.lock();
+    try {
+      wait = inFlight > 0;
+      inFlight++;
+      group = openGroups.get(write.groupKey);
+      leader = group == null;
+      if (leader) {
+        group = new Group(lock.newCondition(), maxBatchSize);
+        // A write with no other write in flight is sent right away, alone.
+        if (wait) {
+          openGroups.put(write.groupKey, group);
+        }
+      }
+      group.writes.add(write);
+      if (group.writes.size() >= maxBatchSize) {
+        openGroups.remove(write.groupKey, group);
+        group.full.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      if (leader) {
+        if (wait) {
+          awaitFollowers(write.groupKey, group);
+        }
+        send(group);
+      } else {
+        group.awaitSent();
+      }
+      // A write left alone, or whose batch failed, is sent on its own.
+      if (write.response == null) {
+        if (group.writes.size() > 1) {
+          fallbackWrites.incrementAndGet();
+        }
+        write.response =
+            adapterClientWrapper.sendGrpcRequest(payload, attachments, context, streamId);
+      }
+      return write.response;
+    } finally {
+      lock.lock();
+      try {
+        inFlight--;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Returns whether an Execute frame carries a client-side timestamp. */
+  private static boolean hasTimestamp(byte[] payload) {
+    if (payload.length < HEADER_LENGTH + 2 || payload[OPCODE_OFFSET] != Opcode.EXECUTE) {
+      return false;
+    }
+    int flagsOffset = HEADER_LENGTH + 2 + getUnsignedShort(payload, HEADER_LENGTH) + 2;
+    return flagsOffset < payload.length && (payload[flagsOffset] & FLAG_DEFAULT_TIMESTAMP) != 0;
+  }
+
+  private void awaitFollowers(GroupKey groupKey, Group group) {
+    long deadline = System.nanoTime() + windowNanos;
+    lock.lock();
+    try {
+      long remainingNanos;
+      while (openGroups.get(groupKey) == group
+          && (remainingNanos = deadline - System.nanoTime()) > 0) {
+        group.full.awaitNanos(remainingNanos);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      openGroups.remove(groupKey, group);
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sends the writes of a closed group as a batch, and sets the response of every write if the
+   * batch succeeded.
+   */
+  private void send(Group group) {
+    List<Write> writes = group.writes;
+    Write first = writes.get(0);
+    try {
+      if (writes.size() == 1) {
+        return;
+      }
+      // The writes of a group share an equal call context, with which the batch is sent.
+      byte[] response =
+          adapterClientWrapper.sendGrpcRequest(
+              encodeBatch(writes), batchAttachments(writes), first.context, first.streamId);
+      batches.incrementAndGet();
+      coalescedWrites.addAndGet(writes.size());
+      if (isVoidResult(response)) {
+        for (Write write : writes) {
+          write.response = voidResult(write.streamId);
+        }
+      } else if (opcode(response) == Opcode.ERROR) {
+        LOG.debug("Batch of {} coalesced writes failed, sending them one by one.", writes.size());
+        for (Write write : writes) {
+          write.queryId.setCoalescable(false);
+        }
+      } else {
+        // The batch was applied, and its result holds for every write of the group.
+        for (Write write : writes) {
+          write.response = response.clone();
+          setStreamId(write.response, write.streamId);
+        }
+      }
+    } finally {
+      group.sent.countDown();
+    }
+  }
+
+  /** Encodes the UNLOGGED batch of the given writes, with the settings of the group. */
+  private static byte[] encodeBatch(List<Write> writes) {
+    Write first = writes.get(0);
+    int bodyLength = 1 + 2;
+    for (Write write : writes) {
+      bodyLength += 1 + write.queryIdLength + Math.max(write.valuesLength, 2);
+    }
+    int flags = first.flags & FLAG_SERIAL_CONSISTENCY;
+    bodyLength += 2 + 1;
+    if ((flags & FLAG_SERIAL_CONSISTENCY) != 0) {
+      bodyLength += 2;
+    }
+
+    byte[] batch = new byte[HEADER_LENGTH + bodyLength];
+    batch[0] = PROTOCOL_VERSION;
+    setStreamId(batch, first.streamId);
+    batch[OPCODE_OFFSET] = (byte) Opcode.BATCH;
+    int offset = putInt(batch, 5, bodyLength);
+    batch[offset++] = UNLOGGED_BATCH;
+    offset = putShort(batch, offset, writes.size());
+    for (Write write : writes) {
+      batch[offset++] = BATCH_QUERY_KIND_PREPARED;
+      System.arraycopy(write.payload, HEADER_LENGTH, batch, offset, write.queryIdLength);
+      offset += write.queryIdLength;
+      if (write.valuesLength > 0) {
+        System.arraycopy(write.payload, write.valuesOffset, batch, offset, write.valuesLength);
+        offset += write.valuesLength;
+      } else {
+        offset = putShort(batch, offset, 0);
+      }
+    }
+    offset = putShort(batch, offset, first.consistency);
+    batch[offset++] = (byte) flags;
+    if ((flags & FLAG_SERIAL_CONSISTENCY) != 0) {
+      putShort(batch, offset, first.serialConsistency);
+    }
+    return batch;
+  }
+
+  /** Returns the attachments of all the prepared queries of a batch. */
+  private static Map<String, String> batchAttachments(List<Write> writes) {
+    QueryIdAttachments.Entry first = writes.get(0).queryId;
+    Map<String, String> attachments = null;
+    for (Write write : writes) {
+      if (attachments == null && !write.queryId.key().equals(first.key())) {
+        attachments = new HashMap<>(first.batchAttachments());
+      }
+      if (attachments != null) {
+        attachments.put(write.queryId.key(), write.queryId.value());
+      }
+    }
+    return attachments != null ? attachments : first.batchAttachments();
+  }
+
+  @Override
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  @Override
+  public long getCoalescedWriteCount() {
+    return coalescedWrites.get();
+  }
+
+  @Override
+  public long getFallbackWriteCount() {
+    return fallbackWrites.get();
+  }
+
+  @Override
+  public double getAverageBatchSize() {
+    long batchCount = batches.get();
+    return batchCount == 0 ? 0 : (double) coalescedWrites.get() / batchCount;
+  }
+
+  private static int opcode(byte[] frame) {
+    return frame.length >= HEADER_LENGTH ? frame[OPCODE_OFFSET] : -1;
+  }
+
+  /** Returns whether the given response is a VOID result, as returned by successful writes. */
+  static boolean isVoidResult(byte[] response) {
+    return response.length == HEADER_LENGTH + 4
+        && opcode(response) == Opcode.RESULT
+        && getInt(response, HEADER_LENGTH) == RESULT_KIND_VOID;
+  }
+
+  /** Returns the VOID result of the given stream. */
+  static byte[] voidResult(int streamId) {
+    byte[] result = new byte[HEADER_LENGTH + 4];
+    result[0] = (byte) (RESPONSE_FLAG | PROTOCOL_VERSION);
+    setStreamId(result, streamId);
+    result[OPCODE_OFFSET] = (byte) Opcode.RESULT;
+    putInt(result, 5, 4);
+    putInt(result, HEADER_LENGTH, RESULT_KIND_VOID);
+    return result;
+  }
+
+  private static void setStreamId(byte[] frame, int streamId) {
+    putShort(frame, 2, streamId);
+  }
+
+  private static int getUnsignedShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private static int getInt(byte[] bytes, int offset) {
+    return (getUnsignedShort(bytes, offset) << 16) | getUnsignedShort(bytes, offset + 2);
+  }
+
+  private static int putShort(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 8);
+    bytes[offset + 1] = (byte) value;
+    return offset + 2;
+  }
+
+  private static int putInt(byte[] bytes, int offset, int value) {
+    putShort(bytes, offset, value >>> 16);
+    return putShort(bytes, offset + 2, value);
+  }
+
+  /**
+   * The settings shared by the writes of a group: their consistency levels, and their call context,
+   * with which the batch is sent.
+   */
+  private static final class GroupKey {
+    private final int consistency;
+    private final int serialConsistency;
+    private final ApiCallContext context;
+
+    private GroupKey(int consistency, int serialConsistency, ApiCallContext context) {
+      this.consistency = consistency;
+      this.serialConsistency = serialConsistency;
+      this.context = context;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof GroupKey)) {
+        return false;
+      }
+      GroupKey that = (GroupKey) other;
+      return consistency == that.consistency
+          && serialConsistency == that.serialConsistency
+          && context.equals(that.context);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(consistency, serialConsistency, context);
+    }
+  }
+
+  /** A group of writes sent as one batch. */
+  private static final class Group {
+    private final Condition full;
+    private final List<Write> writes;
+    private final CountDownLatch sent = new CountDownLatch(1);
+
+    private Group(Condition full, int maxBatchSize) {
+      this.full = full;
+      this.writes = new ArrayList<>(maxBatchSize);
+    }
+
+    private void awaitSent() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          sent.await();
+          break;
+        } catch (InterruptedException e) {
+          // The batch is sent by another connection, which completes it in any case.
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * A prepared write, and the parts of its Execute message copied into a batch: its query id as
+   * [short bytes], which directly follows the header, and its values.
+   */
+  private static final class Write {
+    private final byte[] payload;
+    private final QueryIdAttachments.Entry queryId;
+    private final ApiCallContext context;
+    private final int streamId;
+    private final int queryIdLength;
+    private final int valuesOffset;
+    private final int valuesLength;
+    private final int consistency;
+    private final int flags;
+    private final int serialConsistency;
+    private final GroupKey groupKey;
+    // Set by the connection that sent the batch, before the group is marked as sent.
+    @Nullable private byte[] response;
+
+    private Write(
+        byte[] payload,
+        QueryIdAttachments.Entry queryId,
+        ApiCallContext context,
+        int streamId,
+        int queryIdLength,
+        int valuesOffset,
+        int valuesLength,
+        int consistency,
+        int flags,
+        int serialConsistency) {
+      this.payload = payload;
+      this.queryId = queryId;
+      this.context = context;
+      this.streamId = streamId;
+      this.queryIdLength = queryIdLength;
+      this.valuesOffset = valuesOffset;
+      this.valuesLength = valuesLength;
+      this.consistency = consistency;
+      this.flags = flags;
+      this.serialConsistency = serialConsistency;
+      this.groupKey = new GroupKey(consistency, serialConsistency, context);
+    }
+
+    /**
+     * Parses the Execute frame of a write, or returns {@code null} if the write cannot be part of
+     * a batch.
+     */
+    @Nullable
+    static Write parse(
+        byte[] payload,
+        QueryIdAttachments.Entry queryId,
+        ApiCallContext context,
+        int streamId) {
+      // Frames with tracing or a custom payload expect a response of their own.
+      if (payload.length < HEADER_LENGTH + 2
+          || payload[0] != PROTOCOL_VERSION
+          || payload[1] != 0
+          || payload[OPCODE_OFFSET] != Opcode.EXECUTE) {
+        return null;
+      }
+      // An Execute message is the query id as [short bytes], the consistency as [short], the
+      // flags as [byte], and the values as [short n] and n [value], if flagged, followed by the
+      // other flagged options.
+      int queryIdLength = 2 + getUnsignedShort(payload, HEADER_LENGTH);
+      int offset = HEADER_LENGTH + queryIdLength;
+      if (offset + 3 > payload.length) {
+        return null;
+      }
+      int consistency = getUnsignedShort(payload, offset);
+      int flags = payload[offset + 2] & 0xFF;
+      offset += 3;
+      if ((flags & ~COALESCABLE_FLAGS) != 0) {
+        return null;
+      }
+      int valuesOffset = offset;
+      if ((flags & FLAG_VALUES) != 0) {
+        if (offset + 2 > payload.length) {
+          return null;
+        }
+        int valueCount = getUnsignedShort(payload, offset);
+        offset += 2;
+        for (int i = 0; i < valueCount; i++) {
+          if (offset + 4 > payload.length) {
+            return null;
+          }
+          int valueLength = getInt(payload, offset);
+          offset += 4 + Math.max(valueLength, 0);
+        }
+      }
+      int valuesLength = offset - valuesOffset;
+      if ((flags & FLAG_PAGE_SIZE) != 0) {
+        offset += 4;
+      }
+      int serialConsistency = 0;
+      if ((flags & FLAG_SERIAL_CONSISTENCY) != 0) {
+        if (offset + 2 > payload.length) {
+          return null;
+        }
+        serialConsistency = getUnsignedShort(payload, offset);
+        offset += 2;
+      }
+      if (offset != payload.length) {
+        return null;
+      }
+      return new Write(
+          payload,
+          queryId,
+          context,
+          streamId,
+          queryIdLength,
+          valuesOffset,
+          valuesLength,
+          consistency,
+          flags,
+          serialConsistency);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter.util;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.google.api.core.InternalApi;
+
+/**
+ * A precomputed error response frame, for errors that are sent repeatedly with the same message.
+ *
+ * <p>The frame is encoded once; responses are copies of it with their stream id patched in, so
+ * that a storm of the same error costs neither encoding nor intermediate buffers.
+ */
+@InternalApi
+public final class ErrorFrameTemplate {
+
+  private final byte[] frame;
+
+  private ErrorFrameTemplate(byte[] frame) {
+    this.frame = frame;
+  }
+
+  /** Creates the template of a server error response with the given message. */
+  public static ErrorFrameTemplate serverError(String message) {
+    return new ErrorFrameTemplate(
+        ErrorMessageUtils.encodeError(0, ErrorCode.SERVER_ERROR, message, null));
+  }
+
+  /** Creates the template of an overloaded error response with the given message. */
+  public static ErrorFrameTemplate overloaded(String message) {
+    return new ErrorFrameTemplate(
+        ErrorMessageUtils.encodeError(0, ErrorCode.OVERLOADED, message, null));
+  }
+
+  /** Creates the template of the unprepared error response of the given query id. */
+  public static ErrorFrameTemplate unprepared(byte[] queryId) {
+    return new ErrorFrameTemplate(
+        ErrorMessageUtils.encodeError(0, ErrorCode.UNPREPARED, "Unprepared", queryId));
+  }
+
+  /**
+   * Returns the response for the given stream.
+   *
+   * @param streamId The stream id of the message.
+   * @return A byte array representing the error response, owned by the caller.
+   */
+  public byte[] forStream(int streamId) {
+    byte[] response = frame.clone();
+    ErrorMessageUtils.setStreamId(response, streamId);
+    return response;
+  }
+}
@@ -21,20 +21,24 @@ import com.datastax.oss.protocol.internal.Compressor;
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.FrameCodec;
 import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
 import com.datastax.oss.protocol.internal.response.Error;
 import com.datastax.oss.protocol.internal.response.error.Unprepared;
 import com.google.api.core.InternalApi;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import javax.annotation.Nullable;
 
 /**
  * Utility class for creating specific types of error response frames used in the server protocol,
  * encoded as byte arrays suitable for network transmission.
  *
  * <p>This class provides static methods to generate common error responses like {@link
- * ErrorCode#SERVER_ERROR} and {@link ErrorCode#UNPREPARED}. It handles the necessary framing and
- * encoding using the defined protocol version and server codec.
+ * ErrorCode#SERVER_ERROR}, {@link ErrorCode#OVERLOADED}, {@link ErrorCode#PROTOCOL_ERROR} and
+ * {@link ErrorCode#UNPREPARED}. They are encoded directly with the defined protocol version, and
+ * the frames of errors sent repeatedly can be precomputed once as an {@link ErrorFrameTemplate}.
  *
  * <p>This class cannot be instantiated.
  */
@@ -42,6 +46,12 @@ import java.util.Collections;
 public final class ErrorMessageUtils {
 
   private static final int PROTOCOL_VERSION = 4;
+  private static final int RESPONSE_FLAG = 0x80;
+  private static final int HEADER_LENGTH = 9;
+  private static final int STREAM_ID_OFFSET = 2;
+  private static final int OPCODE_OFFSET = 4;
+  private static final int LENGTH_OFFSET = 5;
+  private static final int MAX_STRING_LENGTH = 0xFFFF;
   private static final FrameCodec<ByteBuf> serverFrameCodec =
       FrameCodec.defaultServer(
           new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
@@ -58,8 +68,7 @@ public final class ErrorMessageUtils {
    * @return A byte array representing the unprepared error response.
    */
   public static byte[] unpreparedResponse(int streamId, byte[] queryId) {
-    Unprepared errorMsg = new Unprepared("Unprepared", queryId);
-    return errorResponse(streamId, errorMsg);
+    return encodeError(streamId, ErrorCode.UNPREPARED, "Unprepared", queryId);
   }
 
   /**
@@ -70,18 +79,47 @@ public final class ErrorMessageUtils {
    * @return A byte array representing the server error response.
    */
   public static byte[] serverErrorResponse(int streamId, String message) {
-    Error errorMsg = new Error(ErrorCode.SERVER_ERROR, message);
-    return errorResponse(streamId, errorMsg);
+    return encodeError(streamId, ErrorCode.SERVER_ERROR, message, null);
+  }
+
+  /**
+   * Creates an overloaded error message response, telling the driver to back off and retry.
+   *
+   * @param streamId The stream id of the message.
+   * @param message The error message.
+   * @return A byte array representing the overloaded error response.
+   */
+  public static byte[] overloadedResponse(int streamId, String message) {
+    return encodeError(streamId, ErrorCode.OVERLOADED, message, null);
+  }
+
+  /**
+   * Creates a protocol error message response, for requests that the adapter cannot honor.
+   *
+   * @param streamId The stream id of the message.
+   * @param message The error message.
+   * @return A byte array representing the protocol error response.
+   */
+  public static byte[] protocolErrorResponse(int streamId, String message) {
+    return encodeError(streamId, ErrorCode.PROTOCOL_ERROR, message, null);
   }
 
   /**
    * Creates an error response frame and converts it to a byte array.
    *
+   * <p>Plain errors and {@link Unprepared} errors, the only ones the adapter sends, are written
+   * directly into the returned array; other errors are encoded with the frame codec.
+   *
    * @param streamId The stream id of the message.
    * @param errorMsg The Error object containing the error details.
    * @return A byte array representing the error response.
    */
   public static byte[] errorResponse(int streamId, Error errorMsg) {
+    if (errorMsg.getClass() == Error.class) {
+      return encodeError(streamId, errorMsg.code, errorMsg.message, null);
+    } else if (errorMsg.getClass() == Unprepared.class) {
+      return encodeError(streamId, errorMsg.code, errorMsg.message, ((Unprepared) errorMsg).id);
+    }
     Frame responseFrame =
         Frame.forResponse(
             PROTOCOL_VERSION, streamId, null, Frame.NO_PAYLOAD, Collections.emptyList(), errorMsg);
@@ -89,6 +127,58 @@ public final class ErrorMessageUtils {
     return convertByteBufToByteArray(responseBuf);
   }
 
+  /**
+   * Encodes an error response frame, whose body is the error code as [int] and the message as
+   * [string], followed by the query id as [short bytes] for an unprepared error.
+   */
+  static byte[] encodeError(
+      int streamId, int code, String message, @Nullable byte[] unpreparedQueryId) {
+    byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    // A [string] is at most 65535 bytes long, so cut longer messages on a character boundary.
+    int messageLength = Math.min(messageBytes.length, MAX_STRING_LENGTH);
+    while (messageLength < messageBytes.length && (messageBytes[messageLength] & 0xC0) == 0x80) {
+      messageLength--;
+    }
+    int bodyLength = 4 + 2 + messageLength;
+    if (unpreparedQueryId != null) {
+      bodyLength += 2 + unpreparedQueryId.length;
+    }
+    byte[] frame = new byte[HEADER_LENGTH + bodyLength];
+    frame[0] = (byte) (RESPONSE_FLAG | PROTOCOL_VERSION);
+    // Flags are left unset.
+    setStreamId(frame, streamId);
+    frame[OPCODE_OFFSET] = (byte) Opcode.ERROR;
+    int offset = putInt(frame, LENGTH_OFFSET, bodyLength);
+    offset = putInt(frame, offset, code);
+    offset = putShort(frame, offset, messageLength);
+    System.arraycopy(messageBytes, 0, frame, offset, messageLength);
+    offset += messageLength;
+    if (unpreparedQueryId != null) {
+      offset = putShort(frame, offset, unpreparedQueryId.length);
+      System.arraycopy(unpreparedQueryId, 0, frame, offset, unpreparedQueryId.length);
+    }
+    return frame;
+  }
+
+  /** Sets the stream id of an encoded response frame. */
+  static void setStreamId(byte[] frame, int streamId) {
+    putShort(frame, STREAM_ID_OFFSET, streamId);
+  }
+
+  private static int putShort(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 8);
+    bytes[offset + 1] = (byte) value;
+    return offset + 2;
+  }
+
+  private static int putInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 24);
+    bytes[offset + 1] = (byte) (value >>> 16);
+    bytes[offset + 2] = (byte) (value >>> 8);
+    bytes[offset + 3] = (byte) value;
+    return offset + 4;
+  }
+
   private static byte[] convertByteBufToByteArray(ByteBuf srcBuf) {
     byte[] response = new byte[srcBuf.readableBytes()];
     srcBuf.readBytes(response);
@@ -16,6 +16,8 @@ limitations under the License.
 
 package com.google.cloud.spanner.adapter.util;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Utility class for handling {@link String} objects.
  *
@@ -46,4 +48,33 @@ public final class StringUtils {
     // Using regionMatches for efficiency as it avoids substring creation.
     return input.regionMatches(true, i, prefix, 0, prefix.length());
   }
+
+  /**
+   * Returns true if the UTF-8 string of `length` bytes at `offset` in `bytes` starts with the ASCII
+   * `prefix`, with the same semantics as {@link #startsWith(String, String)}, without decoding the
+   * string unless it has leading non-ASCII characters.
+   */
+  public static boolean startsWith(byte[] bytes, int offset, int length, String prefix) {
+    int end = offset + length;
+    int i = offset;
+    while (i < end && bytes[i] >= 0 && Character.isWhitespace(bytes[i])) {
+      i++;
+    }
+    if (end - i < prefix.length()) {
+      return false;
+    }
+    for (int j = 0; j < prefix.length(); j++) {
+      if (bytes[i + j] < 0) {
+        // Non-ASCII characters may be whitespace, or match the prefix ignoring case, so fall back
+        // to the decoded string.
+        return startsWith(new String(bytes, i, end - i, StandardCharsets.UTF_8), prefix);
+      }
+      char c = (char) bytes[i + j];
+      char p = prefix.charAt(j);
+      if (c != p && Character.toUpperCase(c) != Character.toUpperCase(p)) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
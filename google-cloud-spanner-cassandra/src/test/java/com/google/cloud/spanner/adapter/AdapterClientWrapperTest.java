@@ -16,6 +16,8 @@ limitations under the License.
 
 package com.google.cloud.spanner.adapter;
 
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.overloadedResponse;
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.serverErrorResponse;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,6 +34,9 @@ import com.google.spanner.adapter.v1.AdaptMessageRequest;
 import com.google.spanner.adapter.v1.AdaptMessageResponse;
 import com.google.spanner.adapter.v1.AdapterClient;
 import com.google.spanner.adapter.v1.Session;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -173,4 +178,78 @@ public final class AdapterClientWrapperTest {
             adapterClientWrapper.sendGrpcRequest(
                 payload, new HashMap<>(), GrpcCallContext.createDefault(), streamId));
   }
+
+  @Test
+  public void streamGrpcRequest_MultipleResponses() throws IOException {
+    int streamId = 1;
+    byte[] payload = "test payload".getBytes();
+    AdaptMessageResponse mockResponse1 =
+        AdaptMessageResponse.newBuilder()
+            .setPayload(ByteString.copyFromUtf8(" test response 1"))
+            .putStateUpdates("k1", "v1")
+            .build();
+    AdaptMessageResponse mockResponse2 =
+        AdaptMessageResponse.newBuilder()
+            .setPayload(ByteString.copyFromUtf8(" test response 2"))
+            .build();
+    AdaptMessageResponse mockResponse3 =
+        AdaptMessageResponse.newBuilder()
+            .setPayload(ByteString.copyFromUtf8("test header"))
+            .build();
+    when(mockServerStream.iterator())
+        .thenReturn(Arrays.asList(mockResponse1, mockResponse2, mockResponse3).iterator());
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    try (ResponseSpool responseSpool = new ResponseSpool(20)) {
+      adapterClientWrapper.streamGrpcRequest(
+          payload, new HashMap<>(), context, streamId, responseSpool, outputStream);
+    }
+
+    assertThat(outputStream.toByteArray())
+        .isEqualTo("test header test response 1 test response 2".getBytes());
+    assertThat(attachmentsCache.get("k1")).hasValue("v1");
+  }
+
+  @Test
+  public void streamGrpcRequest_Error() throws IOException {
+    int streamId = 1;
+    byte[] payload = "test payload".getBytes();
+    when(mockServerStream.iterator()).thenThrow(new RuntimeException("Stream failed"));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    try (ResponseSpool responseSpool = new ResponseSpool(20)) {
+      adapterClientWrapper.streamGrpcRequest(
+          payload, new HashMap<>(), context, streamId, responseSpool, outputStream);
+    }
+
+    assertThat(outputStream.toByteArray())
+        .isEqualTo(serverErrorResponse(streamId, "Stream failed"));
+    verify(mockServerStream).cancel();
+  }
+
+  @Test
+  public void sendGrpcRequest_MemoryBudgetExhausted() {
+    int streamId = 1;
+    byte[] payload = "test payload".getBytes();
+    MemoryBudget memoryBudget = new MemoryBudget(10, Duration.ZERO);
+    AdapterClientWrapper wrapper =
+        new AdapterClientWrapper(
+            mockAdapterClient, attachmentsCache, mockSessionManager, memoryBudget);
+    AdaptMessageResponse mockResponse =
+        AdaptMessageResponse.newBuilder()
+            .setPayload(ByteString.copyFromUtf8("a response larger than the budget"))
+            .build();
+    when(mockServerStream.iterator())
+        .thenReturn(Collections.singletonList(mockResponse).iterator());
+
+    byte[] response = wrapper.sendGrpcRequest(payload, new HashMap<>(), context, streamId);
+
+    assertThat(response)
+        .isEqualTo(
+            overloadedResponse(
+                streamId,
+                "The Spanner Cassandra adapter is out of memory for in-flight responses."));
+    verify(mockServerStream).cancel();
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(10);
+  }
 }
@@ -17,26 +17,33 @@ limitations under the License.
 package com.google.cloud.spanner.adapter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockConstruction;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.api.gax.rpc.TransportChannelProvider;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.spanner.adapter.v1.AdapterClient;
 import com.google.spanner.adapter.v1.AdapterSettings;
 import com.google.spanner.adapter.v1.CreateSessionRequest;
 import com.google.spanner.adapter.v1.Session;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.MockedConstruction;
@@ -64,8 +71,11 @@ public final class AdapterTest {
   public void successfulStartStopFlow() throws Exception {
 
     try (MockedConstruction<ServerSocket> mockedServerSocketConstruction =
-            mockConstruction(ServerSocket.class);
-        MockedStatic<Executors> mockedExecutors = mockStatic(Executors.class);
+            mockConstruction(
+                ServerSocket.class,
+                (mock, context) -> when(mock.accept()).thenThrow(new SocketException("closed")));
+        MockedConstruction<ConnectionExecutor> mockedExecutorConstruction =
+            mockConstruction(ConnectionExecutor.class);
         MockedStatic<AdapterClient> mockedStaticAdapterClient = mockStatic(AdapterClient.class);
         MockedStatic<GoogleCredentials> mockedGoogleCredentials =
             mockStatic(GoogleCredentials.class)) {
@@ -76,20 +86,21 @@ public final class AdapterTest {
           .when(() -> AdapterClient.create(any(AdapterSettings.class)))
           .thenReturn(mockAdapterClient);
       when(mockAdapterClient.createSession(any())).thenReturn(mockSession);
-      ExecutorService mockExecutor = mock(ExecutorService.class);
-      mockedExecutors.when(Executors::newCachedThreadPool).thenReturn(mockExecutor);
 
       adapter.start();
       adapter.stop();
 
       verify(mockAdapterClient, times(1)).createSession(any(CreateSessionRequest.class));
-      verify(mockExecutor).execute(any(Runnable.class));
       // Verify ServerSocket was constructed
       assertEquals(1, mockedServerSocketConstruction.constructed().size());
-      // Verify the executor was shut down.
-      verify(mockExecutor).shutdownNow();
+      // Verify the connection executor was created and shut down.
+      assertEquals(1, mockedExecutorConstruction.constructed().size());
+      verify(mockedExecutorConstruction.constructed().get(0)).shutdownQueued();
+      verify(mockedExecutorConstruction.constructed().get(0)).shutdownNow();
       // Verify ServerSocket was closed.
       verify(mockedServerSocketConstruction.constructed().get(0)).close();
+      // Verify the adapter client was closed.
+      verify(mockAdapterClient).close();
     }
   }
 
@@ -98,4 +109,158 @@ public final class AdapterTest {
     // Adapter is in the not-started state.
     assertThrows(IllegalStateException.class, adapter::stop);
   }
+
+  @Test
+  public void start_failsBeforeBindingWhenSpannerIsUnreachable() throws Exception {
+    Adapter unreachableAdapter = new Adapter(unreachableOptions().build());
+
+    try (MockedConstruction<ServerSocket> mockedServerSocketConstruction =
+        mockConstruction(ServerSocket.class)) {
+      assertThrows(RuntimeException.class, unreachableAdapter::start);
+
+      assertEquals(0, mockedServerSocketConstruction.constructed().size());
+    }
+  }
+
+  @Test
+  public void fastStart_bindsBeforeSpannerIsReachable() throws Exception {
+    Adapter unreachableAdapter = new Adapter(unreachableOptions().fastStart(true).build());
+
+    try (MockedConstruction<ServerSocket> mockedServerSocketConstruction =
+        mockConstruction(
+            ServerSocket.class,
+            (mock, context) -> when(mock.accept()).thenThrow(new SocketException("closed")))) {
+      unreachableAdapter.start();
+
+      assertEquals(1, mockedServerSocketConstruction.constructed().size());
+      assertFalse(unreachableAdapter.awaitReady());
+      // The adapter stops once the Spanner client cannot be created.
+      verify(mockedServerSocketConstruction.constructed().get(0), timeout(10_000)).close();
+      assertThrows(IllegalStateException.class, unreachableAdapter::stop);
+    }
+  }
+
+  @Test
+  public void update_appliesChangedLiveSettings() throws Exception {
+    runStarted(
+        (mock, context) -> {},
+        executor -> {
+          AdapterOptions updated =
+              reachableOptions().coreConnectionThreads(2).maxConnectionThreads(4).build();
+
+          adapter.update(updated);
+          adapter.update(updated);
+
+          // The second update changes nothing.
+          verify(executor, times(1)).setPoolSizes(2, 4);
+        });
+  }
+
+  @Test
+  public void update_rejectsInvalidSettingsBeforeApplyingAny() throws Exception {
+    runStarted(
+        (mock, context) -> {},
+        executor -> {
+          assertThrows(
+              IllegalArgumentException.class,
+              () ->
+                  adapter.update(
+                      reachableOptions()
+                          .maxCommitDelay(Optional.of(Duration.ofMillis(5)))
+                          .coreConnectionThreads(0)
+                          .maxConnectionThreads(0)
+                          .build()));
+          assertThrows(
+              IllegalArgumentException.class,
+              () ->
+                  adapter.update(
+                      reachableOptions()
+                          .maxCommitDelay(Optional.of(Duration.ofSeconds(1)))
+                          .coreConnectionThreads(2)
+                          .maxConnectionThreads(4)
+                          .build()));
+          assertThrows(
+              IllegalArgumentException.class,
+              () -> adapter.update(reachableOptions().maxBatchMutations(-1).build()));
+
+          verify(executor, never()).setPoolSizes(anyInt(), anyInt());
+        });
+  }
+
+  @Test
+  public void update_restoresAppliedSettingsWhenOneFailsToApply() throws Exception {
+    runStarted(
+        (mock, context) ->
+            doThrow(new IllegalStateException("failed")).when(mock).setPoolSizes(2, 4),
+        executor -> {
+          AdapterOptions updated =
+              reachableOptions().coreConnectionThreads(2).maxConnectionThreads(4).build();
+
+          assertThrows(IllegalStateException.class, () -> adapter.update(updated));
+          verify(executor)
+              .setPoolSizes(
+                  AdapterOptions.DEFAULT_CORE_CONNECTION_THREADS,
+                  AdapterOptions.DEFAULT_MAX_CONNECTION_THREADS);
+          // The failed update was not recorded as applied, so it is attempted again.
+          assertThrows(IllegalStateException.class, () -> adapter.update(updated));
+          verify(executor, times(2)).setPoolSizes(2, 4);
+        });
+  }
+
+  /** Starts the adapter with a mocked server socket and backend, and runs the given test. */
+  private void runStarted(
+      MockedConstruction.MockInitializer<ConnectionExecutor> executorInitializer,
+      StartedAdapterTest test)
+      throws Exception {
+    try (MockedConstruction<ServerSocket> mockedServerSocketConstruction =
+            mockConstruction(
+                ServerSocket.class,
+                (mock, context) -> when(mock.accept()).thenThrow(new SocketException("closed")));
+        MockedConstruction<ConnectionExecutor> mockedExecutorConstruction =
+            mockConstruction(ConnectionExecutor.class, executorInitializer);
+        MockedStatic<AdapterClient> mockedStaticAdapterClient = mockStatic(AdapterClient.class);
+        MockedStatic<GoogleCredentials> mockedGoogleCredentials =
+            mockStatic(GoogleCredentials.class)) {
+      AdapterClient mockAdapterClient = mock(AdapterClient.class);
+      mockedGoogleCredentials.when(GoogleCredentials::getApplicationDefault).thenReturn(null);
+      mockedStaticAdapterClient
+          .when(() -> AdapterClient.create(any(AdapterSettings.class)))
+          .thenReturn(mockAdapterClient);
+      when(mockAdapterClient.createSession(any())).thenReturn(mock(Session.class));
+
+      adapter.start();
+      try {
+        test.run(mockedExecutorConstruction.constructed().get(0));
+      } finally {
+        adapter.stop();
+      }
+    }
+  }
+
+  /** A test run against a started adapter. */
+  private interface StartedAdapterTest {
+    void run(ConnectionExecutor executor) throws Exception;
+  }
+
+  /** Returns the options of {@link #adapter}, to be changed by updates. */
+  private AdapterOptions.Builder reachableOptions() {
+    return AdapterOptions.newBuilder()
+        .spannerEndpoint(TEST_HOST)
+        .databaseUri(TEST_DATABASE_URI)
+        .inetAddress(inetAddress)
+        .port(TEST_PORT)
+        .numGrpcChannels(4);
+  }
+
+  private AdapterOptions.Builder unreachableOptions() throws IOException {
+    TransportChannelProvider channelProvider = mock(TransportChannelProvider.class);
+    when(channelProvider.getTransportChannel()).thenThrow(new IOException("unreachable"));
+    return AdapterOptions.newBuilder()
+        .spannerEndpoint(TEST_HOST)
+        .databaseUri(TEST_DATABASE_URI)
+        .inetAddress(inetAddress)
+        .port(TEST_PORT)
+        .numGrpcChannels(1)
+        .channelProvider(channelProvider);
+  }
 }
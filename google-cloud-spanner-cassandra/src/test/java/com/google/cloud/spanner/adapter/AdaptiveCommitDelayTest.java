@@ -0,0 +1,130 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class AdaptiveCommitDelayTest {
+
+  private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private long nanoTime;
+  private AdaptiveCommitDelay adaptiveCommitDelay;
+
+  public AdaptiveCommitDelayTest() {}
+
+  @Before
+  public void setUp() {
+    nanoTime = 0;
+    adaptiveCommitDelay =
+        new AdaptiveCommitDelay(Duration.ofMillis(100), Duration.ofMillis(50), () -> nanoTime);
+  }
+
+  @Test
+  public void lightLoad_keepsDelayAtZero() {
+    // 10 writes per second: a 100ms delay would gather a single write on average.
+    runInterval(10, Duration.ZERO);
+    runInterval(10, Duration.ZERO);
+    endInterval();
+
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(0);
+    assertThat(adaptiveCommitDelay.delayMillis()).isEqualTo("0");
+    assertThat(adaptiveCommitDelay.getWritesPerSecond()).isEqualTo(10.0);
+    assertThat(adaptiveCommitDelay.getAdjustmentCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void heavyLoadWithinTarget_growsDelayUpToBound() {
+    String initialDelay = adaptiveCommitDelay.delayMillis();
+
+    runInterval(1000, Duration.ofMillis(5));
+    endInterval();
+
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(10);
+    assertThat(adaptiveCommitDelay.delayMillis()).isNotSameInstanceAs(initialDelay);
+    assertThat(adaptiveCommitDelay.attachments()).containsExactly("max_commit_delay", "10");
+    assertThat(adaptiveCommitDelay.getAverageWriteLatencyMillis()).isEqualTo(5.0);
+    for (int i = 0; i < 20; i++) {
+      runInterval(1000, Duration.ofMillis(5));
+    }
+    endInterval();
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(100);
+    assertThat(adaptiveCommitDelay.getAdjustmentCount()).isEqualTo(10);
+  }
+
+  @Test
+  public void latencyAboveTarget_halvesDelay() {
+    for (int i = 0; i < 4; i++) {
+      runInterval(1000, Duration.ofMillis(5));
+    }
+    endInterval();
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(40);
+
+    runInterval(1000, Duration.ofMillis(60));
+    endInterval();
+
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(20);
+  }
+
+  @Test
+  public void loadDrop_resetsDelayToZero() {
+    for (int i = 0; i < 4; i++) {
+      runInterval(1000, Duration.ZERO);
+    }
+    endInterval();
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(40);
+
+    runInterval(1, Duration.ZERO);
+    endInterval();
+
+    assertThat(adaptiveCommitDelay.getCommitDelayMillis()).isEqualTo(0);
+  }
+
+  @Test
+  public void delay_isStableWithinInterval() {
+    runInterval(1000, Duration.ofMillis(5));
+    endInterval();
+    String delay = adaptiveCommitDelay.delayMillis();
+
+    long start = adaptiveCommitDelay.startWrite();
+    nanoTime += TimeUnit.MILLISECONDS.toNanos(5);
+    adaptiveCommitDelay.recordWrite(start);
+
+    assertThat(adaptiveCommitDelay.delayMillis()).isSameInstanceAs(delay);
+  }
+
+  /** Records the given number of writes evenly spread over an interval. */
+  private void runInterval(int writes, Duration latency) {
+    long intervalStart = nanoTime;
+    for (int i = 0; i < writes; i++) {
+      nanoTime = intervalStart + i * (INTERVAL_NANOS / writes);
+      long start = adaptiveCommitDelay.startWrite();
+      nanoTime += latency.toNanos();
+      adaptiveCommitDelay.recordWrite(start);
+    }
+    nanoTime = intervalStart + INTERVAL_NANOS + latency.toNanos();
+  }
+
+  /** Completes the current interval, adjusting the delay. */
+  private void endInterval() {
+    adaptiveCommitDelay.recordWrite(adaptiveCommitDelay.startWrite());
+  }
+}
@@ -0,0 +1,264 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.response.Error;
+import com.datastax.oss.protocol.internal.response.result.Void;
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiCallContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class BatchSplitterTest {
+
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final ApiCallContext CONTEXT = GrpcCallContext.createDefault();
+  private static final Map<String, String> ATTACHMENTS = Collections.singletonMap("pqid/W1", "w");
+  private static final int STREAM_ID = 5;
+  private static final byte LOGGED = 0;
+  private static final byte UNLOGGED = 1;
+  private AdapterClientWrapper mockAdapterClient;
+  private BatchSplitter batchSplitter;
+
+  public BatchSplitterTest() {}
+
+  @Before
+  public void setUp() {
+    mockAdapterClient = mock(AdapterClientWrapper.class);
+    batchSplitter = new BatchSplitter(mockAdapterClient, 4);
+  }
+
+  @Test
+  public void execute_batchWithinLimit_isNotSplit() {
+    byte[] response =
+        batchSplitter.execute(
+            batch(UNLOGGED, 2, Collections.emptyMap()), ATTACHMENTS, CONTEXT, STREAM_ID);
+
+    assertThat(response).isNull();
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  public void execute_loggedBatchOverLimit_isNotSplit() {
+    byte[] response =
+        batchSplitter.execute(
+            batch(LOGGED, 5, Collections.emptyMap()), ATTACHMENTS, CONTEXT, STREAM_ID);
+
+    assertThat(response).isNull();
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  public void execute_unloggedBatchOverLimit_isSplitIntoBatchesWithinLimit() {
+    byte[] voidResponse = encode(serverFrameCodec, response(Void.INSTANCE));
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt())).thenReturn(voidResponse);
+    Map<String, ByteBuffer> customPayload =
+        Collections.singletonMap(
+            "request_tag", ByteBuffer.wrap("load".getBytes(StandardCharsets.UTF_8)));
+
+    byte[] response =
+        batchSplitter.execute(batch(UNLOGGED, 5, customPayload), ATTACHMENTS, CONTEXT, STREAM_ID);
+
+    assertThat(response).isEqualTo(voidResponse);
+    ArgumentCaptor<byte[]> requestCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(mockAdapterClient, times(3))
+        .sendGrpcRequest(requestCaptor.capture(), eq(ATTACHMENTS), eq(CONTEXT), eq(STREAM_ID));
+    List<List<Object>> parts = new ArrayList<>();
+    for (byte[] request : requestCaptor.getAllValues()) {
+      Frame frame = decode(request);
+      assertThat(frame.streamId).isEqualTo(STREAM_ID);
+      assertThat(frame.customPayload).isEqualTo(customPayload);
+      Batch part = (Batch) frame.message;
+      assertThat(part.type).isEqualTo(UNLOGGED);
+      assertThat(part.consistency).isEqualTo(ProtocolConstants.ConsistencyLevel.LOCAL_QUORUM);
+      assertThat(part.defaultTimestamp).isEqualTo(1234L);
+      List<Object> queryIds = new ArrayList<>();
+      for (Object queryId : part.queriesOrIds) {
+        queryIds.add(new String((byte[]) queryId, StandardCharsets.UTF_8));
+      }
+      parts.add(queryIds);
+    }
+    assertThat(parts)
+        .containsExactly(Arrays.asList("W0", "W1"), Arrays.asList("W2", "W3"), Arrays.asList("W4"))
+        .inOrder();
+  }
+
+  @Test
+  public void execute_withFailedPart_returnsItsErrorWithoutSendingFollowingParts() {
+    byte[] voidResponse = encode(serverFrameCodec, response(Void.INSTANCE));
+    byte[] errorResponse =
+        encode(
+            serverFrameCodec,
+            response(new Error(ProtocolConstants.ErrorCode.SERVER_ERROR, "Too many mutations")));
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(voidResponse, errorResponse, voidResponse);
+
+    byte[] response =
+        batchSplitter.execute(
+            batch(UNLOGGED, 5, Collections.emptyMap()), ATTACHMENTS, CONTEXT, STREAM_ID);
+
+    assertThat(response).isEqualTo(errorResponse);
+    verify(mockAdapterClient, times(2)).sendGrpcRequest(any(), any(), any(), anyInt());
+    assertThat(batchSplitter.getSplitBatchCount()).isEqualTo(1);
+    assertThat(batchSplitter.getPartCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void execute_withFailedFirstPart_throwsWithoutSendingFollowingParts() {
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenThrow(new IllegalStateException("channel closed"));
+
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                batchSplitter.execute(
+                    batch(UNLOGGED, 5, Collections.emptyMap()), ATTACHMENTS, CONTEXT, STREAM_ID));
+
+    assertThat(e.getMessage()).isEqualTo("channel closed");
+    verify(mockAdapterClient, times(1)).sendGrpcRequest(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  public void execute_withSameKeyWritesInDifferentParts_commitsThemInBatchOrder() {
+    byte[] voidResponse = encode(serverFrameCodec, response(Void.INSTANCE));
+    // The second and third statements write the same key, and the split puts them in the first and
+    // second parts.
+    List<Object> queryIds = new ArrayList<>();
+    List<List<ByteBuffer>> values = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      queryIds.add(("W" + i).getBytes(StandardCharsets.UTF_8));
+      values.add(Arrays.asList(ByteBuffer.wrap(new byte[] {(byte) (i == 2 ? 1 : i)}), null));
+    }
+    byte[] request =
+        encode(
+            clientFrameCodec,
+            Frame.forRequest(
+                4,
+                STREAM_ID,
+                false,
+                Collections.emptyMap(),
+                new Batch(
+                    UNLOGGED,
+                    queryIds,
+                    values,
+                    ProtocolConstants.ConsistencyLevel.LOCAL_QUORUM,
+                    ProtocolConstants.ConsistencyLevel.SERIAL,
+                    1234L,
+                    null,
+                    Integer.MIN_VALUE)));
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<String> committed = Collections.synchronizedList(new ArrayList<>());
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              Batch part = (Batch) decode(invocation.getArgument(0)).message;
+              // The first part takes longer to commit than the second.
+              Thread.sleep(part.queriesOrIds.size() == 2 ? 100 : 0);
+              for (Object queryId : part.queriesOrIds) {
+                committed.add(new String((byte[]) queryId, StandardCharsets.UTF_8));
+              }
+              inFlight.decrementAndGet();
+              return voidResponse;
+            });
+
+    byte[] response = batchSplitter.execute(request, ATTACHMENTS, CONTEXT, STREAM_ID);
+
+    assertThat(response).isEqualTo(voidResponse);
+    assertThat(batchSplitter.getPartCount()).isEqualTo(2);
+    assertThat(maxInFlight.get()).isEqualTo(1);
+    assertThat(committed).containsExactly("W0", "W1", "W2", "W3").inOrder();
+  }
+
+  /** Returns a batch of the given number of prepared statements with two values each. */
+  private static byte[] batch(byte type, int statements, Map<String, ByteBuffer> customPayload) {
+    List<Object> queryIds = new ArrayList<>();
+    List<List<ByteBuffer>> values = new ArrayList<>();
+    for (int i = 0; i < statements; i++) {
+      queryIds.add(("W" + i).getBytes(StandardCharsets.UTF_8));
+      values.add(Arrays.asList(ByteBuffer.wrap(new byte[] {(byte) i}), null));
+    }
+    Batch batch =
+        new Batch(
+            type,
+            queryIds,
+            values,
+            ProtocolConstants.ConsistencyLevel.LOCAL_QUORUM,
+            ProtocolConstants.ConsistencyLevel.SERIAL,
+            1234L,
+            null,
+            Integer.MIN_VALUE);
+    return encode(clientFrameCodec, Frame.forRequest(4, STREAM_ID, false, customPayload, batch));
+  }
+
+  private static Frame response(Message message) {
+    return Frame.forResponse(
+        4, STREAM_ID, null, Collections.emptyMap(), Collections.emptyList(), message);
+  }
+
+  private static byte[] encode(FrameCodec<ByteBuf> codec, Frame frame) {
+    ByteBuf buf = codec.encode(frame);
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+
+  private static Frame decode(byte[] request) {
+    ByteBuf buf = Unpooled.wrappedBuffer(request);
+    Frame frame = serverFrameCodec.decode(buf);
+    buf.release();
+    return frame;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DefaultProtocolVersion;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class BulkLoaderTest {
+
+  private static final String INSERT = "INSERT INTO ks.t (id, v) VALUES (?, ?)";
+  private CqlSession mockSession;
+  private BoundStatementBuilder mockBuilder;
+  private List<Object> progressReports;
+
+  public BulkLoaderTest() {}
+
+  @Before
+  public void setUp() {
+    mockSession = mock(CqlSession.class);
+    DriverContext mockContext = mock(DriverContext.class);
+    when(mockContext.getCodecRegistry()).thenReturn(CodecRegistry.DEFAULT);
+    when(mockContext.getProtocolVersion()).thenReturn(DefaultProtocolVersion.V4);
+    when(mockSession.getContext()).thenReturn(mockContext);
+    ColumnDefinition mockColumn = mock(ColumnDefinition.class);
+    when(mockColumn.getType()).thenReturn(DataTypes.INT);
+    ColumnDefinitions mockVariables = mock(ColumnDefinitions.class);
+    when(mockVariables.size()).thenReturn(2);
+    when(mockVariables.get(anyInt())).thenReturn(mockColumn);
+    BoundStatement mockStatement = mock(BoundStatement.class);
+    when(mockStatement.getValues())
+        .thenReturn(Arrays.asList(ByteBuffer.allocate(4), ByteBuffer.allocate(4)));
+    mockBuilder = mock(BoundStatementBuilder.class);
+    when(mockBuilder.setBytesUnsafe(anyInt(), any())).thenReturn(mockBuilder);
+    when(mockBuilder.build()).thenReturn(mockStatement);
+    PreparedStatement mockInsert = mock(PreparedStatement.class);
+    when(mockInsert.getVariableDefinitions()).thenReturn(mockVariables);
+    when(mockInsert.boundStatementBuilder()).thenReturn(mockBuilder);
+    when(mockSession.prepare(anyString())).thenReturn(mockInsert);
+    progressReports = new ArrayList<>();
+  }
+
+  @Test
+  public void load_groupsRowsIntoBatchesWithinMaxMutations() {
+    BulkLoader loader = newBuilder().setMaxBatchMutations(4).build();
+
+    BulkLoader.Progress progress = loader.load(rows(5));
+
+    ArgumentCaptor<BatchStatement> batchCaptor = ArgumentCaptor.forClass(BatchStatement.class);
+    verify(mockSession, times(3)).execute(batchCaptor.capture());
+    List<Integer> batchSizes = new ArrayList<>();
+    for (BatchStatement batch : batchCaptor.getAllValues()) {
+      assertThat(batch.getBatchType()).isEqualTo(DefaultBatchType.UNLOGGED);
+      assertThat(batch.isIdempotent()).isTrue();
+      batchSizes.add(batch.size());
+    }
+    assertThat(batchSizes).containsExactly(2, 2, 1);
+    assertThat(progress.getRows()).isEqualTo(5);
+    assertThat(progress.getBatches()).isEqualTo(3);
+    assertThat(progressReports).containsExactly(progress);
+  }
+
+  @Test
+  public void load_groupsRowsIntoBatchesWithinMaxBytes() {
+    // Each row is two 4-byte values, each preceded by its 4-byte length.
+    BulkLoader loader = newBuilder().setMaxBatchBytes(32).build();
+
+    BulkLoader.Progress progress = loader.load(rows(5));
+
+    assertThat(progress.getBatches()).isEqualTo(3);
+  }
+
+  @Test
+  public void load_parsesStringsOfNonTextColumns() {
+    BulkLoader loader = newBuilder().build();
+
+    loader.load(Stream.of(Arrays.asList("42", null)));
+
+    verify(mockBuilder).setBytesUnsafe(0, ByteBuffer.wrap(new byte[] {0, 0, 0, 42}));
+    verify(mockBuilder).setBytesUnsafe(1, null);
+  }
+
+  @Test
+  public void load_setsMaxCommitDelayOfBatches() {
+    BulkLoader loader = newBuilder().setMaxCommitDelay(Duration.ofMillis(200)).build();
+
+    loader.load(rows(1));
+
+    ArgumentCaptor<BatchStatement> batchCaptor = ArgumentCaptor.forClass(BatchStatement.class);
+    verify(mockSession).execute(batchCaptor.capture());
+    assertThat(batchCaptor.getValue().getCustomPayload())
+        .containsExactly(
+            RequestOverrides.MAX_COMMIT_DELAY_KEY,
+            ByteBuffer.wrap("200".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void load_retriesFailedBatch() {
+    when(mockSession.execute(any(Statement.class)))
+        .thenThrow(new DriverTimeoutException("Query timed out"))
+        .thenReturn(null);
+    BulkLoader loader = newBuilder().build();
+
+    BulkLoader.Progress progress = loader.load(rows(1));
+
+    verify(mockSession, times(2)).execute(any(Statement.class));
+    assertThat(progress.getRows()).isEqualTo(1);
+    assertThat(progress.getRetries()).isEqualTo(1);
+  }
+
+  @Test
+  public void load_withBatchFailingAfterRetries_throwsError() {
+    when(mockSession.execute(any(Statement.class)))
+        .thenThrow(new DriverTimeoutException("Query timed out"));
+    BulkLoader loader = newBuilder().setMaxRetries(0).build();
+
+    assertThrows(DriverTimeoutException.class, () -> loader.load(rows(1)));
+  }
+
+  @Test
+  public void load_withWrongNumberOfValues_throwsException() {
+    BulkLoader loader = newBuilder().build();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> loader.load(Stream.of(Arrays.asList(1, 2, 3))));
+  }
+
+  @Test
+  public void setMaxCommitDelay_aboveLimit_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> newBuilder().setMaxCommitDelay(Duration.ofMillis(501)));
+  }
+
+  private BulkLoader.Builder newBuilder() {
+    return BulkLoader.newBuilder(mockSession, INSERT)
+        .setProgressListener(progressReports::add, Duration.ofDays(1));
+  }
+
+  private static Stream<List<Object>> rows(int count) {
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(Arrays.asList(i, i));
+    }
+    return rows.stream();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public final class ConnectionExecutorTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final CountDownLatch started = new CountDownLatch(3);
+  private final List<Runnable> rejected = Collections.synchronizedList(new ArrayList<>());
+  private ConnectionExecutor executor;
+
+  public ConnectionExecutorTest() {}
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void setPoolSizes_resizesPool() {
+    executor = new ConnectionExecutor("test", 2, 4, 2, Duration.ofMinutes(1), rejected::add);
+
+    executor.setPoolSizes(1, 1);
+    assertThat(executor.getCorePoolSize()).isEqualTo(1);
+    assertThat(executor.getMaximumPoolSize()).isEqualTo(1);
+
+    executor.setPoolSizes(6, 8);
+    assertThat(executor.getCorePoolSize()).isEqualTo(6);
+    assertThat(executor.getMaximumPoolSize()).isEqualTo(8);
+
+    assertThrows(IllegalArgumentException.class, () -> executor.setPoolSizes(3, 2));
+  }
+
+  @Test
+  public void growsToMaxThreadsBeforeQueueing() throws InterruptedException {
+    executor = new ConnectionExecutor("test", 1, 3, 2, Duration.ofMinutes(1), rejected::add);
+
+    for (int i = 0; i < 3; i++) {
+      executor.execute(this::blockingConnection);
+    }
+
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.getPoolSize()).isEqualTo(3);
+    assertThat(executor.getQueueSize()).isEqualTo(0);
+    assertThat(executor.getSaturation()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void queuesThenRejectsWhenFull() throws InterruptedException {
+    executor = new ConnectionExecutor("test", 1, 3, 2, Duration.ofMinutes(1), rejected::add);
+
+    for (int i = 0; i < 7; i++) {
+      executor.execute(this::blockingConnection);
+    }
+
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.getActiveCount()).isEqualTo(3);
+    assertThat(executor.getQueueSize()).isEqualTo(2);
+    assertThat(executor.getQueueCapacity()).isEqualTo(2);
+    assertThat(executor.getRejectedCount()).isEqualTo(2);
+    assertThat(rejected).hasSize(2);
+  }
+
+  @Test
+  public void shutdownQueued_returnsQueuedAndKeepsServingRunning() throws InterruptedException {
+    executor = new ConnectionExecutor("test", 1, 3, 2, Duration.ofMinutes(1), rejected::add);
+    List<Runnable> connections = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Runnable connection = this::blockingConnection;
+      connections.add(connection);
+      executor.execute(connection);
+    }
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(executor.shutdownQueued()).containsExactlyElementsIn(connections.subList(3, 5));
+    assertThat(executor.getRunningConnections())
+        .containsExactlyElementsIn(connections.subList(0, 3));
+    assertThat(executor.isShutdown()).isTrue();
+    release.countDown();
+
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.getRunningConnections()).isEmpty();
+  }
+
+  @Test
+  public void rejectsWithoutQueue() throws InterruptedException {
+    executor = new ConnectionExecutor("test", 0, 3, 0, Duration.ofMinutes(1), rejected::add);
+
+    for (int i = 0; i < 4; i++) {
+      executor.execute(this::blockingConnection);
+    }
+
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.getQueueSize()).isEqualTo(0);
+    assertThat(rejected).hasSize(1);
+  }
+
+  @Test
+  public void reusesIdleThreads() throws InterruptedException {
+    executor = new ConnectionExecutor("test", 0, 3, 0, Duration.ofMinutes(1), rejected::add);
+    CountDownLatch done = new CountDownLatch(1);
+    executor.execute(done::countDown);
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    // Wait for the thread to become idle.
+    while (executor.getActiveCount() > 0) {
+      Thread.sleep(10);
+    }
+
+    CountDownLatch doneAgain = new CountDownLatch(1);
+    executor.execute(doneAgain::countDown);
+
+    assertThat(doneAgain.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.getLargestPoolSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void usesNamedDaemonThreads() throws InterruptedException {
+    executor = new ConnectionExecutor("test-pool", 1, 1, 0, Duration.ofMinutes(1), rejected::add);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    CountDownLatch done = new CountDownLatch(1);
+
+    executor.execute(
+        () -> {
+          Thread thread = Thread.currentThread();
+          threads.add(thread.getName() + (thread.isDaemon() ? " daemon" : ""));
+          done.countDown();
+        });
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(threads).containsExactly("test-pool-0 daemon");
+  }
+
+  private void blockingConnection() {
+    started.countDown();
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -16,11 +16,17 @@ limitations under the License.
 
 package com.google.cloud.spanner.adapter;
 
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.overloadedResponse;
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.protocolErrorResponse;
 import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.serverErrorResponse;
 import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.unpreparedResponse;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,15 +36,28 @@ import com.datastax.oss.protocol.internal.Compressor;
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.FrameCodec;
 import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
 import com.datastax.oss.protocol.internal.request.Batch;
 import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Options;
 import com.datastax.oss.protocol.internal.request.Prepare;
 import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.Startup;
 import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.protocol.internal.response.Ready;
+import com.datastax.oss.protocol.internal.response.Supported;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.DefaultRows;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import com.datastax.oss.protocol.internal.response.result.Void;
+import com.google.common.collect.ImmutableMap;
 import com.google.api.gax.rpc.ApiCallContext;
 import com.google.common.collect.ImmutableList;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -46,11 +65,15 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -62,6 +85,9 @@ public final class DriverConnectionHandlerTest {
   private static final FrameCodec<ByteBuf> clientFrameCodec =
       FrameCodec.defaultClient(
           new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
   private static final ArgumentCaptor<ApiCallContext> contextCaptor =
       ArgumentCaptor.forClass(ApiCallContext.class);
   private static final ArgumentCaptor<Map<String, String>> attachmentsCaptor =
@@ -98,6 +124,77 @@ public final class DriverConnectionHandlerTest {
     assertThat(contextCaptor.getValue().getExtraHeaders()).isEmpty();
   }
 
+  @Test
+  public void drain_shutsDownInput() throws IOException {
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+
+    handler.drain();
+
+    verify(mockSocket).shutdownInput();
+    verify(mockSocket, never()).close();
+  }
+
+  @Test
+  public void abort_sendsNoBufferedRequest() throws IOException {
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(createQueryMessage()));
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.abort();
+    handler.run();
+
+    verify(mockSocket, atLeastOnce()).close();
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+    assertThat(outputStream.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void queryMessageWithResponseSpool_streamsResponse() throws IOException {
+    byte[] validPayload = createQueryMessage();
+    ResponseSpool responseSpool = new ResponseSpool(0);
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(validPayload));
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder().responseSpool(responseSpool).build());
+    handler.run();
+
+    verify(mockAdapterClient)
+        .streamGrpcRequest(
+            eq(validPayload), any(), any(), eq(STREAM_ID), eq(responseSpool), any());
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void streamedWrites_areRecordedByAdaptiveCommitDelay() throws IOException {
+    byte[] write = createDmlQueryMessage();
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(write, write)));
+    // Every reading of the clock advances it by a second, so every write takes a second.
+    AtomicLong clock = new AtomicLong();
+    AdaptiveCommitDelay adaptiveCommitDelay =
+        new AdaptiveCommitDelay(
+            Duration.ofMillis(100),
+            Duration.ofMillis(100),
+            () -> clock.addAndGet(TimeUnit.SECONDS.toNanos(1)));
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder()
+                .responseSpool(new ResponseSpool(0))
+                .adaptiveCommitDelay(adaptiveCommitDelay)
+                .build());
+    handler.run();
+
+    verify(mockAdapterClient, times(2))
+        .streamGrpcRequest(any(), any(), any(), eq(STREAM_ID), any(), any());
+    // The second write ended the interval of the first one, whose latency was measured.
+    assertThat(adaptiveCommitDelay.getAverageWriteLatencyMillis()).isEqualTo(1000.0);
+  }
+
   @Test
   public void successfulDmlQueryMessage() throws IOException {
     byte[] validPayload = createDmlQueryMessage();
@@ -250,6 +347,257 @@ public final class DriverConnectionHandlerTest {
     verify(mockSocket).close();
   }
 
+  @Test
+  public void batchMessageWithSeveralQueryIds_attachesEveryQueryId() throws IOException {
+    byte[] readQueryId = {1, 2};
+    byte[] writeQueryId = "W123".getBytes(StandardCharsets.UTF_8.name());
+    List<Object> queriesOrIds = new ArrayList<>();
+    queriesOrIds.add(readQueryId);
+    queriesOrIds.add("a");
+    queriesOrIds.add(writeQueryId);
+    queriesOrIds.add(readQueryId);
+    List<List<ByteBuffer>> values = new ArrayList<>();
+    for (int i = 0; i < queriesOrIds.size(); i++) {
+      values.add(Collections.singletonList(ByteBuffer.wrap(new byte[] {(byte) i})));
+    }
+    byte[] validPayload =
+        encodeMessage(new Batch((byte) 1, queriesOrIds, values, 0, 0, 0, null, 0));
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(validPayload));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn("gRPC response".getBytes(StandardCharsets.UTF_8.name()));
+    AttachmentsCache AttachmentsCache = new AttachmentsCache(10);
+    AttachmentsCache.put("pqid/" + new String(readQueryId, StandardCharsets.UTF_8.name()), "read");
+    AttachmentsCache.put("pqid/W123", "write");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(AttachmentsCache);
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket, mockAdapterClient, Optional.of(Duration.ofMillis(100)));
+    handler.run();
+
+    verify(mockAdapterClient)
+        .sendGrpcRequest(any(), attachmentsCaptor.capture(), any(), any(int.class));
+    assertThat(attachmentsCaptor.getValue())
+        .containsExactly(
+            "pqid/" + new String(readQueryId, StandardCharsets.UTF_8.name()),
+            "read",
+            "pqid/W123",
+            "write",
+            "max_commit_delay",
+            "100");
+  }
+
+  @Test
+  public void executeMessageWithCustomPayload_isDecoded() throws IOException {
+    byte[] queryId = {1, 2};
+    Frame frame =
+        Frame.forRequest(
+            4,
+            STREAM_ID,
+            false,
+            ImmutableMap.of("key", ByteBuffer.wrap(new byte[] {1})),
+            new Execute(queryId, QueryOptions.DEFAULT));
+    ByteBuf payloadBuf = clientFrameCodec.encode(frame);
+    byte[] validPayload = new byte[payloadBuf.readableBytes()];
+    payloadBuf.readBytes(validPayload);
+    payloadBuf.release();
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(validPayload));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn("gRPC response".getBytes(StandardCharsets.UTF_8.name()));
+    AttachmentsCache AttachmentsCache = new AttachmentsCache(1);
+    String preparedQueryKey = "pqid/" + new String(queryId, StandardCharsets.UTF_8.name());
+    AttachmentsCache.put(preparedQueryKey, "query");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(AttachmentsCache);
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    verify(mockAdapterClient)
+        .sendGrpcRequest(any(), attachmentsCaptor.capture(), any(), any(int.class));
+    assertThat(attachmentsCaptor.getValue()).containsExactly(preparedQueryKey, "query");
+  }
+
+  @Test
+  public void executeMessageOfPreparedWrite_isSentThroughWriteCoalescer() throws IOException {
+    byte[] queryId = "W1".getBytes(StandardCharsets.UTF_8.name());
+    byte[] validPayload = createExecuteMessage(queryId);
+    byte[] response = "coalesced response".getBytes(StandardCharsets.UTF_8.name());
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(validPayload));
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/W1", "write");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    WriteCoalescer mockWriteCoalescer = mock(WriteCoalescer.class);
+    when(mockWriteCoalescer.execute(any(byte[].class), any(), any(), any(), eq(STREAM_ID)))
+        .thenReturn(response);
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder()
+                .writeCoalescer(mockWriteCoalescer)
+                .build());
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(response);
+    verify(mockWriteCoalescer)
+        .execute(any(), any(), attachmentsCaptor.capture(), any(), eq(STREAM_ID));
+    assertThat(attachmentsCaptor.getValue()).containsExactly("pqid/W1", "write");
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void preparePayload_readAtConsistencyOne_isStaleRead() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/R1", "read");
+    attachmentsCache.put("pqid/W1", "write");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    DriverConnectionHandler handler = createHandlerWithMaxStaleness(Duration.ofSeconds(10));
+
+    PreparePayloadResult result =
+        handler.preparePayload(
+            createExecuteMessage("R1", ProtocolConstants.ConsistencyLevel.LOCAL_ONE));
+
+    assertThat(result.getAttachments())
+        .containsExactly("pqid/R1", "read", "max_staleness", "10000");
+    assertThat(result.getContext().getExtraHeaders()).isEmpty();
+    result =
+        handler.preparePayload(
+            encodeMessage(
+                new Query(
+                    "SELECT * FROM ks.T", queryOptions(ProtocolConstants.ConsistencyLevel.ONE))));
+    assertThat(result.getAttachments()).containsExactly("max_staleness", "10000");
+  }
+
+  @Test
+  public void preparePayload_readAtQuorumOrWrite_isStrong() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/R1", "read");
+    attachmentsCache.put("pqid/W1", "write");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    DriverConnectionHandler handler = createHandlerWithMaxStaleness(Duration.ofSeconds(10));
+
+    assertThat(
+            handler
+                .preparePayload(
+                    createExecuteMessage("R1", ProtocolConstants.ConsistencyLevel.LOCAL_QUORUM))
+                .getAttachments())
+        .containsExactly("pqid/R1", "read");
+    assertThat(
+            handler
+                .preparePayload(createExecuteMessage("W1", ProtocolConstants.ConsistencyLevel.ONE))
+                .getAttachments())
+        .containsExactly("pqid/W1", "write");
+    assertThat(
+            handler
+                .preparePayload(
+                    encodeMessage(
+                        new Query(
+                            "SELECT * FROM ks.T",
+                            queryOptions(ProtocolConstants.ConsistencyLevel.QUORUM))))
+                .getAttachments())
+        .isEmpty();
+  }
+
+  @Test
+  public void preparePayload_readAtConsistencyOneWithoutMaxStaleness_isStrong() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/R1", "read");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+
+    assertThat(
+            handler
+                .preparePayload(createExecuteMessage("R1", ProtocolConstants.ConsistencyLevel.ONE))
+                .getAttachments())
+        .containsExactly("pqid/R1", "read");
+  }
+
+  @Test
+  public void preparePayload_customPayloadOverridesAttachments() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/W1", "write");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket, mockAdapterClient, Optional.of(Duration.ofMillis(100)));
+    Frame frame =
+        Frame.forRequest(
+            4,
+            STREAM_ID,
+            false,
+            ImmutableMap.of(
+                "max_commit_delay",
+                ByteBuffer.wrap("0".getBytes(StandardCharsets.UTF_8)),
+                "request_priority",
+                ByteBuffer.wrap("LOW".getBytes(StandardCharsets.UTF_8))),
+            new Execute("W1".getBytes(StandardCharsets.UTF_8), QueryOptions.DEFAULT));
+
+    PreparePayloadResult result = handler.preparePayload(encodeFrame(frame));
+
+    assertThat(result.getAttachments())
+        .containsExactly("pqid/W1", "write", "max_commit_delay", "0", "request_priority", "LOW");
+    assertThat(result.getContext().getExtraHeaders()).isNotEmpty();
+  }
+
+  @Test
+  public void preparePayload_invalidCustomPayload_returnsProtocolError() {
+    Frame frame =
+        Frame.forRequest(
+            4,
+            STREAM_ID,
+            false,
+            ImmutableMap.of(
+                "request_priority", ByteBuffer.wrap("URGENT".getBytes(StandardCharsets.UTF_8))),
+            new Query("SELECT * FROM ks.T"));
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+
+    PreparePayloadResult result = handler.preparePayload(encodeFrame(frame));
+
+    // The body of an error starts with its code, 0x000A for a protocol error.
+    assertThat(Arrays.copyOfRange(result.getAttachmentErrorResponse().get(), 9, 13))
+        .isEqualTo(new byte[] {0, 0, 0, 0x0A});
+  }
+
+  @Test
+  public void preparePayload_reusesResultAndAttachments() {
+    byte[] queryId = "W123".getBytes(StandardCharsets.UTF_8);
+    byte[] payload = createExecuteMessage(queryId);
+    AttachmentsCache AttachmentsCache = new AttachmentsCache(1);
+    AttachmentsCache.put("pqid/W123", "query");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(AttachmentsCache);
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket, mockAdapterClient, Optional.of(Duration.ofMillis(100)));
+
+    PreparePayloadResult first = handler.preparePayload(payload);
+    Map<String, String> attachments = first.getAttachments();
+    PreparePayloadResult second = handler.preparePayload(payload.clone());
+
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(second.getAttachments()).isSameInstanceAs(attachments);
+    assertThat(second.getAttachments())
+        .containsExactly("pqid/W123", "query", "max_commit_delay", "100");
+    assertThat(second.getAttachmentErrorResponse().isPresent()).isFalse();
+  }
+
+  @Test
+  public void truncatedExecuteMessage_writesErrorMessageToSocket() throws IOException {
+    byte[] payload = createExecuteMessage(new byte[] {1, 2});
+    // Declare a query id longer than the body.
+    payload[HEADER_LENGTH + 1] = 100;
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(payload));
+    byte[] expectedResponse =
+        serverErrorResponse(
+            STREAM_ID, "Server error during request processing: Payload is not well formed.");
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(expectedResponse);
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
   @Test
   public void shortHeader_writesErrorMessageToSocket() throws IOException {
     byte[] shortHeader = new byte[HEADER_LENGTH - 1];
@@ -298,6 +646,460 @@ public final class DriverConnectionHandlerTest {
     verify(mockSocket).close();
   }
 
+  @Test
+  public void startupWithCompression_compressesFollowingFrames() throws IOException {
+    FrameCompressor lz4 = FrameCompressor.forAlgorithm("lz4").get();
+    byte[] startup =
+        encodeMessage(
+            new Startup(ImmutableMap.of("CQL_VERSION", "3.0.0", "COMPRESSION", "lz4")));
+    byte[] query = createQueryMessage();
+    byte[] ready = encodeResponse(new Ready());
+    byte[] result = encodeResponse(Void.INSTANCE);
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(startup, lz4.compressFrame(query))));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(ready, result);
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    verify(mockAdapterClient, times(2))
+        .sendGrpcRequest(payloadCaptor.capture(), any(), any(), any(int.class));
+    Startup forwardedStartup = (Startup) decodeRequest(payloadCaptor.getAllValues().get(0)).message;
+    assertThat(forwardedStartup.options).containsExactly("CQL_VERSION", "3.0.0");
+    assertThat(payloadCaptor.getAllValues().get(1)).isEqualTo(query);
+    byte[] output = outputStream.toByteArray();
+    byte[] readyOutput = Arrays.copyOfRange(output, 0, ready.length);
+    byte[] resultOutput = Arrays.copyOfRange(output, ready.length, output.length);
+    assertThat(readyOutput).isEqualTo(ready);
+    assertThat(FrameCompressor.isCompressed(resultOutput)).isTrue();
+    assertThat(lz4.decompressFrame(resultOutput, AdapterOptions.DEFAULT_MAX_FRAME_BYTES))
+        .isEqualTo(result);
+  }
+
+  @Test
+  public void compressedPayloadClaimingHugeLength_isRejectedBeforeDecompression()
+      throws IOException {
+    FrameCompressor lz4 = FrameCompressor.forAlgorithm("lz4").get();
+    byte[] startup =
+        encodeMessage(
+            new Startup(ImmutableMap.of("CQL_VERSION", "3.0.0", "COMPRESSION", "lz4")));
+    byte[] query = lz4.compressFrame(createQueryMessage());
+    // Claim an uncompressed body of 1 GiB.
+    query[9] = 0x40;
+    query[10] = 0;
+    query[11] = 0;
+    query[12] = 0;
+    byte[] ready = encodeResponse(new Ready());
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(startup, query)));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(ready);
+    byte[] expectedResponse =
+        protocolErrorResponse(
+            STREAM_ID,
+            DriverConnectionHandler.frameTooLargeMessage(
+                9L + (1 << 30), AdapterOptions.DEFAULT_MAX_FRAME_BYTES));
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    verify(mockAdapterClient, times(1)).sendGrpcRequest(any(), any(), any(), any(int.class));
+    byte[] output = outputStream.toByteArray();
+    byte[] errorOutput = Arrays.copyOfRange(output, ready.length, output.length);
+    assertThat(lz4.decompressFrame(errorOutput, AdapterOptions.DEFAULT_MAX_FRAME_BYTES))
+        .isEqualTo(expectedResponse);
+  }
+
+  @Test
+  public void startupWithUnsupportedCompression_writesErrorMessageToSocket() throws IOException {
+    byte[] startup = encodeMessage(new Startup(ImmutableMap.of("COMPRESSION", "zstd")));
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(startup));
+    byte[] expectedResponse =
+        protocolErrorResponse(
+            STREAM_ID,
+            "Unsupported compression algorithm: zstd. Supported algorithms: [lz4, snappy]");
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(expectedResponse);
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void compressedPayloadWithoutCompression_writesErrorMessageToSocket()
+      throws IOException {
+    byte[] query = FrameCompressor.forAlgorithm("snappy").get().compressFrame(createQueryMessage());
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(query));
+    byte[] expectedResponse =
+        serverErrorResponse(
+            STREAM_ID,
+            "Server error during request processing: "
+                + "Received a compressed payload, but no compression was negotiated.");
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(expectedResponse);
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void optionsMessage_advertisesCompression() throws IOException {
+    byte[] options = encodeMessage(Options.INSTANCE);
+    Map<String, List<String>> supportedOptions =
+        ImmutableMap.of("CQL_VERSION", ImmutableList.of("3.4.5"));
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(options));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(encodeResponse(new Supported(supportedOptions)));
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    ByteBuf responseBuf = Unpooled.wrappedBuffer(outputStream.toByteArray());
+    Supported supported = (Supported) clientFrameCodec.decode(responseBuf).message;
+    assertThat(supported.options)
+        .containsExactly(
+            "CQL_VERSION",
+            ImmutableList.of("3.4.5"),
+            "COMPRESSION",
+            ImmutableList.of("lz4", "snappy"));
+  }
+
+  @Test
+  public void unsupportedProtocolVersion_writesErrorMessageToSocket() throws IOException {
+    byte[] options = encodeMessage(Options.INSTANCE);
+    options[0] = 6;
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(options));
+    byte[] expectedResponse =
+        protocolErrorResponse(
+            STREAM_ID,
+            "Invalid or unsupported protocol version (6); "
+                + "supported versions are (3/v3, 4/v4, 5/v5)");
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(expectedResponse);
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void protocolV5StartupWithSnappy_writesErrorMessageToSocket() throws IOException {
+    byte[] startup =
+        encodeMessage(
+            5, new Startup(ImmutableMap.of("CQL_VERSION", "3.0.0", "COMPRESSION", "snappy")));
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(startup));
+    byte[] expectedResponse =
+        protocolErrorResponse(
+            STREAM_ID, "Unsupported compression algorithm: snappy. Supported algorithms: [lz4]");
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    byte[] output = outputStream.toByteArray();
+    assertThat(output[0]).isEqualTo((byte) 0x85);
+    assertThat(Arrays.copyOfRange(output, 1, output.length))
+        .isEqualTo(Arrays.copyOfRange(expectedResponse, 1, expectedResponse.length));
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void protocolV5_translatesFramesAndUsesSegments() throws IOException {
+    byte[] startup = encodeMessage(5, new Startup(ImmutableMap.of("CQL_VERSION", "3.0.0")));
+    byte[] query = encodeMessage(5, new Query("SELECT * FROM ks.T"));
+    ByteArrayOutputStream segments = new ByteArrayOutputStream();
+    SegmentFraming requestFraming = new SegmentFraming(null);
+    requestFraming.write(query);
+    requestFraming.flush(segments);
+    byte[] ready = encodeResponse(new Ready());
+    byte[] result = encodeResponse(Void.INSTANCE);
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(startup, segments.toByteArray())));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(ready, result);
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+
+    DriverConnectionHandler handler = new DriverConnectionHandler(mockSocket, mockAdapterClient);
+    handler.run();
+
+    verify(mockAdapterClient, times(2))
+        .sendGrpcRequest(payloadCaptor.capture(), any(), any(), any(int.class));
+    assertThat(payloadCaptor.getAllValues().get(0)[0]).isEqualTo(4);
+    assertThat(payloadCaptor.getAllValues().get(1)).isEqualTo(createQueryMessage());
+    ByteArrayInputStream output = new ByteArrayInputStream(outputStream.toByteArray());
+    byte[] readyOutput = new byte[ready.length];
+    assertThat(output.read(readyOutput)).isEqualTo(ready.length);
+    assertThat(readyOutput[0]).isEqualTo((byte) 0x85);
+    byte[] resultOutput = new SegmentFraming(null).readFrame(output);
+    assertThat(resultOutput[0]).isEqualTo((byte) 0x85);
+    assertThat(Arrays.copyOfRange(resultOutput, 1, resultOutput.length))
+        .isEqualTo(Arrays.copyOfRange(result, 1, result.length));
+  }
+
+  @Test
+  public void frameTooLarge_skipsFrameAndWritesErrorMessageToSocket() throws IOException {
+    byte[] query = createQueryMessage();
+    byte[] options = encodeMessage(Options.INSTANCE);
+    byte[] grpcResponse = "gRPC response".getBytes(StandardCharsets.UTF_8.name());
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(query, options)));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(grpcResponse);
+    byte[] expectedError =
+        protocolErrorResponse(
+            STREAM_ID,
+            "Request is too big: length "
+                + query.length
+                + " exceeds maximum allowed length "
+                + HEADER_LENGTH
+                + ".");
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder().maxFrameBytes(HEADER_LENGTH).build());
+    handler.run();
+
+    assertThat(outputStream.toByteArray())
+        .isEqualTo(concatenateArrays(expectedError, grpcResponse));
+    verify(mockAdapterClient).sendGrpcRequest(eq(options), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void memoryBudgetExhausted_writesOverloadedMessageToSocket() throws IOException {
+    byte[] query = createQueryMessage();
+    MemoryBudget memoryBudget = new MemoryBudget(query.length - 1, Duration.ZERO);
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(query));
+    byte[] expectedResponse =
+        overloadedResponse(
+            STREAM_ID, "The Spanner Cassandra adapter is out of memory for in-flight requests.");
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder().memoryBudget(memoryBudget).build());
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(expectedResponse);
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(query.length - 1);
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), any(int.class));
+  }
+
+  @Test
+  public void successfulQueryMessage_releasesMemoryBudget() throws IOException {
+    byte[] query = createQueryMessage();
+    MemoryBudget memoryBudget = new MemoryBudget(query.length, Duration.ZERO);
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(query, query)));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(encodeResponse(Void.INSTANCE));
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder().memoryBudget(memoryBudget).build());
+    handler.run();
+
+    verify(mockAdapterClient, times(2)).sendGrpcRequest(any(), any(), any(), any(int.class));
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(query.length);
+  }
+
+  @Test
+  public void repeatedPrepareMessage_isAnsweredFromPreparedResponseCache() throws IOException {
+    byte[] prepare = createPrepareMessage();
+    byte[] prepared =
+        encodeResponse(
+            new Prepared(
+                "query-id".getBytes(StandardCharsets.UTF_8),
+                null,
+                new RowsMetadata(Collections.emptyList(), null, new int[0], null),
+                new RowsMetadata(Collections.emptyList(), null, new int[0], null)));
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/query-id", "attachment");
+    PreparedResponseCache preparedResponseCache =
+        new PreparedResponseCache(attachmentsCache, 10, Duration.ofMinutes(5));
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(prepare, prepare)));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(prepared);
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder()
+                .preparedResponseCache(preparedResponseCache)
+                .build());
+    handler.run();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(concatenateArrays(prepared, prepared));
+    verify(mockAdapterClient, times(1)).sendGrpcRequest(any(), any(), any(), any(int.class));
+    assertThat(preparedResponseCache.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void executeMessageOfCachedTable_isAnsweredFromResultCacheUntilWritten()
+      throws IOException {
+    byte[] queryId = "Rflags".getBytes(StandardCharsets.UTF_8);
+    byte[] read = createExecuteMessage(queryId);
+    byte[] write = encodeMessage(new Query("UPDATE ks.flags SET v = 1 WHERE id = 1"));
+    byte[] rows =
+        encodeResponse(
+            new DefaultRows(
+                new RowsMetadata(Collections.emptyList(), null, new int[0], null),
+                new ArrayDeque<>()));
+    ColumnSpec column =
+        new ColumnSpec(
+            "ks", "flags", "v", 0, RawType.PRIMITIVES.get(ProtocolConstants.DataType.INT));
+    ResultCache resultCache = new ResultCache(ResultCache.parseTableSettings("ks.flags:60:10"));
+    resultCache.onPrepared(
+        "SELECT v FROM ks.flags WHERE id = ?",
+        encodeResponse(
+            new Prepared(
+                queryId,
+                null,
+                new RowsMetadata(Collections.emptyList(), null, new int[0], null),
+                new RowsMetadata(Collections.singletonList(column), null, new int[0], null))));
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/Rflags", "read");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    when(mockSocket.getInputStream())
+        .thenReturn(
+            new ByteArrayInputStream(
+                concatenateArrays(concatenateArrays(read, read), concatenateArrays(write, read))));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(rows);
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder().resultCache(resultCache).build());
+    handler.run();
+
+    verify(mockAdapterClient, times(3)).sendGrpcRequest(any(), any(), any(), any(int.class));
+    assertThat(resultCache.getHitCount()).isEqualTo(1);
+    assertThat(resultCache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void streamedWriteOfCachedTable_invalidatesReadsCachedWhileInFlight()
+      throws IOException {
+    byte[] readQueryId = "Rflags".getBytes(StandardCharsets.UTF_8);
+    byte[] writeQueryId = "Wflags".getBytes(StandardCharsets.UTF_8);
+    byte[] read = createExecuteMessage(readQueryId);
+    byte[] write = createExecuteMessage(writeQueryId);
+    byte[] rows =
+        encodeResponse(
+            new DefaultRows(
+                new RowsMetadata(Collections.emptyList(), null, new int[0], null),
+                new ArrayDeque<>()));
+    RowsMetadata flags =
+        new RowsMetadata(
+            Collections.singletonList(
+                new ColumnSpec(
+                    "ks", "flags", "v", 0, RawType.PRIMITIVES.get(ProtocolConstants.DataType.INT))),
+            null,
+            new int[0],
+            null);
+    RowsMetadata empty = new RowsMetadata(Collections.emptyList(), null, new int[0], null);
+    ResultCache resultCache = new ResultCache(ResultCache.parseTableSettings("ks.flags:60:10"));
+    resultCache.onPrepared(
+        "SELECT v FROM ks.flags WHERE id = ?",
+        encodeResponse(new Prepared(readQueryId, null, empty, flags)));
+    resultCache.onPrepared(
+        "UPDATE ks.flags SET v = ? WHERE id = 1",
+        encodeResponse(new Prepared(writeQueryId, null, flags, empty)));
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/Rflags", "read");
+    attachmentsCache.put("pqid/Wflags", "write");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(write, read)));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(rows);
+    // A read on another connection caches the previous rows while the write is in flight.
+    ResultCache.Table table = resultCache.table("pqid/Rflags");
+    doAnswer(
+            invocation -> {
+              table.put(table.key(read), table.generation(), rows);
+              return null;
+            })
+        .when(mockAdapterClient)
+        .streamGrpcRequest(any(), any(), any(), any(int.class), any(), any());
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder()
+                .responseSpool(new ResponseSpool(0))
+                .resultCache(resultCache)
+                .build());
+    handler.run();
+
+    verify(mockAdapterClient).streamGrpcRequest(any(), any(), any(), any(int.class), any(), any());
+    verify(mockAdapterClient).sendGrpcRequest(any(), any(), any(), any(int.class));
+    assertThat(resultCache.getHitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void executeMessageOfNextPage_isAnsweredFromPagePrefetcher() throws IOException {
+    byte[] queryId = "R1".getBytes(StandardCharsets.UTF_8);
+    byte[] firstPage =
+        encodeMessage(new Execute(queryId, queryOptions(ProtocolConstants.ConsistencyLevel.ONE)));
+    byte[] nextPage =
+        encodeMessage(
+            new Execute(
+                queryId,
+                new QueryOptions(
+                    ProtocolConstants.ConsistencyLevel.ONE,
+                    Collections.emptyList(),
+                    Collections.emptyMap(),
+                    false,
+                    -1,
+                    ByteBuffer.wrap(new byte[] {1}),
+                    ProtocolConstants.ConsistencyLevel.SERIAL,
+                    Long.MIN_VALUE,
+                    null,
+                    Integer.MIN_VALUE)));
+    byte[] firstRows = rowsResponse(ByteBuffer.wrap(new byte[] {1}));
+    byte[] lastRows = rowsResponse(null);
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/R1", "read");
+    when(mockAdapterClient.getAttachmentsCache()).thenReturn(attachmentsCache);
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(concatenateArrays(firstPage, nextPage)));
+    when(mockAdapterClient.sendGrpcRequest(any(byte[].class), any(), any(), any(int.class)))
+        .thenReturn(firstRows, lastRows);
+
+    DriverConnectionHandler handler =
+        new DriverConnectionHandler(
+            mockSocket,
+            mockAdapterClient,
+            DriverConnectionHandler.Settings.newBuilder()
+                .pagePrefetcher(new PagePrefetcher(mockAdapterClient, Runnable::run, null, 1))
+                .build());
+    handler.run();
+
+    // The next page was prefetched before the driver asked for it.
+    verify(mockAdapterClient, times(2)).sendGrpcRequest(any(), any(), any(), any(int.class));
+    assertThat(outputStream.toByteArray()).isEqualTo(concatenateArrays(firstRows, lastRows));
+  }
+
+  private static byte[] rowsResponse(ByteBuffer pagingState) {
+    return encodeResponse(
+        new DefaultRows(
+            new RowsMetadata(Collections.emptyList(), pagingState, new int[0], null),
+            new ArrayDeque<>()));
+  }
+
   private static byte[] createQueryMessage() {
     return encodeMessage(new Query("SELECT * FROM ks.T"));
   }
@@ -314,6 +1116,34 @@ public final class DriverConnectionHandlerTest {
     return encodeMessage(new Execute(queryId, QueryOptions.DEFAULT));
   }
 
+  private static byte[] createExecuteMessage(String queryId, int consistency) {
+    return encodeMessage(
+        new Execute(queryId.getBytes(StandardCharsets.UTF_8), queryOptions(consistency)));
+  }
+
+  private static QueryOptions queryOptions(int consistency) {
+    return new QueryOptions(
+        consistency,
+        Collections.emptyList(),
+        Collections.emptyMap(),
+        false,
+        -1,
+        null,
+        ProtocolConstants.ConsistencyLevel.SERIAL,
+        Long.MIN_VALUE,
+        null,
+        Integer.MIN_VALUE);
+  }
+
+  private DriverConnectionHandler createHandlerWithMaxStaleness(Duration maxStaleness) {
+    return new DriverConnectionHandler(
+        mockSocket,
+        mockAdapterClient,
+        DriverConnectionHandler.Settings.newBuilder()
+            .maxStaleness(Optional.of(maxStaleness))
+            .build());
+  }
+
   private static byte[] createBatchMessage(byte[] queryId) {
     List<Object> queriesOrIds = new ArrayList<>();
     queriesOrIds.add("a");
@@ -325,7 +1155,15 @@ public final class DriverConnectionHandlerTest {
   }
 
   private static byte[] encodeMessage(Message msg) {
-    Frame frame = Frame.forRequest(4, STREAM_ID, false, Collections.emptyMap(), msg);
+    return encodeMessage(4, msg);
+  }
+
+  private static byte[] encodeMessage(int protocolVersion, Message msg) {
+    return encodeFrame(
+        Frame.forRequest(protocolVersion, STREAM_ID, false, Collections.emptyMap(), msg));
+  }
+
+  private static byte[] encodeFrame(Frame frame) {
     ByteBuf payloadBuf = clientFrameCodec.encode(frame);
     byte[] payload = new byte[payloadBuf.readableBytes()];
     payloadBuf.readBytes(payload);
@@ -333,6 +1171,24 @@ public final class DriverConnectionHandlerTest {
     return payload;
   }
 
+  private static byte[] encodeResponse(Message msg) {
+    Frame frame =
+        Frame.forResponse(
+            4, STREAM_ID, null, Collections.emptyMap(), Collections.emptyList(), msg);
+    ByteBuf payloadBuf = serverFrameCodec.encode(frame);
+    byte[] payload = new byte[payloadBuf.readableBytes()];
+    payloadBuf.readBytes(payload);
+    payloadBuf.release();
+    return payload;
+  }
+
+  private static Frame decodeRequest(byte[] payload) {
+    ByteBuf payloadBuf = Unpooled.wrappedBuffer(payload);
+    Frame frame = serverFrameCodec.decode(payloadBuf);
+    payloadBuf.release();
+    return frame;
+  }
+
   private static byte[] createHeaderWithBodyLength(int bodyLength) {
     byte[] header = new byte[HEADER_LENGTH];
     header[5] = (byte) (bodyLength >> 24);
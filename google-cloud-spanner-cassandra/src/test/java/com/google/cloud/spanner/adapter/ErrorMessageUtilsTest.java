@@ -0,0 +1,108 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.overloadedResponse;
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.protocolErrorResponse;
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.serverErrorResponse;
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.unpreparedResponse;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.datastax.oss.protocol.internal.response.Error;
+import com.datastax.oss.protocol.internal.response.error.Unprepared;
+import com.google.cloud.spanner.adapter.util.ErrorFrameTemplate;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.Collections;
+import org.junit.Test;
+
+public final class ErrorMessageUtilsTest {
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final byte[] QUERY_ID = {1, 2, 3};
+
+  public ErrorMessageUtilsTest() {}
+
+  @Test
+  public void errorResponses_matchFrameCodec() {
+    assertThat(serverErrorResponse(7, "Server error \u00e9"))
+        .isEqualTo(encode(7, new Error(ErrorCode.SERVER_ERROR, "Server error \u00e9")));
+    assertThat(overloadedResponse(-1, "Overloaded"))
+        .isEqualTo(encode(-1, new Error(ErrorCode.OVERLOADED, "Overloaded")));
+    assertThat(protocolErrorResponse(300, "Protocol error"))
+        .isEqualTo(encode(300, new Error(ErrorCode.PROTOCOL_ERROR, "Protocol error")));
+    assertThat(unpreparedResponse(32767, QUERY_ID))
+        .isEqualTo(encode(32767, new Unprepared("Unprepared", QUERY_ID)));
+  }
+
+  @Test
+  public void templates_patchStreamId() {
+    ErrorFrameTemplate overloaded = ErrorFrameTemplate.overloaded("Overloaded");
+    ErrorFrameTemplate unprepared = ErrorFrameTemplate.unprepared(QUERY_ID);
+
+    assertThat(overloaded.forStream(5)).isEqualTo(overloadedResponse(5, "Overloaded"));
+    assertThat(overloaded.forStream(-1)).isEqualTo(overloadedResponse(-1, "Overloaded"));
+    assertThat(unprepared.forStream(300)).isEqualTo(unpreparedResponse(300, QUERY_ID));
+    assertThat(ErrorFrameTemplate.serverError("Server error").forStream(2))
+        .isEqualTo(serverErrorResponse(2, "Server error"));
+    // Every response is a copy, which the caller may modify.
+    assertThat(overloaded.forStream(5)).isNotSameInstanceAs(overloaded.forStream(5));
+  }
+
+  @Test
+  public void longMessage_isTruncatedOnCharacterBoundary() {
+    StringBuilder message = new StringBuilder("xx");
+    for (int i = 0; i < 40000; i++) {
+      message.append('\u00e9');
+    }
+
+    Frame frame = decode(serverErrorResponse(1, message.toString()));
+
+    // The message is cut to the 65535 bytes of a [string], without splitting its last character.
+    String decodedMessage = ((Error) frame.message).message;
+    assertThat(decodedMessage.length()).isEqualTo(2 + 32766);
+    assertThat(message.toString().startsWith(decodedMessage)).isTrue();
+  }
+
+  private static byte[] encode(int streamId, Message message) {
+    Frame frame =
+        Frame.forResponse(4, streamId, null, Frame.NO_PAYLOAD, Collections.emptyList(), message);
+    ByteBuf buf = serverFrameCodec.encode(frame);
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+
+  private static Frame decode(byte[] bytes) {
+    FrameCodec<ByteBuf> clientFrameCodec =
+        FrameCodec.defaultClient(
+            new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+    ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+    Frame frame = clientFrameCodec.decode(buf);
+    buf.release();
+    return frame;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public final class FrameCompressorTest {
+
+  private static final int MAX_FRAME = AdapterOptions.DEFAULT_MAX_FRAME_BYTES;
+  private static final byte[] FRAME =
+      frame("SELECT * FROM ks.T WHERE col = 'aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa'");
+
+  @Test
+  public void supportsLz4AndSnappy() {
+    assertThat(FrameCompressor.supportedAlgorithms()).containsExactly("lz4", "snappy").inOrder();
+    assertThat(FrameCompressor.forAlgorithm("LZ4").get().algorithm()).isEqualTo("lz4");
+    assertThat(FrameCompressor.forAlgorithm("zstd").isPresent()).isFalse();
+  }
+
+  @Test
+  public void lz4RoundTrip() {
+    assertRoundTrip(FrameCompressor.forAlgorithm("lz4").get());
+  }
+
+  @Test
+  public void snappyRoundTrip() {
+    assertRoundTrip(FrameCompressor.forAlgorithm("snappy").get());
+  }
+
+  @Test
+  public void compressFrame_skipsFramesWithoutBody() {
+    FrameCompressor compressor = FrameCompressor.forAlgorithm("lz4").get();
+    byte[] ready = new byte[] {(byte) 0x84, 0, 0, 1, 2, 0, 0, 0, 0};
+
+    assertThat(compressor.compressFrame(ready)).isSameInstanceAs(ready);
+  }
+
+  @Test
+  public void decompressFrame_rejectsMalformedBody() {
+    FrameCompressor compressor = FrameCompressor.forAlgorithm("lz4").get();
+    byte[] compressed = compressor.compressFrame(FRAME);
+    compressed[9] = -1; // Corrupt the uncompressed length.
+
+    assertThrows(
+        IllegalArgumentException.class, () -> compressor.decompressFrame(compressed, MAX_FRAME));
+  }
+
+  @Test
+  public void decompressFrame_rejectsLz4BodyNotMatchingItsUncompressedLength() {
+    FrameCompressor compressor = FrameCompressor.forAlgorithm("lz4").get();
+    int bodyLength = FRAME.length - 9;
+
+    for (int declaredLength : new int[] {bodyLength - 1, bodyLength + 10}) {
+      byte[] compressed = compressor.compressFrame(FRAME);
+      ByteBuffer.wrap(compressed, 9, 4).putInt(declaredLength);
+
+      assertThrows(
+          IllegalArgumentException.class, () -> compressor.decompressFrame(compressed, MAX_FRAME));
+    }
+  }
+
+  @Test
+  public void decompressFrame_rejectsHugeUncompressedLengthBeforeAllocating() {
+    // Bodies of a few bytes claiming an uncompressed length of 1 GiB.
+    byte[] lz4Frame = frame(new byte[] {0x40, 0, 0, 0, 0x10, 0x61});
+    byte[] snappyFrame = frame(new byte[] {-128, -128, -128, -128, 0x04, 0x00, 0x61});
+
+    for (byte[] compressed : new byte[][] {lz4Frame, snappyFrame}) {
+      compressed[1] |= 0x01;
+    }
+    FrameCompressor lz4 = FrameCompressor.forAlgorithm("lz4").get();
+    FrameCompressor snappy = FrameCompressor.forAlgorithm("snappy").get();
+
+    assertThat(lz4.uncompressedFrameLength(lz4Frame)).isEqualTo(9L + (1 << 30));
+    assertThat(snappy.uncompressedFrameLength(snappyFrame)).isEqualTo(9L + (1 << 30));
+    assertThrows(IllegalArgumentException.class, () -> lz4.decompressFrame(lz4Frame, MAX_FRAME));
+    assertThrows(
+        IllegalArgumentException.class, () -> snappy.decompressFrame(snappyFrame, MAX_FRAME));
+  }
+
+  private static void assertRoundTrip(FrameCompressor compressor) {
+    byte[] compressed = compressor.compressFrame(FRAME);
+
+    assertThat(FrameCompressor.isCompressed(FRAME)).isFalse();
+    assertThat(FrameCompressor.isCompressed(compressed)).isTrue();
+    assertThat(compressed[2]).isEqualTo(FRAME[2]);
+    assertThat(compressed[4]).isEqualTo(FRAME[4]);
+    assertThat(compressor.decompressFrame(compressed, MAX_FRAME)).isEqualTo(FRAME);
+  }
+
+  private static byte[] frame(String body) {
+    return frame(body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] frame(byte[] bodyBytes) {
+    byte[] frame = new byte[9 + bodyBytes.length];
+    frame[0] = 0x04;
+    frame[3] = 1;
+    frame[4] = 0x07;
+    frame[8] = (byte) bodyBytes.length;
+    System.arraycopy(bodyBytes, 0, frame, 9, bodyBytes.length);
+    return frame;
+  }
+}
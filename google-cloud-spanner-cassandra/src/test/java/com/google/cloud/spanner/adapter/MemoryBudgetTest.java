@@ -0,0 +1,101 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public final class MemoryBudgetTest {
+
+  @Test
+  public void tryAcquire_reservesBytesUntilReleased() {
+    MemoryBudget budget = new MemoryBudget(100, Duration.ZERO);
+
+    assertThat(budget.tryAcquire(60)).isTrue();
+    assertThat(budget.getAvailableBytes()).isEqualTo(40);
+    assertThat(budget.getUtilization()).isEqualTo(0.6);
+    assertThat(budget.tryAcquire(60)).isFalse();
+    budget.release(60);
+
+    assertThat(budget.tryAcquire(60)).isTrue();
+    assertThat(budget.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void tryAcquire_rejectsMoreThanCapacity() {
+    MemoryBudget budget = new MemoryBudget(100, Duration.ofSeconds(10));
+
+    assertThat(budget.tryAcquire(101)).isFalse();
+    assertThat(budget.getAvailableBytes()).isEqualTo(100);
+    assertThat(budget.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void tryAcquire_waitsForRelease() throws Exception {
+    MemoryBudget budget = new MemoryBudget(100, Duration.ofSeconds(10));
+    assertThat(budget.tryAcquire(100)).isTrue();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch started = new CountDownLatch(1);
+    try {
+      Future<Boolean> acquired =
+          executor.submit(
+              () -> {
+                started.countDown();
+                return budget.tryAcquire(50);
+              });
+      started.await();
+
+      budget.release(100);
+
+      assertThat(acquired.get()).isTrue();
+      assertThat(budget.getAvailableBytes()).isEqualTo(50);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void tryAcquire_rejectsAfterMaxWait() {
+    MemoryBudget budget = new MemoryBudget(100, Duration.ofMillis(10));
+    assertThat(budget.tryAcquire(100)).isTrue();
+
+    assertThat(budget.tryAcquire(1)).isFalse();
+    assertThat(budget.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void setCapacityBytes_keepsReservedBytes() {
+    MemoryBudget budget = new MemoryBudget(100, Duration.ZERO);
+    assertThat(budget.tryAcquire(60)).isTrue();
+
+    budget.setCapacityBytes(200);
+    assertThat(budget.getAvailableBytes()).isEqualTo(140);
+    assertThat(budget.tryAcquire(120)).isTrue();
+
+    budget.setCapacityBytes(100);
+    assertThat(budget.getAvailableBytes()).isEqualTo(-80);
+    assertThat(budget.tryAcquire(1)).isFalse();
+    budget.release(180);
+    assertThat(budget.getAvailableBytes()).isEqualTo(100);
+  }
+}
@@ -0,0 +1,258 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.protocol.internal.response.result.DefaultRows;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiCallContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class PagePrefetcherTest {
+
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final ApiCallContext CONTEXT = GrpcCallContext.createDefault();
+  private static final Map<String, String> ATTACHMENTS = Collections.singletonMap("pqid/R1", "q");
+  private AdapterClientWrapper mockAdapterClient;
+  private PagePrefetcher pagePrefetcher;
+
+  public PagePrefetcherTest() {}
+
+  @Before
+  public void setUp() {
+    mockAdapterClient = mock(AdapterClientWrapper.class);
+    pagePrefetcher = new PagePrefetcher(mockAdapterClient, Runnable::run, null, 2);
+  }
+
+  @Test
+  public void onResponse_withMorePages_prefetchesNextPage() {
+    byte[] nextPage = rows(1, "p2");
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt())).thenReturn(nextPage);
+
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+
+    ArgumentCaptor<byte[]> requestCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(mockAdapterClient).sendGrpcRequest(requestCaptor.capture(), any(), any(), anyInt());
+    Execute prefetched = (Execute) decodeRequest(requestCaptor.getValue()).message;
+    assertThat(prefetched.options.pagingState).isEqualTo(utf8("p1"));
+    assertThat(prefetched.options.pageSize).isEqualTo(3);
+    assertThat(prefetched.options.positionalValues).containsExactly(utf8("value"));
+    assertThat(prefetched.options.defaultTimestamp).isEqualTo(1000L);
+  }
+
+  @Test
+  public void take_ofPrefetchedPage_returnsItForTheGivenStream() {
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(rows(1, "p2"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+
+    // Drivers set a new timestamp for every page.
+    byte[] response = pagePrefetcher.take(execute("R1", 7, "p1", 2000L), 7);
+
+    assertThat(response).isNotNull();
+    assertThat(decodeResponse(response).streamId).isEqualTo(7);
+    assertThat(pagePrefetcher.take(execute("R1", 7, "p1", 2000L), 7)).isNull();
+  }
+
+  @Test
+  public void take_ofOtherPage_returnsNull() {
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(rows(1, "p2"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+
+    assertThat(pagePrefetcher.take(execute("R1", 1, "other", 1000L), 1)).isNull();
+    assertThat(pagePrefetcher.take(execute("R2", 1, "p1", 1000L), 1)).isNull();
+  }
+
+  @Test
+  public void onResponse_ofLastPage_doesNotPrefetch() {
+    pagePrefetcher.onResponse(execute("R1", 1, "p1", 1000L), rows(1, null), ATTACHMENTS, CONTEXT);
+
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  public void onResponse_beyondMaxPages_dropsOldestPage() {
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(rows(1, "p2"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+    pagePrefetcher.onResponse(execute("R2", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+    pagePrefetcher.onResponse(execute("R3", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+
+    assertThat(pagePrefetcher.take(execute("R1", 1, "p1", 1000L), 1)).isNull();
+    assertThat(pagePrefetcher.take(execute("R2", 1, "p1", 1000L), 1)).isNotNull();
+    assertThat(pagePrefetcher.take(execute("R3", 1, "p1", 1000L), 1)).isNotNull();
+  }
+
+  @Test
+  public void take_ofFailedPrefetch_returnsNull() {
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenThrow(new IllegalStateException("unavailable"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), rows(1, "p1"), ATTACHMENTS, CONTEXT);
+
+    assertThat(pagePrefetcher.take(execute("R1", 1, "p1", 1000L), 1)).isNull();
+  }
+
+  @Test
+  public void onResponse_withExhaustedMemoryBudget_doesNotPrefetch() {
+    byte[] response = rows(1, "p1");
+    MemoryBudget memoryBudget = new MemoryBudget(response.length - 1, Duration.ZERO);
+    pagePrefetcher = new PagePrefetcher(mockAdapterClient, Runnable::run, memoryBudget, 2);
+
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), response, ATTACHMENTS, CONTEXT);
+
+    verify(mockAdapterClient, never()).sendGrpcRequest(any(), any(), any(), anyInt());
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(response.length - 1);
+  }
+
+  @Test
+  public void take_ofPrefetchedPage_releasesItsMemory() {
+    byte[] response = rows(1, "p1");
+    MemoryBudget memoryBudget = new MemoryBudget(response.length, Duration.ZERO);
+    pagePrefetcher = new PagePrefetcher(mockAdapterClient, Runnable::run, memoryBudget, 2);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(rows(1, "p2"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), response, ATTACHMENTS, CONTEXT);
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(0);
+
+    assertThat(pagePrefetcher.take(execute("R1", 1, "p1", 1000L), 1)).isNotNull();
+
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(response.length);
+  }
+
+  @Test
+  public void take_ofPageLargerThanMemoryBudget_returnsNull() {
+    byte[] response = rows(1, "p1");
+    MemoryBudget memoryBudget = new MemoryBudget(response.length, Duration.ZERO);
+    pagePrefetcher = new PagePrefetcher(mockAdapterClient, Runnable::run, memoryBudget, 2);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(rows(1, "a-longer-paging-state"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), response, ATTACHMENTS, CONTEXT);
+
+    assertThat(pagePrefetcher.take(execute("R1", 1, "p1", 1000L), 1)).isNull();
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(response.length);
+  }
+
+  @Test
+  public void close_releasesMemoryOfPrefetchedPages() {
+    byte[] response = rows(1, "p1");
+    MemoryBudget memoryBudget = new MemoryBudget(response.length, Duration.ZERO);
+    pagePrefetcher = new PagePrefetcher(mockAdapterClient, Runnable::run, memoryBudget, 2);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), anyInt()))
+        .thenReturn(rows(1, "p2"));
+    pagePrefetcher.onResponse(execute("R1", 1, null, 1000L), response, ATTACHMENTS, CONTEXT);
+
+    pagePrefetcher.close();
+
+    assertThat(memoryBudget.getAvailableBytes()).isEqualTo(response.length);
+  }
+
+  private static byte[] execute(String queryId, int streamId, String pagingState, long timestamp) {
+    QueryOptions options =
+        new QueryOptions(
+            ProtocolConstants.ConsistencyLevel.LOCAL_QUORUM,
+            Collections.singletonList(utf8("value")),
+            Collections.emptyMap(),
+            false,
+            3,
+            pagingState == null ? null : utf8(pagingState),
+            ProtocolConstants.ConsistencyLevel.SERIAL,
+            timestamp,
+            null,
+            Integer.MIN_VALUE);
+    Frame frame =
+        Frame.forRequest(
+            4,
+            streamId,
+            false,
+            Collections.emptyMap(),
+            new Execute(queryId.getBytes(StandardCharsets.UTF_8), options));
+    return encode(clientFrameCodec, frame);
+  }
+
+  private static byte[] rows(int streamId, String pagingState) {
+    RowsMetadata metadata =
+        new RowsMetadata(
+            Collections.emptyList(),
+            pagingState == null ? null : utf8(pagingState),
+            new int[0],
+            null);
+    Message message = new DefaultRows(metadata, new ArrayDeque<>());
+    return encode(
+        serverFrameCodec,
+        Frame.forResponse(
+            4, streamId, null, Collections.emptyMap(), Collections.emptyList(), message));
+  }
+
+  private static ByteBuffer utf8(String value) {
+    return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] encode(FrameCodec<ByteBuf> codec, Frame frame) {
+    ByteBuf buf = codec.encode(frame);
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+
+  private static Frame decodeRequest(byte[] request) {
+    ByteBuf buf = Unpooled.wrappedBuffer(request);
+    Frame frame = serverFrameCodec.decode(buf);
+    buf.release();
+    return frame;
+  }
+
+  private static Frame decodeResponse(byte[] response) {
+    ByteBuf buf = Unpooled.wrappedBuffer(response);
+    Frame frame = clientFrameCodec.decode(buf);
+    buf.release();
+    return frame;
+  }
+}
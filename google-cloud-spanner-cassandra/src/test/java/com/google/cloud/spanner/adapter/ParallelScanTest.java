@@ -0,0 +1,159 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class ParallelScanTest {
+
+  private static final SimpleStatement RANGE_1 = SimpleStatement.newInstance("range 1");
+  private static final SimpleStatement RANGE_2 = SimpleStatement.newInstance("range 2");
+  private CqlSession mockSession;
+
+  public ParallelScanTest() {}
+
+  @Before
+  public void setUp() {
+    mockSession = mock(CqlSession.class);
+  }
+
+  @Test
+  public void keyRanges_splitTableAtSplitPoints() {
+    BoundStatement first = mock(BoundStatement.class);
+    BoundStatement between = mock(BoundStatement.class);
+    BoundStatement last = mock(BoundStatement.class);
+    when(prepare("SELECT * FROM ks.t WHERE id <= ? ALLOW FILTERING").bind(10)).thenReturn(first);
+    when(prepare("SELECT * FROM ks.t WHERE id > ? AND id <= ? ALLOW FILTERING").bind(10, 20))
+        .thenReturn(between);
+    when(prepare("SELECT * FROM ks.t WHERE id > ? ALLOW FILTERING").bind(20)).thenReturn(last);
+
+    List<BoundStatement> ranges =
+        ParallelScan.keyRanges(mockSession, "ks.t", "id", Arrays.asList(10, 20));
+
+    assertThat(ranges).containsExactly(first, between, last).inOrder();
+  }
+
+  @Test
+  public void keyRanges_withoutSplitPoints_readsWholeTable() {
+    BoundStatement all = mock(BoundStatement.class);
+    when(prepare("SELECT * FROM ks.t").bind()).thenReturn(all);
+
+    List<BoundStatement> ranges =
+        ParallelScan.keyRanges(mockSession, "ks.t", "id", Collections.emptyList());
+
+    assertThat(ranges).containsExactly(all);
+  }
+
+  @Test
+  public void keyRanges_withNullSplitPoint_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            ParallelScan.keyRanges(
+                mockSession, "ks.t", "id", Collections.singletonList(null)));
+  }
+
+  @Test
+  public void scan_returnsRowsOfAllPagesOfAllRanges() {
+    Row row1 = mock(Row.class);
+    Row row2 = mock(Row.class);
+    Row row3 = mock(Row.class);
+    AsyncResultSet lastPage = page(false, row2);
+    AsyncResultSet firstPage = page(true, row1);
+    when(firstPage.fetchNextPage()).thenReturn(CompletableFuture.completedFuture(lastPage));
+    when(mockSession.executeAsync(RANGE_1))
+        .thenReturn(CompletableFuture.completedFuture(firstPage));
+    when(mockSession.executeAsync(RANGE_2))
+        .thenReturn(CompletableFuture.completedFuture(page(false, row3)));
+
+    List<Row> rows = new ArrayList<>();
+    try (ParallelScan scan = new ParallelScan(mockSession, Arrays.asList(RANGE_1, RANGE_2), 2)) {
+      scan.forEachRemaining(rows::add);
+    }
+
+    assertThat(rows).containsExactly(row1, row2, row3);
+  }
+
+  @Test
+  public void scan_limitsRequestsInFlight() {
+    CompletableFuture<AsyncResultSet> response = new CompletableFuture<>();
+    when(mockSession.executeAsync(RANGE_1)).thenReturn(response);
+    when(mockSession.executeAsync(RANGE_2))
+        .thenReturn(CompletableFuture.completedFuture(page(false)));
+
+    ParallelScan scan = new ParallelScan(mockSession, Arrays.asList(RANGE_1, RANGE_2), 1);
+
+    verify(mockSession, times(1)).executeAsync(any(SimpleStatement.class));
+    response.complete(page(false));
+    verify(mockSession, times(2)).executeAsync(any(SimpleStatement.class));
+    assertThat(scan.hasNext()).isFalse();
+  }
+
+  @Test
+  public void scan_withFailedRange_throwsError() {
+    CompletableFuture<AsyncResultSet> response = new CompletableFuture<>();
+    response.completeExceptionally(new DriverTimeoutException("Query timed out"));
+    when(mockSession.executeAsync(RANGE_1)).thenReturn(response);
+
+    ParallelScan scan = new ParallelScan(mockSession, ImmutableList.of(RANGE_1), 1);
+
+    assertThrows(DriverTimeoutException.class, scan::hasNext);
+    assertThat(scan.hasNext()).isFalse();
+  }
+
+  @Test
+  public void scan_withoutRanges_isEmpty() {
+    ParallelScan scan = new ParallelScan(mockSession, Collections.emptyList(), 1);
+
+    assertThat(scan.hasNext()).isFalse();
+  }
+
+  private PreparedStatement prepare(String query) {
+    PreparedStatement prepared = mock(PreparedStatement.class);
+    when(mockSession.prepare(query)).thenReturn(prepared);
+    return prepared;
+  }
+
+  private static AsyncResultSet page(boolean hasMorePages, Row... rows) {
+    AsyncResultSet page = mock(AsyncResultSet.class);
+    when(page.currentPage()).thenReturn(Arrays.asList(rows));
+    when(page.hasMorePages()).thenReturn(hasMorePages);
+    return page;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.ErrorCode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.Opcode;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class PreparedResponseCacheTest {
+
+  private static final String QUERY = "SELECT * FROM t WHERE id = ?";
+  private static final String ATTACHMENT_KEY = "pqid/query-id";
+  private static final String ATTACHMENT_VALUE = "attachment";
+  private AttachmentsCache attachmentsCache;
+  private PreparedResponseCache cache;
+
+  public PreparedResponseCacheTest() {}
+
+  @Before
+  public void setUp() {
+    attachmentsCache = new AttachmentsCache(1);
+    attachmentsCache.put(ATTACHMENT_KEY, ATTACHMENT_VALUE);
+    cache = new PreparedResponseCache(attachmentsCache, 100, Duration.ofMinutes(5));
+  }
+
+  @Test
+  public void get_afterPut_returnsResponseForTheGivenStream() throws IOException {
+    byte[] prepared = preparedResponse(7, "query-id");
+    cache.put("ks", QUERY, 4, prepared);
+
+    byte[] response = cache.get("ks", QUERY, 4, 0x1234);
+
+    assertThat(response.length).isEqualTo(prepared.length);
+    assertThat(response[2]).isEqualTo((byte) 0x12);
+    assertThat(response[3]).isEqualTo((byte) 0x34);
+    assertThat(prepared[3]).isEqualTo((byte) 7);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void setMaxSize_keepsCachedResponses() throws IOException {
+    cache.put("ks", QUERY, 4, preparedResponse(7, "query-id"));
+
+    cache.setMaxSize(10);
+
+    assertThat(cache.getSize()).isEqualTo(1);
+    assertThat(cache.get("ks", QUERY, 4, 1)).isNotNull();
+  }
+
+  @Test
+  public void get_withOtherKeyspaceOrProtocolVersion_misses() throws IOException {
+    cache.put("ks", QUERY, 4, preparedResponse(7, "query-id"));
+
+    assertThat(cache.get("other", QUERY, 4, 1)).isNull();
+    assertThat(cache.get(null, QUERY, 4, 1)).isNull();
+    assertThat(cache.get("ks", QUERY, 5, 1)).isNull();
+    assertThat(cache.getMissCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void get_afterAttachmentEviction_putsAttachmentBack() throws IOException {
+    cache.put("ks", QUERY, 4, preparedResponse(7, "query-id"));
+    attachmentsCache.put("pqid/other", "other");
+    assertThat(attachmentsCache.getIfPresent(ATTACHMENT_KEY)).isNull();
+
+    assertThat(cache.get("ks", QUERY, 4, 1)).isNotNull();
+
+    assertThat(attachmentsCache.getIfPresent(ATTACHMENT_KEY)).isEqualTo(ATTACHMENT_VALUE);
+  }
+
+  @Test
+  public void put_withUnknownAttachmentOrOtherResult_isNotCached() throws IOException {
+    cache.put("ks", QUERY, 4, preparedResponse(7, "unknown-id"));
+    cache.put("ks", "INSERT INTO t (id) VALUES (1)", 4, result(7, ResultKind.VOID));
+
+    assertThat(cache.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void onResponse_withSchemaChange_clearsCache() throws IOException {
+    cache.put("ks", QUERY, 4, preparedResponse(7, "query-id"));
+
+    cache.onResponse(result(8, ResultKind.VOID));
+    assertThat(cache.getSize()).isEqualTo(1);
+    cache.onResponse(result(8, ResultKind.SCHEMA_CHANGE));
+
+    assertThat(cache.getSize()).isEqualTo(0);
+    assertThat(cache.getInvalidationCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void onResponse_withUnprepared_evictsQueryId() throws IOException {
+    cache.put("ks", QUERY, 4, preparedResponse(7, "query-id"));
+
+    cache.onResponse(unpreparedResponse(8, "other-id"));
+    assertThat(cache.getSize()).isEqualTo(1);
+    cache.onResponse(unpreparedResponse(8, "query-id"));
+
+    assertThat(cache.getSize()).isEqualTo(0);
+    assertThat(cache.getInvalidationCount()).isEqualTo(0);
+  }
+
+  private static byte[] preparedResponse(int streamId, String queryId) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeInt(ResultKind.PREPARED);
+    writeShortBytes(out, queryId);
+    // Prepared metadata: no flags, columns nor partition keys.
+    out.writeInt(0);
+    out.writeInt(0);
+    out.writeInt(0);
+    return frame(streamId, Opcode.RESULT, body.toByteArray());
+  }
+
+  private static byte[] result(int streamId, int kind) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    new DataOutputStream(body).writeInt(kind);
+    return frame(streamId, Opcode.RESULT, body.toByteArray());
+  }
+
+  private static byte[] unpreparedResponse(int streamId, String queryId) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeInt(ErrorCode.UNPREPARED);
+    writeShortBytes(out, "Unknown prepared query");
+    writeShortBytes(out, queryId);
+    return frame(streamId, Opcode.ERROR, body.toByteArray());
+  }
+
+  private static void writeShortBytes(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] frame(int streamId, int opcode, byte[] body) throws IOException {
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(frame);
+    out.writeByte(0x84);
+    out.writeByte(0);
+    out.writeShort(streamId);
+    out.writeByte(opcode);
+    out.writeInt(body.length);
+    out.write(body);
+    return frame.toByteArray();
+  }
+}
@@ -0,0 +1,213 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.request.Options;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.protocol.internal.response.Error;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import com.datastax.oss.protocol.internal.response.result.Void;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+
+public final class ProtocolVersionTranslatorTest {
+
+  private static final int STREAM_ID = 7;
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+
+  @Test
+  public void isSupported() {
+    assertThat(ProtocolVersionTranslator.isSupported(2)).isFalse();
+    assertThat(ProtocolVersionTranslator.isSupported(3)).isTrue();
+    assertThat(ProtocolVersionTranslator.isSupported(4)).isTrue();
+    assertThat(ProtocolVersionTranslator.isSupported(5)).isTrue();
+    assertThat(ProtocolVersionTranslator.isSupported(6)).isFalse();
+  }
+
+  @Test
+  public void toSpannerRequest_v4RequestIsUnchanged() {
+    byte[] query = encodeRequest(4, new Query("SELECT * FROM ks.T"));
+
+    assertThat(ProtocolVersionTranslator.toSpannerRequest(query)).isSameInstanceAs(query);
+  }
+
+  @Test
+  public void toSpannerRequest_patchesVersionOfV5Options() {
+    byte[] options = encodeRequest(5, Options.INSTANCE);
+
+    assertThat(ProtocolVersionTranslator.toSpannerRequest(options))
+        .isEqualTo(encodeRequest(4, Options.INSTANCE));
+  }
+
+  @Test
+  public void toSpannerRequest_reencodesV5Query() {
+    byte[] query = encodeRequest(5, new Query("SELECT * FROM ks.T"));
+
+    assertThat(ProtocolVersionTranslator.toSpannerRequest(query))
+        .isEqualTo(encodeRequest(4, new Query("SELECT * FROM ks.T")));
+  }
+
+  @Test
+  public void toSpannerRequest_rejectsPerQueryKeyspace() {
+    QueryOptions options =
+        new QueryOptions(
+            ProtocolConstants.ConsistencyLevel.ONE,
+            Collections.emptyList(),
+            Collections.emptyMap(),
+            false,
+            -1,
+            null,
+            ProtocolConstants.ConsistencyLevel.SERIAL,
+            Long.MIN_VALUE,
+            "ks",
+            QueryOptions.NO_NOW_IN_SECONDS);
+    byte[] query = encodeRequest(5, new Query("SELECT * FROM T", options));
+
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ProtocolVersionTranslator.toSpannerRequest(query));
+    assertThat(e.getMessage())
+        .isEqualTo("Per-query keyspaces are not supported, use the session keyspace instead.");
+  }
+
+  @Test
+  public void toDriverResponse_v4ResponseIsUnchanged() {
+    byte[] result = encodeResponse(4, Void.INSTANCE);
+
+    assertThat(ProtocolVersionTranslator.toDriverResponse(result, 4)).isSameInstanceAs(result);
+  }
+
+  @Test
+  public void toDriverResponse_patchesVersionOfV5Result() {
+    byte[] result = encodeResponse(4, Void.INSTANCE);
+
+    assertThat(ProtocolVersionTranslator.toDriverResponse(result, 5))
+        .isEqualTo(encodeResponse(5, Void.INSTANCE));
+  }
+
+  @Test
+  public void toDriverResponse_reencodesV5Error() {
+    Error error = new Error(ProtocolConstants.ErrorCode.SERVER_ERROR, "Boom");
+    byte[] response = encodeResponse(4, error);
+
+    assertThat(ProtocolVersionTranslator.toDriverResponse(response, 5))
+        .isEqualTo(encodeResponse(5, error));
+  }
+
+  @Test
+  public void toDriverResponse_addsResultMetadataIdToV5Prepared() {
+    byte[] queryId = {1, 2, 3};
+    RowsMetadata metadata = new RowsMetadata(Collections.emptyList(), null, new int[0], null);
+    byte[] response = encodeResponse(4, new Prepared(queryId, null, metadata, metadata));
+
+    Frame translated = decodeResponse(ProtocolVersionTranslator.toDriverResponse(response, 5));
+
+    assertThat(translated.protocolVersion).isEqualTo(5);
+    assertThat(translated.streamId).isEqualTo(STREAM_ID);
+    Prepared prepared = (Prepared) translated.message;
+    assertThat(prepared.preparedQueryId).isEqualTo(queryId);
+    assertThat(prepared.resultMetadataId).isEqualTo(queryId);
+  }
+
+  @Test
+  public void toDriverResponse_addsResultMetadataIdToV5PreparedWithTracingAndWarnings() {
+    byte[] queryId = {1, 2, 3};
+    RowsMetadata metadata = new RowsMetadata(Collections.emptyList(), null, new int[0], null);
+    UUID tracingId = UUID.randomUUID();
+    Map<String, ByteBuffer> customPayload =
+        Collections.singletonMap("tag", ByteBuffer.wrap(new byte[] {4, 5}));
+    List<String> warnings = Arrays.asList("Aggregation query used", "Batch too large");
+    byte[] response =
+        toBytes(
+            serverFrameCodec.encode(
+                Frame.forResponse(
+                    4,
+                    STREAM_ID,
+                    tracingId,
+                    customPayload,
+                    warnings,
+                    new Prepared(queryId, null, metadata, metadata))));
+
+    Frame translated = decodeResponse(ProtocolVersionTranslator.toDriverResponse(response, 5));
+
+    assertThat(translated.protocolVersion).isEqualTo(5);
+    assertThat(translated.tracingId).isEqualTo(tracingId);
+    assertThat(translated.warnings).isEqualTo(warnings);
+    assertThat(translated.customPayload).isEqualTo(customPayload);
+    Prepared prepared = (Prepared) translated.message;
+    assertThat(prepared.preparedQueryId).isEqualTo(queryId);
+    assertThat(prepared.resultMetadataId).isEqualTo(queryId);
+  }
+
+  private static byte[] encodeRequest(int protocolVersion, Message message) {
+    return toBytes(
+        clientFrameCodec.encode(
+            Frame.forRequest(
+                protocolVersion, STREAM_ID, false, Collections.emptyMap(), message)));
+  }
+
+  private static byte[] encodeResponse(int protocolVersion, Message message) {
+    return toBytes(
+        serverFrameCodec.encode(
+            Frame.forResponse(
+                protocolVersion,
+                STREAM_ID,
+                null,
+                Collections.emptyMap(),
+                Collections.emptyList(),
+                message)));
+  }
+
+  private static Frame decodeResponse(byte[] response) {
+    ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
+    Frame frame = clientFrameCodec.decode(responseBuf);
+    responseBuf.release();
+    return frame;
+  }
+
+  private static byte[] toBytes(ByteBuf buf) {
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+}
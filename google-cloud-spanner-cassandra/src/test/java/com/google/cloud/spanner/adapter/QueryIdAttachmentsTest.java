@@ -0,0 +1,178 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class QueryIdAttachmentsTest {
+
+  public QueryIdAttachmentsTest() {}
+
+  @Test
+  public void lookup_reusesAttachmentsOfQueryId() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/R1", "query");
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(attachmentsCache, Optional.of("100"));
+    byte[] frame = frameWithQueryId("R1");
+
+    QueryIdAttachments.Entry entry = queryIdAttachments.lookup(frame, 2, 2);
+
+    assertThat(entry.isPrepared()).isTrue();
+    assertThat(entry.isWrite()).isFalse();
+    assertThat(entry.key()).isEqualTo("pqid/R1");
+    assertThat(entry.executeAttachments()).containsExactly("pqid/R1", "query");
+    assertThat(entry.batchAttachments())
+        .containsExactly("pqid/R1", "query", "max_commit_delay", "100");
+    QueryIdAttachments.Entry again = queryIdAttachments.lookup(frame.clone(), 2, 2);
+    assertThat(again).isSameInstanceAs(entry);
+    assertThat(again.executeAttachments()).isSameInstanceAs(entry.executeAttachments());
+  }
+
+  @Test
+  public void lookup_writeQueryIdHasMaxCommitDelay() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/W1", "insert");
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(attachmentsCache, Optional.of("100"));
+
+    QueryIdAttachments.Entry entry = queryIdAttachments.lookup(frameWithQueryId("W1"), 2, 2);
+
+    assertThat(entry.isWrite()).isTrue();
+    assertThat(entry.executeAttachments())
+        .containsExactly("pqid/W1", "insert", "max_commit_delay", "100");
+  }
+
+  @Test
+  public void lookup_readQueryIdHasMaxStaleness() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/R1", "query");
+    attachmentsCache.put("pqid/W1", "insert");
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(attachmentsCache, Optional.empty(), Optional.of("10000"));
+
+    QueryIdAttachments.Entry read = queryIdAttachments.lookup(frameWithQueryId("R1"), 2, 2);
+    QueryIdAttachments.Entry write = queryIdAttachments.lookup(frameWithQueryId("W1"), 2, 2);
+
+    assertThat(read.executeAttachments()).containsExactly("pqid/R1", "query");
+    assertThat(read.staleReadAttachments())
+        .containsExactly("pqid/R1", "query", "max_staleness", "10000");
+    assertThat(write.staleReadAttachments()).containsExactly("pqid/W1", "insert");
+  }
+
+  @Test
+  public void lookup_writeQueryIdFollowsAdaptiveCommitDelay() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/W1", "insert");
+    long[] nanoTime = {0};
+    AdaptiveCommitDelay adaptiveCommitDelay =
+        new AdaptiveCommitDelay(Duration.ofMillis(100), Duration.ofSeconds(1), () -> nanoTime[0]);
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(
+            attachmentsCache, Optional.empty(), Optional.empty(), adaptiveCommitDelay);
+    byte[] frame = frameWithQueryId("W1");
+
+    QueryIdAttachments.Entry entry = queryIdAttachments.lookup(frame, 2, 2);
+    assertThat(entry.executeAttachments())
+        .containsExactly("pqid/W1", "insert", "max_commit_delay", "0");
+
+    // A second of heavy write load raises the delay.
+    for (int i = 0; i < 1000; i++) {
+      adaptiveCommitDelay.recordWrite(adaptiveCommitDelay.startWrite());
+      nanoTime[0] += TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    adaptiveCommitDelay.recordWrite(adaptiveCommitDelay.startWrite());
+    assertThat(queryIdAttachments.lookup(frame, 2, 2).executeAttachments())
+        .containsExactly("pqid/W1", "insert", "max_commit_delay", "10");
+  }
+
+  @Test
+  public void lookup_writeQueryIdFollowsConfiguredCommitDelay() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/W1", "insert");
+    ConfiguredCommitDelay configuredCommitDelay =
+        new ConfiguredCommitDelay(Optional.of(Duration.ofMillis(5)));
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(
+            attachmentsCache, Optional.empty(), Optional.empty(), configuredCommitDelay);
+    byte[] frame = frameWithQueryId("W1");
+
+    assertThat(queryIdAttachments.lookup(frame, 2, 2).executeAttachments())
+        .containsExactly("pqid/W1", "insert", "max_commit_delay", "5");
+
+    configuredCommitDelay.set(Optional.of(Duration.ofMillis(20)));
+    assertThat(queryIdAttachments.lookup(frame, 2, 2).executeAttachments())
+        .containsExactly("pqid/W1", "insert", "max_commit_delay", "20");
+
+    configuredCommitDelay.set(Optional.empty());
+    assertThat(queryIdAttachments.lookup(frame, 2, 2).executeAttachments())
+        .containsExactly("pqid/W1", "insert");
+  }
+
+  @Test
+  public void lookup_followsAttachmentsCache() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(attachmentsCache, Optional.empty());
+    byte[] frame = frameWithQueryId("R1");
+
+    assertThat(queryIdAttachments.lookup(frame, 2, 2).isPrepared()).isFalse();
+
+    attachmentsCache.put("pqid/R1", "query");
+    assertThat(queryIdAttachments.lookup(frame, 2, 2).executeAttachments())
+        .containsExactly("pqid/R1", "query");
+
+    attachmentsCache.put("pqid/R1", "other query");
+    QueryIdAttachments.Entry entry = queryIdAttachments.lookup(frame, 2, 2);
+    assertThat(entry.executeAttachments()).containsExactly("pqid/R1", "other query");
+    assertThat(entry.batchAttachments()).containsExactly("pqid/R1", "other query");
+  }
+
+  @Test
+  public void lookup_distinguishesQueryIds() {
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10_000);
+    QueryIdAttachments queryIdAttachments =
+        new QueryIdAttachments(attachmentsCache, Optional.empty());
+    // More ids than slots, so that some of them share a slot.
+    for (int i = 0; i < 1000; i++) {
+      attachmentsCache.put("pqid/R" + i, "query " + i);
+    }
+
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < 1000; i++) {
+        byte[] queryId = ("R" + i).getBytes(StandardCharsets.UTF_8);
+        QueryIdAttachments.Entry entry = queryIdAttachments.lookup(queryId, 0, queryId.length);
+        assertThat(entry.queryId()).isEqualTo(queryId);
+        assertThat(entry.executeAttachments()).containsExactly("pqid/R" + i, "query " + i);
+      }
+    }
+  }
+
+  private static byte[] frameWithQueryId(String queryId) {
+    byte[] id = queryId.getBytes(StandardCharsets.UTF_8);
+    byte[] frame = new byte[id.length + 4];
+    frame[1] = (byte) id.length;
+    System.arraycopy(id, 0, frame, 2, id.length);
+    return frame;
+  }
+}
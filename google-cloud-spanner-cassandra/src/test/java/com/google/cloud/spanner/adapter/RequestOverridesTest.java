@@ -0,0 +1,106 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Test;
+
+public final class RequestOverridesTest {
+
+  private static final Map<String, String> ATTACHMENTS =
+      ImmutableMap.of("pqid/W1", "insert", "max_commit_delay", "100");
+
+  public RequestOverridesTest() {}
+
+  @Test
+  public void apply_withoutOverrides_returnsAttachments() {
+    Map<String, ByteBuffer> customPayload = ImmutableMap.of("other", utf8("value"));
+
+    assertThat(RequestOverrides.apply(ATTACHMENTS, customPayload, true))
+        .isSameInstanceAs(ATTACHMENTS);
+    assertThat(RequestOverrides.apply(ATTACHMENTS, Collections.emptyMap(), true))
+        .isSameInstanceAs(ATTACHMENTS);
+  }
+
+  @Test
+  public void apply_overridesAttachmentsOfWrite() {
+    Map<String, ByteBuffer> customPayload =
+        ImmutableMap.of(
+            "max_commit_delay", utf8("250"),
+            "request_priority", utf8("low"),
+            "request_tag", utf8("backfill"));
+
+    assertThat(RequestOverrides.apply(ATTACHMENTS, customPayload, true))
+        .containsExactly(
+            "pqid/W1",
+            "insert",
+            "max_commit_delay",
+            "250",
+            "request_priority",
+            "LOW",
+            "request_tag",
+            "backfill");
+  }
+
+  @Test
+  public void apply_ignoresMaxCommitDelayOfRead() {
+    Map<String, ByteBuffer> customPayload =
+        ImmutableMap.of("max_commit_delay", utf8("250"), "request_priority", utf8("HIGH"));
+
+    assertThat(
+            RequestOverrides.apply(ImmutableMap.of("pqid/R1", "select"), customPayload, false))
+        .containsExactly("pqid/R1", "select", "request_priority", "HIGH");
+  }
+
+  @Test
+  public void apply_doesNotConsumeCustomPayload() {
+    ByteBuffer tag = utf8("tag");
+    RequestOverrides.apply(ATTACHMENTS, ImmutableMap.of("request_tag", tag), true);
+
+    assertThat(tag.remaining()).isEqualTo(3);
+  }
+
+  @Test
+  public void apply_rejectsInvalidValues() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            RequestOverrides.apply(
+                ATTACHMENTS, ImmutableMap.of("max_commit_delay", utf8("501")), true));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            RequestOverrides.apply(
+                ATTACHMENTS, ImmutableMap.of("max_commit_delay", utf8("soon")), true));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            RequestOverrides.apply(
+                ATTACHMENTS, ImmutableMap.of("request_priority", utf8("URGENT")), true));
+  }
+
+  private static ByteBuffer utf8(String value) {
+    return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
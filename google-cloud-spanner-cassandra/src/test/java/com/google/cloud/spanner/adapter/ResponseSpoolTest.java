@@ -0,0 +1,107 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+public final class ResponseSpoolTest {
+
+  @Test
+  public void writeTo_keepsSmallResponsesInMemory() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ResponseSpool spool = new ResponseSpool(100)) {
+      spool.add(ByteString.copyFromUtf8("chunk 1 "));
+      spool.add(ByteString.copyFromUtf8("chunk 2"));
+
+      assertThat(spool.size()).isEqualTo(15);
+      assertThat(spool.spilledSize()).isEqualTo(0);
+      spool.writeTo(outputStream);
+
+      assertThat(outputStream.toString("UTF-8")).isEqualTo("chunk 1 chunk 2");
+      assertThat(spool.size()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void writeTo_spillsLargeResponsesInOrder() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ResponseSpool spool = new ResponseSpool(10)) {
+      spool.add(ByteString.copyFromUtf8("chunk 1 "));
+      spool.add(ByteString.copyFromUtf8("chunk 2 "));
+      spool.add(ByteString.copyFromUtf8("chunk 3"));
+
+      assertThat(spool.size()).isEqualTo(23);
+      assertThat(spool.spilledSize()).isEqualTo(15);
+      spool.writeTo(outputStream);
+
+      assertThat(outputStream.toString("UTF-8")).isEqualTo("chunk 1 chunk 2 chunk 3");
+      assertThat(spool.size()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void writeTo_spilledResponseLargerThanReadBuffer_isWrittenWhole() throws IOException {
+    byte[] chunk = new byte[100 * 1024];
+    for (int i = 0; i < chunk.length; i++) {
+      chunk[i] = (byte) i;
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ResponseSpool spool = new ResponseSpool(0)) {
+      spool.add(ByteString.copyFrom(chunk));
+      spool.add(ByteString.copyFrom(chunk));
+
+      spool.writeTo(outputStream);
+    }
+
+    assertThat(outputStream.toByteArray())
+        .isEqualTo(ByteString.copyFrom(chunk).concat(ByteString.copyFrom(chunk)).toByteArray());
+  }
+
+  @Test
+  public void writeTo_reusesSpillFile() throws IOException {
+    try (ResponseSpool spool = new ResponseSpool(0)) {
+      spool.add(ByteString.copyFromUtf8("a long first response"));
+      spool.writeTo(new ByteArrayOutputStream());
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+      spool.add(ByteString.copyFromUtf8("second"));
+      spool.writeTo(outputStream);
+
+      assertThat(outputStream.toString("UTF-8")).isEqualTo("second");
+    }
+  }
+
+  @Test
+  public void clear_discardsChunks() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ResponseSpool spool = new ResponseSpool(5)) {
+      spool.add(ByteString.copyFromUtf8("chunk 1 "));
+      spool.add(ByteString.copyFromUtf8("chunk 2"));
+
+      spool.clear();
+      spool.writeTo(outputStream);
+
+      assertThat(spool.size()).isEqualTo(0);
+      assertThat(outputStream.size()).isEqualTo(0);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.ProtocolConstants.ResultKind;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class ResultCacheTest {
+
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final String READ_KEY = "pqid/Rflags";
+  private ResultCache resultCache;
+
+  public ResultCacheTest() {}
+
+  @Before
+  public void setUp() {
+    resultCache =
+        new ResultCache(ResultCache.parseTableSettings("ks.Flags:60:10, ks.config:60:10"));
+    resultCache.onPrepared(
+        "SELECT v FROM flags WHERE id = ?",
+        preparedResponse("Rflags", Collections.singletonList(column("flags", "v"))));
+  }
+
+  @Test
+  public void parseTableSettings_readsTtlAndSize() {
+    Map<String, ResultCache.TableSettings> settings =
+        ResultCache.parseTableSettings("ks.flags:30:1000");
+
+    assertThat(settings.keySet()).containsExactly("ks.flags");
+    assertThat(settings.get("ks.flags").getTtl()).isEqualTo(Duration.ofSeconds(30));
+    assertThat(settings.get("ks.flags").getMaxSize()).isEqualTo(1000);
+  }
+
+  @Test
+  public void parseTableSettings_withMalformedItem_throws() {
+    assertThrows(
+        IllegalArgumentException.class, () -> ResultCache.parseTableSettings("flags:30:1000"));
+    assertThrows(
+        IllegalArgumentException.class, () -> ResultCache.parseTableSettings("ks.flags:30"));
+    assertThrows(
+        IllegalArgumentException.class, () -> ResultCache.parseTableSettings("ks.flags:x:1"));
+  }
+
+  @Test
+  public void onPrepared_learnsTableOfQueryId() {
+    resultCache.onPrepared(
+        "SELECT v FROM other WHERE id = ?",
+        preparedResponse("Rother", Collections.singletonList(column("other", "v"))));
+    resultCache.onPrepared(
+        "DELETE FROM config WHERE id = 1", preparedResponse("Wconfig", Collections.emptyList()));
+
+    assertThat(resultCache.table(READ_KEY).name()).isEqualTo("ks.flags");
+    assertThat(resultCache.table("pqid/Rother")).isNull();
+    assertThat(resultCache.table("pqid/Wconfig").name()).isEqualTo("ks.config");
+  }
+
+  @Test
+  public void get_afterPut_returnsResultForTheGivenStream() {
+    ResultCache.Table table = resultCache.table(READ_KEY);
+    ByteBuffer key = table.key(request(1));
+    long generation = table.generation();
+    table.put(key, generation, result(1, ResultKind.ROWS));
+
+    byte[] response = table.get(table.key(request(2)), 0x0102);
+
+    assertThat(response).isNotNull();
+    assertThat(response[2]).isEqualTo((byte) 0x01);
+    assertThat(response[3]).isEqualTo((byte) 0x02);
+    assertThat(resultCache.getHitCount()).isEqualTo(1);
+    assertThat(resultCache.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void key_ignoresStreamIdAndTimestamp() {
+    ResultCache.Table table = resultCache.table(READ_KEY);
+
+    assertThat(table.key(requestWithTimestamp(1, 1000L)))
+        .isEqualTo(table.key(requestWithTimestamp(2, 2000L)));
+    assertThat(table.key(request(1))).isNotEqualTo(table.key(requestWithTimestamp(1, 1000L)));
+  }
+
+  @Test
+  public void put_afterInvalidation_isNotCached() {
+    ResultCache.Table table = resultCache.table(READ_KEY);
+    ByteBuffer key = table.key(request(1));
+    long generation = table.generation();
+
+    table.invalidate();
+    table.put(key, generation, result(1, ResultKind.ROWS));
+    table.put(key, table.generation(), result(1, ResultKind.VOID));
+
+    assertThat(table.get(key, 1)).isNull();
+    assertThat(resultCache.getInvalidationCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void onResponse_withSchemaChange_clearsResults() {
+    ResultCache.Table table = resultCache.table(READ_KEY);
+    ByteBuffer key = table.key(request(1));
+    table.put(key, table.generation(), result(1, ResultKind.ROWS));
+
+    resultCache.onResponse(result(1, ResultKind.SCHEMA_CHANGE));
+
+    assertThat(resultCache.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void addMentionedTables_matchesWholeNamesIgnoringCase() {
+    List<ResultCache.Table> tables = new ArrayList<>();
+
+    addMentionedTables("UPDATE ks.FLAGS SET v = 1 WHERE id = 1", tables);
+    addMentionedTables("INSERT INTO flags_history (id) VALUES (1)", tables);
+    addMentionedTables("DELETE FROM myconfig WHERE id = 1", tables);
+
+    assertThat(tables).hasSize(1);
+    assertThat(tables.get(0).name()).isEqualTo("ks.flags");
+  }
+
+  private void addMentionedTables(String query, List<ResultCache.Table> tables) {
+    byte[] text = query.getBytes(StandardCharsets.UTF_8);
+    resultCache.addMentionedTables(text, 0, text.length, tables);
+  }
+
+  private static ColumnSpec column(String table, String name) {
+    return new ColumnSpec(
+        "ks", table, name, 0, RawType.PRIMITIVES.get(ProtocolConstants.DataType.INT));
+  }
+
+  private static byte[] preparedResponse(String queryId, List<ColumnSpec> resultColumns) {
+    return encode(
+        new Prepared(
+            queryId.getBytes(StandardCharsets.UTF_8),
+            null,
+            new RowsMetadata(Collections.emptyList(), null, new int[0], null),
+            new RowsMetadata(resultColumns, null, new int[0], null)));
+  }
+
+  private static byte[] encode(Message message) {
+    Frame frame =
+        Frame.forResponse(4, 1, null, Collections.emptyMap(), Collections.emptyList(), message);
+    ByteBuf buf = serverFrameCodec.encode(frame);
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+
+  private static byte[] request(int streamId) {
+    return new byte[] {4, 0, 0, (byte) streamId, ProtocolConstants.Opcode.EXECUTE, 0, 0, 0, 1, 42};
+  }
+
+  private static byte[] requestWithTimestamp(int streamId, long timestamp) {
+    // An Execute message of query id "R1" at consistency ONE, with a timestamp.
+    return ByteBuffer.allocate(24)
+        .put((byte) 4)
+        .put((byte) 0)
+        .putShort((short) streamId)
+        .put((byte) ProtocolConstants.Opcode.EXECUTE)
+        .putInt(15)
+        .putShort((short) 2)
+        .put((byte) 'R')
+        .put((byte) '1')
+        .putShort((short) ProtocolConstants.ConsistencyLevel.ONE)
+        .put((byte) 0x20)
+        .putLong(timestamp)
+        .array();
+  }
+
+  private static byte[] result(int streamId, int kind) {
+    return ByteBuffer.allocate(13)
+        .put((byte) 0x84)
+        .put((byte) 0)
+        .putShort((short) streamId)
+        .put((byte) ProtocolConstants.Opcode.RESULT)
+        .putInt(4)
+        .putInt(kind)
+        .array();
+  }
+}
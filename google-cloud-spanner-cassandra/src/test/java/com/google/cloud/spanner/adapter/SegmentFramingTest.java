@@ -0,0 +1,211 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.datastax.oss.protocol.internal.Segment;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public final class SegmentFramingTest {
+
+  private static final int SEGMENT_HEADER_LENGTH = 6;
+  private static final int CRC32_LENGTH = 4;
+
+  @Test
+  public void packsSmallFramesInOneSegment() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] first = frame(1, 10);
+    byte[] second = frame(2, 20);
+
+    framing.write(first);
+    framing.write(second);
+    framing.flush(outputStream);
+
+    byte[] segments = outputStream.toByteArray();
+    assertThat(segments.length)
+        .isEqualTo(SEGMENT_HEADER_LENGTH + first.length + second.length + CRC32_LENGTH);
+    SegmentFraming reader = new SegmentFraming(null);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(segments);
+    assertThat(reader.readFrame(inputStream)).isEqualTo(first);
+    assertThat(reader.hasReceivedFrames()).isTrue();
+    assertThat(reader.readFrame(inputStream)).isEqualTo(second);
+    assertThat(reader.hasReceivedFrames()).isFalse();
+    assertThat(reader.readFrame(inputStream)).isEmpty();
+  }
+
+  @Test
+  public void splitsLargeFramesAcrossSegments() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] small = frame(1, 10);
+    byte[] large = frame(2, 2 * Segment.MAX_PAYLOAD_LENGTH + 100);
+
+    framing.write(small);
+    framing.write(large);
+    framing.flush(outputStream);
+
+    SegmentFraming reader = new SegmentFraming(null);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    assertThat(reader.readFrame(inputStream)).isEqualTo(small);
+    assertThat(reader.readFrame(inputStream)).isEqualTo(large);
+    assertThat(reader.readFrame(inputStream)).isEmpty();
+  }
+
+  @Test
+  public void compressesSegmentsWithLz4() throws IOException {
+    FrameCompressor lz4 = FrameCompressor.forAlgorithm("lz4").get();
+    SegmentFraming framing = new SegmentFraming(lz4);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] frame = frame(1, 1000);
+
+    framing.write(frame);
+    framing.flush(outputStream);
+
+    SegmentFraming reader = new SegmentFraming(lz4);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    assertThat(reader.readFrame(inputStream)).isEqualTo(frame);
+  }
+
+  @Test
+  public void rejectsCompressionOtherThanLz4() {
+    FrameCompressor snappy = FrameCompressor.forAlgorithm("snappy").get();
+
+    assertThrows(IllegalArgumentException.class, () -> new SegmentFraming(snappy));
+  }
+
+  @Test
+  public void clearsFrameCompressionFlag() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] frame = frame(1, 10);
+    frame[1] = 0x01;
+
+    framing.write(frame);
+    framing.flush(outputStream);
+
+    SegmentFraming reader = new SegmentFraming(null);
+    byte[] received = reader.readFrame(new ByteArrayInputStream(outputStream.toByteArray()));
+    assertThat(received[1]).isEqualTo(0);
+  }
+
+  @Test
+  public void rejectsChecksumMismatch() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    framing.write(frame(1, 10));
+    framing.flush(outputStream);
+    byte[] segments = outputStream.toByteArray();
+    segments[SEGMENT_HEADER_LENGTH + 12]++;
+
+    SegmentFraming reader = new SegmentFraming(null);
+
+    assertThrows(IOException.class, () -> reader.readFrame(new ByteArrayInputStream(segments)));
+  }
+
+  @Test
+  public void rejectsTruncatedSegment() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    framing.write(frame(1, 10));
+    framing.flush(outputStream);
+    byte[] segments = outputStream.toByteArray();
+    byte[] truncated = new byte[segments.length - 1];
+    System.arraycopy(segments, 0, truncated, 0, truncated.length);
+
+    SegmentFraming reader = new SegmentFraming(null);
+
+    assertThrows(IOException.class, () -> reader.readFrame(new ByteArrayInputStream(truncated)));
+  }
+
+  @Test
+  public void rejectsFrameLongerThanMaxFrameLength() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    framing.write(frame(1, 2 * Segment.MAX_PAYLOAD_LENGTH));
+    framing.flush(outputStream);
+
+    SegmentFraming reader = new SegmentFraming(null, Segment.MAX_PAYLOAD_LENGTH);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+
+    assertThrows(IOException.class, () -> reader.readFrame(inputStream));
+  }
+
+  @Test
+  public void reservesSplitFrameBeforeItsRemainderIsReceived() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] large = frame(2, 2 * Segment.MAX_PAYLOAD_LENGTH);
+    framing.write(large);
+    framing.flush(outputStream);
+    byte[] firstSegment =
+        Arrays.copyOf(
+            outputStream.toByteArray(),
+            SEGMENT_HEADER_LENGTH + Segment.MAX_PAYLOAD_LENGTH + CRC32_LENGTH);
+    List<Long> reservations = new ArrayList<>();
+
+    SegmentFraming reader =
+        new SegmentFraming(null, Integer.MAX_VALUE, bytes -> reservations.add(bytes));
+
+    assertThrows(
+        IOException.class, () -> reader.readFrame(new ByteArrayInputStream(firstSegment)));
+    assertThat(reservations).containsExactly((long) large.length);
+  }
+
+  @Test
+  public void skipsSplitFrameWhoseLengthCannotBeReserved() throws IOException {
+    SegmentFraming framing = new SegmentFraming(null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] small = frame(3, 10);
+    framing.write(frame(2, 2 * Segment.MAX_PAYLOAD_LENGTH));
+    framing.flush(outputStream);
+    framing.write(small);
+    framing.flush(outputStream);
+
+    SegmentFraming reader =
+        new SegmentFraming(null, Integer.MAX_VALUE, bytes -> bytes <= small.length);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+
+    DriverConnectionHandler.RejectedFrameException e =
+        assertThrows(
+            DriverConnectionHandler.RejectedFrameException.class,
+            () -> reader.readFrame(inputStream));
+    // The refusal answers the skipped frame, and the frames after it are still read.
+    assertThat(e.getResponse()[3]).isEqualTo(2);
+    assertThat(reader.readFrame(inputStream)).isEqualTo(small);
+    assertThat(reader.readFrame(inputStream)).isEmpty();
+  }
+
+  private static byte[] frame(int streamId, int bodyLength) {
+    ByteBuffer frame = ByteBuffer.allocate(9 + bodyLength);
+    frame.put((byte) 0x85).put((byte) 0).putShort((short) streamId).put((byte) 0x08);
+    frame.putInt(bodyLength);
+    for (int i = 0; i < bodyLength; i++) {
+      frame.put((byte) ('a' + i % 26));
+    }
+    return frame.array();
+  }
+}
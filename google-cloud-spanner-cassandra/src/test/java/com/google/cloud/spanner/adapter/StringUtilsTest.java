@@ -19,6 +19,7 @@ package com.google.cloud.spanner.adapter;
 import static com.google.cloud.spanner.adapter.util.StringUtils.startsWith;
 import static com.google.common.truth.Truth.assertThat;
 
+import java.nio.charset.StandardCharsets;
 import org.junit.Test;
 
 public final class StringUtilsTest {
@@ -35,4 +36,22 @@ public final class StringUtilsTest {
     assertThat(startsWith(null, null)).isFalse();
     assertThat(startsWith("", "x")).isFalse();
   }
+
+  @Test
+  public void bytesStartsWith() {
+    assertThat(startsWith(utf8("AbC"), 0, 3, "aB")).isTrue();
+    assertThat(startsWith(utf8("xx  AbC"), 2, 5, "aB")).isTrue();
+    byte[] unicodeWhitespace = utf8("\u2003\u3000AbC");
+    assertThat(startsWith(unicodeWhitespace, 0, unicodeWhitespace.length, "aB")).isTrue();
+
+    assertThat(startsWith(utf8("abc"), 0, 3, "ax")).isFalse();
+    assertThat(startsWith(utf8("abc"), 0, 1, "ab")).isFalse();
+    byte[] nonAscii = utf8("\u00e9bc");
+    assertThat(startsWith(nonAscii, 0, nonAscii.length, "e")).isFalse();
+    assertThat(startsWith(new byte[0], 0, 0, "x")).isFalse();
+  }
+
+  private static byte[] utf8(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
 }
@@ -0,0 +1,176 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.protocol.internal.response.result.Prepared;
+import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class TrafficCaptureTest {
+
+  private static final byte[] QUERY_ID = "W123".getBytes(StandardCharsets.UTF_8);
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  public TrafficCaptureTest() {}
+
+  @Test
+  public void recordsAndReadsBackRequests() throws IOException {
+    Path file = folder.newFile().toPath();
+    byte[] query = request(3, new Query("SELECT * FROM ks.T"));
+    byte[] execute = request(4, new Execute(QUERY_ID, QueryOptions.DEFAULT));
+
+    try (TrafficCapture capture = TrafficCapture.open(file, 1.0, 1 << 20)) {
+      int connectionId = capture.newConnectionId();
+      capture.recordRequest(connectionId, System.nanoTime(), query);
+      capture.recordRequest(connectionId, System.nanoTime(), execute);
+    }
+
+    List<TrafficCapture.Record> records = readAll(file);
+    assertThat(records).hasSize(2);
+    assertThat(records.get(0).type).isEqualTo(TrafficCapture.REQUEST_RECORD);
+    assertThat(records.get(0).connectionId).isEqualTo(1);
+    assertThat(records.get(0).streamId).isEqualTo((short) 3);
+    assertThat(records.get(0).bytes).isEqualTo(query);
+    assertThat(records.get(1).streamId).isEqualTo((short) 4);
+    assertThat(records.get(1).bytes).isEqualTo(execute);
+    assertThat(records.get(1).arrivalMicros).isAtLeast(records.get(0).arrivalMicros);
+  }
+
+  @Test
+  public void samplingKeepsControlFrames() throws IOException {
+    Path file = folder.newFile().toPath();
+    byte[] prepare = request(1, new Prepare("SELECT * FROM ks.T WHERE col = ?"));
+    byte[] execute = request(2, new Execute(QUERY_ID, QueryOptions.DEFAULT));
+
+    try (TrafficCapture capture = TrafficCapture.open(file, 0.0, 1 << 20)) {
+      capture.recordRequest(1, System.nanoTime(), prepare);
+      capture.recordRequest(1, System.nanoTime(), execute);
+    }
+
+    List<TrafficCapture.Record> records = readAll(file);
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).bytes).isEqualTo(prepare);
+  }
+
+  @Test
+  public void stopsAtSizeCap() throws IOException {
+    Path file = folder.newFile().toPath();
+    byte[] query = request(1, new Query("SELECT * FROM ks.T"));
+
+    try (TrafficCapture capture = TrafficCapture.open(file, 1.0, 200)) {
+      for (int i = 0; i < 100; i++) {
+        capture.recordRequest(1, System.nanoTime(), query);
+      }
+    }
+
+    assertThat(file.toFile().length()).isAtMost(200L);
+    assertThat(readAll(file).size()).isLessThan(100);
+  }
+
+  @Test
+  public void recordsPreparedIds() throws IOException {
+    Path file = folder.newFile().toPath();
+    byte[] prepare = request(5, new Prepare("SELECT * FROM ks.T WHERE col = ?"));
+    byte[] query = request(6, new Query("SELECT * FROM ks.T"));
+    byte[] prepared = response(5, preparedResult(QUERY_ID));
+
+    try (TrafficCapture capture = TrafficCapture.open(file, 1.0, 1 << 20)) {
+      capture.recordResponse(1, prepare, prepared);
+      // Responses to other requests are not recorded.
+      capture.recordResponse(1, query, prepared);
+    }
+
+    List<TrafficCapture.Record> records = readAll(file);
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).type).isEqualTo(TrafficCapture.PREPARED_RECORD);
+    assertThat(records.get(0).streamId).isEqualTo((short) 5);
+    assertThat(records.get(0).bytes).isEqualTo(QUERY_ID);
+  }
+
+  @Test(expected = IOException.class)
+  public void readerRejectsOtherFiles() throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+
+    new TrafficCapture.Reader(file).close();
+  }
+
+  private static List<TrafficCapture.Record> readAll(Path file) throws IOException {
+    List<TrafficCapture.Record> records = new ArrayList<>();
+    try (TrafficCapture.Reader reader = new TrafficCapture.Reader(file)) {
+      TrafficCapture.Record record;
+      while ((record = reader.next()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private static Prepared preparedResult(byte[] queryId) {
+    RowsMetadata metadata = new RowsMetadata(Collections.emptyList(), null, new int[0], null);
+    return new Prepared(queryId, null, metadata, metadata);
+  }
+
+  private static byte[] request(int streamId, Message message) {
+    return toBytes(
+        clientFrameCodec.encode(
+            Frame.forRequest(4, streamId, false, Frame.NO_PAYLOAD, message)));
+  }
+
+  private static byte[] response(int streamId, Message message) {
+    return toBytes(
+        serverFrameCodec.encode(
+            Frame.forResponse(
+                4, streamId, null, Frame.NO_PAYLOAD, Collections.emptyList(), message)));
+  }
+
+  private static byte[] toBytes(ByteBuf buf) {
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    buf.release();
+    return bytes;
+  }
+}
@@ -0,0 +1,370 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.cloud.spanner.adapter.util.ErrorMessageUtils.serverErrorResponse;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.protocol.internal.response.result.SetKeyspace;
+import com.datastax.oss.protocol.internal.response.result.Void;
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiCallContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class WriteCoalescerTest {
+
+  private static final int OPCODE_OFFSET = 4;
+  private static final FrameCodec<ByteBuf> clientFrameCodec =
+      FrameCodec.defaultClient(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final FrameCodec<ByteBuf> serverFrameCodec =
+      FrameCodec.defaultServer(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.none());
+  private static final ApiCallContext CONTEXT = GrpcCallContext.createDefault();
+  private AdapterClientWrapper mockAdapterClient;
+  private QueryIdAttachments queryIdAttachments;
+  private ExecutorService executor;
+
+  public WriteCoalescerTest() {}
+
+  @Before
+  public void setUp() {
+    mockAdapterClient = mock(AdapterClientWrapper.class);
+    AttachmentsCache attachmentsCache = new AttachmentsCache(10);
+    attachmentsCache.put("pqid/W1", "INSERT INTO ks.t (k, v) VALUES (?, ?)");
+    attachmentsCache.put("pqid/W2", "UPDATE ks.t SET v = ? WHERE k = ?");
+    queryIdAttachments = new QueryIdAttachments(attachmentsCache, Optional.empty());
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void constructor_rejectsBatchSizeBelowTwo() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new WriteCoalescer(mockAdapterClient, Duration.ofMillis(1), 1));
+  }
+
+  @Test
+  public void execute_learnsWhetherStatementIsCoalescable() {
+    WriteCoalescer coalescer = new WriteCoalescer(mockAdapterClient, Duration.ofMillis(1), 2);
+    byte[] write = executeMessage("W1", 3);
+    byte[] setKeyspace = encodeResponse(new SetKeyspace("ks"), 4);
+    when(mockAdapterClient.sendGrpcRequest(eq(write), any(), any(), eq(3)))
+        .thenReturn(WriteCoalescer.voidResult(3));
+    byte[] other = executeMessage("W2", 4);
+    when(mockAdapterClient.sendGrpcRequest(eq(other), any(), any(), eq(4))).thenReturn(setKeyspace);
+
+    assertThat(coalescer.execute(write, entry(write), Collections.emptyMap(), CONTEXT, 3))
+        .isEqualTo(WriteCoalescer.voidResult(3));
+    assertThat(coalescer.execute(other, entry(other), Collections.emptyMap(), CONTEXT, 4))
+        .isEqualTo(setKeyspace);
+
+    assertThat(entry(write).isCoalescable()).isTrue();
+    assertThat(entry(other).isCoalescable()).isFalse();
+    assertThat(coalescer.getBatchCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_coalescesConcurrentWritesIntoUnloggedBatch() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(mockAdapterClient, Duration.ofSeconds(10), 2);
+    byte[] first = executeMessage("W1", 1);
+    byte[] second = executeMessage("W1", 2);
+    byte[] third = executeMessage("W2", 3);
+    entry(first).setCoalescable(true);
+    entry(third).setCoalescable(true);
+    CountDownLatch firstSent = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), any(int.class)))
+        .thenAnswer(invocation -> WriteCoalescer.voidResult(invocation.getArgument(3)));
+    doAnswer(
+            invocation -> {
+              firstSent.countDown();
+              releaseFirst.await();
+              return WriteCoalescer.voidResult(1);
+            })
+        .when(mockAdapterClient)
+        .sendGrpcRequest(eq(first), any(), any(), eq(1));
+
+    // With no other write in flight, the first write is sent right away, on its own.
+    Future<byte[]> firstResponse = execute(coalescer, first, 1);
+    firstSent.await();
+    Future<byte[]> secondResponse = execute(coalescer, second, 2);
+    Future<byte[]> thirdResponse = execute(coalescer, third, 3);
+
+    assertThat(secondResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(2));
+    assertThat(thirdResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(3));
+    releaseFirst.countDown();
+    assertThat(firstResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(1));
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+    ArgumentCaptor<Map<String, String>> attachmentsCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(mockAdapterClient, times(2))
+        .sendGrpcRequest(
+            payloadCaptor.capture(), attachmentsCaptor.capture(), any(), any(int.class));
+    byte[] batchPayload = payloadCaptor.getAllValues().get(1);
+    Batch batch = (Batch) decodeRequest(batchPayload).message;
+    assertThat(batch.type).isEqualTo((byte) 1);
+    assertThat(batch.queriesOrIds).hasSize(2);
+    assertThat(batch.values).hasSize(2);
+    assertThat(attachmentsCaptor.getAllValues().get(1)).containsKey("pqid/W1");
+    assertThat(attachmentsCaptor.getAllValues().get(1)).containsKey("pqid/W2");
+    assertThat(coalescer.getBatchCount()).isEqualTo(1);
+    assertThat(coalescer.getCoalescedWriteCount()).isEqualTo(2);
+    assertThat(coalescer.getAverageBatchSize()).isEqualTo(2.0);
+  }
+
+  @Test
+  public void execute_failedBatch_sendsWritesOneByOne() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(mockAdapterClient, Duration.ofSeconds(10), 2);
+    byte[] first = executeMessage("W1", 1);
+    byte[] second = executeMessage("W1", 2);
+    byte[] third = executeMessage("W2", 3);
+    entry(first).setCoalescable(true);
+    entry(third).setCoalescable(true);
+    CountDownLatch firstSent = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), any(int.class)))
+        .thenAnswer(
+            invocation -> {
+              byte[] payload = invocation.getArgument(0);
+              int streamId = invocation.getArgument(3);
+              return payload[OPCODE_OFFSET] == ProtocolConstants.Opcode.BATCH
+                  ? serverErrorResponse(streamId, "batch failed")
+                  : WriteCoalescer.voidResult(streamId);
+            });
+    doAnswer(
+            invocation -> {
+              firstSent.countDown();
+              releaseFirst.await();
+              return WriteCoalescer.voidResult(1);
+            })
+        .when(mockAdapterClient)
+        .sendGrpcRequest(eq(first), any(), any(), eq(1));
+
+    Future<byte[]> firstResponse = execute(coalescer, first, 1);
+    firstSent.await();
+    Future<byte[]> secondResponse = execute(coalescer, second, 2);
+    Future<byte[]> thirdResponse = execute(coalescer, third, 3);
+
+    assertThat(secondResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(2));
+    assertThat(thirdResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(3));
+    releaseFirst.countDown();
+    firstResponse.get(5, TimeUnit.SECONDS);
+    verify(mockAdapterClient).sendGrpcRequest(eq(second), any(), any(), eq(2));
+    verify(mockAdapterClient).sendGrpcRequest(eq(third), any(), any(), eq(3));
+    assertThat(coalescer.getFallbackWriteCount()).isEqualTo(2);
+    assertThat(entry(first).isCoalescable()).isFalse();
+    assertThat(entry(third).isCoalescable()).isFalse();
+  }
+
+  @Test
+  public void execute_writeWithTracing_isSentAlone() {
+    WriteCoalescer coalescer = new WriteCoalescer(mockAdapterClient, Duration.ofSeconds(10), 2);
+    byte[] write = executeMessage("W1", 1);
+    write[1] = 0x02;
+    entry(write).setCoalescable(true);
+    byte[] response = WriteCoalescer.voidResult(1);
+    when(mockAdapterClient.sendGrpcRequest(eq(write), any(), any(), eq(1))).thenReturn(response);
+
+    assertThat(coalescer.execute(write, entry(write), Collections.emptyMap(), CONTEXT, 1))
+        .isSameInstanceAs(response);
+    assertThat(coalescer.getBatchCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_writesWithDefaultDriverTimestamps_areSentAlone() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(mockAdapterClient, Duration.ofSeconds(10), 2);
+    byte[] first = executeMessage("W1", 1);
+    // The driver's default timestamp generator gives every request its own timestamp, sent along
+    // with its values and page size.
+    byte[] second = executeMessage("W1", 2, 5000, 1_700_000_000_000_001L);
+    byte[] third = executeMessage("W1", 3, 5000, 1_700_000_000_000_002L);
+    assertThat(second[9 + 2 + 2 + 2]).isEqualTo((byte) 0x25);
+    entry(first).setCoalescable(true);
+    CountDownLatch firstSent = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), any(int.class)))
+        .thenAnswer(invocation -> WriteCoalescer.voidResult(invocation.getArgument(3)));
+    doAnswer(
+            invocation -> {
+              firstSent.countDown();
+              releaseFirst.await();
+              return WriteCoalescer.voidResult(1);
+            })
+        .when(mockAdapterClient)
+        .sendGrpcRequest(eq(first), any(), any(), eq(1));
+
+    Future<byte[]> firstResponse = execute(coalescer, first, 1);
+    firstSent.await();
+    // The timestamped writes do not wait for the coalescing window.
+    Future<byte[]> secondResponse = execute(coalescer, second, 2);
+    Future<byte[]> thirdResponse = execute(coalescer, third, 3);
+
+    assertThat(secondResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(2));
+    assertThat(thirdResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(3));
+    releaseFirst.countDown();
+    firstResponse.get(5, TimeUnit.SECONDS);
+    verify(mockAdapterClient).sendGrpcRequest(eq(second), any(), any(), eq(2));
+    verify(mockAdapterClient).sendGrpcRequest(eq(third), any(), any(), eq(3));
+    assertThat(coalescer.getBatchCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_writesWithDifferentContexts_areNotCoalesced() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(mockAdapterClient, Duration.ofMillis(100), 2);
+    ApiCallContext otherContext = CONTEXT.withTimeoutDuration(Duration.ofSeconds(1));
+    byte[] first = executeMessage("W1", 1);
+    byte[] second = executeMessage("W1", 2);
+    byte[] third = executeMessage("W1", 3);
+    entry(first).setCoalescable(true);
+    CountDownLatch firstSent = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    when(mockAdapterClient.sendGrpcRequest(any(), any(), any(), any(int.class)))
+        .thenAnswer(invocation -> WriteCoalescer.voidResult(invocation.getArgument(3)));
+    doAnswer(
+            invocation -> {
+              firstSent.countDown();
+              releaseFirst.await();
+              return WriteCoalescer.voidResult(1);
+            })
+        .when(mockAdapterClient)
+        .sendGrpcRequest(eq(first), any(), any(), eq(1));
+
+    Future<byte[]> firstResponse = execute(coalescer, first, 1);
+    firstSent.await();
+    Future<byte[]> secondResponse = execute(coalescer, second, CONTEXT, 2);
+    Future<byte[]> thirdResponse = execute(coalescer, third, otherContext, 3);
+
+    assertThat(secondResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(2));
+    assertThat(thirdResponse.get(5, TimeUnit.SECONDS)).isEqualTo(WriteCoalescer.voidResult(3));
+    releaseFirst.countDown();
+    firstResponse.get(5, TimeUnit.SECONDS);
+    verify(mockAdapterClient).sendGrpcRequest(eq(second), any(), eq(CONTEXT), eq(2));
+    verify(mockAdapterClient).sendGrpcRequest(eq(third), any(), eq(otherContext), eq(3));
+    assertThat(coalescer.getBatchCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void isVoidResult_matchesVoidResultOnly() {
+    byte[] voidResult = encodeResponse(Void.INSTANCE, 7);
+
+    assertThat(WriteCoalescer.voidResult(7)).isEqualTo(voidResult);
+    assertThat(WriteCoalescer.isVoidResult(voidResult)).isTrue();
+    assertThat(WriteCoalescer.isVoidResult(serverErrorResponse(7, "error"))).isFalse();
+    assertThat(WriteCoalescer.isVoidResult(new byte[0])).isFalse();
+  }
+
+  private Future<byte[]> execute(WriteCoalescer coalescer, byte[] payload, int streamId) {
+    return execute(coalescer, payload, CONTEXT, streamId);
+  }
+
+  private Future<byte[]> execute(
+      WriteCoalescer coalescer, byte[] payload, ApiCallContext context, int streamId) {
+    QueryIdAttachments.Entry queryId = entry(payload);
+    return executor.submit(
+        () -> coalescer.execute(payload, queryId, Collections.emptyMap(), context, streamId));
+  }
+
+  private QueryIdAttachments.Entry entry(byte[] payload) {
+    return queryIdAttachments.lookup(payload, 9 + 2, 2);
+  }
+
+  private static byte[] executeMessage(String queryId, int value) {
+    return executeMessage(queryId, value, -1, Long.MIN_VALUE);
+  }
+
+  private static byte[] executeMessage(String queryId, int value, int pageSize, long timestamp) {
+    QueryOptions options =
+        new QueryOptions(
+            ProtocolConstants.ConsistencyLevel.LOCAL_QUORUM,
+            Collections.singletonList(ByteBuffer.wrap(new byte[] {(byte) value})),
+            Collections.emptyMap(),
+            false,
+            pageSize,
+            null,
+            ProtocolConstants.ConsistencyLevel.SERIAL,
+            timestamp,
+            null,
+            Integer.MIN_VALUE);
+    return encodeRequest(
+        new Execute(queryId.getBytes(StandardCharsets.UTF_8), options), value);
+  }
+
+  private static byte[] encodeRequest(Message msg, int streamId) {
+    Frame frame = Frame.forRequest(4, streamId, false, Collections.emptyMap(), msg);
+    return toBytes(clientFrameCodec.encode(frame));
+  }
+
+  private static byte[] encodeResponse(Message msg, int streamId) {
+    Frame frame =
+        Frame.forResponse(
+            4, streamId, null, Collections.emptyMap(), Collections.emptyList(), msg);
+    return toBytes(serverFrameCodec.encode(frame));
+  }
+
+  private static byte[] toBytes(ByteBuf payloadBuf) {
+    byte[] payload = new byte[payloadBuf.readableBytes()];
+    payloadBuf.readBytes(payload);
+    payloadBuf.release();
+    return payload;
+  }
+
+  private static Frame decodeRequest(byte[] payload) {
+    ByteBuf payloadBuf = Unpooled.wrappedBuffer(payload);
+    Frame frame = serverFrameCodec.decode(payloadBuf);
+    payloadBuf.release();
+    return frame;
+  }
+}
@@ -20,6 +20,8 @@ import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Map;
@@ -47,66 +49,102 @@ public class RandomSessionQueryGenerator {
    * generated SessionData (for verification).
    */
   public SessionDataAndStatement generateRandomInsert() {
-    String sessionId = RandomCqlDataGenerator.randomText(5, 10);
-    String userId = RandomCqlDataGenerator.randomText(5, 10);
-    Instant startTime =
-        RandomCqlDataGenerator.randomInstant(-365)
-            .truncatedTo(ChronoUnit.SECONDS); // Past year, to second precision
-    Instant endTime =
-        startTime.plusSeconds(RandomCqlDataGenerator.random.nextInt(3600)); // Up to 1 hour later
-    int durationMinutes = (int) ChronoUnit.MINUTES.between(startTime, endTime);
-    String deviceType = RandomCqlDataGenerator.randomText(5, 10);
-    boolean isActive = RandomCqlDataGenerator.randomBoolean();
-    Map<String, String> sessionProperties =
+    SessionData data =
+        randomSessionData(
+            RandomCqlDataGenerator.randomMap(
+                0,
+                3,
+                () -> RandomCqlDataGenerator.randomText(5),
+                () -> RandomCqlDataGenerator.randomText(10, 20)));
+    return new SessionDataAndStatement(data, (BoundStatement) insertStatement(data, true));
+  }
+
+  /**
+   * Generates random session data whose session_properties values add up to roughly the given
+   * number of characters, to control the payload size of the generated inserts.
+   */
+  public SessionData generateRandomSessionData(int payloadSize) {
+    int entries = 1 + RandomCqlDataGenerator.random.nextInt(3);
+    int valueLength = Math.max(1, payloadSize / entries);
+    return randomSessionData(
         RandomCqlDataGenerator.randomMap(
-            0,
-            3,
-            () -> RandomCqlDataGenerator.randomText(5),
-            () -> RandomCqlDataGenerator.randomText(10, 20));
-    Set<String> tags =
-        RandomCqlDataGenerator.randomSet(0, 5, () -> RandomCqlDataGenerator.randomText(3, 8));
+            entries,
+            entries,
+            () -> RandomCqlDataGenerator.randomText(8),
+            () -> RandomCqlDataGenerator.randomText(valueLength)));
+  }
 
+  /**
+   * Creates the INSERT statement for the given session data, either bound to a prepared statement
+   * or as a simple statement with positional values.
+   */
+  public Statement<?> insertStatement(SessionData data, boolean prepared) {
     String query =
         "INSERT INTO "
             + tableName
             + " (session_id, user_id, start_time, end_time, duration_minutes, device_type,"
             + " is_active, session_properties, tags) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
+    Object[] values = {
+      data.sessionId,
+      data.userId,
+      data.startTime,
+      data.endTime,
+      data.durationMinutes,
+      data.deviceType,
+      data.isActive,
+      data.sessionProperties,
+      data.tags
+    };
+    if (!prepared) {
+      return SimpleStatement.newInstance(query, values);
+    }
     PreparedStatement ps = preparedStatementCache.computeIfAbsent(query, session::prepare);
-    BoundStatement bs =
-        ps.bind(
-            sessionId,
-            userId,
-            startTime,
-            endTime,
-            durationMinutes,
-            deviceType,
-            isActive,
-            sessionProperties,
-            tags);
-
-    return new SessionDataAndStatement(
-        new SessionData(
-            sessionId,
-            userId,
-            startTime,
-            endTime,
-            durationMinutes,
-            deviceType,
-            isActive,
-            sessionProperties,
-            tags),
-        bs);
+    return ps.bind(values);
   }
 
   /** Generates a SELECT query by session_id. */
   public BoundStatement generateSelectBySessionId(String sessionId) {
-    String query = "select * from " + tableName + " WHERE session_id = ?";
+    return (BoundStatement) selectBySessionIdStatement(sessionId, true);
+  }
 
+  /**
+   * Creates the SELECT by session_id statement, either bound to a prepared statement or as a simple
+   * statement with a positional value.
+   */
+  public Statement<?> selectBySessionIdStatement(String sessionId, boolean prepared) {
+    String query = "select * from " + tableName + " WHERE session_id = ?";
+    if (!prepared) {
+      return SimpleStatement.newInstance(query, sessionId);
+    }
     PreparedStatement ps = preparedStatementCache.computeIfAbsent(query, session::prepare);
     return ps.bind(sessionId);
   }
 
+  private static SessionData randomSessionData(Map<String, String> sessionProperties) {
+    String sessionId = RandomCqlDataGenerator.randomText(5, 10);
+    String userId = RandomCqlDataGenerator.randomText(5, 10);
+    Instant startTime =
+        RandomCqlDataGenerator.randomInstant(-365)
+            .truncatedTo(ChronoUnit.SECONDS); // Past year, to second precision
+    Instant endTime =
+        startTime.plusSeconds(RandomCqlDataGenerator.random.nextInt(3600)); // Up to 1 hour later
+    int durationMinutes = (int) ChronoUnit.MINUTES.between(startTime, endTime);
+    String deviceType = RandomCqlDataGenerator.randomText(5, 10);
+    boolean isActive = RandomCqlDataGenerator.randomBoolean();
+    Set<String> tags =
+        RandomCqlDataGenerator.randomSet(0, 5, () -> RandomCqlDataGenerator.randomText(3, 8));
+    return new SessionData(
+        sessionId,
+        userId,
+        startTime,
+        endTime,
+        durationMinutes,
+        deviceType,
+        isActive,
+        sessionProperties,
+        tags);
+  }
+
   // --- Helper class to return generated data along with the statement ---
   public static class SessionData {
     public final String sessionId;
@@ -0,0 +1,333 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command line entry point for loading a CSV or JSON file into a Spanner table with a {@link
+ * BulkLoader}, through an in-process Adapter.
+ *
+ * <p>A CSV file starts with a header naming the columns of its records; empty fields are loaded as
+ * nulls. A JSON file holds objects, either one after the other or in an array, whose keys are the
+ * columns; the columns are those of the first object, and missing keys are loaded as nulls. Values
+ * are parsed according to the types of their columns.
+ *
+ * <p>Configuration is provided via the following system properties:
+ *
+ * <ul>
+ *   <li>{@code databaseUri}: (Required) The URI of the target Spanner database.
+ *   <li>{@code table}: (Required) The table to load, as {@code keyspace.table}.
+ *   <li>{@code file}: (Required) The file to load.
+ *   <li>{@code format}: (Optional) The format of the file, {@code csv} or {@code json}. Defaults to
+ *       {@code json} for files named {@code *.json} or {@code *.jsonl}, and to {@code csv}
+ *       otherwise.
+ *   <li>{@code numGrpcChannels}: (Optional) The number of gRPC channels to use for communication
+ *       with Spanner. Defaults to 4.
+ *   <li>{@code concurrency}: (Optional) The maximum number of batches executed at once. Defaults
+ *       to 8.
+ *   <li>{@code maxBatchMutations}: (Optional) The maximum number of values of a batch. Defaults to
+ *       20000.
+ *   <li>{@code maxCommitDelayMillis}: (Optional) The max commit delay of the batches, in
+ *       milliseconds. Defaults to 100.
+ *   <li>{@code maxRetries}: (Optional) The number of times a failed batch is retried. Defaults to
+ *       5.
+ * </ul>
+ *
+ * Example usage:
+ *
+ * <pre>
+ * java -DdatabaseUri=projects/my-project/instances/my-instance/databases/my-database \
+ * -Dtable=my_keyspace.users \
+ * -Dfile=users.csv \
+ * -Dconcurrency=16 \
+ * -cp path/to/your/spanner-cassandra-launcher.jar com.google.cloud.spanner.adapter.SpannerCassandraBulkLoader
+ * </pre>
+ *
+ * @see BulkLoader
+ */
+public class SpannerCassandraBulkLoader {
+  private static final Logger LOG = LoggerFactory.getLogger(SpannerCassandraBulkLoader.class);
+  private static final String DATABASE_URI_PROP_KEY = "databaseUri";
+  private static final String TABLE_PROP_KEY = "table";
+  private static final String FILE_PROP_KEY = "file";
+  private static final String FORMAT_PROP_KEY = "format";
+  private static final String NUM_GRPC_CHANNELS_PROP_KEY = "numGrpcChannels";
+  private static final String CONCURRENCY_PROP_KEY = "concurrency";
+  private static final String MAX_BATCH_MUTATIONS_PROP_KEY = "maxBatchMutations";
+  private static final String MAX_COMMIT_DELAY_PROP_KEY = "maxCommitDelayMillis";
+  private static final String MAX_RETRIES_PROP_KEY = "maxRetries";
+  private static final String DEFAULT_NUM_GRPC_CHANNELS = "4";
+  private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
+  public static void main(String[] args) throws Exception {
+    final String databaseUri = System.getProperty(DATABASE_URI_PROP_KEY);
+    final String table = requiredProperty(TABLE_PROP_KEY);
+    final Path file = Paths.get(requiredProperty(FILE_PROP_KEY));
+    final String fileName = file.getFileName().toString();
+    final String format =
+        System.getProperty(
+            FORMAT_PROP_KEY,
+            fileName.endsWith(".json") || fileName.endsWith(".jsonl") ? "json" : "csv");
+    final int numGrpcChannels =
+        Integer.parseInt(System.getProperty(NUM_GRPC_CHANNELS_PROP_KEY, DEFAULT_NUM_GRPC_CHANNELS));
+    final int concurrency =
+        Integer.parseInt(
+            System.getProperty(
+                CONCURRENCY_PROP_KEY, String.valueOf(BulkLoader.DEFAULT_CONCURRENCY)));
+    final int maxBatchMutations =
+        Integer.parseInt(
+            System.getProperty(
+                MAX_BATCH_MUTATIONS_PROP_KEY,
+                String.valueOf(BulkLoader.DEFAULT_MAX_BATCH_MUTATIONS)));
+    final Duration maxCommitDelay =
+        Duration.ofMillis(
+            Long.parseLong(
+                System.getProperty(
+                    MAX_COMMIT_DELAY_PROP_KEY,
+                    String.valueOf(BulkLoader.DEFAULT_MAX_COMMIT_DELAY.toMillis()))));
+    final int maxRetries =
+        Integer.parseInt(
+            System.getProperty(
+                MAX_RETRIES_PROP_KEY, String.valueOf(BulkLoader.DEFAULT_MAX_RETRIES)));
+
+    try (SpannerCqlSession session =
+            SpannerCqlSession.builder()
+                .setDatabaseUri(databaseUri)
+                .setNumGrpcChannels(numGrpcChannels)
+                .build();
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      final Rows rows;
+      if (format.equalsIgnoreCase("csv")) {
+        rows = csvRows(reader);
+      } else if (format.equalsIgnoreCase("json")) {
+        rows = jsonRows(reader);
+      } else {
+        throw new IllegalArgumentException("Unsupported format: " + format);
+      }
+      LOG.info("Loading {} into {} with columns {}...", file, table, rows.columns);
+      BulkLoader loader =
+          BulkLoader.newBuilder(session, insertQuery(table, rows.columns))
+              .setConcurrency(concurrency)
+              .setMaxBatchMutations(maxBatchMutations)
+              .setMaxCommitDelay(maxCommitDelay)
+              .setMaxRetries(maxRetries)
+              .setProgressListener(progress -> LOG.info("{}", progress), PROGRESS_INTERVAL)
+              .build();
+      loader.load(rows.values);
+    }
+  }
+
+  private static String requiredProperty(String key) {
+    String value = System.getProperty(key);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing required system property: " + key);
+    }
+    return value;
+  }
+
+  private static String insertQuery(String table, List<String> columns) {
+    return "INSERT INTO "
+        + table
+        + " ("
+        + columns.stream()
+            .map(column -> CqlIdentifier.fromInternal(column).asCql(true))
+            .collect(Collectors.joining(", "))
+        + ") VALUES ("
+        + columns.stream().map(column -> "?").collect(Collectors.joining(", "))
+        + ")";
+  }
+
+  private static Rows csvRows(BufferedReader reader) throws IOException {
+    List<String> header = readCsvRecord(reader);
+    if (header == null) {
+      throw new IllegalArgumentException("The CSV file has no header.");
+    }
+    Iterator<List<Object>> iterator =
+        new Iterator<List<Object>>() {
+          private List<String> next = readNext();
+
+          @Override
+          public boolean hasNext() {
+            return next != null;
+          }
+
+          @Override
+          public List<Object> next() {
+            if (next == null) {
+              throw new NoSuchElementException();
+            }
+            List<Object> values = new ArrayList<>(next.size());
+            for (String field : next) {
+              values.add(field.isEmpty() ? null : field);
+            }
+            next = readNext();
+            return values;
+          }
+
+          private List<String> readNext() {
+            try {
+              return readCsvRecord(reader);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        };
+    return new Rows(header, iterator);
+  }
+
+  /**
+   * Reads a record of RFC 4180 CSV, whose fields may be quoted with double quotes to hold commas,
+   * line breaks or doubled double quotes. Returns {@code null} at the end of the input.
+   */
+  private static List<String> readCsvRecord(Reader reader) throws IOException {
+    int c = reader.read();
+    if (c == -1) {
+      return null;
+    }
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (c == -1) {
+          throw new IllegalArgumentException("Unterminated quoted CSV field: " + field);
+        } else if (c == '"') {
+          c = reader.read();
+          if (c != '"') {
+            quoted = false;
+            continue;
+          }
+        }
+        field.append((char) c);
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\n' || c == -1) {
+        break;
+      } else if (c != '\r') {
+        field.append((char) c);
+      }
+      c = reader.read();
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  private static Rows jsonRows(Reader reader) throws IOException {
+    JsonReader json = new JsonReader(reader);
+    json.setLenient(true);
+    boolean array = json.peek() == JsonToken.BEGIN_ARRAY;
+    if (array) {
+      json.beginArray();
+    }
+    Iterator<JsonObject> objects =
+        new Iterator<JsonObject>() {
+          @Override
+          public boolean hasNext() {
+            try {
+              return array ? json.hasNext() : json.peek() != JsonToken.END_DOCUMENT;
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+
+          @Override
+          public JsonObject next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return JsonParser.parseReader(json).getAsJsonObject();
+          }
+        };
+    if (!objects.hasNext()) {
+      throw new IllegalArgumentException("The JSON file has no object.");
+    }
+    JsonObject first = objects.next();
+    List<String> columns =
+        first.entrySet().stream().map(Map.Entry::getKey).collect(Collectors.toList());
+    Iterator<List<Object>> iterator =
+        new Iterator<List<Object>>() {
+          private JsonObject next = first;
+
+          @Override
+          public boolean hasNext() {
+            return next != null || objects.hasNext();
+          }
+
+          @Override
+          public List<Object> next() {
+            JsonObject object = next != null ? next : objects.next();
+            next = null;
+            List<Object> values = new ArrayList<>(columns.size());
+            for (String column : columns) {
+              JsonElement value = object.get(column);
+              if (value == null || value.isJsonNull()) {
+                values.add(null);
+              } else if (value.isJsonPrimitive()) {
+                values.add(value.getAsString());
+              } else {
+                values.add(value.toString());
+              }
+            }
+            return values;
+          }
+        };
+    return new Rows(columns, iterator);
+  }
+
+  /** The columns of a file, and a stream of the values of its rows. */
+  private static final class Rows {
+    private final List<String> columns;
+    private final Stream<List<Object>> values;
+
+    private Rows(List<String> columns, Iterator<List<Object>> values) {
+      this.columns = columns;
+      this.values =
+          StreamSupport.stream(
+              Spliterators.spliteratorUnknownSize(values, Spliterator.ORDERED), false);
+    }
+  }
+}
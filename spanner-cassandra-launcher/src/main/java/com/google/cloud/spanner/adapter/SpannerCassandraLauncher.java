@@ -16,9 +16,25 @@ limitations under the License.
 
 package com.google.cloud.spanner.adapter;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,9 +45,15 @@ import org.slf4j.LoggerFactory;
  * {@link Adapter}, registers a shutdown hook for graceful termination, and starts the adapter
  * service. The main thread then blocks indefinitely until the application is terminated.
  *
- * <p>Configuration is provided via the following system properties:
+ * <p>Configuration is provided via the following system properties, which may also be set in a
+ * config file:
  *
  * <ul>
+ *   <li>{@code configFile}: (Optional) A properties file setting any of the properties below, which
+ *       the system properties override. The file is watched, and the write coalescing window and
+ *       batch size, max commit delay, connection pool sizes, memory budget, prepared response cache
+ *       size and max batch mutations it sets are applied without a restart. It can also set the
+ *       {@code org.slf4j.simpleLogger} properties, which apply at startup. Defaults to none.
  *   <li>{@code databaseUri}: (Required) The URI of the target Spanner database.
  *   <li>{@code host}: (Optional) The hostname or IP address to bind the service to. Defaults to
  *       "0.0.0.0".
@@ -40,6 +62,68 @@ import org.slf4j.LoggerFactory;
  *       with Spanner. Defaults to 4.
  *   <li>{@code maxCommitDelayMillis}: (Optional) The max commit delay to set in requests to
  *       optimize write throughput, in milliseconds. Defaults to none.
+ *   <li>{@code adaptiveMaxCommitDelayMillis}: (Optional) Makes the max commit delay of writes
+ *       adaptive to the write load, up to this bound, in milliseconds. Cannot be combined with
+ *       {@code maxCommitDelayMillis}. Defaults to none.
+ *   <li>{@code writeLatencyTargetMillis}: (Optional) The average write latency the adaptive max
+ *       commit delay keeps writes within, in milliseconds. Defaults to 100.
+ *   <li>{@code maxStalenessMillis}: (Optional) The staleness up to which reads at consistency
+ *       level ONE or LOCAL_ONE may be served by the nearest replica, in milliseconds. Defaults to
+ *       none, which keeps all reads strong.
+ *   <li>{@code trafficCaptureFile}: (Optional) A file to record the received native protocol
+ *       frames to, for later replay. Defaults to none, which disables traffic capture.
+ *   <li>{@code trafficCaptureSampleRate}: (Optional) The fraction of QUERY, EXECUTE and BATCH
+ *       frames to capture. Defaults to 1.
+ *   <li>{@code trafficCaptureMaxMegabytes}: (Optional) The size of the capture after which
+ *       recording stops, in megabytes. Defaults to 1024.
+ *   <li>{@code coreConnectionThreads}: (Optional) The number of threads serving driver
+ *       connections that are kept alive even when idle. Defaults to 8.
+ *   <li>{@code maxConnectionThreads}: (Optional) The maximum number of threads serving driver
+ *       connections, and thus of connections served concurrently. Defaults to 1024.
+ *   <li>{@code connectionQueueSize}: (Optional) The maximum number of connections waiting for a
+ *       thread when all are busy. Further connections are answered with an overloaded error.
+ *       Defaults to 64.
+ *   <li>{@code streamResponses}: (Optional) Whether results are streamed to drivers as soon as
+ *       they are received, instead of being assembled in memory first. Defaults to false.
+ *   <li>{@code responseSpillThresholdMegabytes}: (Optional) The size of a streamed result kept in
+ *       memory per connection, beyond which it is spilled to a temporary file, in megabytes.
+ *       Defaults to 16.
+ *   <li>{@code maxFrameMegabytes}: (Optional) The maximum size of a request frame, in megabytes.
+ *       Larger frames are answered with a protocol error. Defaults to 256.
+ *   <li>{@code memoryBudgetMegabytes}: (Optional) The size that in-flight request and response
+ *       buffers may hold at once across all connections, in megabytes, or 0 for no limit. Frames
+ *       that do not fit are answered with an overloaded error. Defaults to half of the maximum heap
+ *       size.
+ *   <li>{@code writeCoalescingWindowMicros}: (Optional) How long a prepared write waits for
+ *       concurrent writes to be coalesced with into an UNLOGGED batch, in microseconds. Writes with
+ *       a client-side timestamp, which drivers set by default, are not coalesced. Defaults to 0,
+ *       which disables write coalescing.
+ *   <li>{@code maxWriteCoalescingBatchSize}: (Optional) The maximum number of writes coalesced
+ *       into a batch. Defaults to 64.
+ *   <li>{@code preparedResponseCacheSize}: (Optional) The maximum number of PREPARE responses
+ *       cached to answer queries prepared again. Defaults to 0, which disables the cache.
+ *   <li>{@code preparedResponseCacheTtlSeconds}: (Optional) How long a PREPARE response is cached,
+ *       in seconds. Defaults to 300.
+ *   <li>{@code resultCacheTables}: (Optional) The tables whose read results are cached, as
+ *       comma-separated {@code keyspace.table:ttlSeconds:maxEntries} items. Defaults to none.
+ *   <li>{@code prefetchPages}: (Optional) The maximum number of pages of paged reads prefetched
+ *       per connection. Defaults to 0, which disables prefetching.
+ *   <li>{@code maxBatchMutations}: (Optional) The estimated number of mutations over which an
+ *       UNLOGGED batch is split into batches within it, which are sent one after the other.
+ *       Defaults to 0, which disables splitting.
+ *   <li>{@code drainTimeoutSeconds}: (Optional) How long stopping the adapter waits for open
+ *       connections to complete the requests they have in flight before closing them, in seconds.
+ *       Defaults to 10.
+ *   <li>{@code spannerEndpoint}: (Optional) The Spanner endpoint to connect to. Defaults to
+ *       spanner.googleapis.com:443.
+ *   <li>{@code usePlainText}: (Optional) Whether the Spanner endpoint is a local backend, such as a
+ *       test server, reached without TLS and credentials. Defaults to false.
+ *   <li>{@code fastStart}: (Optional) Whether to bind the port before the Spanner client is ready.
+ *       Connections made meanwhile are accepted and held until it is, and the launcher exits with
+ *       an error if Spanner cannot be reached. Defaults to false.
+ *   <li>{@code trainingRun}: (Optional) Starts the adapter on an ephemeral loopback port, waits for
+ *       Spanner to be reachable, and exits, so that the classes loaded by a start can be recorded
+ *       for a class data sharing archive. Defaults to false.
  * </ul>
  *
  * Example usage:
@@ -56,8 +140,31 @@ import org.slf4j.LoggerFactory;
  * @see Adapter
  */
 public class SpannerCassandraLauncher {
+  private static final String CONFIG_FILE_PROP_KEY = "configFile";
+  private static final String LOGGER_PROP_PREFIX = "org.slf4j.";
+
+  static {
+    // The logger reads its settings from the system properties when it is first used, so the
+    // settings of the config file are copied there first.
+    String configFile = System.getProperty(CONFIG_FILE_PROP_KEY);
+    if (configFile != null) {
+      try {
+        Properties config = loadConfig(Paths.get(configFile));
+        for (String name : config.stringPropertyNames()) {
+          if (name.startsWith(LOGGER_PROP_PREFIX)) {
+            System.setProperty(name, config.getProperty(name));
+          }
+        }
+      } catch (IOException e) {
+        // Reported when the config file is loaded again by main.
+      }
+    }
+  }
+
   private static final Logger LOG = LoggerFactory.getLogger(SpannerCassandraLauncher.class);
   private static final String DEFAULT_SPANNER_ENDPOINT = "spanner.googleapis.com:443";
+  private static final String SPANNER_ENDPOINT_PROP_KEY = "spannerEndpoint";
+  private static final String USE_PLAIN_TEXT_PROP_KEY = "usePlainText";
   private static final String DATABASE_URI_PROP_KEY = "databaseUri";
   private static final String HOST_PROP_KEY = "host";
   private static final String PORT_PROP_KEY = "port";
@@ -66,64 +173,340 @@ public class SpannerCassandraLauncher {
   private static final String DEFAULT_PORT = "9042";
   private static final String DEFAULT_NUM_GRPC_CHANNELS = "4";
   private static final String MAX_COMMIT_DELAY_PROP_KEY = "maxCommitDelayMillis";
+  private static final String MAX_STALENESS_PROP_KEY = "maxStalenessMillis";
+  private static final String ADAPTIVE_MAX_COMMIT_DELAY_PROP_KEY = "adaptiveMaxCommitDelayMillis";
+  private static final String WRITE_LATENCY_TARGET_PROP_KEY = "writeLatencyTargetMillis";
+  private static final String TRAFFIC_CAPTURE_FILE_PROP_KEY = "trafficCaptureFile";
+  private static final String TRAFFIC_CAPTURE_SAMPLE_RATE_PROP_KEY = "trafficCaptureSampleRate";
+  private static final String TRAFFIC_CAPTURE_MAX_MEGABYTES_PROP_KEY = "trafficCaptureMaxMegabytes";
+  private static final String CORE_CONNECTION_THREADS_PROP_KEY = "coreConnectionThreads";
+  private static final String MAX_CONNECTION_THREADS_PROP_KEY = "maxConnectionThreads";
+  private static final String CONNECTION_QUEUE_SIZE_PROP_KEY = "connectionQueueSize";
+  private static final String STREAM_RESPONSES_PROP_KEY = "streamResponses";
+  private static final String RESPONSE_SPILL_THRESHOLD_MEGABYTES_PROP_KEY =
+      "responseSpillThresholdMegabytes";
+  private static final String MAX_FRAME_MEGABYTES_PROP_KEY = "maxFrameMegabytes";
+  private static final String MEMORY_BUDGET_MEGABYTES_PROP_KEY = "memoryBudgetMegabytes";
+  private static final String WRITE_COALESCING_WINDOW_MICROS_PROP_KEY =
+      "writeCoalescingWindowMicros";
+  private static final String MAX_WRITE_COALESCING_BATCH_SIZE_PROP_KEY =
+      "maxWriteCoalescingBatchSize";
+  private static final String PREPARED_RESPONSE_CACHE_SIZE_PROP_KEY = "preparedResponseCacheSize";
+  private static final String PREPARED_RESPONSE_CACHE_TTL_SECONDS_PROP_KEY =
+      "preparedResponseCacheTtlSeconds";
+  private static final String RESULT_CACHE_TABLES_PROP_KEY = "resultCacheTables";
+  private static final String PREFETCH_PAGES_PROP_KEY = "prefetchPages";
+  private static final String MAX_BATCH_MUTATIONS_PROP_KEY = "maxBatchMutations";
+  private static final String DRAIN_TIMEOUT_SECONDS_PROP_KEY = "drainTimeoutSeconds";
+  private static final String FAST_START_PROP_KEY = "fastStart";
+  private static final String TRAINING_RUN_PROP_KEY = "trainingRun";
+  private static final Duration TRAINING_RUN_TIMEOUT = Duration.ofSeconds(30);
+  private static final String DEFAULT_TRAFFIC_CAPTURE_SAMPLE_RATE = "1";
+  private static final String DEFAULT_TRAFFIC_CAPTURE_MAX_MEGABYTES = "1024";
 
   public static void main(String[] args) throws Exception {
-    final String databaseUri = System.getProperty(DATABASE_URI_PROP_KEY);
+    final String configFileProperty = System.getProperty(CONFIG_FILE_PROP_KEY);
+    final Path configFile = configFileProperty == null ? null : Paths.get(configFileProperty);
+    final Properties config = loadConfig(configFile);
+    final boolean trainingRun = Boolean.parseBoolean(config.getProperty(TRAINING_RUN_PROP_KEY));
+    final AdapterOptions options = readOptions(config);
+    Adapter adapter = new Adapter(options);
+
+    if (trainingRun) {
+      train(adapter);
+      return;
+    }
+
+    final Thread shutdownHook =
+        new Thread(
+            () -> {
+              try {
+                adapter.stop();
+              } catch (Exception e) {
+                LOG.error("Error stopping adapter during shutdown: " + e.getMessage(), e);
+              }
+            });
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+    LOG.info(
+        "Starting Adapter for Spanner database {} on {}:{} with {} gRPC channels and max commit"
+            + " delay of {}...",
+        options.getDatabaseUri(),
+        options.getInetAddress(),
+        options.getPort(),
+        options.getNumGrpcChannels(),
+        options.getMaxCommitDelay().map(Duration::toMillis).orElse(null));
+
+    adapter.start();
+    // With fast start, the Spanner client is created after the port is bound.
+    if (!adapter.awaitReady()) {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      LOG.error("Failed to connect to Spanner, exiting.");
+      System.exit(1);
+    }
+
+    if (configFile != null) {
+      watchConfigFile(configFile, config, adapter::update);
+    }
+
+    try {
+      // Wait until interrupted or terminated.
+      Thread.currentThread().join();
+    } catch (InterruptedException e) {
+      // Preserve interrupt status
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the configuration of the launcher: the properties of the config file, if any,
+   * overridden by the system properties.
+   */
+  static Properties loadConfig(@Nullable Path configFile) throws IOException {
+    Properties config = new Properties();
+    if (configFile != null) {
+      try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+        config.load(reader);
+      }
+    }
+    config.putAll(System.getProperties());
+    return config;
+  }
+
+  /**
+   * Watches the config file from a daemon thread, and passes the options read from it to the given
+   * update, such as {@link Adapter#update}, whenever its contents change. The directory of the file
+   * is watched rather than the file itself, so that files replaced by a rename or a symbolic link
+   * swap, as mounted config maps are, are picked up too. A configuration that cannot be read or
+   * applied is logged, and applied again on the next change.
+   *
+   * @return The watcher thread, which stops when interrupted.
+   */
+  static Thread watchConfigFile(Path configFile, Properties loaded, Consumer<AdapterOptions> update)
+      throws IOException {
+    final Path directory = configFile.toAbsolutePath().getParent();
+    final WatchService watchService = directory.getFileSystem().newWatchService();
+    directory.register(
+        watchService,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    Thread watcher =
+        new Thread(
+            () -> {
+              Properties current = loaded;
+              try {
+                while (true) {
+                  WatchKey key = watchService.take();
+                  key.pollEvents();
+                  key.reset();
+                  try {
+                    Properties updated = loadConfig(configFile);
+                    if (!updated.equals(current)) {
+                      LOG.info("Reloading the configuration from {}.", configFile);
+                      update.accept(readOptions(updated));
+                      current = updated;
+                    }
+                  } catch (Exception e) {
+                    LOG.warn(
+                        "Could not reload the configuration from {}: {}",
+                        configFile,
+                        e.getMessage());
+                  }
+                }
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              } finally {
+                try {
+                  watchService.close();
+                } catch (IOException e) {
+                  LOG.warn("Error closing the config file watcher", e);
+                }
+              }
+            },
+            "spanner-cassandra-config-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+    return watcher;
+  }
+
+  /** Reads the options of the adapter from the configuration of the launcher. */
+  static AdapterOptions readOptions(Properties config) throws UnknownHostException {
+    final String databaseUri = config.getProperty(DATABASE_URI_PROP_KEY);
     final InetAddress inetAddress =
-        InetAddress.getByName(System.getProperty(HOST_PROP_KEY, DEFAULT_HOST));
-    final int port = Integer.parseInt(System.getProperty(PORT_PROP_KEY, DEFAULT_PORT));
+        InetAddress.getByName(config.getProperty(HOST_PROP_KEY, DEFAULT_HOST));
+    final int port = Integer.parseInt(config.getProperty(PORT_PROP_KEY, DEFAULT_PORT));
     final int numGrpcChannels =
-        Integer.parseInt(System.getProperty(NUM_GRPC_CHANNELS_PROP_KEY, DEFAULT_NUM_GRPC_CHANNELS));
-    final String maxCommitDelayProperty = System.getProperty(MAX_COMMIT_DELAY_PROP_KEY);
+        Integer.parseInt(config.getProperty(NUM_GRPC_CHANNELS_PROP_KEY, DEFAULT_NUM_GRPC_CHANNELS));
+    final String maxCommitDelayProperty = config.getProperty(MAX_COMMIT_DELAY_PROP_KEY);
     final Optional<Duration> maxCommitDelay;
     if (maxCommitDelayProperty != null) {
       maxCommitDelay = Optional.of(Duration.ofMillis(Integer.parseInt(maxCommitDelayProperty)));
     } else {
       maxCommitDelay = Optional.empty();
     }
+    final Optional<Duration> maxStaleness =
+        Optional.ofNullable(config.getProperty(MAX_STALENESS_PROP_KEY))
+            .map(millis -> Duration.ofMillis(Long.parseLong(millis)));
+    final Optional<Duration> adaptiveMaxCommitDelay =
+        Optional.ofNullable(config.getProperty(ADAPTIVE_MAX_COMMIT_DELAY_PROP_KEY))
+            .map(millis -> Duration.ofMillis(Long.parseLong(millis)));
+    final Duration writeLatencyTarget =
+        Optional.ofNullable(config.getProperty(WRITE_LATENCY_TARGET_PROP_KEY))
+            .map(millis -> Duration.ofMillis(Long.parseLong(millis)))
+            .orElse(AdapterOptions.DEFAULT_WRITE_LATENCY_TARGET);
+    if (maxCommitDelay.isPresent() && adaptiveMaxCommitDelay.isPresent()) {
+      throw new IllegalArgumentException(
+          "Only one of -D"
+              + MAX_COMMIT_DELAY_PROP_KEY
+              + " and -D"
+              + ADAPTIVE_MAX_COMMIT_DELAY_PROP_KEY
+              + " can be set.");
+    }
 
     if (databaseUri == null) {
       throw new IllegalArgumentException(
           "Spanner database URI not set. Please set it using -DdatabaseUri option.");
     }
 
-    Adapter adapter =
-        new Adapter(
-            DEFAULT_SPANNER_ENDPOINT,
-            databaseUri,
-            inetAddress,
-            port,
-            numGrpcChannels,
-            maxCommitDelay);
-
-    Runtime.getRuntime()
-        .addShutdownHook(
-            new Thread(
-                () -> {
-                  try {
-                    adapter.stop();
-                  } catch (Exception e) {
-                    LOG.error("Error stopping adapter during shutdown: " + e.getMessage(), e);
-                  }
-                }));
+    final String trafficCaptureFileProperty = config.getProperty(TRAFFIC_CAPTURE_FILE_PROP_KEY);
+    final Path trafficCaptureFile =
+        trafficCaptureFileProperty == null ? null : Paths.get(trafficCaptureFileProperty);
+    final double trafficCaptureSampleRate =
+        Double.parseDouble(
+            config.getProperty(
+                TRAFFIC_CAPTURE_SAMPLE_RATE_PROP_KEY, DEFAULT_TRAFFIC_CAPTURE_SAMPLE_RATE));
+    final long trafficCaptureMaxBytes =
+        Long.parseLong(
+                config.getProperty(
+                    TRAFFIC_CAPTURE_MAX_MEGABYTES_PROP_KEY, DEFAULT_TRAFFIC_CAPTURE_MAX_MEGABYTES))
+            << 20;
 
-    LOG.info(
-        "Starting Adapter for Spanner database {} on {}:{} with {} gRPC channels and max commit"
-            + " delay of {}...",
-        databaseUri,
-        inetAddress,
-        port,
-        numGrpcChannels,
-        maxCommitDelayProperty);
+    final int coreConnectionThreads =
+        Integer.parseInt(
+            config.getProperty(
+                CORE_CONNECTION_THREADS_PROP_KEY,
+                String.valueOf(AdapterOptions.DEFAULT_CORE_CONNECTION_THREADS)));
+    final int maxConnectionThreads =
+        Integer.parseInt(
+            config.getProperty(
+                MAX_CONNECTION_THREADS_PROP_KEY,
+                String.valueOf(AdapterOptions.DEFAULT_MAX_CONNECTION_THREADS)));
+    final int connectionQueueSize =
+        Integer.parseInt(
+            config.getProperty(
+                CONNECTION_QUEUE_SIZE_PROP_KEY,
+                String.valueOf(AdapterOptions.DEFAULT_CONNECTION_QUEUE_SIZE)));
 
-    adapter.start();
+    final boolean streamResponses =
+        Boolean.parseBoolean(config.getProperty(STREAM_RESPONSES_PROP_KEY));
+    final long responseSpillThresholdBytes =
+        Long.parseLong(
+                config.getProperty(
+                    RESPONSE_SPILL_THRESHOLD_MEGABYTES_PROP_KEY,
+                    String.valueOf(AdapterOptions.DEFAULT_RESPONSE_SPILL_THRESHOLD_BYTES >> 20)))
+            << 20;
 
-    try {
-      // Wait until interrupted or terminated.
-      Thread.currentThread().join();
-    } catch (InterruptedException e) {
-      // Preserve interrupt status
-      Thread.currentThread().interrupt();
+    final int maxFrameBytes =
+        Integer.parseInt(
+                config.getProperty(
+                    MAX_FRAME_MEGABYTES_PROP_KEY,
+                    String.valueOf(AdapterOptions.DEFAULT_MAX_FRAME_BYTES >> 20)))
+            << 20;
+    final String memoryBudgetProperty = config.getProperty(MEMORY_BUDGET_MEGABYTES_PROP_KEY);
+    final long memoryBudgetBytes =
+        memoryBudgetProperty == null
+            ? AdapterOptions.defaultMemoryBudgetBytes()
+            : Long.parseLong(memoryBudgetProperty) << 20;
+
+    final Duration writeCoalescingWindow =
+        Duration.ofNanos(
+            TimeUnit.MICROSECONDS.toNanos(
+                Long.parseLong(config.getProperty(WRITE_COALESCING_WINDOW_MICROS_PROP_KEY, "0"))));
+    final int maxWriteCoalescingBatchSize =
+        Integer.parseInt(
+            config.getProperty(
+                MAX_WRITE_COALESCING_BATCH_SIZE_PROP_KEY,
+                String.valueOf(AdapterOptions.DEFAULT_MAX_WRITE_COALESCING_BATCH_SIZE)));
+    final long preparedResponseCacheSize =
+        Long.parseLong(
+            config.getProperty(
+                PREPARED_RESPONSE_CACHE_SIZE_PROP_KEY,
+                String.valueOf(AdapterOptions.DEFAULT_PREPARED_RESPONSE_CACHE_SIZE)));
+    final Duration preparedResponseCacheTtl =
+        Duration.ofSeconds(
+            Long.parseLong(
+                config.getProperty(
+                    PREPARED_RESPONSE_CACHE_TTL_SECONDS_PROP_KEY,
+                    String.valueOf(
+                        AdapterOptions.DEFAULT_PREPARED_RESPONSE_CACHE_TTL.getSeconds()))));
+    final String resultCacheTablesProperty = config.getProperty(RESULT_CACHE_TABLES_PROP_KEY);
+    final Map<String, ResultCache.TableSettings> resultCacheTables =
+        resultCacheTablesProperty == null
+            ? Collections.emptyMap()
+            : ResultCache.parseTableSettings(resultCacheTablesProperty);
+    final int prefetchPages = Integer.parseInt(config.getProperty(PREFETCH_PAGES_PROP_KEY, "0"));
+    final int maxBatchMutations =
+        Integer.parseInt(
+            config.getProperty(
+                MAX_BATCH_MUTATIONS_PROP_KEY,
+                String.valueOf(AdapterOptions.DEFAULT_MAX_BATCH_MUTATIONS)));
+    final Duration drainTimeout =
+        Duration.ofSeconds(
+            Long.parseLong(
+                config.getProperty(
+                    DRAIN_TIMEOUT_SECONDS_PROP_KEY,
+                    String.valueOf(AdapterOptions.DEFAULT_DRAIN_TIMEOUT.getSeconds()))));
+    final boolean fastStart = Boolean.parseBoolean(config.getProperty(FAST_START_PROP_KEY));
+    final boolean trainingRun = Boolean.parseBoolean(config.getProperty(TRAINING_RUN_PROP_KEY));
+    final String spannerEndpoint =
+        config.getProperty(SPANNER_ENDPOINT_PROP_KEY, DEFAULT_SPANNER_ENDPOINT);
+    final boolean usePlainText = Boolean.parseBoolean(config.getProperty(USE_PLAIN_TEXT_PROP_KEY));
+
+    return AdapterOptions.newBuilder()
+        .spannerEndpoint(spannerEndpoint)
+        .usePlainText(usePlainText)
+        .databaseUri(databaseUri)
+        .inetAddress(trainingRun ? InetAddress.getLoopbackAddress() : inetAddress)
+        .port(trainingRun ? 0 : port)
+        .numGrpcChannels(numGrpcChannels)
+        .maxCommitDelay(maxCommitDelay)
+        .maxStaleness(maxStaleness)
+        .adaptiveMaxCommitDelay(adaptiveMaxCommitDelay)
+        .writeLatencyTarget(writeLatencyTarget)
+        .trafficCaptureFile(trafficCaptureFile)
+        .trafficCaptureSampleRate(trafficCaptureSampleRate)
+        .trafficCaptureMaxBytes(trafficCaptureMaxBytes)
+        .coreConnectionThreads(coreConnectionThreads)
+        .maxConnectionThreads(maxConnectionThreads)
+        .connectionQueueSize(connectionQueueSize)
+        .streamResponses(streamResponses)
+        .responseSpillThresholdBytes(responseSpillThresholdBytes)
+        .maxFrameBytes(maxFrameBytes)
+        .memoryBudgetBytes(memoryBudgetBytes)
+        .writeCoalescingWindow(writeCoalescingWindow)
+        .maxWriteCoalescingBatchSize(maxWriteCoalescingBatchSize)
+        .preparedResponseCacheSize(preparedResponseCacheSize)
+        .preparedResponseCacheTtl(preparedResponseCacheTtl)
+        .resultCacheTables(resultCacheTables)
+        .prefetchPages(prefetchPages)
+        .maxBatchMutations(maxBatchMutations)
+        .drainTimeout(drainTimeout)
+        .fastStart(fastStart || trainingRun)
+        .build();
+  }
+
+  /**
+   * Starts and stops the adapter, so that the JVM records the classes loaded along the way, such as
+   * with {@code -XX:DumpLoadedClassList}. Spanner need not be reachable: the classes loaded by the
+   * attempt are recorded all the same.
+   */
+  private static void train(Adapter adapter) throws Exception {
+    adapter.start();
+    if (adapter.awaitReady(TRAINING_RUN_TIMEOUT)) {
+      LOG.info("Training run connected to Spanner.");
+    } else {
+      LOG.info("Training run could not connect to Spanner.");
     }
+    adapter.stop();
   }
 }
@@ -0,0 +1,176 @@
+/*
+Copyright 2025 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.google.cloud.spanner.adapter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class SpannerCassandraLauncherTest {
+
+  private static final String DATABASE_URI = "projects/p/instances/i/databases/d";
+  // Some file systems are polled for changes rather than notified of them.
+  private static final long RELOAD_TIMEOUT_SECONDS = 30;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  public SpannerCassandraLauncherTest() {}
+
+  @Test
+  public void loadConfig_systemPropertiesOverrideConfigFile() throws IOException {
+    Path configFile = folder.getRoot().toPath().resolve("launcher.properties");
+    writeConfig(configFile, "databaseUri=" + DATABASE_URI + "\nmaxCommitDelayMillis=5\n");
+    System.setProperty("maxCommitDelayMillis", "10");
+    try {
+      Properties config = SpannerCassandraLauncher.loadConfig(configFile);
+
+      assertThat(config.getProperty("databaseUri")).isEqualTo(DATABASE_URI);
+      assertThat(config.getProperty("maxCommitDelayMillis")).isEqualTo("10");
+    } finally {
+      System.clearProperty("maxCommitDelayMillis");
+    }
+  }
+
+  @Test
+  public void loadConfig_withoutConfigFile_returnsSystemProperties() throws IOException {
+    Properties config = SpannerCassandraLauncher.loadConfig(null);
+
+    assertThat(config.getProperty("java.version")).isEqualTo(System.getProperty("java.version"));
+  }
+
+  @Test
+  public void readOptions_readsSettingsOfConfig() throws IOException {
+    Properties config = new Properties();
+    config.setProperty("databaseUri", DATABASE_URI);
+    config.setProperty("port", "9043");
+    config.setProperty("maxCommitDelayMillis", "20");
+    config.setProperty("coreConnectionThreads", "2");
+    config.setProperty("maxConnectionThreads", "4");
+    config.setProperty("writeCoalescingWindowMicros", "500");
+
+    AdapterOptions options = SpannerCassandraLauncher.readOptions(config);
+
+    assertThat(options.getDatabaseUri()).isEqualTo(DATABASE_URI);
+    assertThat(options.getPort()).isEqualTo(9043);
+    assertThat(options.getMaxCommitDelay()).hasValue(Duration.ofMillis(20));
+    assertThat(options.getCoreConnectionThreads()).isEqualTo(2);
+    assertThat(options.getMaxConnectionThreads()).isEqualTo(4);
+    assertThat(options.getWriteCoalescingWindow()).isEqualTo(Duration.ofNanos(500_000));
+  }
+
+  @Test
+  public void readOptions_rejectsInvalidConfig() {
+    Properties withoutDatabaseUri = new Properties();
+    Properties withBothCommitDelays = new Properties();
+    withBothCommitDelays.setProperty("databaseUri", DATABASE_URI);
+    withBothCommitDelays.setProperty("maxCommitDelayMillis", "20");
+    withBothCommitDelays.setProperty("adaptiveMaxCommitDelayMillis", "20");
+    Properties withInvalidNumber = new Properties();
+    withInvalidNumber.setProperty("databaseUri", DATABASE_URI);
+    withInvalidNumber.setProperty("maxConnectionThreads", "many");
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> SpannerCassandraLauncher.readOptions(withoutDatabaseUri));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> SpannerCassandraLauncher.readOptions(withBothCommitDelays));
+    assertThrows(
+        NumberFormatException.class, () -> SpannerCassandraLauncher.readOptions(withInvalidNumber));
+  }
+
+  @Test
+  public void watchConfigFile_appliesChangedConfigAndSkipsInvalidOne() throws Exception {
+    Path configFile = folder.getRoot().toPath().resolve("launcher.properties");
+    writeConfig(configFile, "databaseUri=" + DATABASE_URI + "\nmaxCommitDelayMillis=5\n");
+    BlockingQueue<AdapterOptions> updates = new LinkedBlockingQueue<>();
+    Thread watcher =
+        SpannerCassandraLauncher.watchConfigFile(
+            configFile, SpannerCassandraLauncher.loadConfig(configFile), updates::add);
+    try {
+      writeConfig(configFile, "databaseUri=" + DATABASE_URI + "\nmaxCommitDelayMillis=many\n");
+      writeConfig(configFile, "databaseUri=" + DATABASE_URI + "\nmaxCommitDelayMillis=20\n");
+
+      AdapterOptions updated = updates.poll(RELOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      assertThat(updated).isNotNull();
+      assertThat(updated.getMaxCommitDelay()).hasValue(Duration.ofMillis(20));
+    } finally {
+      watcher.interrupt();
+      watcher.join();
+    }
+  }
+
+  @Test
+  public void watchConfigFile_appliesRejectedConfigAgainOnNextChange() throws Exception {
+    Path configFile = folder.getRoot().toPath().resolve("launcher.properties");
+    writeConfig(configFile, "databaseUri=" + DATABASE_URI + "\nmaxCommitDelayMillis=5\n");
+    String changedConfig = "databaseUri=" + DATABASE_URI + "\nmaxCommitDelayMillis=20\n";
+    AtomicInteger attempts = new AtomicInteger();
+    CountDownLatch rejected = new CountDownLatch(1);
+    BlockingQueue<AdapterOptions> updates = new LinkedBlockingQueue<>();
+    Thread watcher =
+        SpannerCassandraLauncher.watchConfigFile(
+            configFile,
+            SpannerCassandraLauncher.loadConfig(configFile),
+            options -> {
+              if (attempts.incrementAndGet() == 1) {
+                rejected.countDown();
+                throw new IllegalArgumentException("rejected");
+              }
+              updates.add(options);
+            });
+    try {
+      writeConfig(configFile, changedConfig);
+      assertThat(rejected.await(RELOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+      // The rejected config is not recorded as applied, so the same contents are applied again.
+      writeConfig(configFile, changedConfig);
+
+      AdapterOptions updated = updates.poll(RELOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      assertThat(updated).isNotNull();
+      assertThat(updated.getMaxCommitDelay()).hasValue(Duration.ofMillis(20));
+    } finally {
+      watcher.interrupt();
+      watcher.join();
+    }
+  }
+
+  /** Replaces the config file in one step, as mounted config maps are. */
+  private void writeConfig(Path configFile, String contents) throws IOException {
+    Path temporary = folder.newFile().toPath();
+    Files.write(temporary, contents.getBytes(StandardCharsets.UTF_8));
+    Files.move(
+        temporary,
+        configFile,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+}